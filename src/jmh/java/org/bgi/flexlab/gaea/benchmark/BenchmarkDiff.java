@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * compare two JMH json result files (-rf json) and report every benchmark
+ * whose score or normalized allocation got worse by more than a threshold.
+ * exits with 1 when there is a regression.
+ */
+public class BenchmarkDiff {
+	private final static String ALLOCATION = "\u00b7gc.alloc.rate.norm";
+
+	private static class Result {
+		private final boolean higherIsBetter;
+		private final double score;
+		private final String unit;
+		private final double allocation;
+
+		private Result(JsonObject result) {
+			higherIsBetter = result.get("mode").getAsString().equals("thrpt");
+			JsonObject primary = result.getAsJsonObject("primaryMetric");
+			score = primary.get("score").getAsDouble();
+			unit = primary.get("scoreUnit").getAsString();
+			JsonObject secondary = result.getAsJsonObject("secondaryMetrics");
+			if (secondary != null && secondary.has(ALLOCATION))
+				allocation = secondary.getAsJsonObject(ALLOCATION).get("score").getAsDouble();
+			else
+				allocation = Double.NaN;
+		}
+	}
+
+	private static String key(JsonObject result) {
+		StringBuilder key = new StringBuilder(result.get("benchmark").getAsString());
+		JsonObject params = result.getAsJsonObject("params");
+		if (params != null) {
+			for (Entry<String, JsonElement> param : params.entrySet())
+				key.append(' ').append(param.getKey()).append('=').append(param.getValue().getAsString());
+		}
+		return key.toString();
+	}
+
+	private static Map<String, Result> read(String path) throws IOException {
+		Map<String, Result> results = new LinkedHashMap<String, Result>();
+		try (Reader reader = new FileReader(path)) {
+			JsonArray array = new JsonParser().parse(reader).getAsJsonArray();
+			for (JsonElement element : array) {
+				JsonObject result = element.getAsJsonObject();
+				results.put(key(result), new Result(result));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * relative change, positive when current is worse than baseline
+	 */
+	private static double worse(double baseline, double current, boolean higherIsBetter) {
+		if (baseline == 0)
+			return 0;
+		double change = (current - baseline) / baseline;
+		return higherIsBetter ? -change : change;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("java -cp gaea-1.0.0.jar " + BenchmarkDiff.class.getName()
+					+ " baseline.json current.json [threshold, default 0.1]");
+			System.exit(2);
+		}
+		double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+		Map<String, Result> baseline = read(args[0]);
+		Map<String, Result> current = read(args[1]);
+
+		int regressions = 0;
+		for (Entry<String, Result> entry : current.entrySet()) {
+			Result now = entry.getValue();
+			Result before = baseline.get(entry.getKey());
+			if (before == null) {
+				System.out.printf("NEW         %s\t%.3f %s%n", entry.getKey(), now.score, now.unit);
+				continue;
+			}
+
+			double scoreChange = worse(before.score, now.score, now.higherIsBetter);
+			double allocationChange = Double.isNaN(before.allocation) || Double.isNaN(now.allocation) ? 0
+					: worse(before.allocation, now.allocation, false);
+			boolean regression = scoreChange > threshold || allocationChange > threshold;
+			if (regression)
+				regressions++;
+			System.out.printf("%-11s %s\t%.3f -> %.3f %s (%+.1f%%)", regression ? "REGRESSION" : "ok",
+					entry.getKey(), before.score, now.score, now.unit, -scoreChange * 100);
+			if (!Double.isNaN(now.allocation))
+				System.out.printf("\talloc %.1f -> %.1f B/op", before.allocation, now.allocation);
+			System.out.println();
+		}
+		for (String key : baseline.keySet()) {
+			if (!current.containsKey(key))
+				System.out.println("MISSING     " + key);
+		}
+
+		System.out.println(regressions + " regression(s) over " + (threshold * 100) + "%");
+		System.exit(regressions > 0 ? 1 : 0);
+	}
+}
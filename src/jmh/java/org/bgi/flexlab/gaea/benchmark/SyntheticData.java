@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * seeded synthetic inputs, so every run of a benchmark sees the same data
+ */
+public class SyntheticData {
+	public final static long SEED = 20170101L;
+	private final static byte[] BASES = { 'A', 'C', 'G', 'T' };
+
+	public static Random random() {
+		return new Random(SEED);
+	}
+
+	public static byte[] bases(Random random, int length) {
+		byte[] bases = new byte[length];
+		for (int i = 0; i < length; i++)
+			bases[i] = BASES[random.nextInt(BASES.length)];
+		return bases;
+	}
+
+	public static byte[] qualities(Random random, int length, int min, int max) {
+		byte[] quals = new byte[length];
+		for (int i = 0; i < length; i++)
+			quals[i] = (byte) (min + random.nextInt(max - min + 1));
+		return quals;
+	}
+
+	public static byte[] constant(int length, int value) {
+		byte[] array = new byte[length];
+		Arrays.fill(array, (byte) value);
+		return array;
+	}
+
+	/**
+	 * copy of [start,start+length) of a sequence with substitutions at the
+	 * given rate
+	 */
+	public static byte[] sample(Random random, byte[] sequence, int start, int length, double errorRate) {
+		byte[] read = new byte[length];
+		for (int i = 0; i < length; i++) {
+			read[i] = sequence[start + i];
+			if (random.nextDouble() < errorRate)
+				read[i] = BASES[(indexOf(read[i]) + 1 + random.nextInt(3)) % BASES.length];
+		}
+		return read;
+	}
+
+	/**
+	 * a sequence with one deletion of the given length in the middle and
+	 * substitutions at the given rate
+	 */
+	public static byte[] withDeletion(Random random, byte[] sequence, int deletion, double errorRate) {
+		int middle = sequence.length / 2;
+		byte[] head = sample(random, sequence, 0, middle, errorRate);
+		byte[] tail = sample(random, sequence, middle + deletion, sequence.length - middle - deletion, errorRate);
+		byte[] result = new byte[head.length + tail.length];
+		System.arraycopy(head, 0, result, 0, head.length);
+		System.arraycopy(tail, 0, result, head.length, tail.length);
+		return result;
+	}
+
+	private static int indexOf(byte base) {
+		for (int i = 0; i < BASES.length; i++) {
+			if (BASES[i] == base)
+				return i;
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.mapreduce.partitioner;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * shuffle sort comparisons of window keys, on the serialized bytes and,
+ * for reference, by deserializing both keys first
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WindowsBasedSortBenchmark {
+	private final static int KEYS = 4096;
+
+	private final WindowsBasedSort comparator = new WindowsBasedSort();
+	private byte[] serialized;
+	private int[] offsets;
+	private int[] lengths;
+
+	private final DataInputBuffer input = new DataInputBuffer();
+	private final WindowsBasedWritable key1 = new WindowsBasedWritable();
+	private final WindowsBasedWritable key2 = new WindowsBasedWritable();
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = SyntheticData.random();
+		DataOutputBuffer out = new DataOutputBuffer();
+		offsets = new int[KEYS];
+		lengths = new int[KEYS];
+		WindowsBasedWritable key = new WindowsBasedWritable();
+		for (int i = 0; i < KEYS; i++) {
+			// few chromosomes and windows so that many keys tie on the window
+			key.set(random.nextInt(4), random.nextInt(64), random.nextInt(10000));
+			offsets[i] = out.getLength();
+			key.write(out);
+			lengths[i] = out.getLength() - offsets[i];
+		}
+		serialized = out.getData();
+	}
+
+	@Benchmark
+	public int raw() {
+		int sum = 0;
+		for (int i = 1; i < KEYS; i++)
+			sum += comparator.compare(serialized, offsets[i - 1], lengths[i - 1], serialized, offsets[i], lengths[i]);
+		return sum;
+	}
+
+	@Benchmark
+	public int deserialized() throws IOException {
+		int sum = 0;
+		for (int i = 1; i < KEYS; i++) {
+			input.reset(serialized, offsets[i - 1], lengths[i - 1]);
+			key1.readFields(input);
+			input.reset(serialized, offsets[i], lengths[i]);
+			key2.readFields(input);
+			sum += key1.compareTo(key2);
+		}
+		return sum;
+	}
+}
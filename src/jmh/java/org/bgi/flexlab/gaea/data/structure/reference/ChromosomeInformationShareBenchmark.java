@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.structure.reference;
+
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * reference window reads from a mapped 4-bit chromosome, as a String the way
+ * most callers use it and into a reused array
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChromosomeInformationShareBenchmark {
+	private final static int LENGTH = 50000000;
+	private final static int QUERIES = 1024;
+
+	@Param({ "100", "10000" })
+	public int window;
+
+	private File file;
+	private ChromosomeInformationShare share;
+	private int[] starts;
+	private byte[] buffer;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = SyntheticData.random();
+		file = File.createTempFile("chr1", ".bn");
+		byte[] packed = new byte[1 << 20];
+		try (OutputStream out = new FileOutputStream(file)) {
+			for (int written = 0; written < LENGTH / 2; written += packed.length) {
+				// two 2-bit base codes per byte, no N or dbSNP flags
+				for (int i = 0; i < packed.length; i++)
+					packed[i] = (byte) (random.nextInt(4) | random.nextInt(4) << 4);
+				out.write(packed, 0, Math.min(packed.length, LENGTH / 2 - written));
+			}
+		}
+
+		share = new ChromosomeInformationShare();
+		share.loadChromosome(file.getAbsolutePath());
+		share.setChromosomeName("chr1");
+		share.setLength(LENGTH);
+
+		starts = new int[QUERIES];
+		for (int i = 0; i < QUERIES; i++)
+			starts[i] = random.nextInt(LENGTH - window);
+		buffer = new byte[window];
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		share.clean();
+		file.delete();
+	}
+
+	private int nextStart() {
+		next = (next + 1) & (QUERIES - 1);
+		return starts[next];
+	}
+
+	@Benchmark
+	public String sequence() {
+		int start = nextStart();
+		return share.getGA4GHBaseSequence(start, start + window - 1);
+	}
+
+	@Benchmark
+	public byte[] bases() {
+		int start = nextStart();
+		share.getBases(start, start + window - 1, buffer, 0);
+		return buffer;
+	}
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.tools.annotator.interval.tree;
+
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.bgi.flexlab.gaea.tools.annotator.interval.Chromosome;
+import org.bgi.flexlab.gaea.tools.annotator.interval.Marker;
+import org.bgi.flexlab.gaea.tools.annotator.interval.Markers;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * variant position lookups against a forest of gene-like intervals
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntervalForestBenchmark {
+	private final static int LENGTH = 100000000;
+	private final static int QUERIES = 1024;
+
+	@Param({ "10000", "200000" })
+	public int intervals;
+
+	private IntervalForest forest;
+	private Marker[] queries;
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		Random random = SyntheticData.random();
+		Chromosome chromosome = new Chromosome(null, 0, LENGTH, "1");
+		forest = new IntervalForest();
+		for (int i = 0; i < intervals; i++) {
+			int start = random.nextInt(LENGTH - 100000);
+			forest.add(new Marker(chromosome, start, start + 100 + random.nextInt(50000), false, "m" + i));
+		}
+		forest.build();
+
+		queries = new Marker[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			int start = random.nextInt(LENGTH - 10);
+			queries[i] = new Marker(chromosome, start, start + random.nextInt(10), false, "q" + i);
+		}
+	}
+
+	@Benchmark
+	public Markers query() {
+		next = (next + 1) & (QUERIES - 1);
+		return forest.query(queries[next]);
+	}
+}
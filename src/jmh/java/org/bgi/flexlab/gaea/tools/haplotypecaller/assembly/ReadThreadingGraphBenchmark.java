@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.tools.haplotypecaller.assembly;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * de Bruijn graph construction of one active region: the reference and the
+ * reads threaded through it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadThreadingGraphBenchmark {
+    @Param({ "10", "25" })
+    public int kmerSize;
+
+    @Param({ "300" })
+    public int regionLength;
+
+    @Param({ "200" })
+    public int readCount;
+
+    private static final int READ_LENGTH = 100;
+
+    private byte[] reference;
+    private byte[][] reads;
+    private String[] names;
+
+    @Setup
+    public void setup() {
+        Random random = SyntheticData.random();
+        reference = SyntheticData.bases(random, regionLength);
+        byte[] alternate = SyntheticData.withDeletion(random, reference, 3, 0);
+        reads = new byte[readCount][];
+        names = new String[readCount];
+        for (int r = 0; r < readCount; r++) {
+            byte[] haplotype = r % 2 == 0 ? reference : alternate;
+            reads[r] = SyntheticData.sample(random, haplotype, random.nextInt(haplotype.length - READ_LENGTH),
+                    READ_LENGTH, 0.005);
+            names[r] = "read" + r;
+        }
+    }
+
+    @Benchmark
+    public ReadThreadingGraph build() {
+        ReadThreadingGraph graph = new ReadThreadingGraph(kmerSize);
+        graph.addSequence("ref", reference, true);
+        for (int r = 0; r < readCount; r++)
+            graph.addSequence(names[r], reads[r], false);
+        graph.buildGraphIfNecessary();
+        return graph;
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.tools.haplotypecaller.pairhmm;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * likelihoods of a set of reads against a set of haplotypes, the inner loop
+ * of PairHMM.computeLog10Likelihoods
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoglessPairHMMBenchmark {
+    @Param({ "100", "150" })
+    public int readLength;
+
+    @Param({ "300" })
+    public int haplotypeLength;
+
+    @Param({ "8" })
+    public int haplotypeCount;
+
+    @Param({ "32" })
+    public int readCount;
+
+    private LoglessPairHMM hmm;
+    private WavefrontPairHMM wavefront;
+    private byte[][] haplotypes;
+    private byte[][] reads;
+    private byte[][] quals;
+    private byte[] insertionGOP;
+    private byte[] deletionGOP;
+    private byte[] gcp;
+
+    @Setup
+    public void setup() {
+        Random random = SyntheticData.random();
+        byte[] reference = SyntheticData.bases(random, haplotypeLength + 10);
+        haplotypes = new byte[haplotypeCount][];
+        for (int h = 0; h < haplotypeCount; h++)
+            haplotypes[h] = h % 2 == 0 ? SyntheticData.sample(random, reference, 0, haplotypeLength, 0.01)
+                    : SyntheticData.withDeletion(random, reference, h, 0.01);
+
+        reads = new byte[readCount][];
+        quals = new byte[readCount][];
+        for (int r = 0; r < readCount; r++) {
+            reads[r] = SyntheticData.sample(random, reference, random.nextInt(haplotypeLength - readLength), readLength,
+                    0.01);
+            quals[r] = SyntheticData.qualities(random, readLength, 10, 40);
+        }
+        insertionGOP = SyntheticData.constant(readLength, 45);
+        deletionGOP = SyntheticData.constant(readLength, 45);
+        gcp = SyntheticData.constant(readLength, 10);
+
+        hmm = new LoglessPairHMM();
+        hmm.initialize(readLength, haplotypeLength + 10);
+        wavefront = new WavefrontPairHMM();
+        wavefront.initialize(readLength, haplotypeLength + 10);
+    }
+
+    @Benchmark
+    public double likelihoods() {
+        double sum = 0;
+        for (int r = 0; r < readCount; r++) {
+            for (int h = 0; h < haplotypeCount; h++) {
+                byte[] next = h == haplotypeCount - 1 ? null : haplotypes[h + 1];
+                sum += hmm.computeReadLikelihoodGivenHaplotypeLog10(haplotypes[h], reads[r], quals[r], insertionGOP,
+                        deletionGOP, gcp, h == 0, next);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double wavefrontLikelihoods() {
+        double sum = 0;
+        for (int r = 0; r < readCount; r++) {
+            for (int h = 0; h < haplotypeCount; h++) {
+                sum += wavefront.computeReadLikelihoodGivenHaplotypeLog10(haplotypes[h], reads[r], quals[r],
+                        insertionGOP, deletionGOP, gcp, h == 0, null);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.tools.haplotypecaller.smithwaterman;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.smithwaterman.SmithWatermanJavaAligner.SWOverhangStrategy;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * haplotype to reference alignment as done for every assembled haplotype
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmithWatermanJavaAlignerBenchmark {
+    @Param({ "300", "1000" })
+    public int length;
+
+    private SmithWatermanJavaAligner aligner;
+    private byte[] reference;
+    private byte[] alternate;
+
+    @Setup
+    public void setup() {
+        Random random = SyntheticData.random();
+        reference = SyntheticData.bases(random, length);
+        alternate = SyntheticData.withDeletion(random, reference, 5, 0.01);
+        aligner = SmithWatermanJavaAligner.getInstance();
+    }
+
+    @Benchmark
+    public SmithWatermanAlignment align() {
+        return aligner.align(reference, alternate, SmithWatermanAligner.STANDARD_NGS, SWOverhangStrategy.SOFTCLIP);
+    }
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.tools.jointcalling.annotator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * rank sum test of alt against ref read qualities, as the rank sum
+ * annotations run it at every variant site
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MannWhitneyUBenchmark {
+    @Param({ "5", "30", "200" })
+    public int depth;
+
+    private final MannWhitneyU mannWhitneyU = new MannWhitneyU();
+    private double[] alt;
+    private double[] ref;
+
+    @Setup
+    public void setup() {
+        Random random = SyntheticData.random();
+        alt = new double[depth];
+        ref = new double[depth];
+        // integer qualities, so the ranks have ties like real data
+        for (int i = 0; i < depth; i++) {
+            alt[i] = 20 + random.nextInt(21);
+            ref[i] = 25 + random.nextInt(16);
+        }
+    }
+
+    @Benchmark
+    public MannWhitneyU.Result test() {
+        return mannWhitneyU.test(alt, ref, MannWhitneyU.TestType.FIRST_DOMINATES);
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.tools.jointcalling.genotypelikelihood;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.LikelihoodMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.GenotypeLikelihoods;
+
+/**
+ * genotype likelihoods of one sample from its read by allele likelihoods
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenotypeLikelihoodCalculatorBenchmark {
+    @Param({ "2", "4" })
+    public int alleleCount;
+
+    @Param({ "2" })
+    public int ploidy;
+
+    @Param({ "100" })
+    public int readCount;
+
+    private GenotypeLikelihoodCalculator calculator;
+    private ArrayLikelihoodMatrix matrix;
+
+    /**
+     * likelihood matrix without reads behind it, only what the calculator reads
+     */
+    private static class ArrayLikelihoodMatrix implements LikelihoodMatrix<Allele> {
+        private final List<Allele> alleles;
+        private final double[][] values;
+
+        private ArrayLikelihoodMatrix(List<Allele> alleles, int readCount) {
+            this.alleles = alleles;
+            this.values = new double[alleles.size()][readCount];
+        }
+
+        @Override
+        public List<GaeaSamRecord> reads() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Allele> alleles() {
+            return alleles;
+        }
+
+        @Override
+        public void set(final int alleleIndex, final int readIndex, final double value) {
+            values[alleleIndex][readIndex] = value;
+        }
+
+        @Override
+        public double get(final int alleleIndex, final int readIndex) {
+            return values[alleleIndex][readIndex];
+        }
+
+        @Override
+        public int indexOfAllele(final Allele allele) {
+            return alleles.indexOf(allele);
+        }
+
+        @Override
+        public int indexOfRead(final GaeaSamRecord read) {
+            return -1;
+        }
+
+        @Override
+        public int numberOfAlleles() {
+            return alleles.size();
+        }
+
+        @Override
+        public int numberOfReads() {
+            return values[0].length;
+        }
+
+        @Override
+        public Allele getAllele(final int alleleIndex) {
+            return alleles.get(alleleIndex);
+        }
+
+        @Override
+        public GaeaSamRecord getRead(final int readIndex) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void copyAlleleLikelihoods(final int alleleIndex, final double[] dest, final int offset) {
+            System.arraycopy(values[alleleIndex], 0, dest, offset, values[alleleIndex].length);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        String[] bases = { "A", "C", "G", "T", "AC", "AG" };
+        List<Allele> alleles = new ArrayList<>();
+        for (int a = 0; a < alleleCount; a++)
+            alleles.add(Allele.create(bases[a], a == 0));
+
+        Random random = SyntheticData.random();
+        matrix = new ArrayLikelihoodMatrix(alleles, readCount);
+        for (int r = 0; r < readCount; r++) {
+            int supported = random.nextInt(alleleCount);
+            for (int a = 0; a < alleleCount; a++)
+                matrix.set(a, r, a == supported ? -0.01 * random.nextDouble() : -1 - 3 * random.nextDouble());
+        }
+        calculator = GenotypeLikelihoodCalculators.getInstance(ploidy, alleleCount);
+    }
+
+    @Benchmark
+    public GenotypeLikelihoods genotypeLikelihoods() {
+        return calculator.genotypeLikelihoods(matrix);
+    }
+}
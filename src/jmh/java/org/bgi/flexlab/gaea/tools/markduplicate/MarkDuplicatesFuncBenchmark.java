@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.tools.markduplicate;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * duplicate clustering of a synthetic hotspot: every pair shares the
+ * right-most end, like an amplicon, so all reads fall into one reduce key
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MarkDuplicatesFuncBenchmark {
+    private final static int HOTSPOT = 1000000;
+    private final static int FRAGMENT_RANGE = 400;
+    private final static int READ_LENGTH = 100;
+
+    @Param({ "100000", "1000000" })
+    public int reads;
+
+    private long[] names;
+    private int[] starts;
+    private short[] scores;
+    private ArrayList<SAMRecord> records;
+
+    private final MarkDuplicatesFunc func = new MarkDuplicatesFunc();
+    private final DuplicateClusterEngine engine = new DuplicateClusterEngine();
+
+    @Setup
+    public void setup() {
+        Random random = SyntheticData.random();
+        int pairs = reads / 2;
+        names = new long[pairs];
+        starts = new int[pairs];
+        scores = new short[pairs * 2];
+        for (int i = 0; i < pairs; i++) {
+            names[i] = random.nextLong();
+            starts[i] = HOTSPOT - random.nextInt(FRAGMENT_RANGE);
+            scores[2 * i] = (short) (random.nextInt(100) * 30);
+            scores[2 * i + 1] = (short) (random.nextInt(100) * 30);
+        }
+
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence(new SAMSequenceRecord("chr1", HOTSPOT * 2));
+        records = new ArrayList<SAMRecord>(reads);
+        for (int i = 0; i < pairs; i++) {
+            String name = "read" + i;
+            records.add(record(header, random, name, starts[i], false, HOTSPOT - READ_LENGTH + 1));
+            records.add(record(header, random, name, HOTSPOT - READ_LENGTH + 1, true, starts[i]));
+        }
+    }
+
+    private static SAMRecord record(SAMFileHeader header, Random random, String name, int start, boolean negative,
+            int mateStart) {
+        SAMRecord record = new SAMRecord(header);
+        record.setReadName(name);
+        record.setReferenceIndex(0);
+        record.setAlignmentStart(start);
+        record.setCigarString(READ_LENGTH + "M");
+        record.setReadBases(SyntheticData.bases(random, READ_LENGTH));
+        record.setBaseQualities(SyntheticData.qualities(random, READ_LENGTH, 2, 40));
+        record.setReadPairedFlag(true);
+        record.setReadNegativeStrandFlag(negative);
+        record.setMateReferenceIndex(0);
+        record.setMateAlignmentStart(mateStart);
+        record.setMateNegativeStrandFlag(!negative);
+        return record;
+    }
+
+    /**
+     * the reducer path: hash names, score qualities and set the flags
+     */
+    @Benchmark
+    public ArrayList<SAMRecord> markDup() {
+        func.markDup(records);
+        return records;
+    }
+
+    /**
+     * clustering alone on already extracted signatures
+     */
+    @Benchmark
+    public boolean[] cluster() {
+        engine.clear();
+        for (int i = 0; i < names.length; i++) {
+            engine.add(names[i], 0, starts[i], false, true, 0, scores[2 * i]);
+            engine.add(names[i], 0, HOTSPOT, true, true, 0, scores[2 * i + 1]);
+        }
+        return engine.findDuplicates();
+    }
+}
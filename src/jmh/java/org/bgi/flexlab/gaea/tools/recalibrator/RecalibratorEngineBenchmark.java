@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.tools.recalibrator;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import org.bgi.flexlab.gaea.benchmark.SyntheticData;
+import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
+import org.bgi.flexlab.gaea.tools.mapreduce.realigner.RecalibratorOptions;
+import org.bgi.flexlab.gaea.tools.recalibrator.covariate.Covariate;
+import org.bgi.flexlab.gaea.tools.recalibrator.covariate.CovariateUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * covariate table update of every base of a read, with the standard
+ * covariates
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecalibratorEngineBenchmark {
+	@Param({ "100", "150" })
+	public int readLength;
+
+	private final static int READS = 64;
+
+	private RecalibratorEngine engine;
+	private ReadCovariates[] covariates;
+	private byte[][] bases;
+	private byte[][] quals;
+	private byte[][] references;
+
+	@Setup
+	public void setup() {
+		SAMFileHeader header = new SAMFileHeader();
+		header.addSequence(new SAMSequenceRecord("chr1", 1000000));
+		SAMReadGroupRecord readGroup = new SAMReadGroupRecord("rg1");
+		readGroup.setSample("sample");
+		readGroup.setPlatform("ILLUMINA");
+		header.addReadGroup(readGroup);
+
+		RecalibratorOptions option = new RecalibratorOptions();
+		option.MISMATCHES_CONTEXT_SIZE = 2;
+		option.INDELS_CONTEXT_SIZE = 3;
+		option.MISMATCHES_DEFAULT_QUALITY = -1;
+		option.INSERTIONS_DEFAULT_QUALITY = 45;
+		option.DELETIONS_DEFAULT_QUALITY = 45;
+		option.LOW_QUALITY_TAIL = 2;
+
+		engine = new RecalibratorEngine(option, null, header, false, null);
+		Covariate[] requested = CovariateUtil.initializeCovariates(option, header);
+
+		Random random = SyntheticData.random();
+		covariates = new ReadCovariates[READS];
+		bases = new byte[READS][];
+		quals = new byte[READS][];
+		references = new byte[READS][];
+		for (int r = 0; r < READS; r++) {
+			references[r] = SyntheticData.bases(random, readLength);
+			bases[r] = SyntheticData.sample(random, references[r], 0, readLength, 0.01);
+			quals[r] = SyntheticData.qualities(random, readLength, 2, 40);
+
+			GaeaSamRecord read = new GaeaSamRecord(header);
+			read.setReadName("read" + r);
+			read.setReferenceIndex(0);
+			read.setAlignmentStart(1 + r * 10);
+			read.setCigarString(readLength + "M");
+			read.setReadNegativeStrandFlag(r % 2 == 1);
+			read.setReadBases(bases[r]);
+			read.setBaseQualities(quals[r]);
+			read.setAttribute("RG", readGroup.getId());
+			covariates[r] = RecalibratorUtil.computeCovariates(read, requested);
+		}
+	}
+
+	@Benchmark
+	public int dataUpdate() {
+		int errors = 0;
+		for (int r = 0; r < READS; r++) {
+			for (int offset = 0; offset < readLength; offset++) {
+				if (engine.dataUpdate(offset, bases[r][offset], quals[r][offset], references[r][offset], covariates[r]))
+					errors++;
+			}
+		}
+		return errors;
+	}
+}
@@ -0,0 +1,380 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.mapreduce.output.bam;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.BinaryCodec;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * binning and linear index of one BAM part, with virtual offsets relative to
+ * the start of the part. fragments of consecutive parts are shifted by the
+ * compressed offset of their part and merged into one .bai, or .csi when a
+ * contig is longer than BAI can address.
+ */
+public class BamIndexFragment {
+	public final static String WRITE_FRAGMENT_PROP = "gaea.bam.index.fragment";
+	public final static String FRAGMENT_SUFFIX = ".idxfrag";
+
+	private final static int MIN_SHIFT = 14;
+	private final static int BAI_DEPTH = 5;
+	private final static long UNSET = -1;
+
+	private int depth;
+	private Reference[] references;
+	private long noCoordinateCount = 0;
+
+	private static class Reference {
+		private final Int2ObjectOpenHashMap<LongArrayList> bins = new Int2ObjectOpenHashMap<LongArrayList>();
+		private long[] linear = new long[0];
+		private long begin = UNSET;
+		private long end = UNSET;
+		private long mapped = 0;
+		private long unmapped = 0;
+
+		private void addChunk(int bin, long chunkBegin, long chunkEnd) {
+			LongArrayList chunks = bins.get(bin);
+			if (chunks == null) {
+				chunks = new LongArrayList();
+				bins.put(bin, chunks);
+			}
+			int n = chunks.size();
+			if (n > 0 && chunks.getLong(n - 1) == chunkBegin) {
+				chunks.set(n - 1, chunkEnd);
+			} else {
+				chunks.add(chunkBegin);
+				chunks.add(chunkEnd);
+			}
+		}
+
+		private void setLinear(int window, long offset) {
+			if (window >= linear.length) {
+				int length = linear.length;
+				linear = Arrays.copyOf(linear, Math.max(window + 1, length * 2));
+				Arrays.fill(linear, length, linear.length, UNSET);
+			}
+			if (linear[window] == UNSET)
+				linear[window] = offset;
+		}
+
+		private int linearLength() {
+			int n = linear.length;
+			while (n > 0 && linear[n - 1] == UNSET)
+				n--;
+			return n;
+		}
+
+		/**
+		 * linear index as written: leading empty windows are 0, later ones
+		 * take the previous offset
+		 */
+		private long[] filledLinear() {
+			long[] filled = Arrays.copyOf(linear, linearLength());
+			for (int i = 0; i < filled.length; i++) {
+				if (filled[i] == UNSET)
+					filled[i] = i == 0 ? 0 : filled[i - 1];
+			}
+			return filled;
+		}
+	}
+
+	private BamIndexFragment() {
+	}
+
+	public BamIndexFragment(SAMFileHeader header) {
+		long maxLength = 0;
+		for (SAMSequenceRecord sequence : header.getSequenceDictionary().getSequences())
+			maxLength = Math.max(maxLength, sequence.getSequenceLength());
+		depth = BAI_DEPTH;
+		while ((1L << (MIN_SHIFT + 3 * depth)) < maxLength)
+			depth++;
+		references = new Reference[header.getSequenceDictionary().size()];
+	}
+
+	/**
+	 * BAI can only address contigs up to 2^29
+	 */
+	public boolean isCsi() {
+		return depth != BAI_DEPTH;
+	}
+
+	public String getIndexSuffix() {
+		return isCsi() ? ".csi" : ".bai";
+	}
+
+	private static int binsBefore(int level) {
+		return ((1 << (3 * level)) - 1) / 7;
+	}
+
+	/**
+	 * reg2bin of the SAM spec for [begin,end), 0-based
+	 */
+	public static int reg2bin(long begin, long end, int minShift, int depth) {
+		int level = depth;
+		int shift = minShift;
+		int t = binsBefore(depth);
+		for (--end; level > 0; --level, shift += 3, t -= 1 << (level * 3)) {
+			if (begin >> shift == end >> shift)
+				return t + (int) (begin >> shift);
+		}
+		return 0;
+	}
+
+	private Reference reference(int index) {
+		if (references[index] == null)
+			references[index] = new Reference();
+		return references[index];
+	}
+
+	/**
+	 * add one record written between two virtual offsets
+	 */
+	public void processAlignment(SAMRecord record, long startOffset, long endOffset) {
+		int index = record.getReferenceIndex();
+		if (index < 0) {
+			noCoordinateCount++;
+			return;
+		}
+
+		Reference reference = reference(index);
+		int begin = Math.max(record.getAlignmentStart() - 1, 0);
+		int end = record.getReadUnmappedFlag() ? begin + 1 : Math.max(record.getAlignmentEnd(), begin + 1);
+
+		reference.addChunk(reg2bin(begin, end, MIN_SHIFT, depth), startOffset, endOffset);
+		for (int window = begin >> MIN_SHIFT; window <= (end - 1) >> MIN_SHIFT; window++)
+			reference.setLinear(window, startOffset);
+
+		if (reference.begin == UNSET)
+			reference.begin = startOffset;
+		reference.end = endOffset;
+		if (record.getReadUnmappedFlag())
+			reference.unmapped++;
+		else
+			reference.mapped++;
+	}
+
+	private static long shift(long virtualOffset, long compressedOffset) {
+		return virtualOffset == UNSET ? UNSET : virtualOffset + (compressedOffset << 16);
+	}
+
+	/**
+	 * move every virtual offset by the compressed offset of the part in the
+	 * merged file
+	 */
+	public void shift(long compressedOffset) {
+		for (Reference reference : references) {
+			if (reference == null)
+				continue;
+			for (LongArrayList chunks : reference.bins.values()) {
+				for (int i = 0; i < chunks.size(); i++)
+					chunks.set(i, shift(chunks.getLong(i), compressedOffset));
+			}
+			for (int i = 0; i < reference.linear.length; i++)
+				reference.linear[i] = shift(reference.linear[i], compressedOffset);
+			reference.begin = shift(reference.begin, compressedOffset);
+			reference.end = shift(reference.end, compressedOffset);
+		}
+	}
+
+	/**
+	 * append the fragment of the next part
+	 */
+	public void merge(BamIndexFragment next) {
+		if (next.depth != depth || next.references.length != references.length)
+			throw new IllegalArgumentException("index fragments of different headers.");
+
+		for (int i = 0; i < references.length; i++) {
+			Reference other = next.references[i];
+			if (other == null)
+				continue;
+			Reference reference = reference(i);
+			for (Int2ObjectOpenHashMap.Entry<LongArrayList> bin : other.bins.int2ObjectEntrySet()) {
+				LongArrayList chunks = bin.getValue();
+				for (int j = 0; j < chunks.size(); j += 2)
+					reference.addChunk(bin.getIntKey(), chunks.getLong(j), chunks.getLong(j + 1));
+			}
+			for (int window = 0; window < other.linear.length; window++) {
+				if (other.linear[window] != UNSET)
+					reference.setLinear(window, other.linear[window]);
+			}
+			if (reference.begin == UNSET)
+				reference.begin = other.begin;
+			if (other.end != UNSET)
+				reference.end = other.end;
+			reference.mapped += other.mapped;
+			reference.unmapped += other.unmapped;
+		}
+		noCoordinateCount += next.noCoordinateCount;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(depth);
+		out.writeInt(references.length);
+		for (Reference reference : references) {
+			out.writeBoolean(reference != null);
+			if (reference == null)
+				continue;
+			out.writeLong(reference.begin);
+			out.writeLong(reference.end);
+			out.writeLong(reference.mapped);
+			out.writeLong(reference.unmapped);
+			out.writeInt(reference.bins.size());
+			for (Int2ObjectOpenHashMap.Entry<LongArrayList> bin : reference.bins.int2ObjectEntrySet()) {
+				out.writeInt(bin.getIntKey());
+				out.writeInt(bin.getValue().size());
+				for (int i = 0; i < bin.getValue().size(); i++)
+					out.writeLong(bin.getValue().getLong(i));
+			}
+			int length = reference.linearLength();
+			out.writeInt(length);
+			for (int i = 0; i < length; i++)
+				out.writeLong(reference.linear[i]);
+		}
+		out.writeLong(noCoordinateCount);
+	}
+
+	public static BamIndexFragment read(DataInput in) throws IOException {
+		BamIndexFragment fragment = new BamIndexFragment();
+		fragment.depth = in.readInt();
+		fragment.references = new Reference[in.readInt()];
+		for (int r = 0; r < fragment.references.length; r++) {
+			if (!in.readBoolean())
+				continue;
+			Reference reference = new Reference();
+			reference.begin = in.readLong();
+			reference.end = in.readLong();
+			reference.mapped = in.readLong();
+			reference.unmapped = in.readLong();
+			int binCount = in.readInt();
+			for (int b = 0; b < binCount; b++) {
+				int bin = in.readInt();
+				int size = in.readInt();
+				LongArrayList chunks = new LongArrayList(size);
+				for (int i = 0; i < size; i++)
+					chunks.add(in.readLong());
+				reference.bins.put(bin, chunks);
+			}
+			reference.linear = new long[in.readInt()];
+			for (int i = 0; i < reference.linear.length; i++)
+				reference.linear[i] = in.readLong();
+			fragment.references[r] = reference;
+		}
+		fragment.noCoordinateCount = in.readLong();
+		return fragment;
+	}
+
+	private static void writeChunks(BinaryCodec codec, LongArrayList chunks) {
+		codec.writeInt(chunks.size() / 2);
+		for (int i = 0; i < chunks.size(); i++)
+			codec.writeLong(chunks.getLong(i));
+	}
+
+	private static int[] sortedBins(Reference reference) {
+		int[] bins = reference.bins.keySet().toIntArray();
+		Arrays.sort(bins);
+		return bins;
+	}
+
+	/**
+	 * write the merged index as BAI, or CSI for long contigs
+	 */
+	public void writeIndex(OutputStream out) {
+		BinaryCodec codec = new BinaryCodec(out);
+		if (isCsi())
+			writeCsi(codec);
+		else
+			writeBai(codec);
+		codec.writeLong(noCoordinateCount);
+		codec.close();
+	}
+
+	private void writeBai(BinaryCodec codec) {
+		codec.writeBytes("BAI\1".getBytes());
+		codec.writeInt(references.length);
+		for (Reference reference : references) {
+			if (reference == null) {
+				codec.writeInt(0);
+				codec.writeInt(0);
+				continue;
+			}
+			codec.writeInt(reference.bins.size() + 1);
+			for (int bin : sortedBins(reference)) {
+				codec.writeInt(bin);
+				writeChunks(codec, reference.bins.get(bin));
+			}
+			writeMetaBin(codec, reference, false);
+
+			long[] linear = reference.filledLinear();
+			codec.writeInt(linear.length);
+			for (long offset : linear)
+				codec.writeLong(offset);
+		}
+	}
+
+	private void writeCsi(BinaryCodec codec) {
+		codec.writeBytes("CSI\1".getBytes());
+		codec.writeInt(MIN_SHIFT);
+		codec.writeInt(depth);
+		codec.writeInt(0); // no auxiliary data
+		codec.writeInt(references.length);
+		for (Reference reference : references) {
+			if (reference == null) {
+				codec.writeInt(0);
+				continue;
+			}
+			long[] linear = reference.filledLinear();
+			codec.writeInt(reference.bins.size() + 1);
+			for (int bin : sortedBins(reference)) {
+				codec.writeInt(bin);
+				codec.writeLong(binOffset(bin, linear));
+				writeChunks(codec, reference.bins.get(bin));
+			}
+			writeMetaBin(codec, reference, true);
+		}
+	}
+
+	/**
+	 * smallest offset of records overlapping the first window of a bin
+	 */
+	private long binOffset(int bin, long[] linear) {
+		int level = 0;
+		while (level < depth && bin >= binsBefore(level + 1))
+			level++;
+		long window = (long) (bin - binsBefore(level)) << (3 * (depth - level));
+		return window < linear.length ? linear[(int) window] : 0;
+	}
+
+	private void writeMetaBin(BinaryCodec codec, Reference reference, boolean csi) {
+		codec.writeInt(binsBefore(depth + 1) + 1);
+		if (csi)
+			codec.writeLong(0);
+		codec.writeInt(2);
+		codec.writeLong(reference.begin);
+		codec.writeLong(reference.end);
+		codec.writeLong(reference.mapped);
+		codec.writeLong(reference.unmapped);
+	}
+}
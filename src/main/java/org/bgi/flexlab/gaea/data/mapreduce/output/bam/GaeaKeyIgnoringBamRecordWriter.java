@@ -45,11 +45,14 @@ package org.bgi.flexlab.gaea.data.mapreduce.output.bam;
 import htsjdk.samtools.*;
 import htsjdk.samtools.util.BinaryCodec;
 import htsjdk.samtools.util.BlockCompressedOutputStream;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
@@ -64,6 +67,10 @@ public class GaeaKeyIgnoringBamRecordWriter<K> extends
 	private Path outputPath;
 	private OutputStream outputStream;
 	private boolean writeHeader;
+	private BlockCompressedOutputStream compressedOut;
+	private boolean writeIndexFragment = false;
+	private BamIndexFragment indexFragment = null;
+	private Configuration conf;
 
 	public GaeaKeyIgnoringBamRecordWriter(Path p, Boolean w,
 			TaskAttemptContext ctx) throws IOException {
@@ -71,6 +78,8 @@ public class GaeaKeyIgnoringBamRecordWriter<K> extends
 		this.outputStream = outputPath.getFileSystem(ctx.getConfiguration()).create(
 				outputPath);
 		this.writeHeader = w;
+		this.conf = ctx.getConfiguration();
+		this.writeIndexFragment = conf.getBoolean(BamIndexFragment.WRITE_FRAGMENT_PROP, false);
 	}
 
 	public GaeaKeyIgnoringBamRecordWriter(Path p, SAMFileHeader header,Boolean w,
@@ -90,7 +99,6 @@ public class GaeaKeyIgnoringBamRecordWriter<K> extends
 	}
 
 	private void initialize(SAMFileHeader header) {
-		OutputStream compressedOut = null;
 		if (outputStream != null)
 			compressedOut = new BlockCompressedOutputStream(outputStream, null);
 		else
@@ -103,6 +111,8 @@ public class GaeaKeyIgnoringBamRecordWriter<K> extends
 		if (writeHeader) {
 			writeHeader(header);
 		}
+		if (writeIndexFragment)
+			indexFragment = new BamIndexFragment(header);
 	}
 
 	private void writeHeader(final SAMFileHeader header) {
@@ -129,6 +139,13 @@ public class GaeaKeyIgnoringBamRecordWriter<K> extends
 		if (binaryCodec != null) {
 			binaryCodec.close();
 		}
+		if (indexFragment != null) {
+			Path fragmentPath = new Path(outputPath.toString() + BamIndexFragment.FRAGMENT_SUFFIX);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					fragmentPath.getFileSystem(conf).create(fragmentPath)));
+			indexFragment.write(out);
+			out.close();
+		}
 	}
 
 	@Override
@@ -143,6 +160,12 @@ public class GaeaKeyIgnoringBamRecordWriter<K> extends
 //		if(sam.getReadUnmappedFlag()){
 //			sam.setAlignmentStart(0);
 //		}
-		bamRecordCodec.encode(sam);
+		if (indexFragment != null) {
+			long start = compressedOut.getFilePointer();
+			bamRecordCodec.encode(sam);
+			indexFragment.processAlignment(sam, start, compressedOut.getFilePointer());
+		} else {
+			bamRecordCodec.encode(sam);
+		}
 	}
 }
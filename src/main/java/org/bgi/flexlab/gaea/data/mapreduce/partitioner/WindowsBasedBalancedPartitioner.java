@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.mapreduce.partitioner;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Windows based partitioner that sends the windows of a partition table to
+ * the reducers chosen for them, so the sampled load of the reducers is even.
+ * Windows missing from the table are partitioned as by
+ * {@link WindowsBasedPartitioner}.
+ *
+ * The table is a list of (windows information, partition) pairs for a number
+ * of reducers. It is read from the distributed cache file named
+ * {@link #PARTITION_TABLE_NAME}, or from {@link #PARTITION_TABLE} if the
+ * cache file isn't there.
+ */
+public class WindowsBasedBalancedPartitioner<T> extends WindowsBasedPartitioner<T> implements Configurable {
+	public final static String PARTITION_TABLE = "windows.partition.table";
+	public final static String PARTITION_TABLE_NAME = "windowsPartitionTable";
+
+	private Configuration conf = null;
+	private Long2IntOpenHashMap table = null;
+	private int tablePartitions = 0;
+
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+		if (conf.get(PARTITION_TABLE) == null)
+			return;
+
+		try {
+			InputStream in;
+			File cache = new File(PARTITION_TABLE_NAME);
+			if (cache.isFile()) {
+				in = new FileInputStream(cache);
+			} else {
+				Path path = new Path(conf.get(PARTITION_TABLE));
+				FileSystem fs = path.getFileSystem(conf);
+				in = fs.open(path);
+			}
+			DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+			tablePartitions = data.readInt();
+			int size = data.readInt();
+			table = new Long2IntOpenHashMap(size);
+			table.defaultReturnValue(-1);
+			for (int i = 0; i < size; i++) {
+				long windows = data.readLong();
+				table.put(windows, data.readInt());
+			}
+			data.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString());
+		}
+	}
+
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+
+	@Override
+	public int getPartition(WindowsBasedWritable key, T v, int numPartitioner) {
+		if (table != null && tablePartitions == numPartitioner) {
+			int partition = table.get(key.getWindows());
+			if (partition >= 0)
+				return partition;
+		}
+		return super.getPartition(key, v, numPartitioner);
+	}
+
+	public static void writeTable(DataOutputStream out, int partitions, long[] windows, int[] windowPartitions)
+			throws IOException {
+		out.writeInt(partitions);
+		out.writeInt(windows.length);
+		for (int i = 0; i < windows.length; i++) {
+			out.writeLong(windows[i]);
+			out.writeInt(windowPartitions[i]);
+		}
+	}
+}
@@ -16,33 +16,34 @@
  *******************************************************************************/
 package org.bgi.flexlab.gaea.data.mapreduce.partitioner;
 
-import org.apache.hadoop.io.DataInputBuffer;
-import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedBasicWritable;
 
-import java.io.IOException;
-
-public class WindowsBasedBasicSort implements RawComparator<WindowsBasedBasicWritable> {
+/**
+ * compare the serialized window text (vint length followed by utf-8 bytes)
+ * without deserializing it
+ */
+public class WindowsBasedBasicSort extends WritableComparator {
+	public WindowsBasedBasicSort() {
+		super(WindowsBasedBasicWritable.class);
+	}
 
 	@Override
 	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
-		WindowsBasedBasicWritable key1 = new WindowsBasedBasicWritable();
-		WindowsBasedBasicWritable key2 = new WindowsBasedBasicWritable();
-		DataInputBuffer buffer = new DataInputBuffer();
-		try {
-			buffer.reset(b1, s1, l1);
-			key1.readFields(buffer);
-			buffer.reset(b2, s2, l2);
-			key2.readFields(buffer);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-
-		return key1.compareTo(key2);
+		int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+		int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+		return compareBytes(b1, s1 + n1, l1 - n1, b2, s2 + n2, l2 - n2);
 	}
 
-	@Override
 	public int compare(WindowsBasedBasicWritable o1, WindowsBasedBasicWritable o2) {
 		return o1.getWindows().compareTo(o2.getWindows());
 	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	public int compare(WritableComparable a, WritableComparable b) {
+		return compare((WindowsBasedBasicWritable) a, (WindowsBasedBasicWritable) b);
+	}
 }
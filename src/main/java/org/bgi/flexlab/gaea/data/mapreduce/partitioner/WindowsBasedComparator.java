@@ -16,36 +16,30 @@
  *******************************************************************************/
 package org.bgi.flexlab.gaea.data.mapreduce.partitioner;
 
-import org.apache.hadoop.io.DataInputBuffer;
-import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
 
-import java.io.IOException;
+/**
+ * group by window key only, directly on the serialized bytes
+ */
+public class WindowsBasedComparator extends WritableComparator {
+	public WindowsBasedComparator() {
+		super(WindowsBasedWritable.class);
+	}
 
-public class WindowsBasedComparator implements RawComparator<WindowsBasedWritable> {
+	public int compare(WindowsBasedWritable o1, WindowsBasedWritable o2) {
+		return Long.compare(o1.getWindows(), o2.getWindows());
+	}
 
+	@SuppressWarnings("rawtypes")
 	@Override
-	public int compare(WindowsBasedWritable o1, WindowsBasedWritable o2) {
-		if(o1.getWindows() == o2.getWindows())
-			return 0;
-		if(o1.getWindows() > o2.getWindows())
-			return 1;
-		return -1;
+	public int compare(WritableComparable a, WritableComparable b) {
+		return compare((WindowsBasedWritable) a, (WindowsBasedWritable) b);
 	}
 
 	@Override
 	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
-		WindowsBasedWritable key1 = new WindowsBasedWritable();
-		WindowsBasedWritable key2 = new WindowsBasedWritable();
-		DataInputBuffer buffer = new DataInputBuffer();
-		try {
-			buffer.reset(b1, s1, l1);
-			key1.readFields(buffer);
-			buffer.reset(b2, s2, l2);
-			key2.readFields(buffer);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-		return compare(key1, key2);
+		return Long.compare(readLong(b1, s1), readLong(b2, s2));
 	}
 }
@@ -16,37 +16,34 @@
  *******************************************************************************/
 package org.bgi.flexlab.gaea.data.mapreduce.partitioner;
 
-import org.apache.hadoop.io.DataInputBuffer;
-import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
 
-import java.io.IOException;
+/**
+ * sort by window key then position, directly on the serialized bytes
+ * (8 bytes window key followed by 4 bytes position)
+ */
+public class WindowsBasedSort extends WritableComparator {
+	public WindowsBasedSort() {
+		super(WindowsBasedWritable.class);
+	}
 
-public class WindowsBasedSort implements RawComparator<WindowsBasedWritable> {
 	@Override
 	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
-		WindowsBasedWritable key1 = new WindowsBasedWritable();
-		WindowsBasedWritable key2 = new WindowsBasedWritable();
-		DataInputBuffer buffer = new DataInputBuffer();
-		try {
-			buffer.reset(b1, s1, l1);
-			key1.readFields(buffer);
-			buffer.reset(b2, s2, l2);
-			key2.readFields(buffer);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		int cmp = Long.compare(readLong(b1, s1), readLong(b2, s2));
+		if (cmp != 0)
+			return cmp;
+		return Integer.compare(readInt(b1, s1 + Long.BYTES), readInt(b2, s2 + Long.BYTES));
+	}
 
-		return key1.compareTo(key2);
+	public int compare(WindowsBasedWritable o1, WindowsBasedWritable o2) {
+		return o1.compareTo(o2);
 	}
 
+	@SuppressWarnings("rawtypes")
 	@Override
-	public int compare(WindowsBasedWritable o1, WindowsBasedWritable o2) {
-		int ii = (int) ((o1.getWindows() - o2.getWindows()) & 0xffffffff);
-		if (ii != 0) {
-			return ii;
-		} else {
-			return o1.getPosition().compareTo(o2.getPosition());
-		}
+	public int compare(WritableComparable a, WritableComparable b) {
+		return compare((WindowsBasedWritable) a, (WindowsBasedWritable) b);
 	}
 }
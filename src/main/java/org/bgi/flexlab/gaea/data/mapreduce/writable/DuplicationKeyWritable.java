@@ -21,6 +21,8 @@ import org.apache.hadoop.io.BooleanWritable;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -33,6 +35,45 @@ public class DuplicationKeyWritable implements
 	private IntWritable position;
 	private BooleanWritable forward;
 
+	/**
+	 * compare library, chromosome, position and strand on the serialized
+	 * bytes
+	 */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(DuplicationKeyWritable.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+				int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+				int lb1 = readVInt(b1, s1);
+				int lb2 = readVInt(b2, s2);
+				int cmp = compareBytes(b1, s1 + n1, lb1, b2, s2 + n2, lb2);
+				if (cmp != 0)
+					return cmp;
+
+				s1 += n1 + lb1;
+				s2 += n2 + lb2;
+				cmp = Integer.compare(readInt(b1, s1), readInt(b2, s2));
+				if (cmp != 0)
+					return cmp;
+				cmp = Integer.compare(readInt(b1, s1 + 4), readInt(b2, s2 + 4));
+				if (cmp != 0)
+					return cmp;
+				return Integer.compare(b1[s1 + 8], b2[s2 + 8]);
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+	}
+
+	static {
+		WritableComparator.define(DuplicationKeyWritable.class, new Comparator());
+	}
+
 	public DuplicationKeyWritable() {
 		LB = new Text();
 		chrIndex = new IntWritable();
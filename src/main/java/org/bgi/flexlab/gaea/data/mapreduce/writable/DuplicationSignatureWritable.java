@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.mapreduce.writable;
+
+import org.apache.hadoop.io.Writable;
+import org.seqdoop.hadoop_bam.util.MurmurHash3;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * fixed width read end used by two-phase mark duplicate instead of the whole
+ * record. the library and the cluster position are already in the
+ * DuplicationKeyWritable it is shuffled with.
+ */
+public class DuplicationSignatureWritable implements Writable {
+	private final static int NEGATIVE_STRAND = 0x1;
+	private final static int PAIR_MAPPED = 0x2;
+
+	private long nameHash;
+	private int referenceIndex;
+	private int coordinate;
+	private int mateReferenceIndex;
+	private byte flags;
+	private short score;
+	private byte mappingQuality;
+
+	public DuplicationSignatureWritable() {
+	}
+
+	public DuplicationSignatureWritable(DuplicationSignatureWritable other) {
+		this.nameHash = other.nameHash;
+		this.referenceIndex = other.referenceIndex;
+		this.coordinate = other.coordinate;
+		this.mateReferenceIndex = other.mateReferenceIndex;
+		this.flags = other.flags;
+		this.score = other.score;
+		this.mappingQuality = other.mappingQuality;
+	}
+
+	public void set(long nameHash, int referenceIndex, int coordinate, boolean negativeStrand, boolean pairMapped,
+			int mateReferenceIndex, short score, int mappingQuality) {
+		this.nameHash = nameHash;
+		this.referenceIndex = referenceIndex;
+		this.coordinate = coordinate;
+		this.mateReferenceIndex = mateReferenceIndex;
+		this.flags = (byte) ((negativeStrand ? NEGATIVE_STRAND : 0) | (pairMapped ? PAIR_MAPPED : 0));
+		this.score = score;
+		this.mappingQuality = (byte) Math.min(mappingQuality, 255);
+	}
+
+	public static long hashReadName(String readName) {
+		return MurmurHash3.murmurhash3(readName, 0);
+	}
+
+	/**
+	 * id of a read name inside one duplication key; both ends of a pair get the
+	 * same key, so they share the id.
+	 */
+	public static long duplicateId(long nameHash, DuplicationKeyWritable key) {
+		long id = nameHash;
+		id = id * 31 + MurmurHash3.murmurhash3(key.getLB(), 0);
+		id = id * 31 + key.getChrIndex();
+		id = id * 31 + key.getPosition();
+		id = id * 31 + (key.isForward() ? 1 : 0);
+		return id;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(nameHash);
+		out.writeInt(referenceIndex);
+		out.writeInt(coordinate);
+		out.writeInt(mateReferenceIndex);
+		out.writeByte(flags);
+		out.writeShort(score);
+		out.writeByte(mappingQuality);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		nameHash = in.readLong();
+		referenceIndex = in.readInt();
+		coordinate = in.readInt();
+		mateReferenceIndex = in.readInt();
+		flags = in.readByte();
+		score = in.readShort();
+		mappingQuality = in.readByte();
+	}
+
+	public long getNameHash() {
+		return nameHash;
+	}
+
+	public int getReferenceIndex() {
+		return referenceIndex;
+	}
+
+	public int getCoordinate() {
+		return coordinate;
+	}
+
+	public int getMateReferenceIndex() {
+		return mateReferenceIndex;
+	}
+
+	public boolean isNegativeStrand() {
+		return (flags & NEGATIVE_STRAND) != 0;
+	}
+
+	public boolean isPairMapped() {
+		return (flags & PAIR_MAPPED) != 0;
+	}
+
+	public short getScore() {
+		return score;
+	}
+
+	public int getMappingQuality() {
+		return mappingQuality & 0xff;
+	}
+}
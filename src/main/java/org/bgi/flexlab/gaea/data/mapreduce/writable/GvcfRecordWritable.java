@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.mapreduce.writable;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.vcf.VCFHeader;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+import org.seqdoop.hadoop_bam.VariantContextWritable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Binary writable of a gvcf record for the joint calling shuffle.
+ *
+ * The genotypes are decoded once before the shuffle, and written with the
+ * allele indexes, GQ, DP, AD and PL as variable length integers; other
+ * format and info fields are kept as the strings the vcf codec gives. The
+ * reader gets fully decoded genotypes, so nothing is parsed again and no
+ * header is needed, and the fields have the same types as from the vcf text.
+ *
+ * The input index in the SM attribute is written as a number. A record the
+ * mapper sends to several windows is encoded once.
+ */
+public class GvcfRecordWritable extends VariantContextWritable {
+	public final static String SAMPLE_INDEX = "SM";
+
+	private final static byte STRING_VALUE = 0;
+	private final static byte LIST_VALUE = 1;
+	private final static byte FLAG_VALUE = 2;
+
+	private final DataOutputBuffer encoded = new DataOutputBuffer();
+	private boolean isEncoded = false;
+
+	@Override
+	public void set(VariantContext vc) {
+		super.set(vc);
+		isEncoded = false;
+	}
+
+	@Override
+	public void set(VariantContext vc, VCFHeader header) {
+		super.set(vc, header);
+		isEncoded = false;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		if (!isEncoded) {
+			encoded.reset();
+			encode(encoded, get());
+			isEncoded = true;
+		}
+		out.write(encoded.getData(), 0, encoded.getLength());
+	}
+
+	private static void encode(DataOutput out, VariantContext vc) throws IOException {
+		Object sample = vc.getAttribute(SAMPLE_INDEX);
+		WritableUtils.writeVInt(out, sample == null ? -1 : Integer.parseInt(sample.toString()));
+		WritableUtils.writeString(out, vc.getSource());
+		WritableUtils.writeString(out, vc.getContig());
+		WritableUtils.writeVInt(out, vc.getStart());
+		WritableUtils.writeVInt(out, vc.getEnd() - vc.getStart());
+		WritableUtils.writeString(out, vc.getID());
+		out.writeDouble(vc.getLog10PError());
+
+		List<Allele> alleles = vc.getAlleles();
+		WritableUtils.writeVInt(out, alleles.size());
+		for (Allele allele : alleles) {
+			out.writeBoolean(allele.isReference());
+			WritableUtils.writeString(out, allele.getDisplayString());
+		}
+
+		if (vc.filtersWereApplied()) {
+			WritableUtils.writeVInt(out, vc.getFilters().size());
+			for (String filter : vc.getFilters())
+				WritableUtils.writeString(out, filter);
+		} else
+			WritableUtils.writeVInt(out, -1);
+
+		Map<String, Object> attributes = vc.getAttributes();
+		WritableUtils.writeVInt(out, attributes.size() - (sample == null ? 0 : 1));
+		for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+			if (attribute.getKey().equals(SAMPLE_INDEX))
+				continue;
+			WritableUtils.writeString(out, attribute.getKey());
+			writeValue(out, attribute.getValue());
+		}
+
+		GenotypesContext genotypes = vc.getGenotypes();
+		WritableUtils.writeVInt(out, genotypes.size());
+		for (Genotype genotype : genotypes)
+			writeGenotype(out, genotype, alleles);
+	}
+
+	private static void writeValue(DataOutput out, Object value) throws IOException {
+		if (value instanceof Boolean) {
+			out.writeByte(FLAG_VALUE);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			out.writeByte(LIST_VALUE);
+			WritableUtils.writeVInt(out, list.size());
+			for (Object element : list)
+				WritableUtils.writeString(out, String.valueOf(element));
+		} else {
+			out.writeByte(STRING_VALUE);
+			WritableUtils.writeString(out, String.valueOf(value));
+		}
+	}
+
+	private static void writeGenotype(DataOutput out, Genotype genotype, List<Allele> alleles) throws IOException {
+		WritableUtils.writeString(out, genotype.getSampleName());
+		WritableUtils.writeVInt(out, genotype.getPloidy());
+		for (Allele allele : genotype.getAlleles())
+			WritableUtils.writeVInt(out, allele.isNoCall() ? 0 : alleles.indexOf(allele) + 1);
+		out.writeBoolean(genotype.isPhased());
+		WritableUtils.writeVInt(out, genotype.getGQ() + 1);
+		WritableUtils.writeVInt(out, genotype.getDP() + 1);
+		writeArray(out, genotype.getAD());
+		writeArray(out, genotype.getPL());
+		WritableUtils.writeString(out, genotype.getFilters());
+
+		Map<String, Object> extended = genotype.getExtendedAttributes();
+		WritableUtils.writeVInt(out, extended.size());
+		for (Map.Entry<String, Object> attribute : extended.entrySet()) {
+			WritableUtils.writeString(out, attribute.getKey());
+			writeValue(out, attribute.getValue());
+		}
+	}
+
+	private static void writeArray(DataOutput out, int[] values) throws IOException {
+		if (values == null) {
+			WritableUtils.writeVInt(out, 0);
+			return;
+		}
+		WritableUtils.writeVInt(out, values.length + 1);
+		for (int value : values)
+			WritableUtils.writeVInt(out, value);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		VariantContextBuilder builder = new VariantContextBuilder();
+
+		int sample = WritableUtils.readVInt(in);
+		builder.source(WritableUtils.readString(in));
+		builder.chr(WritableUtils.readString(in));
+		int start = WritableUtils.readVInt(in);
+		builder.start(start).stop(start + WritableUtils.readVInt(in));
+		builder.id(WritableUtils.readString(in));
+		builder.log10PError(in.readDouble());
+
+		int alleleSize = WritableUtils.readVInt(in);
+		List<Allele> alleles = new ArrayList<Allele>(alleleSize);
+		for (int i = 0; i < alleleSize; i++) {
+			boolean isReference = in.readBoolean();
+			alleles.add(Allele.create(WritableUtils.readString(in), isReference));
+		}
+		builder.alleles(alleles);
+
+		int filterSize = WritableUtils.readVInt(in);
+		if (filterSize < 0)
+			builder.unfiltered();
+		else {
+			Set<String> filters = new LinkedHashSet<String>();
+			for (int i = 0; i < filterSize; i++)
+				filters.add(WritableUtils.readString(in));
+			builder.filters(filters);
+		}
+
+		int attributeSize = WritableUtils.readVInt(in);
+		Map<String, Object> attributes = new HashMap<String, Object>();
+		for (int i = 0; i < attributeSize; i++) {
+			String key = WritableUtils.readString(in);
+			attributes.put(key, readValue(in));
+		}
+		if (sample >= 0)
+			attributes.put(SAMPLE_INDEX, sample);
+		builder.attributes(attributes);
+
+		int genotypeSize = WritableUtils.readVInt(in);
+		ArrayList<Genotype> genotypes = new ArrayList<Genotype>(genotypeSize);
+		for (int i = 0; i < genotypeSize; i++)
+			genotypes.add(readGenotype(in, alleles));
+		builder.genotypes(GenotypesContext.create(genotypes));
+
+		set(builder.make());
+	}
+
+	private static Object readValue(DataInput in) throws IOException {
+		byte type = in.readByte();
+		if (type == FLAG_VALUE)
+			return in.readBoolean();
+		if (type == LIST_VALUE) {
+			int size = WritableUtils.readVInt(in);
+			List<String> list = new ArrayList<String>(size);
+			for (int i = 0; i < size; i++)
+				list.add(WritableUtils.readString(in));
+			return list;
+		}
+		return WritableUtils.readString(in);
+	}
+
+	private static Genotype readGenotype(DataInput in, List<Allele> alleles) throws IOException {
+		String name = WritableUtils.readString(in);
+		int ploidy = WritableUtils.readVInt(in);
+		List<Allele> genotypeAlleles = new ArrayList<Allele>(ploidy);
+		for (int i = 0; i < ploidy; i++) {
+			int index = WritableUtils.readVInt(in);
+			genotypeAlleles.add(index == 0 ? Allele.NO_CALL : alleles.get(index - 1));
+		}
+
+		GenotypeBuilder builder = new GenotypeBuilder(name, genotypeAlleles);
+		builder.phased(in.readBoolean());
+		builder.GQ(WritableUtils.readVInt(in) - 1);
+		builder.DP(WritableUtils.readVInt(in) - 1);
+		builder.AD(readArray(in));
+		builder.PL(readArray(in));
+		builder.filter(WritableUtils.readString(in));
+
+		int extendedSize = WritableUtils.readVInt(in);
+		for (int i = 0; i < extendedSize; i++) {
+			String key = WritableUtils.readString(in);
+			builder.attribute(key, readValue(in));
+		}
+		return builder.make();
+	}
+
+	private static int[] readArray(DataInput in) throws IOException {
+		int length = WritableUtils.readVInt(in) - 1;
+		if (length < 0)
+			return null;
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++)
+			values[i] = WritableUtils.readVInt(in);
+		return values;
+	}
+}
@@ -17,6 +17,7 @@
 package org.bgi.flexlab.gaea.data.mapreduce.writable;
 
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -26,6 +27,28 @@ public class IntKeyPairWritable implements WritableComparable<IntKeyPairWritable
     private int first;
     private String second;
 
+    /**
+     * compare the int key and the modified utf-8 bytes of the second field,
+     * which keep the order of String.compareTo
+     */
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(IntKeyPairWritable.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int cmp = Integer.compare(readInt(b1, s1), readInt(b2, s2));
+            if (cmp != 0)
+                return cmp;
+            return compareBytes(b1, s1 + 6, readUnsignedShort(b1, s1 + 4), b2, s2 + 6, readUnsignedShort(b2, s2 + 4));
+        }
+    }
+
+    static {
+        WritableComparator.define(IntKeyPairWritable.class, new Comparator());
+    }
+
     public IntKeyPairWritable() {
     }
 
@@ -17,6 +17,7 @@
 package org.bgi.flexlab.gaea.data.mapreduce.writable;
 
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -26,6 +27,32 @@ public class PairWritable implements WritableComparable<PairWritable> {
     private String first;
     private String second;
 
+    /**
+     * compare the modified utf-8 bytes of both fields, which keep the order
+     * of String.compareTo
+     */
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(PairWritable.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int f1 = readUnsignedShort(b1, s1);
+            int f2 = readUnsignedShort(b2, s2);
+            int cmp = compareBytes(b1, s1 + 2, f1, b2, s2 + 2, f2);
+            if (cmp != 0)
+                return cmp;
+            s1 += 2 + f1;
+            s2 += 2 + f2;
+            return compareBytes(b1, s1 + 2, readUnsignedShort(b1, s1), b2, s2 + 2, readUnsignedShort(b2, s2));
+        }
+    }
+
+    static {
+        WritableComparator.define(PairWritable.class, new Comparator());
+    }
+
     public PairWritable() {
     }
 
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.mapreduce.writable;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.bgi.flexlab.gaea.data.mapreduce.input.header.SamHdfsFileHeader;
+import org.bgi.flexlab.gaea.util.SamRecordUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sam record writable for window based shuffles whose reducers only call or
+ * recalibrate the reads and never write them back.
+ *
+ * Before the shuffle a read is projected to the fields the callers use: bases,
+ * qualities, cigar, flags, mapping quality, mate information and the optional
+ * tags in {@link #KEEP_TAGS}. The read name is replaced by a short pair id that
+ * is the same for both mates, and the read group by its index in the header.
+ * When the reducer reads the record back the read group is restored, so the
+ * reducers build their GaeaSamRecords as before.
+ */
+public class ProjectedSamRecordWritable extends SamRecordWritable implements Configurable {
+	public final static String KEEP_TAGS = "sam.projection.keep.tags";
+	public final static String DEFAULT_KEEP_TAGS = "BI,BD,OQ";
+
+	/** index of the read group in the header, in place of RG */
+	private final static String READ_GROUP_INDEX_TAG = "rg";
+
+	private final static String RG = SAMTag.RG.name();
+
+	private final static char[] PAIR_ID_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz_."
+			.toCharArray();
+	private final static int PAIR_ID_LENGTH = 11;
+
+	private final static Map<String, String[]> readGroupIdsByHeader = new HashMap<String, String[]>();
+
+	private Configuration conf = null;
+	private SAMFileHeader header = null;
+	private String[] keepTags = null;
+	private String[] readGroupIds = null;
+	private Map<String, Integer> readGroupIndexes = null;
+
+	private long projectedBytesSaved = 0;
+	private long writtenRecords = 0;
+	private long writtenBytesSaved = 0;
+
+	public ProjectedSamRecordWritable() {
+	}
+
+	public ProjectedSamRecordWritable(SAMFileHeader header, Configuration conf) {
+		this.header = header;
+		setReadGroups(header);
+		setConf(conf);
+	}
+
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+		keepTags = conf.getStrings(KEEP_TAGS, DEFAULT_KEEP_TAGS.split(","));
+	}
+
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+
+	private void setReadGroups(SAMFileHeader header) {
+		List<SAMReadGroupRecord> readGroups = header.getReadGroups();
+		readGroupIds = new String[readGroups.size()];
+		readGroupIndexes = new HashMap<String, Integer>();
+		for (int i = 0; i < readGroups.size(); i++) {
+			readGroupIds[i] = readGroups.get(i).getId();
+			readGroupIndexes.put(readGroupIds[i], i);
+		}
+	}
+
+	/**
+	 * set the projection of a full record
+	 */
+	public void project(SAMRecord full) {
+		SAMRecord slim = new SAMRecord(header);
+		String pairId = pairId(full.getReadName());
+		slim.setReadName(pairId);
+		slim.setFlags(full.getFlags());
+		slim.setReferenceIndex(full.getReferenceIndex());
+		slim.setAlignmentStart(full.getAlignmentStart());
+		slim.setMappingQuality(full.getMappingQuality());
+		slim.setCigar(full.getCigar());
+		slim.setMateReferenceIndex(full.getMateReferenceIndex());
+		slim.setMateAlignmentStart(full.getMateAlignmentStart());
+		slim.setInferredInsertSize(full.getInferredInsertSize());
+		slim.setReadBases(full.getReadBases());
+		slim.setBaseQualities(full.getBaseQualities());
+
+		long saved = full.getReadNameLength() - pairId.length();
+		for (SAMRecord.SAMTagAndValue tag : full.getAttributes())
+			saved += tagBytes(tag.value);
+
+		for (String tag : keepTags) {
+			Object value = full.getAttribute(tag);
+			if (value != null && !tag.equals(RG)) {
+				slim.setAttribute(tag, value);
+				saved -= tagBytes(value);
+			}
+		}
+
+		String readGroup = full.getStringAttribute(RG);
+		if (readGroup != null) {
+			Integer index = readGroupIndexes.get(readGroup);
+			if (index == null)
+				throw new RuntimeException("header isn't contains read group " + readGroup);
+			slim.setAttribute(READ_GROUP_INDEX_TAG, index);
+			saved -= tagBytes(index);
+		}
+
+		set(slim);
+		projectedBytesSaved = saved;
+	}
+
+	@Override
+	public void set(SAMRecord r) {
+		projectedBytesSaved = 0;
+		super.set(r);
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		writtenRecords++;
+		writtenBytesSaved += projectedBytesSaved;
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		super.readFields(in);
+		SAMRecord record = get();
+		if (record == null)
+			return;
+		Object index = record.getAttribute(READ_GROUP_INDEX_TAG);
+		if (index != null) {
+			record.setAttribute(READ_GROUP_INDEX_TAG, null);
+			record.setAttribute(RG, getReadGroupIds()[((Number) index).intValue()]);
+		}
+	}
+
+	private String[] getReadGroupIds() {
+		if (readGroupIds != null)
+			return readGroupIds;
+
+		String headerPath = conf.get(SamHdfsFileHeader.BAM_HEADER_FILE_NAME);
+		synchronized (readGroupIdsByHeader) {
+			readGroupIds = readGroupIdsByHeader.get(headerPath);
+			if (readGroupIds == null) {
+				SAMFileHeader header = SamHdfsFileHeader.getHeader(conf);
+				if (header == null)
+					throw new RuntimeException("missing sam header for projected records");
+				setReadGroups(header);
+				readGroupIdsByHeader.put(headerPath, readGroupIds);
+			}
+		}
+		return readGroupIds;
+	}
+
+	/**
+	 * records written to the shuffle
+	 */
+	public long getWrittenRecords() {
+		return writtenRecords;
+	}
+
+	/**
+	 * bytes the projection kept out of the shuffle
+	 */
+	public long getWrittenBytesSaved() {
+		return writtenBytesSaved;
+	}
+
+	/**
+	 * short id of a read name, the same for both mates of a pair
+	 */
+	public static String pairId(String readName) {
+		long h = SamRecordUtils.readNameHash(readName);
+		char[] id = new char[PAIR_ID_LENGTH];
+		for (int i = 0; i < PAIR_ID_LENGTH; i++) {
+			id[i] = PAIR_ID_CHARS[(int) (h & 63)];
+			h >>>= 6;
+		}
+		return new String(id);
+	}
+
+	/**
+	 * size of an optional tag in a bam record
+	 */
+	private static int tagBytes(Object value) {
+		int size = 3;
+		if (value instanceof String)
+			return size + ((String) value).length() + 1;
+		if (value instanceof Character || value instanceof Byte)
+			return size + 1;
+		if (value instanceof Short)
+			return size + 2;
+		if (value instanceof Integer || value instanceof Long) {
+			long v = ((Number) value).longValue();
+			if (v >= Byte.MIN_VALUE && v <= 255)
+				return size + 1;
+			if (v >= Short.MIN_VALUE && v <= 65535)
+				return size + 2;
+			return size + 4;
+		}
+		if (value instanceof Float)
+			return size + 4;
+		if (value != null && value.getClass().isArray()) {
+			Class<?> component = value.getClass().getComponentType();
+			int width = component == byte.class ? 1 : component == short.class ? 2 : 4;
+			return size + 5 + Array.getLength(value) * width;
+		}
+		return size;
+	}
+}
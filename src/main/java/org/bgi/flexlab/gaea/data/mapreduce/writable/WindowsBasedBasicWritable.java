@@ -18,6 +18,8 @@ package org.bgi.flexlab.gaea.data.mapreduce.writable;
 
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.bgi.flexlab.gaea.data.mapreduce.partitioner.WindowsBasedBasicSort;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -26,6 +28,10 @@ import java.io.IOException;
 public class WindowsBasedBasicWritable implements WritableComparable<WindowsBasedBasicWritable> {
 	protected Text windowsInfo = new Text();
 
+	static {
+		WritableComparator.define(WindowsBasedBasicWritable.class, new WindowsBasedBasicSort());
+	}
+
 	public void set(String sample, String chromosome, int winNum, int pos) {
 		set(sample + ":" + chromosome + ":" + winNum, pos);
 	}
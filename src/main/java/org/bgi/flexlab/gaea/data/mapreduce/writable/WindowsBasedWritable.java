@@ -20,7 +20,9 @@ import htsjdk.samtools.SAMRecord;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 import org.bgi.flexlab.gaea.data.exception.OutOfBoundException;
+import org.bgi.flexlab.gaea.data.mapreduce.partitioner.WindowsBasedSort;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -41,6 +43,10 @@ public class WindowsBasedWritable implements WritableComparable<WindowsBasedWrit
 	private final static int SAMPLE_BITS_MASK = (int) (Math.pow(2, SAMPLE_BITS) - 1);
 	private final static int WINDOW_NUMBER_MASK = (int) (Math.pow(2, WINDOW_NUMBER_BITS) - 1);
 
+	static {
+		WritableComparator.define(WindowsBasedWritable.class, new WindowsBasedSort());
+	}
+
 	public void set(long sample, long chromosome, long winNum, int pos) {
 		if (sample >= MAX_SAMPLE_ID)
 			throw new OutOfBoundException(String.format("sample size %d is more than 4194304", (int) sample));
@@ -133,12 +139,9 @@ public class WindowsBasedWritable implements WritableComparable<WindowsBasedWrit
 
 	@Override
 	public int compareTo(WindowsBasedWritable tp) {
-		long cmp = windowsInfo.get() - tp.getWindows();
-		if (cmp != 0) {
-			if (cmp > 0)
-				return 1;
-			return -1;
-		}
+		int cmp = Long.compare(windowsInfo.get(), tp.getWindows());
+		if (cmp != 0)
+			return cmp;
 		return position.compareTo(tp.position);
 	}
 }
@@ -301,6 +301,20 @@ public class GaeaSamRecord extends SAMRecord implements Locatable {
 		return newRecord;
 	}
 
+	/**
+	 * copy whose bases, qualities and attributes can be changed in place
+	 * without touching this record
+	 */
+	public GaeaSamRecord deepCopy() {
+		GaeaSamRecord newRecord = copy();
+		newRecord.setReadBases(getReadBases().clone());
+		newRecord.setBaseQualities(getBaseQualities().clone());
+		newRecord.clearAttributes();
+		for (SAMTagAndValue samTagAndValue : getAttributes())
+			newRecord.setAttribute(samTagAndValue.tag, samTagAndValue.value);
+		return newRecord;
+	}
+
 	public Object clone() throws CloneNotSupportedException {
 		final GaeaSamRecord newRecord = (GaeaSamRecord) super.clone();
 		return newRecord;
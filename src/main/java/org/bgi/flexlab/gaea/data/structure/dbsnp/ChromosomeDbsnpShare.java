@@ -46,7 +46,7 @@ public class ChromosomeDbsnpShare extends BioMemoryShare {
 			return -1;
 		int end = maxWinNum * CAPACITY - 1;
 		if(end >= fcSize)
-			end = (fcSize - 1);
+			end = (int) (fcSize - 1);
 			
 		byte[] indexs = getBytes(minWinNum * CAPACITY, end);
 
@@ -89,7 +89,7 @@ public class ChromosomeDbsnpShare extends BioMemoryShare {
 			return -1;
 		int end = maxWinNum * CAPACITY - 1;
 		if(end >= fcSize)
-			end = (fcSize - 1);
+			end = (int) (fcSize - 1);
 			
 		byte[] indexs = getGA4GHBytes(minWinNum * CAPACITY, end);
 
@@ -18,6 +18,8 @@ package org.bgi.flexlab.gaea.data.structure.dbsnp;
 
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.Job;
+import org.bgi.flexlab.gaea.data.structure.memoryshare.GenomePack;
+import org.bgi.flexlab.gaea.data.structure.memoryshare.GenomePack.Contig;
 import org.bgi.flexlab.gaea.data.structure.memoryshare.WholeGenomeShare;
 import org.bgi.flexlab.gaea.data.structure.reference.index.VcfIndex;
 import org.bgi.flexlab.gaea.util.ChromosomeUtils;
@@ -32,9 +34,20 @@ public class DbsnpShare extends WholeGenomeShare {
 	private static final String CACHE_NAME = "dbsnpList";
 
 	private Map<String, ChromosomeDbsnpShare> dbsnpInfo = new ConcurrentHashMap<String, ChromosomeDbsnpShare>();
+
+	/**
+	 * genome pack holding the window index of this dbSNP, null if none
+	 */
+	private GenomePack pack = null;
 	
 	public DbsnpShare(String dbsnpPath,String refPath){
-		indexExist(dbsnpPath,refPath);
+		if (GenomePack.isGenomePack(refPath)) {
+			GenomePack refPack = GenomePack.open(refPath);
+			if (refPack.hasDbsnp(dbsnpPath))
+				pack = refPack;
+		}
+		if (pack == null)
+			indexExist(dbsnpPath,refPath);
 	}
 	
 	public static void indexExist(String dbsnpPath,String refPath){
@@ -64,6 +77,12 @@ public class DbsnpShare extends WholeGenomeShare {
 	}
 
 	public void loadChromosomeList(String chrList) {
+		if (pack != null) {
+			loadGenomePack(pack);
+			return;
+		}
+		if (loadGenomePack(chrList))
+			return;
 		try {
 			chrList = "file://"+chrList;
 			loadChromosomeList(new Path(chrList));
@@ -129,6 +148,19 @@ public class DbsnpShare extends WholeGenomeShare {
 		}
 	}
 
+	@Override
+	protected void loadGenomePack(GenomePack pack) {
+		for (Contig contig : pack.getContigs()) {
+			if (!contig.hasDbsnp())
+				continue;
+			addChromosome(contig.getName());
+			ChromosomeDbsnpShare share = dbsnpInfo.get(contig.getName());
+			share.loadInformation(pack.getSegments(), contig.getDbsnpOffset(), contig.getDbsnpSize());
+			share.setLength(contig.getLength());
+			share.setChromosomeName(contig.getName());
+		}
+	}
+
 	@Override
 	public void clean() {
 		for(String key : dbsnpInfo.keySet()){
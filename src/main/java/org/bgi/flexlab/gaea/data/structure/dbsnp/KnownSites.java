@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.structure.dbsnp;
+
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContext.Type;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.vcf.VCFConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * known sites of one queried range. positions, types and allele hashes are
+ * read up front; VariantContexts are only built for callers asking for them.
+ */
+public class KnownSites {
+	private final static String SOURCE = "knownSites";
+	private final static Type[] TYPES = Type.values();
+
+	private final KnownSitesIndex index;
+	private final KnownSitesIndex.Contig contig;
+	private final int[] sites;
+
+	private final int[] starts;
+	private final int[] ends;
+	private final int[] alleleHashes;
+	private final byte[] flags;
+
+	private ArrayList<VariantContext> contexts = null;
+
+	KnownSites(KnownSitesIndex index, KnownSitesIndex.Contig contig, int[] sites) {
+		this.index = index;
+		this.contig = contig;
+		this.sites = sites;
+		starts = new int[sites.length];
+		ends = new int[sites.length];
+		alleleHashes = new int[sites.length];
+		flags = new byte[sites.length];
+		for (int i = 0; i < sites.length; i++) {
+			starts[i] = index.getStart(contig, sites[i]);
+			ends[i] = index.getEnd(contig, sites[i]);
+			alleleHashes[i] = index.getAlleleHash(contig, sites[i]);
+			flags[i] = index.getFlags(contig, sites[i]);
+		}
+	}
+
+	private KnownSites(List<VariantContext> contexts) {
+		this.index = null;
+		this.contig = null;
+		this.sites = null;
+		this.contexts = contexts == null ? new ArrayList<VariantContext>() : new ArrayList<VariantContext>(contexts);
+		int size = this.contexts.size();
+		starts = new int[size];
+		ends = new int[size];
+		alleleHashes = new int[size];
+		flags = new byte[size];
+		for (int i = 0; i < size; i++) {
+			VariantContext context = this.contexts.get(i);
+			starts[i] = context.getStart();
+			ends[i] = context.getEnd();
+			byte[] alleles = allelesString(context).getBytes(StandardCharsets.ISO_8859_1);
+			alleleHashes[i] = KnownSitesIndex.alleleHash(alleles, 0, alleles.length);
+			flags[i] = flags(context);
+		}
+	}
+
+	/**
+	 * wrap variants already decoded from the vcf text, for known-sites files
+	 * without a binary index
+	 */
+	public static KnownSites fromVariantContexts(List<VariantContext> contexts) {
+		return new KnownSites(contexts);
+	}
+
+	private static String allelesString(VariantContext context) {
+		StringBuilder builder = new StringBuilder(context.getReference().getDisplayString()).append('\t');
+		List<Allele> alternates = context.getAlternateAlleles();
+		if (alternates.isEmpty())
+			builder.append(VCFConstants.EMPTY_ALTERNATE_ALLELE_FIELD);
+		for (int i = 0; i < alternates.size(); i++) {
+			if (i > 0)
+				builder.append(',');
+			builder.append(alternates.get(i).getDisplayString());
+		}
+		return builder.toString();
+	}
+
+	private static byte flags(VariantContext context) {
+		int flag = context.getType().ordinal();
+		if (context.isSimpleInsertion())
+			flag |= KnownSitesIndex.SIMPLE_INSERTION;
+		if (context.isFiltered())
+			flag |= KnownSitesIndex.FILTERED;
+		return (byte) flag;
+	}
+
+	public int size() {
+		return starts.length;
+	}
+
+	public int getStart(int i) {
+		return starts[i];
+	}
+
+	public int getEnd(int i) {
+		return ends[i];
+	}
+
+	/**
+	 * FNV-1a hash of REF\tALT
+	 */
+	public int getAlleleHash(int i) {
+		return alleleHashes[i];
+	}
+
+	public Type getType(int i) {
+		return TYPES[flags[i] & KnownSitesIndex.TYPE_MASK];
+	}
+
+	public boolean isSimpleInsertion(int i) {
+		return (flags[i] & KnownSitesIndex.SIMPLE_INSERTION) != 0;
+	}
+
+	public boolean isFiltered(int i) {
+		return (flags[i] & KnownSitesIndex.FILTERED) != 0;
+	}
+
+	/**
+	 * the sites as VariantContexts carrying ID, alleles and filters; INFO is
+	 * not part of the binary index
+	 */
+	public ArrayList<VariantContext> getVariantContexts() {
+		if (contexts == null) {
+			contexts = new ArrayList<VariantContext>(sites.length);
+			for (int i = 0; i < sites.length; i++)
+				contexts.add(decode(i));
+		}
+		return contexts;
+	}
+
+	private VariantContext decode(int i) {
+		String[] fields = new String(index.getPayload(contig, sites[i]), StandardCharsets.ISO_8859_1).split("\t", -1);
+		String id = fields[0];
+		String ref = fields[1];
+		String alt = fields[2];
+		String filter = fields[3];
+
+		List<Allele> alleles = new ArrayList<Allele>();
+		alleles.add(Allele.create(ref, true));
+		if (!alt.equals(VCFConstants.EMPTY_ALTERNATE_ALLELE_FIELD)) {
+			for (String allele : alt.split(","))
+				alleles.add(Allele.create(allele, false));
+		}
+
+		VariantContextBuilder builder = new VariantContextBuilder(SOURCE, contig.getName(), starts[i], ends[i],
+				alleles);
+		if (!id.equals(VCFConstants.EMPTY_ID_FIELD))
+			builder.id(id);
+		if (ends[i] != starts[i] + ref.length() - 1)
+			builder.attribute(VCFConstants.END_KEY, ends[i]);
+		if (filter.equals(VCFConstants.PASSES_FILTERS_v4))
+			builder.passFilters();
+		else if (!filter.equals(VCFConstants.UNFILTERED))
+			builder.filters(filter.split(VCFConstants.FILTER_CODE_SEPARATOR));
+		return builder.make();
+	}
+}
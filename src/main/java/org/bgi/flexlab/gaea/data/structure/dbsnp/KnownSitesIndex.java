@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.structure.dbsnp;
+
+import org.bgi.flexlab.gaea.data.structure.memoryshare.BioMemoryShare;
+import org.bgi.flexlab.gaea.util.ChromosomeUtils;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * binary known-sites store built next to a dbSNP (or known indels) vcf.
+ *
+ * layout: header (magic, version, directory offset), one section per contig
+ * and a directory. a section is the sorted start positions, fixed rows of
+ * (end, allele hash, payload offset and flags) and the payload of
+ * ID\tREF\tALT\tFILTER. sections are 8 byte aligned so no int or long of a
+ * mapped file crosses a segment.
+ */
+public class KnownSitesIndex {
+	public final static String INDEX_SUFFIX = ".sites.idx";
+	public final static int MAGIC = 0x4b534931; // "KSI1"
+	public final static int VERSION = 1;
+	public final static int HEADER_SIZE = 16;
+	public final static int ROW_SIZE = 16;
+
+	/**
+	 * sites spanning more bases are kept in a separate list of a contig, so
+	 * one large event does not widen every range query
+	 */
+	public final static int LONG_SITE_SPAN = 1024;
+
+	/**
+	 * flags: the low 3 bits are the ordinal of VariantContext.Type
+	 */
+	public final static int TYPE_MASK = 0x7;
+	public final static int SIMPLE_INSERTION = 0x8;
+	public final static int FILTERED = 0x10;
+
+	private final static String LOCAL_PREFIX = "file://";
+	private final static Map<String, KnownSitesIndex> indexes = new ConcurrentHashMap<String, KnownSitesIndex>();
+
+	private final String path;
+	private MappedByteBuffer[] segments;
+	private Map<String, Contig> contigs = new HashMap<String, Contig>();
+
+	public static class Contig {
+		private final String name;
+		private final int count;
+		private final int maxSpan;
+		private final long offset;
+		private final long payloadSize;
+		private final int[] longSites;
+
+		public Contig(String name, int count, int maxSpan, long offset, long payloadSize, int[] longSites) {
+			this.name = name;
+			this.count = count;
+			this.maxSpan = maxSpan;
+			this.offset = offset;
+			this.payloadSize = payloadSize;
+			this.longSites = longSites;
+		}
+
+		/**
+		 * contig name as written in the vcf
+		 */
+		public String getName() {
+			return name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * largest end - start of the sites not in the long site list
+		 */
+		public int getMaxSpan() {
+			return maxSpan;
+		}
+
+		public long getPositionOffset() {
+			return offset;
+		}
+
+		public long getRowOffset() {
+			return offset + align((long) count * 4);
+		}
+
+		public long getPayloadOffset() {
+			return getRowOffset() + (long) count * ROW_SIZE;
+		}
+
+		public long getPayloadSize() {
+			return payloadSize;
+		}
+
+		/**
+		 * sorted indexes of the sites spanning more than LONG_SITE_SPAN
+		 */
+		public int[] getLongSites() {
+			return longSites;
+		}
+
+		public void write(DataOutput out) throws IOException {
+			out.writeUTF(name);
+			out.writeInt(count);
+			out.writeInt(maxSpan);
+			out.writeLong(offset);
+			out.writeLong(payloadSize);
+			out.writeInt(longSites.length);
+			for (int site : longSites)
+				out.writeInt(site);
+		}
+
+		public static Contig read(DataInput in) throws IOException {
+			String name = in.readUTF();
+			int count = in.readInt();
+			int maxSpan = in.readInt();
+			long offset = in.readLong();
+			long payloadSize = in.readLong();
+			int[] longSites = new int[in.readInt()];
+			for (int i = 0; i < longSites.length; i++)
+				longSites[i] = in.readInt();
+			return new Contig(name, count, maxSpan, offset, payloadSize, longSites);
+		}
+	}
+
+	private KnownSitesIndex(String path) {
+		this.path = path;
+	}
+
+	public static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * FNV-1a hash of the REF\tALT bytes of a site
+	 */
+	public static int alleleHash(byte[] bases, int from, int to) {
+		int hash = 0x811c9dc5;
+		for (int i = from; i < to; i++) {
+			hash ^= bases[i] & 0xff;
+			hash *= 0x01000193;
+		}
+		return hash;
+	}
+
+	private static String localPath(String path) {
+		if (path.startsWith(LOCAL_PREFIX))
+			return path.substring(LOCAL_PREFIX.length());
+		return path;
+	}
+
+	/**
+	 * whether the known-sites index of a vcf has been built
+	 */
+	public static boolean exists(String vcfPath) {
+		if (vcfPath == null)
+			return false;
+		return new File(localPath(vcfPath) + INDEX_SUFFIX).isFile();
+	}
+
+	/**
+	 * open the known-sites index of a vcf; the same file is mapped only once
+	 * per JVM
+	 */
+	public static KnownSitesIndex open(String vcfPath) {
+		String local = new File(localPath(vcfPath) + INDEX_SUFFIX).getAbsolutePath();
+		KnownSitesIndex index = indexes.get(local);
+		if (index != null)
+			return index;
+
+		synchronized (indexes) {
+			index = indexes.get(local);
+			if (index == null) {
+				index = new KnownSitesIndex(local);
+				try {
+					index.load();
+				} catch (IOException e) {
+					throw new RuntimeException(e.toString());
+				}
+				indexes.put(local, index);
+			}
+		}
+		return index;
+	}
+
+	private void load() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(path + " is not a known-sites index.");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("unsupported known-sites index version " + version + " for " + path);
+			long skip = in.readLong() - HEADER_SIZE;
+			while (skip > 0)
+				skip -= in.skip(skip);
+
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				Contig contig = Contig.read(in);
+				contigs.put(ChromosomeUtils.formatChrName(contig.getName()), contig);
+			}
+		}
+		segments = BioMemoryShare.mapSegments(path);
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public Contig getContig(String chrName) {
+		return contigs.get(ChromosomeUtils.formatChrName(chrName));
+	}
+
+	private MappedByteBuffer segment(long offset) {
+		return segments[(int) (offset >>> BioMemoryShare.SEGMENT_SHIFT)];
+	}
+
+	private static int inSegment(long offset) {
+		return (int) (offset & (BioMemoryShare.SEGMENT_SIZE - 1));
+	}
+
+	int getStart(Contig contig, int site) {
+		long offset = contig.getPositionOffset() + (long) site * 4;
+		return segment(offset).getInt(inSegment(offset));
+	}
+
+	int getEnd(Contig contig, int site) {
+		long offset = contig.getRowOffset() + (long) site * ROW_SIZE;
+		return segment(offset).getInt(inSegment(offset));
+	}
+
+	int getAlleleHash(Contig contig, int site) {
+		long offset = contig.getRowOffset() + (long) site * ROW_SIZE + 4;
+		return segment(offset).getInt(inSegment(offset));
+	}
+
+	/**
+	 * payload offset in the upper 56 bits, flags in the lowest byte
+	 */
+	private long getMeta(Contig contig, int site) {
+		long offset = contig.getRowOffset() + (long) site * ROW_SIZE + 8;
+		return segment(offset).getLong(inSegment(offset));
+	}
+
+	byte getFlags(Contig contig, int site) {
+		return (byte) getMeta(contig, site);
+	}
+
+	/**
+	 * ID\tREF\tALT\tFILTER bytes of one site
+	 */
+	byte[] getPayload(Contig contig, int site) {
+		long from = getMeta(contig, site) >>> 8;
+		long to = site + 1 < contig.getCount() ? getMeta(contig, site + 1) >>> 8 : contig.getPayloadSize();
+		byte[] payload = new byte[(int) (to - from)];
+		long offset = contig.getPayloadOffset() + from;
+		for (int i = 0; i < payload.length; i++, offset++)
+			payload[i] = segment(offset).get(inSegment(offset));
+		return payload;
+	}
+
+	/**
+	 * first site whose start is not less than position
+	 */
+	private int lowerBound(Contig contig, int position) {
+		int low = 0;
+		int high = contig.getCount();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getStart(contig, mid) < position)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * sites overlapping [start,end] (1-based, inclusive), sorted by start
+	 */
+	public KnownSites query(String chrName, int start, int end) {
+		Contig contig = getContig(chrName);
+		if (contig == null || contig.getCount() == 0 || start > end)
+			return new KnownSites(this, contig, new int[0]);
+
+		int from = lowerBound(contig, (int) Math.max(1, (long) start - contig.getMaxSpan()));
+		int to = lowerBound(contig, end + 1);
+
+		int[] longSites = contig.getLongSites();
+		int[] sites = new int[Math.max(0, to - from) + longSites.length];
+		int size = 0;
+		int longIndex = 0;
+		for (int site = from; site < to; site++) {
+			// merge the long sites starting before this one
+			while (longIndex < longSites.length && longSites[longIndex] < site) {
+				int longSite = longSites[longIndex++];
+				if (getEnd(contig, longSite) >= start)
+					sites[size++] = longSite;
+			}
+			if (longIndex < longSites.length && longSites[longIndex] == site)
+				longIndex++;
+			if (getEnd(contig, site) >= start)
+				sites[size++] = site;
+		}
+		while (longIndex < longSites.length && longSites[longIndex] < to) {
+			int longSite = longSites[longIndex++];
+			if (getEnd(contig, longSite) >= start)
+				sites[size++] = longSite;
+		}
+		int[] result = new int[size];
+		System.arraycopy(sites, 0, result, 0, size);
+		return new KnownSites(this, contig, result);
+	}
+}
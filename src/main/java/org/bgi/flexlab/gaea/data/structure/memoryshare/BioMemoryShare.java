@@ -21,6 +21,7 @@ import org.bgi.flexlab.gaea.data.exception.OutOfBoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
@@ -32,7 +33,36 @@ public class BioMemoryShare {
 	protected String chrName;
 	protected int length;
 	protected MappedByteBuffer[] byteBuffer = null;
-	protected int fcSize = 0;
+	protected long fcSize = 0;
+
+	/**
+	 * files are mapped as segments of 1GB, so any offset is addressed by shift
+	 * and mask and files larger than 2GB are safe
+	 */
+	public final static int SEGMENT_SHIFT = 30;
+	public final static long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	private final static long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	/**
+	 * offset of this information inside the mapped segments; not zero when
+	 * the segments belong to a genome pack
+	 */
+	protected long offset = 0;
+	private boolean sharedSegments = false;
+
+	/**
+	 * per-thread read-only views of the mapped segments, so bulk reads never
+	 * move the position of the shared buffers
+	 */
+	private final ThreadLocal<ByteBuffer[]> views = new ThreadLocal<ByteBuffer[]>() {
+		@Override
+		protected ByteBuffer[] initialValue() {
+			ByteBuffer[] view = new ByteBuffer[byteBuffer.length];
+			for (int i = 0; i < byteBuffer.length; i++)
+				view[i] = byteBuffer[i].asReadOnlyBuffer();
+			return view;
+		}
+	};
 
 	protected BioMemoryShare(int capacity) {
 		this.capacity = capacity;
@@ -42,25 +72,45 @@ public class BioMemoryShare {
 	}
 
 	/**
-	 * load bio information;egg : chromosome or dbsnp
+	 * map a whole file read only as segments of SEGMENT_SIZE
 	 */
-	protected void loadInformation(String path) throws IOException {
+	public static MappedByteBuffer[] mapSegments(String path) throws IOException {
 		RandomAccessFile raf = new RandomAccessFile(path, "r");
 		FileChannel fc = raf.getChannel();
-		fcSize = (int) (fc.size() & 0xffffffff);
-		int blocks = (int) ((fcSize / Integer.MAX_VALUE) + 1);
-		byteBuffer = new MappedByteBuffer[blocks];
-		int start = 0;
-		long remain = 0;
-		int size = 0;
+		long size = fc.size();
+		int blocks = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+		if (blocks == 0)
+			blocks = 1;
+		MappedByteBuffer[] segments = new MappedByteBuffer[blocks];
 		for (int i = 0; i < blocks; i++) {
-			start = Integer.MAX_VALUE * i;
-			remain = (long) (fc.size() - start);
-			size = (int) ((remain > Integer.MAX_VALUE) ? Integer.MAX_VALUE : remain);
-			MappedByteBuffer mapedBB = fc.map(MapMode.READ_ONLY, start, size);
-			byteBuffer[i] = mapedBB;
+			long start = (long) i << SEGMENT_SHIFT;
+			segments[i] = fc.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
 		}
 		raf.close();
+		return segments;
+	}
+
+	/**
+	 * load bio information;egg : chromosome or dbsnp
+	 */
+	protected void loadInformation(String path) throws IOException {
+		byteBuffer = mapSegments(path);
+		fcSize = 0;
+		for (MappedByteBuffer segment : byteBuffer)
+			fcSize += segment.limit();
+		offset = 0;
+		sharedSegments = false;
+	}
+
+	/**
+	 * use a slice of segments which are already mapped, e.g. one section of a
+	 * genome pack
+	 */
+	public void loadInformation(MappedByteBuffer[] segments, long offset, long size) {
+		this.byteBuffer = segments;
+		this.offset = offset;
+		this.fcSize = size;
+		this.sharedSegments = true;
 	}
 
 	public void loadChromosome(String path) {
@@ -91,8 +141,6 @@ public class BioMemoryShare {
 		if (start >= length)
 			throw new OutOfBoundException(length, start);
 
-		byte[] bases;
-
 		int posi = start / capacity;
 		int pose;
 		if (end >= length) {
@@ -100,16 +148,56 @@ public class BioMemoryShare {
 		} else {
 			pose = end / capacity;
 		}
-		bases = new byte[pose - posi + 1];
-		byteBuffer[0].position(posi);
-		byteBuffer[0].get(bases, 0, pose - posi + 1);
-		byteBuffer[0].position(0);
+		byte[] bases = new byte[pose - posi + 1];
+		getBytes(posi, bases, 0, bases.length);
 
 		return bases;
 	}
 
+	/**
+	 * absolute read of one stored byte; does not touch any buffer position and
+	 * is safe to call from several threads
+	 * 
+	 * @param index
+	 *            byte offset in the mapped file
+	 */
+	public byte getByte(long index) {
+		long curr = offset + index;
+		return byteBuffer[(int) (curr >>> SEGMENT_SHIFT)].get((int) (curr & SEGMENT_MASK));
+	}
+
+	/**
+	 * bulk copy of stored bytes into a caller supplied array through this
+	 * thread's read-only view
+	 * 
+	 * @param index
+	 *            byte offset in the mapped file
+	 * @param dstOffset
+	 *            first index of dst to fill
+	 * @return number of bytes copied
+	 */
+	public int getBytes(long index, byte[] dst, int dstOffset, int len) {
+		ByteBuffer[] view = views.get();
+		int copied = 0;
+		while (copied < len) {
+			long curr = this.offset + index + copied;
+			ByteBuffer segment = view[(int) (curr >>> SEGMENT_SHIFT)];
+			int segOffset = (int) (curr & SEGMENT_MASK);
+			int size = Math.min(len - copied, segment.limit() - segOffset);
+			if (size <= 0)
+				throw new OutOfBoundException((int) fcSize, (int) (index + copied));
+			segment.position(segOffset);
+			segment.get(dst, dstOffset + copied, size);
+			copied += size;
+		}
+		return copied;
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public void clean() throws Exception {
+		// segments of a genome pack are owned by the pack
+		if (sharedSegments)
+			return;
 		for (MappedByteBuffer buffer : byteBuffer) {
 			AccessController.doPrivileged(new PrivilegedAction() {
 				@SuppressWarnings("restriction")
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.structure.memoryshare;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * single file holding the 4-bit reference bases (with dbSNP flags), the dbSNP
+ * window index, N-run masks and a contig directory.
+ *
+ * layout: header (magic, version, directory offset), data sections, directory.
+ * the file is mapped once per JVM and every contig is a slice of it.
+ */
+public class GenomePack {
+	public final static int MAGIC = 0x47504b31; // "GPK1"
+	public final static int VERSION = 1;
+	public final static int HEADER_SIZE = 16;
+	private final static String LOCAL_PREFIX = "file://";
+
+	private final static Map<String, GenomePack> packs = new ConcurrentHashMap<String, GenomePack>();
+
+	private final String path;
+	private String dbsnpPath;
+	private MappedByteBuffer[] segments;
+	private Map<String, Contig> contigs = new LinkedHashMap<String, Contig>();
+
+	public static class Contig {
+		private final String name;
+		private final int length;
+		private final long baseOffset;
+		private final long baseSize;
+		private final long dbsnpOffset;
+		private final long dbsnpSize;
+		private final int[] nRuns;
+
+		public Contig(String name, int length, long baseOffset, long baseSize, long dbsnpOffset, long dbsnpSize,
+				int[] nRuns) {
+			this.name = name;
+			this.length = length;
+			this.baseOffset = baseOffset;
+			this.baseSize = baseSize;
+			this.dbsnpOffset = dbsnpOffset;
+			this.dbsnpSize = dbsnpSize;
+			this.nRuns = nRuns;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public long getBaseOffset() {
+			return baseOffset;
+		}
+
+		public long getBaseSize() {
+			return baseSize;
+		}
+
+		public long getDbsnpOffset() {
+			return dbsnpOffset;
+		}
+
+		public long getDbsnpSize() {
+			return dbsnpSize;
+		}
+
+		public boolean hasDbsnp() {
+			return dbsnpSize > 0;
+		}
+
+		/**
+		 * N runs as [start,end) pairs, 0-based
+		 */
+		public int[] getNRuns() {
+			return nRuns;
+		}
+
+		public void write(DataOutput out) throws IOException {
+			out.writeUTF(name);
+			out.writeInt(length);
+			out.writeLong(baseOffset);
+			out.writeLong(baseSize);
+			out.writeLong(dbsnpOffset);
+			out.writeLong(dbsnpSize);
+			out.writeInt(nRuns.length);
+			for (int run : nRuns)
+				out.writeInt(run);
+		}
+
+		public static Contig read(DataInput in) throws IOException {
+			String name = in.readUTF();
+			int length = in.readInt();
+			long baseOffset = in.readLong();
+			long baseSize = in.readLong();
+			long dbsnpOffset = in.readLong();
+			long dbsnpSize = in.readLong();
+			int[] nRuns = new int[in.readInt()];
+			for (int i = 0; i < nRuns.length; i++)
+				nRuns[i] = in.readInt();
+			return new Contig(name, length, baseOffset, baseSize, dbsnpOffset, dbsnpSize, nRuns);
+		}
+	}
+
+	private GenomePack(String path) {
+		this.path = path;
+	}
+
+	private static String localPath(String path) {
+		if (path.startsWith(LOCAL_PREFIX))
+			return path.substring(LOCAL_PREFIX.length());
+		return path;
+	}
+
+	/**
+	 * check the magic number of a local file
+	 */
+	public static boolean isGenomePack(String path) {
+		if (path == null)
+			return false;
+		File file = new File(localPath(path));
+		if (!file.isFile() || file.length() < HEADER_SIZE)
+			return false;
+
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			return in.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * open a pack; the same file is mapped only once per JVM and shared by
+	 * ReferenceShare and DbsnpShare
+	 */
+	public static GenomePack open(String path) {
+		String local = new File(localPath(path)).getAbsolutePath();
+		GenomePack pack = packs.get(local);
+		if (pack != null)
+			return pack;
+
+		synchronized (packs) {
+			pack = packs.get(local);
+			if (pack == null) {
+				pack = new GenomePack(local);
+				try {
+					pack.load();
+				} catch (IOException e) {
+					throw new RuntimeException(e.toString());
+				}
+				packs.put(local, pack);
+			}
+		}
+		return pack;
+	}
+
+	private void load() throws IOException {
+		long directoryOffset;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(path + " is not a genome pack.");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("unsupported genome pack version " + version + " for " + path);
+			directoryOffset = in.readLong();
+
+			long skip = directoryOffset - HEADER_SIZE;
+			while (skip > 0)
+				skip -= in.skip(skip);
+
+			String dbsnp = in.readUTF();
+			dbsnpPath = dbsnp.isEmpty() ? null : dbsnp;
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				Contig contig = Contig.read(in);
+				contigs.put(contig.getName(), contig);
+			}
+		}
+		segments = BioMemoryShare.mapSegments(path);
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * dbSNP vcf the window index of this pack points into, null if none
+	 */
+	public String getDbsnpPath() {
+		return dbsnpPath;
+	}
+
+	public boolean hasDbsnp(String dbsnp) {
+		return dbsnpPath != null && dbsnp != null
+				&& new File(localPath(dbsnp)).getAbsolutePath().equals(dbsnpPath);
+	}
+
+	public Collection<Contig> getContigs() {
+		return contigs.values();
+	}
+
+	public Contig getContig(String name) {
+		return contigs.get(name);
+	}
+
+	public MappedByteBuffer[] getSegments() {
+		return segments;
+	}
+}
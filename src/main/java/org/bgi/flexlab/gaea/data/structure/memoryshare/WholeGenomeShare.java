@@ -39,6 +39,16 @@ public abstract class WholeGenomeShare {
 		Path refPath = new Path(chrList);
 		FileSystem fs = refPath.getFileSystem(conf);
 		FSDataInputStream refin = fs.open(refPath);
+
+		// a genome pack is one file, nothing else to distribute
+		if (fs.getFileStatus(refPath).getLen() >= GenomePack.HEADER_SIZE) {
+			if (refin.readInt() == GenomePack.MAGIC) {
+				refin.close();
+				return true;
+			}
+			refin.seek(0);
+		}
+
 		LineReader in = new LineReader(refin);
 		Text line = new Text();
 
@@ -59,6 +69,9 @@ public abstract class WholeGenomeShare {
 	}
 
 	protected void loadChromosomeList(String cacheName) {
+		if (loadGenomePack(cacheName))
+			return;
+
 		BufferedReader br;
 		try {
 			br = new BufferedReader(new FileReader(new File(cacheName)));
@@ -142,6 +155,20 @@ public abstract class WholeGenomeShare {
 		return true;
 	}
 	
+	/**
+	 * load all chromosomes from a genome pack instead of a chromosome list
+	 * 
+	 * @return false if path is not a genome pack
+	 */
+	protected boolean loadGenomePack(String path) {
+		if (!GenomePack.isGenomePack(path))
+			return false;
+		loadGenomePack(GenomePack.open(path));
+		return true;
+	}
+
+	protected abstract void loadGenomePack(GenomePack pack);
+
 	public abstract void clean();
 
 	public abstract boolean addChromosome(String chrName);
@@ -18,10 +18,14 @@ package org.bgi.flexlab.gaea.data.structure.reference;
 
 import org.bgi.flexlab.gaea.data.exception.OutOfBoundException;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 public class BaseAndSNPInformation {
-	private boolean[] snps = null;
+	private boolean[] snps = new boolean[0];
+	private byte[] sequences = new byte[0];
 	private int start;
-	private String sequences = null;
+	private int length = 0;
 
 	public BaseAndSNPInformation() {
 	}
@@ -31,43 +35,54 @@ public class BaseAndSNPInformation {
 		set(chrInfo, start, end);
 	}
 
+	/**
+	 * decode the window into reused buffers, so moving to the next window
+	 * allocates nothing once the buffers are large enough
+	 */
 	public void set(ChromosomeInformationShare chrInfo, int _start, int _end) {
 		_start--;
 		_end--;
 
+		if (_start >= chrInfo.getLength())
+			throw new OutOfBoundException(chrInfo.getLength(), _start);
+
 		this.start = _start;
-		byte[] bases = chrInfo.getGA4GHBytes(_start, _end);
+		int size = Math.min(_end, chrInfo.getLength() - 1) - _start + 1;
+		if (sequences.length < size) {
+			sequences = new byte[size];
+			snps = new boolean[size];
+		}
 
-		sequences = chrInfo.getGA4GHBaseSequence(bases, _start, _end);
-		snps = chrInfo.isSNPs(bases, _start, _end);
+		length = chrInfo.getBases(_start, _end, sequences, 0);
+		chrInfo.getSNPs(_start, _end, snps, 0);
 	}
 
 	public boolean[] getSNPs() {
-		return snps;
+		return Arrays.copyOf(snps, length);
 	}
 
 	public boolean getSNP(int pos) {
 		int index = pos - 1 - start;
-		if (index >= snps.length)
-			throw new OutOfBoundException(pos, start + snps.length);
+		if (index >= length)
+			throw new OutOfBoundException(pos, start + length);
 
 		return snps[index];
 	}
 
 	public String getSequences() {
-		return sequences;
+		return new String(sequences, 0, length, StandardCharsets.US_ASCII);
 	}
 
 	public String getSequences(int _start, int length) {
 		int index = _start - 1 - start;
-		return sequences.substring(index, index + length);
+		return new String(sequences, index, length, StandardCharsets.US_ASCII);
 	}
 
 	public char getBase(int pos) {
 		int index = pos - 1 - start;
-		if (index >= sequences.length())
-			throw new OutOfBoundException(pos, start + sequences.length());
+		if (index >= length)
+			throw new OutOfBoundException(pos, start + length);
 
-		return sequences.charAt(index);
+		return (char) sequences[index];
 	}
 }
@@ -72,6 +72,32 @@ public class ChromosomeInformation {
 		}
 	}
 
+	/**
+	 * 为流式编码分配空间
+	 * 
+	 * @param maxBases
+	 *            碱基数上限
+	 */
+	public void allocate(long maxBases) {
+		length = 0;
+		binarySeq = new byte[(int) ((maxBases + SystemConfiguration.getCapacity() - 1)
+				/ SystemConfiguration.getCapacity())];
+	}
+
+	/**
+	 * 流式编码一段fasta文本，换行符被跳过，编码与setBinarySequence相同
+	 */
+	public void appendBases(byte[] bases, int offset, int len) {
+		int capacity = SystemConfiguration.getCapacity();
+		for (int i = offset; i < offset + len; i++) {
+			byte base = bases[i];
+			if (base == '\n' || base == '\r')
+				continue;
+			binarySeq[length / capacity] |= (((base >> 1) & 7) << (length % capacity * 4));
+			length++;
+		}
+	}
+
 	/**
 	 * 向二进制ref中添加dbSNP flag
 	 * 
@@ -93,7 +119,8 @@ public class ChromosomeInformation {
 	 */
 	public void outputChrInformation(String outPath) throws IOException {
 		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outPath)));
-		out.write(binarySeq);
+		int capacity = SystemConfiguration.getCapacity();
+		out.write(binarySeq, 0, (length + capacity - 1) / capacity);
 		out.close();
 	}
 }
@@ -16,9 +16,13 @@
  *******************************************************************************/
 package org.bgi.flexlab.gaea.data.structure.reference;
 
+import org.bgi.flexlab.gaea.data.exception.OutOfBoundException;
 import org.bgi.flexlab.gaea.data.structure.memoryshare.BioMemoryShare;
 import org.bgi.flexlab.gaea.util.SystemConfiguration;
 
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
 /**
  * 染色体信息共享内存
  * 
@@ -29,6 +33,21 @@ public class ChromosomeInformationShare extends BioMemoryShare {
 
 	private int NonNbaselength = 0;
 
+	/**
+	 * N runs as [start,end) pairs from a genome pack, null if unknown
+	 */
+	private int[] nRuns = null;
+
+	/**
+	 * ASCII base for every 4-bit code
+	 */
+	private static final byte[] BASE_CODES = new byte[16];
+
+	static {
+		for (int code = 0; code < BASE_CODES.length; code++)
+			BASE_CODES[code] = (byte) SystemConfiguration.getFastaAbb(code);
+	}
+
 	public ChromosomeInformationShare() {
 		super(Byte.SIZE / 4);
 	}
@@ -40,13 +59,64 @@ public class ChromosomeInformationShare extends BioMemoryShare {
 	 * @return base
 	 */
 	public byte getBinaryBase(int pos) {
-		byte curr = getGA4GHBytes(pos, pos)[0];
+		if (pos >= length)
+			throw new OutOfBoundException(length, pos);
+		return getCode(pos);
+	}
+
+	private byte getCode(int pos) {
+		byte curr = getByte(pos / capacity);
 
 		if ((pos & 0x1) == 0)
 			return (byte) (curr & 0x0f);
 		return (byte) ((curr >> 4) & 0x0f);
 	}
 
+	/**
+	 * decode bases of [start,end] into a caller supplied array
+	 * 
+	 * @param start
+	 *            从0开始
+	 * @return number of bases written
+	 */
+	public int getBases(int start, int end, byte[] dst, int offset) {
+		if (end >= length)
+			end = length - 1;
+
+		for (int i = start; i <= end; i++)
+			dst[offset + i - start] = BASE_CODES[getCode(i)];
+		return Math.max(end - start + 1, 0);
+	}
+
+	/**
+	 * decode dbSNP flags of [start,end] into a caller supplied array
+	 * 
+	 * @return number of flags written
+	 */
+	public int getSNPs(int start, int end, boolean[] dst, int offset) {
+		if (end >= length)
+			end = length - 1;
+
+		for (int i = start; i <= end; i++)
+			dst[offset + i - start] = ((getCode(i) >> 3) & 0x1) == 1;
+		return Math.max(end - start + 1, 0);
+	}
+
+	/**
+	 * set bit (offset + i - start) of dst for every dbSNP site i in
+	 * [start,end]; other bits of the range are cleared
+	 * 
+	 * @return number of positions decoded
+	 */
+	public int getSNPs(int start, int end, BitSet dst, int offset) {
+		if (end >= length)
+			end = length - 1;
+
+		for (int i = start; i <= end; i++)
+			dst.set(offset + i - start, ((getCode(i) >> 3) & 0x1) == 1);
+		return Math.max(end - start + 1, 0);
+	}
+
 	/**
 	 * 获取碱基
 	 */
@@ -66,8 +136,9 @@ public class ChromosomeInformationShare extends BioMemoryShare {
 		if(end >= length)
 			end = length - 1;
 		
-		byte[] bases = getGA4GHBytes(start, end);
-		return isSNPs(bases, start, end);
+		boolean[] snps = new boolean[end - start + 1];
+		getSNPs(start, end, snps, 0);
+		return snps;
 	}
 	
 	public boolean[] isSNPs(byte[] bases,int start,int end){
@@ -102,8 +173,7 @@ public class ChromosomeInformationShare extends BioMemoryShare {
 		if(end >= length)
 			end = length -1;
 		
-		byte[] bases = getGA4GHBytes(start, end);
-		return getGA4GHBaseSequence(bases, start, end);
+		return new String(getGA4GHBaseBytes(start, end), StandardCharsets.US_ASCII);
 	}
 	
 	public String getGA4GHBaseSequence(byte[] bases,int start,int end){
@@ -131,11 +201,18 @@ public class ChromosomeInformationShare extends BioMemoryShare {
 	}
 	
 	public byte[] getGA4GHBaseBytes(int start) {
-		return getGA4GHBaseSequence(start, start).getBytes();
+		return getGA4GHBaseBytes(start, start);
 	}
 
 	public byte[] getGA4GHBaseBytes(int start, int end) {
-		return getGA4GHBaseSequence(start, end).getBytes();
+		if (start >= length)
+			throw new OutOfBoundException(length, start);
+		if (end >= length)
+			end = length - 1;
+
+		byte[] bases = new byte[end - start + 1];
+		getBases(start, end, bases, 0);
+		return bases;
 	}
 
 	/**
@@ -164,7 +241,20 @@ public class ChromosomeInformationShare extends BioMemoryShare {
 		return Double.longBitsToDouble(l);
 	}
 
+	public void setNRuns(int[] nRuns) {
+		this.nRuns = nRuns;
+	}
+
+	public int[] getNRuns() {
+		return nRuns;
+	}
+
 	public int getNonNbaselength() {
+		if (NonNbaselength == 0 && nRuns != null) {
+			NonNbaselength = length;
+			for (int i = 0; i < nRuns.length; i += 2)
+				NonNbaselength -= nRuns[i + 1] - nRuns[i];
+		}
 		if( NonNbaselength == 0) {
 			for (int i = 0; i < length; i++) {
 				if (getBase(i) != 'N') {
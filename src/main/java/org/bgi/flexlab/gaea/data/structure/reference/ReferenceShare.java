@@ -23,6 +23,8 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.util.LineReader;
+import org.bgi.flexlab.gaea.data.structure.memoryshare.GenomePack;
+import org.bgi.flexlab.gaea.data.structure.memoryshare.GenomePack.Contig;
 import org.bgi.flexlab.gaea.data.structure.memoryshare.WholeGenomeShare;
 import org.bgi.flexlab.gaea.util.ChromosomeUtils;
 
@@ -58,6 +60,8 @@ public class ReferenceShare extends WholeGenomeShare {
 	}
 
 	public void loadChromosomeList(String chrList) {
+		if (loadGenomePack(chrList))
+			return;
 		try {
 			loadChromosomeList(new Path(chrList));
 		} catch (IllegalArgumentException | IOException e) {
@@ -163,6 +167,18 @@ public class ReferenceShare extends WholeGenomeShare {
 		}
 	}
 
+	@Override
+	protected void loadGenomePack(GenomePack pack) {
+		for (Contig contig : pack.getContigs()) {
+			addChromosome(contig.getName());
+			ChromosomeInformationShare chrInfo = chromosomeInfoMap.get(contig.getName());
+			chrInfo.loadInformation(pack.getSegments(), contig.getBaseOffset(), contig.getBaseSize());
+			chrInfo.setLength(contig.getLength());
+			chrInfo.setChromosomeName(contig.getName());
+			chrInfo.setNRuns(contig.getNRuns());
+		}
+	}
+
 	@Override
 	public void clean() {
 		for (String key : chromosomeInfoMap.keySet()) {
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.structure.reference.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * byte lines of [start,end) of a file, read with positional reads so several
+ * readers can share one channel. line terminators (\n, \r\n, \r) are not
+ * part of the line, like BufferedReader.readLine.
+ */
+class ChannelLineReader {
+	final static int BUFFER_SIZE = 1 << 20;
+
+	private final FileChannel channel;
+	private final long end;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private long bufferOffset;
+	private int bufferLength = 0;
+	private int bufferIndex = 0;
+
+	private byte[] line = new byte[256];
+	private int lineLength = 0;
+	private long lineOffset = 0;
+
+	ChannelLineReader(FileChannel channel, long start, long end) {
+		this.channel = channel;
+		this.end = end;
+		this.bufferOffset = start;
+	}
+
+	/**
+	 * next byte, or -1 at the end of the range
+	 */
+	private int read() throws IOException {
+		if (bufferIndex == bufferLength) {
+			bufferOffset += bufferLength;
+			if (bufferOffset >= end)
+				return -1;
+			buffer.clear();
+			buffer.limit((int) Math.min(BUFFER_SIZE, end - bufferOffset));
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, bufferOffset + buffer.position()) < 0)
+					break;
+			}
+			if (buffer.position() == 0)
+				return -1;
+			bufferLength = buffer.position();
+			bufferIndex = 0;
+		}
+		return buffer.array()[bufferIndex++] & 0xff;
+	}
+
+	private long position() {
+		return bufferOffset + bufferIndex;
+	}
+
+	public boolean next() throws IOException {
+		lineOffset = position();
+		lineLength = 0;
+		int c = read();
+		if (c < 0)
+			return false;
+
+		while (c >= 0 && c != '\n' && c != '\r') {
+			if (lineLength == line.length)
+				line = Arrays.copyOf(line, line.length * 2);
+			line[lineLength++] = (byte) c;
+			c = read();
+		}
+		if (c == '\r') {
+			// \r\n is one terminator
+			int n = read();
+			if (n >= 0 && n != '\n')
+				bufferIndex--;
+		}
+		return true;
+	}
+
+	public byte[] line() {
+		return line;
+	}
+
+	public int lineLength() {
+		return lineLength;
+	}
+
+	/**
+	 * file offset of the first byte of the current line
+	 */
+	public long lineOffset() {
+		return lineOffset;
+	}
+
+	/**
+	 * file offset just after the current line and its terminator
+	 */
+	public long nextOffset() {
+		return position();
+	}
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.structure.reference.index;
+
+import org.bgi.flexlab.gaea.data.structure.memoryshare.GenomePack;
+import org.bgi.flexlab.gaea.data.structure.memoryshare.GenomePack.Contig;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * pack ref_bn.list (and the dbSNP window index list) into one genome pack
+ */
+public class GenomePackWriter {
+	public final static String PACK_NAME = "genome.pack";
+	private final static int BUFFER_SIZE = 1 << 20;
+
+	private DataOutputStream out = null;
+	private long position = 0;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+
+	private static List<String[]> readList(String listPath) throws IOException {
+		List<String[]> entries = new ArrayList<String[]>();
+		BufferedReader reader = new BufferedReader(new FileReader(listPath));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty())
+				continue;
+			entries.add(line.split("\t"));
+		}
+		reader.close();
+		return entries;
+	}
+
+	/**
+	 * copy one section into the pack, and collect N runs when nRuns is not
+	 * null
+	 */
+	private long copySection(String path, List<Integer> nRuns, int length) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(path), BUFFER_SIZE);
+		long size = 0;
+		int runStart = -1;
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			out.write(buffer, 0, read);
+			if (nRuns != null) {
+				for (int i = 0; i < read; i++) {
+					for (int half = 0; half < 2; half++) {
+						int pos = (int) ((size + i) * 2 + half);
+						if (pos >= length)
+							break;
+						boolean isN = ((buffer[i] >> (half * 4 + 2)) & 0x1) == 1;
+						if (isN && runStart < 0) {
+							runStart = pos;
+						} else if (!isN && runStart >= 0) {
+							nRuns.add(runStart);
+							nRuns.add(pos);
+							runStart = -1;
+						}
+					}
+				}
+			}
+			size += read;
+		}
+		in.close();
+		if (nRuns != null && runStart >= 0) {
+			nRuns.add(runStart);
+			nRuns.add(length);
+		}
+		position += size;
+		return size;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		return array;
+	}
+
+	/**
+	 * @param refList
+	 *            ref_bn.list written by ReferenceIndex
+	 * @param dbsnpList
+	 *            window index list written by VcfIndex, may be null
+	 * @param dbsnpPath
+	 *            dbSNP vcf the window index points into, may be null
+	 * @param packPath
+	 *            output file
+	 */
+	public void write(String refList, String dbsnpList, String dbsnpPath, String packPath) throws IOException {
+		Map<String, String> dbsnpFiles = new HashMap<String, String>();
+		if (dbsnpList != null && new File(dbsnpList).exists()) {
+			for (String[] entry : readList(dbsnpList))
+				dbsnpFiles.put(entry[0], entry[1]);
+		}
+
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(packPath), BUFFER_SIZE));
+		out.writeInt(GenomePack.MAGIC);
+		out.writeInt(GenomePack.VERSION);
+		out.writeLong(0); // directory offset, patched below
+		position = GenomePack.HEADER_SIZE;
+
+		List<Contig> contigs = new ArrayList<Contig>();
+		for (String[] entry : readList(refList)) {
+			String chrName = entry[0];
+			int length = Integer.parseInt(entry[2]);
+
+			List<Integer> nRuns = new ArrayList<Integer>();
+			long baseOffset = position;
+			long baseSize = copySection(entry[1], nRuns, length);
+
+			long dbsnpOffset = position;
+			long dbsnpSize = 0;
+			if (dbsnpFiles.containsKey(chrName))
+				dbsnpSize = copySection(dbsnpFiles.get(chrName), null, length);
+
+			contigs.add(new Contig(chrName, length, baseOffset, baseSize, dbsnpOffset, dbsnpSize, toArray(nRuns)));
+		}
+
+		long directoryOffset = position;
+		out.writeUTF(dbsnpPath == null || dbsnpFiles.isEmpty() ? "" : new File(dbsnpPath).getAbsolutePath());
+		out.writeInt(contigs.size());
+		for (Contig contig : contigs)
+			contig.write(out);
+		out.close();
+
+		RandomAccessFile raf = new RandomAccessFile(packPath, "rw");
+		raf.seek(8);
+		raf.writeLong(directoryOffset);
+		raf.close();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("java -cp gaea-1.0.0.jar " + GenomePackWriter.class.getName()
+					+ " ref_bn.list output.pack [dbsnp.vcf]");
+			System.exit(1);
+		}
+
+		String dbsnp = args.length > 2 ? args[2] : null;
+		new GenomePackWriter().write(args[0], dbsnp == null ? null : dbsnp + VcfIndex.INDEX_SUFFIX, dbsnp, args[1]);
+		System.out.println("genome pack finish!!");
+	}
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.data.structure.reference.index;
+
+import htsjdk.variant.variantcontext.VariantContext.Type;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSitesIndex;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSitesIndex.Contig;
+
+import java.io.*;
+import java.util.List;
+
+/**
+ * write the binary known-sites index of a vcf while VcfIndex parses it. every
+ * contig is streamed into temporary column files, which are concatenated in
+ * contig order at the end.
+ */
+public class KnownSitesIndexWriter {
+	private final static int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * sites of one contig, fed in file order by one thread
+	 */
+	static class ContigSection {
+		private final File positionFile;
+		private final File rowFile;
+		private final File payloadFile;
+		private DataOutputStream positions;
+		private DataOutputStream rows;
+		private DataOutputStream payload;
+
+		private String name = null;
+		private int count = 0;
+		private int maxSpan = 0;
+		private int lastStart = 0;
+		private long payloadSize = 0;
+		private IntArrayList longSites = new IntArrayList();
+
+		ContigSection(String outputPath, String chrName) throws IOException {
+			positionFile = new File(outputPath, chrName + ".sites.pos");
+			rowFile = new File(outputPath, chrName + ".sites.row");
+			payloadFile = new File(outputPath, chrName + ".sites.payload");
+			positions = open(positionFile);
+			rows = open(rowFile);
+			payload = open(payloadFile);
+		}
+
+		private static DataOutputStream open(File file) throws IOException {
+			return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+		}
+
+		/**
+		 * @param tabs
+		 *            offsets of the first eight tabs of the line
+		 */
+		void add(byte[] line, int[] tabs, int start, int end) throws IOException {
+			if (name == null)
+				name = new String(line, 0, tabs[0], "ISO-8859-1");
+			if (start < lastStart)
+				throw new RuntimeException("known sites of " + name + " are not sorted at position " + start);
+			lastStart = start;
+
+			int span = end - start;
+			if (span > KnownSitesIndex.LONG_SITE_SPAN)
+				longSites.add(count);
+			else if (span > maxSpan)
+				maxSpan = span;
+
+			positions.writeInt(start);
+			rows.writeInt(end);
+			rows.writeInt(KnownSitesIndex.alleleHash(line, tabs[2] + 1, tabs[4]));
+			rows.writeLong(payloadSize << 8 | flags(line, tabs));
+
+			// ID\tREF\tALT, then FILTER
+			int idFrom = tabs[1] + 1;
+			payload.write(line, idFrom, tabs[4] - idFrom);
+			payload.write('\t');
+			payload.write(line, tabs[5] + 1, tabs[6] - tabs[5] - 1);
+			payloadSize += tabs[4] - idFrom + 1 + tabs[6] - tabs[5] - 1;
+			count++;
+		}
+
+		private void close() throws IOException {
+			positions.close();
+			rows.close();
+			payload.close();
+		}
+
+		private void delete() {
+			positionFile.delete();
+			rowFile.delete();
+			payloadFile.delete();
+		}
+	}
+
+	private static boolean isSymbolic(byte[] line, int from, int to) {
+		if (to - from <= 1)
+			return false;
+		if (line[from] == '<' || line[to - 1] == '>' || line[from] == '.' || line[to - 1] == '.')
+			return true;
+		for (int i = from; i < to; i++) {
+			if (line[i] == '[' || line[i] == ']')
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * type, simple insertion and filtered flags, the same way VariantContext
+	 * determines them
+	 */
+	static int flags(byte[] line, int[] tabs) {
+		int refLength = tabs[3] - tabs[2] - 1;
+		int altFrom = tabs[3] + 1;
+		int altTo = tabs[4];
+
+		Type type = null;
+		int alternates = 0;
+		int altLength = 0;
+		if (!(altTo - altFrom == 1 && line[altFrom] == '.')) {
+			int from = altFrom;
+			while (from <= altTo) {
+				int to = from;
+				while (to < altTo && line[to] != ',')
+					to++;
+				Type current;
+				if (isSymbolic(line, from, to))
+					current = Type.SYMBOLIC;
+				else if (to - from == refLength)
+					current = refLength == 1 ? Type.SNP : Type.MNP;
+				else
+					current = Type.INDEL;
+				if (type == null)
+					type = current;
+				else if (type != current)
+					type = Type.MIXED;
+				altLength = to - from;
+				alternates++;
+				from = to + 1;
+			}
+		}
+		if (type == null)
+			type = Type.NO_VARIATION;
+
+		int flag = type.ordinal();
+		if (type == Type.INDEL && alternates == 1 && refLength > 0 && altLength > 0
+				&& line[tabs[2] + 1] == line[altFrom] && refLength == 1)
+			flag |= KnownSitesIndex.SIMPLE_INSERTION;
+
+		int filterFrom = tabs[5] + 1;
+		int filterLength = tabs[6] - filterFrom;
+		boolean unfiltered = filterLength == 1 && line[filterFrom] == '.';
+		boolean pass = filterLength == 4 && line[filterFrom] == 'P' && line[filterFrom + 1] == 'A'
+				&& line[filterFrom + 2] == 'S' && line[filterFrom + 3] == 'S';
+		if (!unfiltered && !pass)
+			flag |= KnownSitesIndex.FILTERED;
+		return flag;
+	}
+
+	private static long copy(File file, OutputStream out, byte[] buffer) throws IOException {
+		InputStream in = new FileInputStream(file);
+		long size = 0;
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			out.write(buffer, 0, read);
+			size += read;
+		}
+		in.close();
+		return size;
+	}
+
+	private static void pad(OutputStream out, long size) throws IOException {
+		for (long i = size; i < KnownSitesIndex.align(size); i++)
+			out.write(0);
+	}
+
+	/**
+	 * concatenate the sections into one index and remove the temporary files
+	 */
+	static void write(List<ContigSection> sections, String indexPath) throws IOException {
+		for (ContigSection section : sections)
+			section.close();
+
+		byte[] buffer = new byte[BUFFER_SIZE];
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(indexPath), BUFFER_SIZE));
+		out.writeInt(KnownSitesIndex.MAGIC);
+		out.writeInt(KnownSitesIndex.VERSION);
+		out.writeLong(0); // directory offset, patched below
+		long position = KnownSitesIndex.HEADER_SIZE;
+
+		Contig[] contigs = new Contig[sections.size()];
+		for (int i = 0; i < contigs.length; i++) {
+			ContigSection section = sections.get(i);
+			contigs[i] = new Contig(section.name == null ? "" : section.name, section.count, section.maxSpan,
+					position, section.payloadSize, section.longSites.toIntArray());
+
+			long size = copy(section.positionFile, out, buffer);
+			pad(out, size);
+			position += KnownSitesIndex.align(size);
+			position += copy(section.rowFile, out, buffer);
+			size = copy(section.payloadFile, out, buffer);
+			pad(out, size);
+			position += KnownSitesIndex.align(size);
+			section.delete();
+		}
+
+		long directoryOffset = position;
+		int count = 0;
+		for (Contig contig : contigs) {
+			if (contig.getCount() > 0)
+				count++;
+		}
+		out.writeInt(count);
+		for (Contig contig : contigs) {
+			if (contig.getCount() > 0)
+				contig.write(out);
+		}
+		out.close();
+
+		RandomAccessFile raf = new RandomAccessFile(indexPath, "rw");
+		raf.seek(8);
+		raf.writeLong(directoryOffset);
+		raf.close();
+	}
+}
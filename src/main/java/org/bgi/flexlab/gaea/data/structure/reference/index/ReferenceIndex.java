@@ -21,10 +21,19 @@ import org.bgi.flexlab.gaea.data.structure.reference.ChromosomeInformation;
 import org.bgi.flexlab.gaea.util.ChromosomeUtils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * create reference and dbSNP file index
@@ -39,7 +48,94 @@ public abstract class ReferenceIndex {
 	protected Map<String, ChromosomeInformation> chromosomeInfoMap = new ConcurrentHashMap<String, ChromosomeInformation>();
 
 	/**
-	 * read fasta reference
+	 * threads used to encode chromosomes and parse dbSNP
+	 */
+	protected int threads = Runtime.getRuntime().availableProcessors();
+
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * one chromosome of the fasta file
+	 */
+	private static class FastaContig {
+		private final String chrName;
+		private final long sequenceStart;
+		private long sequenceEnd;
+
+		private FastaContig(String chrName, long sequenceStart) {
+			this.chrName = chrName;
+			this.sequenceStart = sequenceStart;
+		}
+	}
+
+	/**
+	 * find the sequence range of every chromosome without keeping any sequence
+	 */
+	private List<FastaContig> scanReference(FileChannel channel) throws IOException {
+		List<FastaContig> contigs = new ArrayList<FastaContig>();
+		ChannelLineReader reader = new ChannelLineReader(channel, 0, channel.size());
+		FastaContig last = null;
+		while (reader.next()) {
+			byte[] line = reader.line();
+			// '>'字符是一个染色体序列信息的起始标志
+			if (reader.lineLength() != 0 && '>' == line[0]) {
+				if (last != null)
+					last.sequenceEnd = reader.lineOffset();
+
+				// 获取染色体名称
+				int pos;
+				for (pos = 1; pos != reader.lineLength() && '\t' != line[pos] && ' ' != line[pos]
+						&& '\f' != line[pos]; pos++) {
+				}
+				String chrName = ChromosomeUtils
+						.formatChrName(new String(line, 1, pos - 1, StandardCharsets.ISO_8859_1));
+				last = new FastaContig(chrName, reader.nextOffset());
+				contigs.add(last);
+			}
+		}
+		if (last != null)
+			last.sequenceEnd = channel.size();
+		return contigs;
+	}
+
+	/**
+	 * encode one chromosome into 4-bit bases while reading it
+	 */
+	private void encodeChromosome(FileChannel channel, FastaContig contig, ChromosomeInformation chrInfo)
+			throws IOException {
+		chrInfo.allocate(contig.sequenceEnd - contig.sequenceStart);
+		ByteBuffer buffer = ByteBuffer.allocate(ChannelLineReader.BUFFER_SIZE);
+		long position = contig.sequenceStart;
+		while (position < contig.sequenceEnd) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), contig.sequenceEnd - position));
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				break;
+			chrInfo.appendBases(buffer.array(), 0, read);
+			position += read;
+		}
+		System.out.println("> Finished loading chromosome: " + contig.chrName);
+	}
+
+	/**
+	 * run all tasks and rethrow the first failure
+	 */
+	protected static void waitAll(ExecutorService pool, List<Future<?>> futures) {
+		pool.shutdown();
+		try {
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			pool.shutdownNow();
+			throw new RuntimeException(e.getCause() == null ? e.toString() : e.getCause().toString());
+		}
+	}
+
+	/**
+	 * read fasta reference, chromosomes are encoded in parallel
 	 * 
 	 * @param refSeqPath
 	 *            reference file path
@@ -47,50 +143,29 @@ public abstract class ReferenceIndex {
 	 */
 	protected void loadReference(String refSeqPath) throws IOException {
 		if (null != refSeqPath && !refSeqPath.equals("")) {
-			File in = new File(refSeqPath);
-			BufferedReader reader = new BufferedReader(new FileReader(in));
-
-			String line = null;
-			StringBuilder refSeq = new StringBuilder();
-			String curChrName = "";
-			// 读取参考基因组序列
-			while ((line = reader.readLine()) != null) {
-				// '>'字符是一个染色体序列信息的起始标志
-				if (line.length() != 0 && '>' == line.charAt(0)) {
-					// 处理之前的一个染色体
-					if (chromosomeInfoMap.containsKey(curChrName)) {
-						// 二进制化染色体碱基序列
-						chromosomeInfoMap.get(curChrName).setBinarySequence(refSeq.toString());
-						System.out.println("> Finished loading chromosome: " + curChrName);
-					}
-
-					// 获取染色体名称
-					int pos;
-					for (pos = 1; pos != line.length() && '\t' != line.charAt(pos) && '\n' != line.charAt(pos)
-							&& ' ' != line.charAt(pos) && '\r' != line.charAt(pos) && '\f' != line.charAt(pos); pos++) {
-					}
-					String newChrName = ChromosomeUtils.formatChrName(line.substring(1, pos));
-
-					// 判断添加染色体信息是否成功
-					if (!addChromosome(newChrName)) {
-						StringBuilder errorDescription = new StringBuilder();
-						errorDescription.append("> Insert Chromosome ");
-						errorDescription.append(newChrName);
-						errorDescription.append(" Failed.");
-						System.err.println(errorDescription.toString());
-					}
-					curChrName = newChrName;
-					refSeq.setLength(0);
-				} else {
-					refSeq.append(line);
+			RandomAccessFile raf = new RandomAccessFile(refSeqPath, "r");
+			final FileChannel channel = raf.getChannel();
+
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final FastaContig contig : scanReference(channel)) {
+				// 判断添加染色体信息是否成功
+				if (!addChromosome(contig.chrName)) {
+					StringBuilder errorDescription = new StringBuilder();
+					errorDescription.append("> Insert Chromosome ");
+					errorDescription.append(contig.chrName);
+					errorDescription.append(" Failed.");
+					System.err.println(errorDescription.toString());
+					continue;
 				}
+				final ChromosomeInformation chrInfo = chromosomeInfoMap.get(contig.chrName);
+				futures.add(pool.submit(() -> {
+					encodeChromosome(channel, contig, chrInfo);
+					return null;
+				}));
 			}
-			// 处理最后一个染色体的信息
-			if (refSeq.length() != 0 && chromosomeInfoMap.containsKey(curChrName)) {
-				// 二进制化染色体碱基序列
-				chromosomeInfoMap.get(curChrName).setBinarySequence(refSeq.toString());
-			}
-			reader.close();
+			waitAll(pool, futures);
+			raf.close();
 		} else {
 			throw new NullFilePathException("input", "reference");
 		}
@@ -188,10 +263,19 @@ public abstract class ReferenceIndex {
 
 		try {
 			referenceSaveAsBinary(referenceIndexOutputPath);
+			new GenomePackWriter().write(referenceIndexOutputPath + "/ref_bn.list", dbsnpIndexList(dbsnpListPath),
+					dbsnpListPath, indexOutputPath + GenomePackWriter.PACK_NAME);
 		} catch (IOException e) {
 			throw new RuntimeException(e.toString());
 		}
 	}
 	
 	protected abstract void dbsnpParser(String dbSnpListPath,String outputPath);
+
+	/**
+	 * window index list written by dbsnpParser, null if it can not be packed
+	 */
+	protected String dbsnpIndexList(String dbSnpListPath) {
+		return null;
+	}
 }
@@ -16,14 +16,18 @@
  *******************************************************************************/
 package org.bgi.flexlab.gaea.data.structure.reference.index;
 
-import htsjdk.variant.variantcontext.VariantContext;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSitesIndex;
 import org.bgi.flexlab.gaea.data.structure.reference.ChromosomeInformation;
-import org.bgi.flexlab.gaea.data.structure.vcf.AbstractVCFLoader.PositionalVariantContext;
-import org.bgi.flexlab.gaea.data.structure.vcf.VCFLocalLoader;
 import org.bgi.flexlab.gaea.util.ChromosomeUtils;
 
 import java.io.*;
-import java.util.Arrays;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class VcfIndex extends ReferenceIndex {
 	public final static String INDEX_SUFFIX = ".window.idx";
@@ -50,8 +54,8 @@ public class VcfIndex extends ReferenceIndex {
 		}
 	}
 
-	private void insertSnpInformation(ChromosomeInformation curChrInfo, VariantContext context, byte[] sequences) {
-		for (int pos = context.getStart(); pos <= context.getEnd(); pos++) {
+	private void insertSnpInformation(ChromosomeInformation curChrInfo, int start, int end) {
+		for (int pos = start; pos <= end; pos++) {
 			if (pos > curChrInfo.getLength())
 				break;
 			curChrInfo.insertSnpInformation(pos - 1);
@@ -71,21 +75,159 @@ public class VcfIndex extends ReferenceIndex {
 		}
 	}
 
+	/**
+	 * consecutive records of one chromosome in the dbSNP file
+	 */
+	private static class VcfBlock {
+		private final String chrName;
+		private final long start;
+		private long end;
+		private byte[] binaryIndex = null;
+		private int firstWinNum = -1;
+		private long firstPosition = 0;
+		private int lastWinNum = -1;
+
+		private VcfBlock(String chrName, long start) {
+			this.chrName = chrName;
+			this.start = start;
+		}
+	}
+
+	private static int indexOf(byte[] line, int from, int length, byte b) {
+		for (int i = from; i < length; i++) {
+			if (line[i] == b)
+				return i;
+		}
+		return length;
+	}
+
+	private static int parseInt(byte[] line, int from, int to) {
+		int value = 0;
+		boolean negative = from < to && line[from] == '-';
+		for (int i = negative ? from + 1 : from; i < to; i++) {
+			if (line[i] < '0' || line[i] > '9')
+				throw new NumberFormatException(new String(line, from, to - from, StandardCharsets.ISO_8859_1));
+			value = value * 10 + (line[i] - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	private static boolean sameChromosome(byte[] line, int tab, byte[] chr) {
+		if (tab != chr.length)
+			return false;
+		for (int i = 0; i < tab; i++) {
+			if (line[i] != chr[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * split the dbSNP file into blocks of one chromosome; only the chromosome
+	 * column is looked at
+	 */
+	private List<VcfBlock> scanDbsnp(FileChannel channel) throws IOException {
+		List<VcfBlock> blocks = new ArrayList<VcfBlock>();
+		ChannelLineReader reader = new ChannelLineReader(channel, 0, channel.size());
+		byte[] lastChr = new byte[0];
+		VcfBlock last = null;
+		while (reader.next()) {
+			byte[] line = reader.line();
+			int length = reader.lineLength();
+			if (length == 0 || line[0] == '#')
+				continue;
+
+			int tab = indexOf(line, 0, length, (byte) '\t');
+			if (sameChromosome(line, tab, lastChr))
+				continue;
+
+			lastChr = Arrays.copyOf(line, tab);
+			String chrName = ChromosomeUtils.formatChrName(new String(lastChr, StandardCharsets.ISO_8859_1));
+			if (last != null && last.chrName.equals(chrName))
+				continue;
+
+			if (last != null)
+				last.end = reader.lineOffset();
+			last = new VcfBlock(chrName, reader.lineOffset());
+			blocks.add(last);
+		}
+		if (last != null)
+			last.end = channel.size();
+		return blocks;
+	}
+
+	/**
+	 * mark dbSNP sites, fill the window index and the known sites of one block.
+	 * the first record of a block is not put into the window index here,
+	 * because whether it is depends on the window of the previous block.
+	 */
+	private void parseBlock(FileChannel channel, VcfBlock block, ChromosomeInformation curChrInfo,
+			KnownSitesIndexWriter.ContigSection sites) throws IOException {
+		int len = curChrInfo.getLength() / WINDOW_SIZE;
+		if ((curChrInfo.getLength() % WINDOW_SIZE) != 0)
+			len++;
+		block.binaryIndex = new byte[len * capacity];
+
+		int[] tabs = new int[8];
+		ChannelLineReader reader = new ChannelLineReader(channel, block.start, block.end);
+		while (reader.next()) {
+			byte[] line = reader.line();
+			int length = reader.lineLength();
+			if (length == 0 || line[0] == '#')
+				continue;
+
+			int from = 0;
+			for (int i = 0; i < tabs.length; i++) {
+				tabs[i] = indexOf(line, from, length, (byte) '\t');
+				from = Math.min(tabs[i] + 1, length);
+			}
+
+			int start = parseInt(line, tabs[0] + 1, tabs[1]);
+			int end = start + (tabs[3] - tabs[2] - 1) - 1;
+
+			// END attribute overrides the reference allele length
+			int info = tabs[6] + 1;
+			while (info < tabs[7]) {
+				int next = indexOf(line, info, tabs[7], (byte) ';');
+				if (next - info > 4 && line[info] == 'E' && line[info + 1] == 'N' && line[info + 2] == 'D'
+						&& line[info + 3] == '=') {
+					end = parseInt(line, info + 4, next);
+					break;
+				}
+				info = next + 1;
+			}
+
+			int currWinNum = ((start - 1) / WINDOW_SIZE);
+			if (block.firstWinNum < 0) {
+				block.firstWinNum = currWinNum;
+				block.firstPosition = reader.lineOffset();
+			} else if (block.lastWinNum != currWinNum) {
+				setBinaryIndex(currWinNum, block.binaryIndex, reader.lineOffset());
+			}
+			block.lastWinNum = currWinNum;
+
+			insertSnpInformation(curChrInfo, start, end);
+			sites.add(line, tabs, start, end);
+		}
+	}
+
+	private static long getBinaryIndex(int winNum, byte[] indexs, int capacity) {
+		long position = 0;
+		for (int i = 0; i < capacity; i++) {
+			position <<= 8;
+			position |= (indexs[winNum * capacity + i] & 0xff);
+		}
+		return position;
+	}
+
+	/**
+	 * blocks are parsed in parallel, one task per chromosome so that a
+	 * chromosome is only written by one thread
+	 */
 	@Override
 	protected void dbsnpParser(String dbsnpPath, String outputPath) {
 		if(dbsnpPath == null)
 			return;
-		VCFLocalLoader reader = null;
-		try {
-			reader = new VCFLocalLoader(dbsnpPath);
-		} catch (IOException e2) {
-			throw new RuntimeException(e2.toString());
-		}
-
-		String lastChrName = null;
-		int lastLength = -1;
-		ChromosomeInformation curChrInfo = null;
-		byte[] binaryIndex = null;
 
 		String dbsnpList = dbsnpPath + INDEX_SUFFIX;
 		FileWriter bnListWriter = null;
@@ -95,61 +237,56 @@ public class VcfIndex extends ReferenceIndex {
 			throw new RuntimeException(e1.toString());
 		}
 
-		int lastWinNum = -1;
-
-		while (reader.hasNext()) {
-			PositionalVariantContext posContext = reader.next();
-			long currPos = posContext.getPosition();
-			VariantContext context = posContext.getVariantContext();
-			String chrName = ChromosomeUtils.formatChrName(context.getContig());
+		try {
+			RandomAccessFile raf = new RandomAccessFile(dbsnpPath, "r");
+			final FileChannel channel = raf.getChannel();
+			List<VcfBlock> blocks = scanDbsnp(channel);
 
-			if (lastChrName == null || !lastChrName.equals(chrName)) {
-				curChrInfo = chromosomeInfoMap.get(chrName);
-				if (null == curChrInfo)
+			Map<String, List<VcfBlock>> chromosomeBlocks = new LinkedHashMap<String, List<VcfBlock>>();
+			for (VcfBlock block : blocks) {
+				if (null == chromosomeInfoMap.get(block.chrName))
 					throw new RuntimeException(
 							"> Failed appending dbSNP information. No information related to chromosome name: "
-									+ chrName);
-				int len = curChrInfo.getLength() / WINDOW_SIZE;
-				if ((curChrInfo.getLength() % WINDOW_SIZE) != 0)
-					len++;
-
-				if (lastChrName != null && !lastChrName.equals(chrName)) {
-					try {
-						saveAsBinary(outputPath + "/" + lastChrName + ".dbsnp.bn", binaryIndex);
-					} catch (IOException e) {
-						throw new RuntimeException(e.toString());
-					}
-					fileWriter(bnListWriter, outputPath, lastChrName, lastLength);
-				}
-				
-				binaryIndex = null;
-				binaryIndex = new byte[len * capacity];
-				Arrays.fill(binaryIndex, 0, binaryIndex.length, (byte) 0);
-
-				lastChrName = chrName;
-				lastLength = curChrInfo.getLength();
+									+ block.chrName);
+				if (!chromosomeBlocks.containsKey(block.chrName))
+					chromosomeBlocks.put(block.chrName, new ArrayList<VcfBlock>());
+				chromosomeBlocks.get(block.chrName).add(block);
 			}
 
-			int currWinNum = ((context.getStart() - 1) / WINDOW_SIZE);
-
-			if (lastWinNum != currWinNum) {
-				lastWinNum = currWinNum;
-				setBinaryIndex(currWinNum, binaryIndex, currPos);
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			List<KnownSitesIndexWriter.ContigSection> sections = new ArrayList<KnownSitesIndexWriter.ContigSection>();
+			for (final Entry<String, List<VcfBlock>> entry : chromosomeBlocks.entrySet()) {
+				final ChromosomeInformation curChrInfo = chromosomeInfoMap.get(entry.getKey());
+				final KnownSitesIndexWriter.ContigSection section = new KnownSitesIndexWriter.ContigSection(
+						outputPath, entry.getKey());
+				sections.add(section);
+				futures.add(pool.submit(() -> {
+					for (VcfBlock block : entry.getValue())
+						parseBlock(channel, block, curChrInfo, section);
+					return null;
+				}));
 			}
+			waitAll(pool, futures);
+			raf.close();
+			KnownSitesIndexWriter.write(sections, dbsnpPath + KnownSitesIndex.INDEX_SUFFIX);
 
-			insertSnpInformation(curChrInfo, context, binaryIndex);
-		}
+			int lastWinNum = -1;
+			for (VcfBlock block : blocks) {
+				if (block.firstWinNum >= 0 && block.firstWinNum != lastWinNum
+						&& getBinaryIndex(block.firstWinNum, block.binaryIndex, capacity) == 0)
+					setBinaryIndex(block.firstWinNum, block.binaryIndex, block.firstPosition);
+				if (block.lastWinNum >= 0)
+					lastWinNum = block.lastWinNum;
 
-		try {
-			saveAsBinary(outputPath + "/" + lastChrName + ".dbsnp.bn", binaryIndex);
+				saveAsBinary(outputPath + "/" + block.chrName + ".dbsnp.bn", block.binaryIndex);
+				fileWriter(bnListWriter, outputPath, block.chrName, chromosomeInfoMap.get(block.chrName).getLength());
+				block.binaryIndex = null;
+			}
 		} catch (IOException e) {
 			throw new RuntimeException(e.toString());
 		}
 
-		fileWriter(bnListWriter, outputPath, lastChrName, lastLength);
-
-		reader.close();
-
 		try {
 			bnListWriter.close();
 		} catch (IOException e) {
@@ -157,13 +294,22 @@ public class VcfIndex extends ReferenceIndex {
 		}
 	}
 
+	@Override
+	protected String dbsnpIndexList(String dbsnpPath) {
+		if (dbsnpPath == null)
+			return null;
+		return dbsnpPath + INDEX_SUFFIX;
+	}
+
 	public static void main(String[] args) {
 		VcfIndex index = new VcfIndex();
 
 		if (args.length < 2) {
-			System.err.println("java -Xmx10g -jar gaea-1.0.0.jar reference_path dbsnp_path output_path");
+			System.err.println("java -Xmx10g -jar gaea-1.0.0.jar reference_path dbsnp_path output_path [threads]");
 			System.exit(1);
 		}
+		if (args.length > 3)
+			index.setThreads(Integer.parseInt(args[3]));
 		
 		if(args.length == 2)
 			index.buildIndex(args[0], args[1], null);
@@ -26,6 +26,7 @@ import org.bgi.flexlab.gaea.data.mapreduce.input.header.SamHdfsFileHeader;
 import org.bgi.flexlab.gaea.data.mapreduce.partitioner.WindowsBasedComparator;
 import org.bgi.flexlab.gaea.data.mapreduce.partitioner.WindowsBasedPartitioner;
 import org.bgi.flexlab.gaea.data.mapreduce.partitioner.WindowsBasedSort;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.ProjectedSamRecordWritable;
 import org.bgi.flexlab.gaea.data.structure.bam.filter.util.SamRecordFilter;
 import org.seqdoop.hadoop_bam.SAMFormat;
 
@@ -75,6 +76,42 @@ public class BioJob extends Job {
 		setWindowsBasicMapperClass(cls, windowsSize, windowsExtendSize);
 	}
 
+	/*
+	 * shuffle projected sam records, only for reducers that never write the reads back
+	 */
+	public void setShuffleProjection() {
+		conf.setBoolean(WindowsBasedMapper.SHUFFLE_PROJECTION, true);
+		setMapOutputValueClass(ProjectedSamRecordWritable.class);
+	}
+
+	/*
+	 * balance the windows over the reducers by the reads sampled from a fraction of the input splits,
+	 * once the mapper, reducer number, input format and input paths are set
+	 */
+	public void setBalancedWindowsPartitioner(double splitFraction, Path table) {
+		try {
+			new WindowsBasedSampler(this).writePartitionTable(splitFraction, table);
+		} catch (IOException | InterruptedException e) {
+			throw new RuntimeException(e.toString());
+		}
+	}
+
+	/*
+	 * cap the reads of a sample sharing an alignment start in the windows based mappers
+	 */
+	public void setMaxReadsPerStart(int maxReadsPerStart) {
+		conf.setInt(WindowsBasedMapper.MAX_READS_PER_START, maxReadsPerStart);
+	}
+
+	/*
+	 * cap the reads per start, counting only the reads the filter keeps;
+	 * filtered reads are sent on without counting
+	 */
+	public void setMaxReadsPerStart(int maxReadsPerStart, Class<? extends SamRecordFilter> cls) {
+		setMaxReadsPerStart(maxReadsPerStart);
+		conf.setClass(WindowsBasedMapper.DOWNSAMPLING_FILTER, cls, SamRecordFilter.class);
+	}
+
 	public void setMultipleSample() {
 		conf.setBoolean(WindowsBasedMapper.MULTIPLE_SAMPLE, true);
 	}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.framework.tools.mapreduce;
+
+import htsjdk.samtools.SAMRecord;
+import org.bgi.flexlab.gaea.util.SamRecordUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Map side positional downsampler: of the reads of a sample sharing an
+ * alignment start, at most maxReadsPerStart are sent to the shuffle.
+ *
+ * The reads kept are the ones whose read names hash lowest, so the choice
+ * doesn't depend on the split or the order of the reads, and both mates of a
+ * pair have the same priority. The reads of one start are held back until a
+ * read with another start comes, which needs coordinate sorted input to keep
+ * the held reads few; on unsorted input a start may be seen more than once
+ * and keep more reads.
+ *
+ * Only reads passing the reducer's read filters may be added here, the others
+ * go to the shuffle as they are, so at every start each sample still sends at
+ * least min(maxReadsPerStart, reads passing the filters) reads to the window
+ * of that start. A start cut at a split boundary keeps up to maxReadsPerStart
+ * reads in each split. The reducer's downsampler always has at least as many
+ * reads to choose from as it keeps; which reads it ends up with can still
+ * differ from a run without map side downsampling, and the reducer still caps
+ * every start itself.
+ */
+class WindowsBasedDownsampler {
+	private final int maxReadsPerStart;
+
+	private final ArrayList<SAMRecord> held = new ArrayList<SAMRecord>();
+	private int heldReference = SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX;
+	private int heldStart = SAMRecord.NO_ALIGNMENT_START;
+
+	private final ArrayList<SAMRecord> released = new ArrayList<SAMRecord>();
+	private long droppedReads = 0;
+
+	WindowsBasedDownsampler(int maxReadsPerStart) {
+		this.maxReadsPerStart = maxReadsPerStart;
+	}
+
+	/**
+	 * add a mapped read
+	 *
+	 * @return the reads kept of the starts before this read
+	 */
+	List<SAMRecord> add(SAMRecord read) {
+		released.clear();
+		if (read.getReferenceIndex() != heldReference || read.getAlignmentStart() != heldStart) {
+			release();
+			heldReference = read.getReferenceIndex();
+			heldStart = read.getAlignmentStart();
+		}
+		held.add(read);
+		return released;
+	}
+
+	/**
+	 * @return the reads kept of the held start
+	 */
+	List<SAMRecord> flush() {
+		released.clear();
+		release();
+		return released;
+	}
+
+	long getDroppedReads() {
+		return droppedReads;
+	}
+
+	private void release() {
+		if (held.size() <= maxReadsPerStart) {
+			released.addAll(held);
+			held.clear();
+			return;
+		}
+
+		Map<String, List<Integer>> samples = new HashMap<String, List<Integer>>();
+		for (int i = 0; i < held.size(); i++) {
+			String sample = held.get(i).getReadGroup() == null ? null : held.get(i).getReadGroup().getSample();
+			List<Integer> reads = samples.get(sample);
+			if (reads == null) {
+				reads = new ArrayList<Integer>();
+				samples.put(sample, reads);
+			}
+			reads.add(i);
+		}
+
+		boolean[] keep = new boolean[held.size()];
+		for (List<Integer> reads : samples.values()) {
+			if (reads.size() <= maxReadsPerStart) {
+				for (int i : reads)
+					keep[i] = true;
+				continue;
+			}
+
+			long[] priorities = new long[reads.size()];
+			for (int i = 0; i < priorities.length; i++)
+				priorities[i] = SamRecordUtils.readNameHash(held.get(reads.get(i)).getReadName());
+			long[] sorted = priorities.clone();
+			Arrays.sort(sorted);
+			long cut = sorted[maxReadsPerStart - 1];
+			int atCut = 0;
+			for (int i = 0; i < maxReadsPerStart; i++) {
+				if (sorted[i] == cut)
+					atCut++;
+			}
+
+			// the reads below the cut, and in input order as many at the cut as fit
+			for (int i = 0; i < priorities.length; i++) {
+				if (priorities[i] < cut || (priorities[i] == cut && atCut-- > 0))
+					keep[reads.get(i)] = true;
+			}
+			droppedReads += reads.size() - maxReadsPerStart;
+		}
+
+		for (int i = 0; i < held.size(); i++) {
+			if (keep[i])
+				released.add(held.get(i));
+		}
+		held.clear();
+	}
+}
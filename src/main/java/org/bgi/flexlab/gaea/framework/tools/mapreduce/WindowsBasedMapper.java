@@ -26,6 +26,7 @@ import org.apache.hadoop.mapreduce.Mapper;
 import org.bgi.flexlab.gaea.data.exception.FileNotExistException;
 import org.bgi.flexlab.gaea.data.mapreduce.input.bed.RegionHdfsParser;
 import org.bgi.flexlab.gaea.data.mapreduce.input.header.SamHdfsFileHeader;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.ProjectedSamRecordWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
 import org.bgi.flexlab.gaea.data.structure.bam.filter.util.SamRecordFilter;
@@ -45,6 +46,9 @@ public abstract class WindowsBasedMapper<VALUEOUT extends Writable> extends
 	public final static String REFERENCE_REGION = "reference.region.bed";
 	public final static String UNMAPPED_REFERENCE_NAME = "UNMAPPED";
 	public final static String BASERECALIBRATOR_ONLY = "base.recalibrator.only";
+	public final static String SHUFFLE_PROJECTION = "windows.shuffle.projection";
+	public final static String MAX_READS_PER_START = "windows.max.reads.per.start";
+	public final static String DOWNSAMPLING_FILTER = "windows.downsampling.filter";
 
 	protected int windowsSize;
 	protected int windowsExtendSize;
@@ -56,6 +60,8 @@ public abstract class WindowsBasedMapper<VALUEOUT extends Writable> extends
 	private SamRecordFilter recordFilter = null;
 	private RegionHdfsParser region = null;
 	private RegionHdfsParser regionExtend = null;
+	private WindowsBasedDownsampler downsampler = null;
+	private SamRecordFilter downsamplingFilter = null;
 	protected VALUEOUT outputValue;
 
 	protected HashMap<String, Integer> sampleIDs = null;
@@ -105,10 +111,30 @@ public abstract class WindowsBasedMapper<VALUEOUT extends Writable> extends
 			regionExtend.parseBedFileFromHDFS(conf.get(REFERENCE_REGION), true);
 		}
 
+		int maxReadsPerStart = conf.getInt(MAX_READS_PER_START, 0);
+		if (maxReadsPerStart > 0) {
+			downsampler = new WindowsBasedDownsampler(maxReadsPerStart);
+			String filterName = conf.get(DOWNSAMPLING_FILTER);
+			if (filterName != null) {
+				try {
+					downsamplingFilter = (SamRecordFilter) (Class.forName(filterName).newInstance());
+				} catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+
 		otherSetup(context);
 	}
 
 	protected int[] getExtendPosition(int start, int end, int length) {
+		return getExtendPosition(start, end, length, windowsSize, windowsExtendSize);
+	}
+
+	/*
+	 * the window of a read and the windows its extension reaches on each side
+	 */
+	static int[] getExtendPosition(int start, int end, int length, int windowsSize, int windowsExtendSize) {
 		int[] winNum = new int[3];
 
 		winNum[1] = (int) (((start - windowsExtendSize) > 0 ? (start - windowsExtendSize) : 0) / windowsSize);
@@ -143,6 +169,18 @@ public abstract class WindowsBasedMapper<VALUEOUT extends Writable> extends
 		if (recordFilter.filter(sam, regionExtend)) {
 			return;
 		}
+
+		// reads the reducer filters out before its downsampler don't count toward the cap
+		if (downsampler != null && !SamRecordUtils.isUnmapped(sam)
+				&& (downsamplingFilter == null || !downsamplingFilter.filter(sam, null))) {
+			for (SAMRecord read : downsampler.add(sam))
+				write(read, context);
+			return;
+		}
+		write(sam, context);
+	}
+
+	private void write(SAMRecord sam, Context context) throws IOException, InterruptedException {
 		setOutputValue(sam);
 
 		if (SamRecordUtils.isUnmapped(sam)) {
@@ -171,6 +209,16 @@ public abstract class WindowsBasedMapper<VALUEOUT extends Writable> extends
 
 	@Override
 	protected void cleanup(Context context) throws IOException, InterruptedException {
+		if (downsampler != null) {
+			for (SAMRecord read : downsampler.flush())
+				write(read, context);
+			context.getCounter("MAP DOWNSAMPLING", "dropped reads").increment(downsampler.getDroppedReads());
+		}
+		if (outputValue instanceof ProjectedSamRecordWritable) {
+			ProjectedSamRecordWritable projected = (ProjectedSamRecordWritable) outputValue;
+			context.getCounter("SHUFFLE PROJECTION", "records").increment(projected.getWrittenRecords());
+			context.getCounter("SHUFFLE PROJECTION", "bytes saved").increment(projected.getWrittenBytesSaved());
+		}
 		sampleIDs.clear();
 	}
 }
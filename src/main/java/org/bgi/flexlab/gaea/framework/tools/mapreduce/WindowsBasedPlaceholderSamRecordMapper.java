@@ -20,6 +20,7 @@ import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMSequenceRecord;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.LongWritable;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.ProjectedSamRecordWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
 import org.bgi.flexlab.gaea.util.SamRecordUtils;
 
@@ -32,6 +33,8 @@ public class WindowsBasedPlaceholderSamRecordMapper extends WindowsBasedMapper<S
     @Override
     void otherSetup(Context context) throws IOException, InterruptedException {
         Configuration conf = context.getConfiguration();
+        if (conf.getBoolean(SHUFFLE_PROJECTION, false))
+            outputValue = new ProjectedSamRecordWritable(header, conf);
         if(!conf.getBoolean(WINDOWS_OUTPUT_ALL, false))
             return;
 
@@ -74,7 +77,10 @@ public class WindowsBasedPlaceholderSamRecordMapper extends WindowsBasedMapper<S
 
     @Override
     void setOutputValue(SAMRecord samRecord) {
-        outputValue.set(samRecord);
+        if (outputValue instanceof ProjectedSamRecordWritable)
+            ((ProjectedSamRecordWritable) outputValue).project(samRecord);
+        else
+            outputValue.set(samRecord);
     }
 
     @Override
@@ -17,6 +17,8 @@
 package org.bgi.flexlab.gaea.framework.tools.mapreduce;
 
 import htsjdk.samtools.SAMRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.ProjectedSamRecordWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
 
 /**
@@ -26,12 +28,17 @@ public class WindowsBasedSamRecordMapper extends WindowsBasedMapper<SamRecordWri
 
     @Override
     void otherSetup(Context context) {
-
+        Configuration conf = context.getConfiguration();
+        if (conf.getBoolean(SHUFFLE_PROJECTION, false))
+            outputValue = new ProjectedSamRecordWritable(header, conf);
     }
 
     @Override
     void setOutputValue(SAMRecord samRecord) {
-        outputValue.set(samRecord);
+        if (outputValue instanceof ProjectedSamRecordWritable)
+            ((ProjectedSamRecordWritable) outputValue).project(samRecord);
+        else
+            outputValue.set(samRecord);
     }
 
     @Override
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.framework.tools.mapreduce;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.bgi.flexlab.gaea.data.mapreduce.input.header.SamHdfsFileHeader;
+import org.bgi.flexlab.gaea.data.mapreduce.partitioner.WindowsBasedBalancedPartitioner;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
+import org.bgi.flexlab.gaea.data.structure.bam.filter.util.SamRecordFilter;
+import org.bgi.flexlab.gaea.util.SamRecordUtils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Pre-pass of a windows based job that reads a fraction of the input splits,
+ * counts the reads every window gets as the windows based mappers would send
+ * them, and balances the windows over the reducers by those counts.
+ *
+ * The windows are assigned heaviest first, each to the reducer with the least
+ * load. A window heavier than HEAVY_WINDOW_FACTOR times the mean reducer load
+ * keeps its reducer to itself. The table is written to the distributed cache
+ * for {@link WindowsBasedBalancedPartitioner}; windows no sampled read falls
+ * in are partitioned as before.
+ */
+public class WindowsBasedSampler {
+	private final static double HEAVY_WINDOW_FACTOR = 1.0;
+
+	private final BioJob job;
+	private final Configuration conf;
+	private final SAMFileHeader header;
+	private final int windowsSize;
+	private final int windowsExtendSize;
+	private final boolean multiSample;
+	private final SamRecordFilter recordFilter;
+	private final HashMap<String, Integer> sampleIDs = new HashMap<String, Integer>();
+	private final WindowsBasedWritable key = new WindowsBasedWritable();
+
+	public WindowsBasedSampler(BioJob job) {
+		this.job = job;
+		this.conf = job.getConfiguration();
+		windowsSize = conf.getInt(WindowsBasedMapper.WINDOWS_SIZE, 10000);
+		windowsExtendSize = conf.getInt(WindowsBasedMapper.WINDOWS_EXTEND_SIZE, 500);
+		multiSample = conf.getBoolean(WindowsBasedMapper.MULTIPLE_SAMPLE, false);
+
+		header = SamHdfsFileHeader.getHeader(conf);
+		if (header == null)
+			throw new RuntimeException("missing sam header for window sampling");
+
+		List<SAMReadGroupRecord> list = header.getReadGroups();
+		for (int i = 0; i < list.size(); i++) {
+			sampleIDs.put(list.get(i).getSample(), i);
+		}
+
+		String className = conf.get(WindowsBasedMapper.SAM_RECORD_FILTER);
+		if (className == null) {
+			recordFilter = new SamRecordFilter.DefaultSamRecordFilter();
+		} else {
+			try {
+				recordFilter = (SamRecordFilter) (Class.forName(className).newInstance());
+			} catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * sample the input and use the balanced partitioner with the table written to tablePath
+	 *
+	 * @param splitFraction
+	 *            fraction of the input splits read
+	 */
+	public void writePartitionTable(double splitFraction, Path tablePath)
+			throws IOException, InterruptedException {
+		Long2LongOpenHashMap windowReads = sample(splitFraction);
+
+		long[] windows = windowReads.keySet().toLongArray();
+		long[] costs = new long[windows.length];
+		for (int i = 0; i < windows.length; i++)
+			costs[i] = windowReads.get(windows[i]);
+		int partitions = job.getNumReduceTasks();
+		int[] windowPartitions = balance(costs, partitions);
+
+		FileSystem fs = tablePath.getFileSystem(conf);
+		DataOutputStream out = fs.create(tablePath, true);
+		WindowsBasedBalancedPartitioner.writeTable(out, partitions, windows, windowPartitions);
+		out.close();
+
+		Path table = fs.makeQualified(tablePath);
+		conf.set(WindowsBasedBalancedPartitioner.PARTITION_TABLE, table.toString());
+		try {
+			URI tableURI = new URI(table.toString() + "#" + WindowsBasedBalancedPartitioner.PARTITION_TABLE_NAME);
+			if (!"file".equals(tableURI.getScheme()))
+				job.addCacheFile(tableURI);
+		} catch (URISyntaxException e) {
+			throw new RuntimeException(e.toString());
+		}
+		job.setPartitionerClass(WindowsBasedBalancedPartitioner.class);
+	}
+
+	/**
+	 * reads of every sampled window, scaled to the whole input
+	 */
+	@SuppressWarnings("unchecked")
+	private Long2LongOpenHashMap sample(double splitFraction) throws IOException, InterruptedException {
+		InputFormat<LongWritable, SamRecordWritable> inf;
+		try {
+			inf = (InputFormat<LongWritable, SamRecordWritable>) ReflectionUtils
+					.newInstance(job.getInputFormatClass(), conf);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException(e.toString());
+		}
+
+		List<InputSplit> splits = inf.getSplits(job);
+		int step = Math.max(1, (int) Math.round(1 / splitFraction));
+		Long2LongOpenHashMap windowReads = new Long2LongOpenHashMap();
+
+		System.err.printf("windows sampler :: reading %d of %d splits...\n", (splits.size() + step - 1) / step,
+				splits.size());
+		for (int i = 0; i < splits.size(); i += step) {
+			TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+			RecordReader<LongWritable, SamRecordWritable> reader = inf.createRecordReader(splits.get(i), context);
+			reader.initialize(splits.get(i), context);
+			while (reader.nextKeyValue()) {
+				countWindows(reader.getCurrentValue().get(), windowReads, step);
+			}
+			reader.close();
+		}
+		return windowReads;
+	}
+
+	private void countWindows(SAMRecord sam, Long2LongOpenHashMap windowReads, int weight) {
+		if (SamRecordUtils.isUnmapped(sam) || recordFilter.filter(sam, null))
+			return;
+		if (sam.getHeader() == null)
+			sam.setHeader(header);
+
+		int sampleID = 0;
+		if (multiSample) {
+			Integer id = sampleIDs.get(sam.getReadGroup().getSample());
+			if (id == null)
+				return;
+			sampleID = id;
+		}
+
+		int[] winNums = WindowsBasedMapper.getExtendPosition(sam.getAlignmentStart(), sam.getAlignmentEnd(),
+				header.getSequence(sam.getReferenceName()).getSequenceLength(), windowsSize, windowsExtendSize);
+		for (int i = 0; i < 3; i++) {
+			if (i != 0 && winNums[i] == winNums[0])
+				continue;
+			key.set(sampleID, sam.getReferenceIndex(), winNums[i], sam.getAlignmentStart());
+			windowReads.addTo(key.getWindows(), weight);
+		}
+	}
+
+	/**
+	 * assign the windows heaviest first to the least loaded partition
+	 */
+	static int[] balance(final long[] costs, int partitions) {
+		Integer[] order = new Integer[costs.length];
+		long total = 0;
+		for (int i = 0; i < costs.length; i++) {
+			order[i] = i;
+			total += costs[i];
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(costs[b], costs[a]));
+
+		final long[] loads = new long[partitions];
+		PriorityQueue<Integer> open = new PriorityQueue<Integer>(partitions,
+				(a, b) -> loads[a] != loads[b] ? Long.compare(loads[a], loads[b]) : Integer.compare(a, b));
+		for (int p = 0; p < partitions; p++)
+			open.add(p);
+
+		double heavy = HEAVY_WINDOW_FACTOR * total / partitions;
+		int[] windowPartitions = new int[costs.length];
+		for (int index : order) {
+			int p = open.poll();
+			windowPartitions[index] = p;
+			loads[p] += costs[index];
+			// a heavy window keeps its partition to itself
+			if (costs[index] < heavy || open.isEmpty())
+				open.add(p);
+		}
+		return windowPartitions;
+	}
+}
@@ -5,6 +5,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 
 /**
  * NewMapKey类，含有成员变量chr和pos，可作为map的输出key的类型，同时可以按照pos从小到大排序
@@ -16,6 +17,34 @@ public class NewMapKey implements WritableComparable<NewMapKey>{
 	private String chr;
 	private int pos;
 	private int end;
+
+	/**
+	 * 直接比较序列化后的字节，排序规则与compareTo相同
+	 */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(NewMapKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			int c1 = readUnsignedShort(b1, s1);
+			int c2 = readUnsignedShort(b2, s2);
+			int num = compareBytes(b2, s2 + 2, c2, b1, s1 + 2, c1);
+			if (num != 0)
+				return num;
+			s1 += 2 + c1;
+			s2 += 2 + c2;
+			int npos = Integer.compare(readInt(b1, s1), readInt(b2, s2));
+			if (npos != 0)
+				return npos;
+			return Integer.compare(readInt(b1, s1 + 4), readInt(b2, s2 + 4));
+		}
+	}
+
+	static {
+		WritableComparator.define(NewMapKey.class, new Comparator());
+	}
 	
 	/**
 	 * 空构造函数
@@ -25,6 +25,14 @@ public class ReduceGroupingComparator extends WritableComparator{
 	
 		return o1.getChr().compareTo(o2.getChr());
 	}
+
+	/**
+	 * 只比较序列化后的chr字节，不反序列化
+	 */
+	@Override
+	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+		return compareBytes(b1, s1 + 2, readUnsignedShort(b1, s1), b2, s2 + 2, readUnsignedShort(b2, s2));
+	}
 	
 
 }
@@ -2,6 +2,11 @@ package org.bgi.flexlab.gaea.tools.haplotypecaller;
 
 import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
@@ -16,6 +21,7 @@ import org.bgi.flexlab.gaea.tools.haplotypecaller.assembly.ActivityProfileState;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.assembly.AssemblyRegion;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.downsampler.PositionalDownsampler;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.engine.HaplotypeCallerEngine;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.engine.PairHMMLikelihoodCalculationEngine;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.engine.VariantAnnotatorEngine;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.pileup.AssemblyRegionIterator;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.readfilter.CountingReadFilter;
@@ -99,7 +105,40 @@ public class HaplotypeCallerTraversal {
 
 	private boolean doNotRunPhysicalPhasing = false;
 
+	// pool calling assembly regions, null to call them on the reducer thread
+	private ForkJoinPool regionPool = null;
+
+	// engines of the pool, each one calls one region at a time
+	private final List<HaplotypeCallerEngine> workerEngines = new ArrayList<>();
+	private final BlockingQueue<HaplotypeCallerEngine> idleEngines = new LinkedBlockingQueue<>();
+
+	// regions in calling, results are written in this order
+	private final ArrayDeque<PendingRegion> pendingRegions = new ArrayDeque<>();
+	private int maxPendingRegions = 0;
+
+	private static class PendingRegion {
+		private final Future<List<VariantContext>> results;
+		private final int shardStart;
+		private final int shardEnd;
+
+		private PendingRegion(Future<List<VariantContext>> results, int shardStart, int shardEnd) {
+			this.results = results;
+			this.shardStart = shardStart;
+			this.shardEnd = shardEnd;
+		}
+	}
+
 	public HaplotypeCallerTraversal(RegionHdfsParser region, HaplotypeCallerOptions options, SAMFileHeader header) {
+		this(region, options, header, null);
+	}
+
+	/**
+	 * @param regionPool
+	 *            pool shared by the traversals of a reducer to call assembly
+	 *            regions, may be null
+	 */
+	public HaplotypeCallerTraversal(RegionHdfsParser region, HaplotypeCallerOptions options, SAMFileHeader header,
+			ForkJoinPool regionPool) {
 		this.options = options;
 		this.region = region;
 		this.header = header;
@@ -107,6 +146,17 @@ public class HaplotypeCallerTraversal {
 		hcEngine = new HaplotypeCallerEngine(hcArgs, header);
 		setHeader();
 		maxReadsPerAlignmentStart = options.getMaxReadsPerPosition();
+
+		if (regionPool != null) {
+			this.regionPool = regionPool;
+			// engines are not thread safe, every worker gets its own
+			for (int i = 0; i < regionPool.getParallelism(); i++) {
+				HaplotypeCallerEngine engine = new HaplotypeCallerEngine(hcArgs, header);
+				workerEngines.add(engine);
+				idleEngines.add(engine);
+			}
+			maxPendingRegions = regionPool.getParallelism() * 4;
+		}
 	}
 
 	private void setHeader() {
@@ -227,6 +277,8 @@ public class HaplotypeCallerTraversal {
 		this.features = features;
 		hcArgs.dbsnp = features.getValues("DB");
 		hcEngine.initializeAnnotationEngine(hcArgs,ref);
+		for (HaplotypeCallerEngine engine : workerEngines)
+			engine.initializeAnnotationEngine(hcArgs, ref);
 		makeReadsShard(options.getReadShardSize(), options.getReadShardPadding(),win);
 	}
 
@@ -302,7 +354,7 @@ public class HaplotypeCallerTraversal {
 		return filters;
 	}
 	
-	public List<ReadFilter> makeStandardHCReadFilters() {
+	public static List<ReadFilter> makeStandardHCReadFilters() {
         List<ReadFilter> filters = new ArrayList<>();
         filters.add(new MappingQualityReadFilter(READ_QUALITY_FILTER_THRESHOLD));
         filters.add(ReadFilterLibrary.MAPPING_QUALITY_AVAILABLE);
@@ -331,6 +383,8 @@ public class HaplotypeCallerTraversal {
 
 			processReadShard(readShard, features, writer);
 		}
+		while (!pendingRegions.isEmpty())
+			writeNextPendingRegion(writer);
 	}
 
 	private void processReadShard(Shard<GaeaSamRecord> shard, RefMetaDataTracker features,
@@ -347,17 +401,70 @@ public class HaplotypeCallerTraversal {
 			if(assemblyRegion.isActive() && x > 1200000)
 				downSampleOfAssemblyRegion(assemblyRegion, 20);
 			writeAssemblyRegion(assemblyRegion);
-			List<VariantContext> results = apply(assemblyRegion, features);
 
-//			todo 注意shard regoin 边界问题
-			for (VariantContext context : results) {
-				if(context.getStart() > shard.getStart() && context.getStart() <= shard.getEnd()) {
-					writer.add(context);
-				}
+			if (regionPool == null) {
+				writeResults(apply(assemblyRegion, features), shard.getStart(), shard.getEnd(), writer);
+				continue;
+			}
+
+			// consecutive regions share reads and calling changes them in place,
+			// so a region called on the pool gets its own copies to not depend
+			// on the order regions are called in
+			isolateReads(assemblyRegion);
+			pendingRegions.add(new PendingRegion(regionPool.submit(() -> callRegion(assemblyRegion, features)),
+					shard.getStart(), shard.getEnd()));
+			while (pendingRegions.size() > maxPendingRegions
+					|| (!pendingRegions.isEmpty() && pendingRegions.peek().results.isDone()))
+				writeNextPendingRegion(writer);
+		}
+	}
+
+	private void writeResults(List<VariantContext> results, int shardStart, int shardEnd,
+			GaeaVariantContextWriter writer) {
+//		todo 注意shard regoin 边界问题
+		for (VariantContext context : results) {
+			if(context.getStart() > shardStart && context.getStart() <= shardEnd) {
+				writer.add(context);
 			}
 		}
 	}
 
+	/**
+	 * wait for the oldest region and write its results
+	 */
+	private void writeNextPendingRegion(GaeaVariantContextWriter writer) {
+		PendingRegion pending = pendingRegions.poll();
+		List<VariantContext> results;
+		try {
+			results = pending.results.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e.toString());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause().toString());
+		}
+		writeResults(results, pending.shardStart, pending.shardEnd, writer);
+	}
+
+	private List<VariantContext> callRegion(final AssemblyRegion region, final RefMetaDataTracker featureContext)
+			throws InterruptedException {
+		HaplotypeCallerEngine engine = idleEngines.take();
+		try {
+			return engine.callRegion(region, featureContext);
+		} finally {
+			idleEngines.add(engine);
+		}
+	}
+
+	private static void isolateReads(AssemblyRegion assemblyRegion) {
+		List<GaeaSamRecord> copies = new ArrayList<>(assemblyRegion.size());
+		for (GaeaSamRecord read : assemblyRegion.getReads())
+			copies.add(read.deepCopy());
+		assemblyRegion.clearReads();
+		assemblyRegion.addAll(copies);
+	}
+
 	private void downSampleOfAssemblyRegion(AssemblyRegion assemblyRegion, int maxReadsWithSameStart){
 //		System.err.println("assemblyRegion:"+assemblyRegion.getContig() + ":" + assemblyRegion.getStart() + "-" + assemblyRegion.getEnd());
 		maxReadsWithSameStart = maxReadsWithSameStart/2;
@@ -439,6 +546,37 @@ public class HaplotypeCallerTraversal {
 		this.shards.clear();
 	}
 	
+	/**
+	 * milliseconds spent building assembly graphs by all engines, by kmer size
+	 */
+	public Map<Integer, Long> getKmerAssemblyMillis() {
+		Map<Integer, Long> millis = new TreeMap<>(hcEngine.getAssemblyEngine().getKmerAssemblyMillis());
+		for (HaplotypeCallerEngine engine : workerEngines)
+			engine.getAssemblyEngine().getKmerAssemblyMillis().forEach((k, v) -> millis.merge(k, v, Long::sum));
+		return millis;
+	}
+
+	/**
+	 * hits, misses and bypassed lookups of the PairHMM likelihood caches of all engines
+	 */
+	public long[] getLikelihoodCacheCounts() {
+		long[] counts = new long[3];
+		addLikelihoodCacheCounts(hcEngine, counts);
+		for (HaplotypeCallerEngine engine : workerEngines)
+			addLikelihoodCacheCounts(engine, counts);
+		return counts;
+	}
+
+	private static void addLikelihoodCacheCounts(HaplotypeCallerEngine engine, long[] counts) {
+		if (!(engine.getLikelihoodCalculationEngine() instanceof PairHMMLikelihoodCalculationEngine))
+			return;
+		PairHMMLikelihoodCalculationEngine likelihoodEngine = (PairHMMLikelihoodCalculationEngine) engine
+				.getLikelihoodCalculationEngine();
+		counts[0] += likelihoodEngine.getLikelihoodCacheHits();
+		counts[1] += likelihoodEngine.getLikelihoodCacheMisses();
+		counts[2] += likelihoodEngine.getLikelihoodCacheBypassed();
+	}
+
 	public int getWindowReadsNumber() {
 		return this.readsSource.getReadsNumber();
 	}
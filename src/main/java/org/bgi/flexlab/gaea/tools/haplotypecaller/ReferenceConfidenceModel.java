@@ -10,8 +10,6 @@ import java.util.Set;
 import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
 import org.bgi.flexlab.gaea.data.structure.location.GenomeLocation;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.assembly.AssemblyRegion;
-import org.bgi.flexlab.gaea.tools.haplotypecaller.pileup.AlignmentContext;
-import org.bgi.flexlab.gaea.tools.haplotypecaller.pileup.LocusIteratorByState;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.pileup.PileupElement;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.pileup.ReadPileup;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.utils.AlignmentUtils;
@@ -66,6 +64,9 @@ public final class ReferenceConfidenceModel {
 
     private static final int INITIAL_INDEL_LK_CACHE_PLOIDY_CAPACITY = 20;
     private static GenotypeLikelihoods[][] indelPLCache = new GenotypeLikelihoods[INITIAL_INDEL_LK_CACHE_PLOIDY_CAPACITY + 1][];
+    private static double[][][][] refVsAnyLikelihoodCache = new double[INITIAL_INDEL_LK_CACHE_PLOIDY_CAPACITY + 1][][][];
+    static final int REF_LIKELIHOODS = 0;
+    static final int NON_REF_LIKELIHOODS = 1;
 
     /**
      * Indel error rate for the indel model used to assess the confidence on the hom-ref call.
@@ -158,22 +159,29 @@ public final class ReferenceConfidenceModel {
         final int ploidy = ploidyModel.samplePloidy(0); // the first sample = the only sample in reference-confidence mode.
 
         final GenomeLocation refSpan = activeRegion.getSpan();
-        final List<ReadPileup> refPileups = getPileupsOverReference(refHaplotype, calledHaplotypes, paddedReferenceLoc, activeRegion, refSpan, readLikelihoods);
         final byte[] ref = refHaplotype.getBases();
         final List<VariantContext> results = new ArrayList<>(refSpan.size());
         final String sampleName = readLikelihoods.getSample(0);
 
         final int globalRefOffset = refSpan.getStart() - activeRegion.getExtendedSpan().getStart();
-        for ( final ReadPileup pileup : refPileups ) {
-            final Locatable curPos = pileup.getLocation();
-            final int offset = curPos.getStart() - refSpan.getStart();
+        final ReferenceConfidencePileupSummary summary = new ReferenceConfidencePileupSummary(activeRegion.getReads(),
+                refSpan, ref, globalRefOffset, refVsAnyLikelihoodCache(ploidy)[REF_LIKELIHOODS], BASE_QUAL_THRESHOLD,
+                indelInformativeDepthIndelSize, MAX_N_INDEL_INFORMATIVE_READS);
+        for ( int offset = 0; offset < refSpan.size(); offset++ ) {
+            final int position = refSpan.getStart() + offset;
+            final Locatable curPos = new GenomeLocation(refSpan.getContig(), position, position);
 
             final VariantContext overlappingSite = getOverlappingVariantContext(curPos, variantCalls);
             if ( overlappingSite != null && overlappingSite.getStart() == curPos.getStart() ) {
                 results.add(overlappingSite);
+            } else if ( summary.hasVariantEvidence(offset) ) {
+                // the full model, where some read isn't a plain reference match
+                results.add(makeReferenceConfidenceVariantContext(ploidy, ref, sampleName, globalRefOffset, summary.getPileup(offset), curPos, offset));
             } else {
-                // otherwise emit a reference confidence variant context
-                results.add(makeReferenceConfidenceVariantContext(ploidy, ref, sampleName, globalRefOffset, pileup, curPos, offset));
+                // otherwise emit a reference confidence variant context from the summary
+                final RefVsAnyResult homRefCalc = calcGenotypeLikelihoodsOfRefVsAny(ploidy, summary, offset);
+                results.add(makeReferenceConfidenceVariantContext(ploidy, ref[globalRefOffset + offset], sampleName, curPos,
+                        homRefCalc, summary.getIndelInformativeReads(offset)));
             }
         }
 
@@ -191,7 +199,16 @@ public final class ReferenceConfidenceModel {
         final int refOffset = offset + globalRefOffset;
         final byte refBase = ref[refOffset];
         final RefVsAnyResult homRefCalc = calcGenotypeLikelihoodsOfRefVsAny(ploidy, pileup, refBase, BASE_QUAL_THRESHOLD, null);
+        final int nIndelInformativeReads = calcNIndelInformativeReads(pileup, refOffset, ref, indelInformativeDepthIndelSize);
+        return makeReferenceConfidenceVariantContext(ploidy, refBase, sampleName, curPos, homRefCalc, nIndelInformativeReads);
+    }
 
+    private VariantContext makeReferenceConfidenceVariantContext(final int ploidy,
+                                                                 final byte refBase,
+                                                                 final String sampleName,
+                                                                 final Locatable curPos,
+                                                                 final RefVsAnyResult homRefCalc,
+                                                                 final int nIndelInformativeReads) {
         final Allele refAllele = Allele.create(refBase, true);
         final List<Allele> refSiteAlleles = Arrays.asList(refAllele, GaeaVCFConstants.NON_REF_SYMBOLIC_ALLELE);
         final VariantContextBuilder vcb = new VariantContextBuilder("HC", curPos.getContig(), curPos.getStart(), curPos.getStart(), refSiteAlleles);
@@ -201,7 +218,6 @@ public final class ReferenceConfidenceModel {
 
         // genotype likelihood calculation
         final GenotypeLikelihoods snpGLs = GenotypeLikelihoods.fromLog10Likelihoods(homRefCalc.getGenotypeLikelihoodsCappedByHomRefLikelihood());
-        final int nIndelInformativeReads = calcNIndelInformativeReads(pileup, refOffset, ref, indelInformativeDepthIndelSize);
         final GenotypeLikelihoods indelGLs = getIndelPLs(ploidy,nIndelInformativeReads);
 
         // now that we have the SNP and indel GLs, we take the one with the least confidence,
@@ -253,7 +269,7 @@ public final class ReferenceConfidenceModel {
         return initializeIndelPLCache(ploidy)[nInformativeReads];
     }
 
-    private GenotypeLikelihoods[] initializeIndelPLCache(final int ploidy) {
+    private static synchronized GenotypeLikelihoods[] initializeIndelPLCache(final int ploidy) {
 
         if (indelPLCache.length <= ploidy) {
             indelPLCache = Arrays.copyOf(indelPLCache, ploidy << 1);
@@ -300,6 +316,7 @@ public final class ReferenceConfidenceModel {
 
         final int likelihoodCount = ploidy + 1;
         final double log10Ploidy = GvcfMathUtils.log10(ploidy);
+        final double[][][] likelihoodCache = refVsAnyLikelihoodCache(ploidy);
 
         final RefVsAnyResult result = new RefVsAnyResult(likelihoodCount);
         int readCount = 0;
@@ -309,77 +326,99 @@ public final class ReferenceConfidenceModel {
                 continue;
             }
             readCount++;
-            applyPileupElementRefVsNonRefLikelihoodAndCount(refBase, likelihoodCount, log10Ploidy, result, p, qual, hqSoftClips);
+            applyPileupElementRefVsNonRefLikelihoodAndCount(refBase, likelihoodCache, result, p, qual, hqSoftClips);
+        }
+        final double denominator = readCount * log10Ploidy;
+        for (int i = 0; i < likelihoodCount; i++) {
+            result.addGenotypeLikelihood(i, -denominator);
         }
+        return result;
+    }
+
+    /**
+     * Calculate the RefVsAny genotype likelihoods at a position of a pileup summary where all bases match the reference
+     */
+    private RefVsAnyResult calcGenotypeLikelihoodsOfRefVsAny(final int ploidy,
+                                                             final ReferenceConfidencePileupSummary summary,
+                                                             final int offset) {
+        final int likelihoodCount = ploidy + 1;
+        final double log10Ploidy = GvcfMathUtils.log10(ploidy);
+
+        final RefVsAnyResult result = new RefVsAnyResult(likelihoodCount);
+        final int readCount = summary.getRefDepth(offset);
+        result.incrementRefAD(readCount);
         final double denominator = readCount * log10Ploidy;
         for (int i = 0; i < likelihoodCount; i++) {
+            result.addGenotypeLikelihood(i, summary.getRefLikelihood(offset, i));
             result.addGenotypeLikelihood(i, -denominator);
         }
         return result;
     }
 
-    private void applyPileupElementRefVsNonRefLikelihoodAndCount(final byte refBase, final int likelihoodCount, final double log10Ploidy, final RefVsAnyResult result, final PileupElement element, final byte qual, final MathUtils.RunningAverage hqSoftClips) {
+    /**
+     * Get the likelihoods a pileup element adds in {@link #calcGenotypeLikelihoodsOfRefVsAny}, by base quality
+     *
+     * @param ploidy the requested ploidy.
+     * @return non-null likelihoods, ploidy + 1 values for each quality, indexed by {@link #REF_LIKELIHOODS} or
+     *         {@link #NON_REF_LIKELIHOODS} and then the unsigned quality; all 256 byte values have a row, as
+     *         base qualities above {@link QualityUtils#MAXIMUM_USABLE_QUALITY_SCORE} are legal in a bam
+     */
+    static synchronized double[][][] refVsAnyLikelihoodCache(final int ploidy) {
+        if (refVsAnyLikelihoodCache.length <= ploidy) {
+            refVsAnyLikelihoodCache = Arrays.copyOf(refVsAnyLikelihoodCache, ploidy << 1);
+        }
+
+        if (refVsAnyLikelihoodCache[ploidy] != null) {
+            return refVsAnyLikelihoodCache[ploidy];
+        }
+
+        final int likelihoodCount = ploidy + 1;
+        final double log10Ploidy = GvcfMathUtils.log10(ploidy);
+        final int qualCount = 256;
+        final double[][][] result = new double[2][qualCount][likelihoodCount];
+        for (int qual = 0; qual < qualCount; qual++) {
+            final double matchLikelihood = QualityUtils.qualToProbLog10((byte) qual);
+            final double mismatchLikelihood = QualityUtils.qualToErrorProbLog10((byte) qual) + GvcfMathUtils.LOG10_ONE_THIRD;
+            fillRefVsAnyLikelihoods(result[REF_LIKELIHOODS][qual], matchLikelihood, mismatchLikelihood, log10Ploidy);
+            fillRefVsAnyLikelihoods(result[NON_REF_LIKELIHOODS][qual], mismatchLikelihood, matchLikelihood, log10Ploidy);
+        }
+        refVsAnyLikelihoodCache[ploidy] = result;
+        return result;
+    }
+
+    private static void fillRefVsAnyLikelihoods(final double[] likelihoods, final double referenceLikelihood,
+                                                final double nonRefLikelihood, final double log10Ploidy) {
+        final int likelihoodCount = likelihoods.length;
+        // Homozygous likelihoods don't need the logSum trick.
+        likelihoods[0] = referenceLikelihood + log10Ploidy;
+        likelihoods[likelihoodCount - 1] = nonRefLikelihood + log10Ploidy;
+        // Heterozygous likelihoods need the logSum trick:
+        for (int i = 1, j = likelihoodCount - 2; i < likelihoodCount - 1; i++, j--) {
+            likelihoods[i] = MathUtils.approximateLog10SumLog10(
+                    referenceLikelihood + GvcfMathUtils.log10(j),
+                    nonRefLikelihood + GvcfMathUtils.log10(i));
+        }
+    }
+
+    private void applyPileupElementRefVsNonRefLikelihoodAndCount(final byte refBase, final double[][][] likelihoodCache, final RefVsAnyResult result, final PileupElement element, final byte qual, final MathUtils.RunningAverage hqSoftClips) {
         final boolean isAlt = element.getBase() != refBase || element.isDeletion() || element.isBeforeDeletionStart()
                 || element.isAfterDeletionEnd() || element.isBeforeInsertion() || element.isAfterInsertion() || element.isNextToSoftClip();
-        final double referenceLikelihood;
-        final double nonRefLikelihood;
+        final double[] likelihoods;
         if (isAlt) {
-            nonRefLikelihood = QualityUtils.qualToProbLog10(qual);
-            referenceLikelihood = QualityUtils.qualToErrorProbLog10(qual) + GvcfMathUtils.LOG10_ONE_THIRD;
+            likelihoods = likelihoodCache[NON_REF_LIKELIHOODS][qual & 0xff];
             result.incrementNonRefAD(1);
         } else {
-            referenceLikelihood = QualityUtils.qualToProbLog10(qual);
-            nonRefLikelihood = QualityUtils.qualToErrorProbLog10(qual) + GvcfMathUtils.LOG10_ONE_THIRD;
+            likelihoods = likelihoodCache[REF_LIKELIHOODS][qual & 0xff];
             result.incrementRefAD(1);
         }
-        // Homozygous likelihoods don't need the logSum trick.
-        result.addGenotypeLikelihood(0, referenceLikelihood + log10Ploidy);
-        result.addGenotypeLikelihood(likelihoodCount - 1, nonRefLikelihood + log10Ploidy);
-        // Heterozygous likelihoods need the logSum trick:
-        for (int i = 1, j = likelihoodCount - 2; i < likelihoodCount - 1; i++, j--) {
-            result.addGenotypeLikelihood(i,
-                    MathUtils.approximateLog10SumLog10(
-                            referenceLikelihood + GvcfMathUtils.log10(j),
-                            nonRefLikelihood + GvcfMathUtils.log10(i)));
+        for (int i = 0; i < likelihoods.length; i++) {
+            result.addGenotypeLikelihood(i, likelihoods[i]);
         }
         if (isAlt && hqSoftClips != null && element.isNextToSoftClip()) {
             hqSoftClips.add(AlignmentUtils.calcNumHighQualitySoftClips(element.getRead(), HQ_BASE_QUALITY_SOFTCLIP_THRESHOLD));
         }
     }
 
-    /**
-     * Get a list of pileups that span the entire active region span, in order, one for each position
-     */
-    private List<ReadPileup> getPileupsOverReference(final Haplotype refHaplotype,
-                                                           final Collection<Haplotype> calledHaplotypes,
-                                                           final GenomeLocation paddedReferenceLoc,
-                                                           final AssemblyRegion activeRegion,
-                                                           final GenomeLocation activeRegionSpan,
-                                                           final ReadLikelihoods<Haplotype> readLikelihoods) {
-        Utils.validateArg(calledHaplotypes.contains(refHaplotype), "calledHaplotypes must contain the refHaplotype");
-        Utils.validateArg(readLikelihoods.numberOfSamples() == 1, () -> "readLikelihoods must contain exactly one sample but it contained " + readLikelihoods.numberOfSamples());
-
-        final List<GaeaSamRecord> reads = activeRegion.getReads();
-
-        final LocusIteratorByState libs = new LocusIteratorByState(reads.iterator(), LocusIteratorByState.NO_DOWNSAMPLING,
-                false, samples.asSetOfSamples(), activeRegion.getHeader(), true);
-
-        final int startPos = activeRegionSpan.getStart();
-        final List<ReadPileup> pileups = new ArrayList<>(activeRegionSpan.getEnd() - startPos);
-        AlignmentContext next = libs.advanceToLocus(startPos, true);
-        for ( int curPos = startPos; curPos <= activeRegionSpan.getEnd(); curPos++ ) {
-            if ( next != null && next.getLocation().getStart() == curPos ) {
-                pileups.add(next.getBasePileup());
-                next = libs.hasNext() ? libs.next() : null;
-            } else {
-                // no data, so we create empty pileups
-                pileups.add(new ReadPileup(new GenomeLocation(activeRegionSpan.getContig(), curPos, curPos)));
-            }
-        }
-
-        return pileups;
-    }
-
     /**
      * Return the rightmost variant context in maybeOverlapping that overlaps curPos
      *
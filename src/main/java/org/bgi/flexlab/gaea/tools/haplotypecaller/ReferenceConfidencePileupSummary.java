@@ -0,0 +1,286 @@
+package org.bgi.flexlab.gaea.tools.haplotypecaller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
+import org.bgi.flexlab.gaea.data.structure.location.GenomeLocation;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.pileup.AlignmentStateMachine;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.pileup.PileupElement;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.pileup.ReadPileup;
+import org.bgi.flexlab.gaea.util.ReadUtils;
+
+import htsjdk.samtools.CigarOperator;
+
+/**
+ * Columnar summary of the pileups over the span of a region, used to compute the reference confidence
+ * without building a pileup at every position.
+ *
+ * The reads are streamed once, in pileup order. At a position where every base matches the reference and is
+ * not next to an indel or a soft clip, the RefVsAny likelihoods are summed from per base quality lookup tables
+ * and the indel informative reads are counted from per read mismatch sums. Pileups are only built for the
+ * positions with evidence for a variant, which go through the full model.
+ *
+ * Reads are handled as {@link org.bgi.flexlab.gaea.tools.haplotypecaller.pileup.LocusIteratorByState} does
+ * (bases inside adaptors and reference skips are left out), and the likelihoods are added in the same order, so
+ * the results are the same as with the full model.
+ */
+final class ReferenceConfidencePileupSummary {
+    private final GenomeLocation span;
+    private final int likelihoodCount;
+
+    /**
+     * bases matching the reference with a quality above the threshold, by position
+     */
+    private final int[] refDepths;
+
+    /**
+     * mismatching bases, deletions and bases next to an indel or a soft clip, by position
+     */
+    private final int[] evidenceDepths;
+
+    private final int[] indelInformativeReads;
+
+    /**
+     * RefVsAny likelihoods of the reference matching bases, likelihoodCount values by position
+     */
+    private final double[] refLikelihoods;
+
+    /**
+     * pileups of the positions with evidence for a variant, null elsewhere
+     */
+    private final ReadPileup[] pileups;
+
+    /**
+     * @param reads the reads of the region, sorted by coordinate
+     * @param span the positions to summarize
+     * @param ref the reference bases
+     * @param spanOffsetIntoRef offset into ref of the first position of span
+     * @param refMatchLikelihoods likelihoods added by a base matching the reference, by unsigned base quality
+     * @param minBaseQual bases at or below this quality don't count in the likelihoods
+     * @param maxIndelSize the max indel size in the indel informativeness calculation
+     * @param maxIndelInformativeReads indel informative reads are counted up to this number
+     */
+    ReferenceConfidencePileupSummary(final List<GaeaSamRecord> reads,
+                                     final GenomeLocation span,
+                                     final byte[] ref,
+                                     final int spanOffsetIntoRef,
+                                     final double[][] refMatchLikelihoods,
+                                     final byte minBaseQual,
+                                     final int maxIndelSize,
+                                     final int maxIndelInformativeReads) {
+        this.span = span;
+        this.likelihoodCount = refMatchLikelihoods[0].length;
+        final int size = span.size();
+        refDepths = new int[size];
+        evidenceDepths = new int[size];
+        indelInformativeReads = new int[size];
+        refLikelihoods = new double[size * likelihoodCount];
+        pileups = new ReadPileup[size];
+
+        boolean hasEvidence = false;
+        for ( final GaeaSamRecord read : reads ) {
+            if ( !overlapsSpan(read) ) {
+                continue;
+            }
+
+            final ReadMismatchSums mismatchSums = new ReadMismatchSums(read, ref);
+            final AlignmentStateMachine state = new AlignmentStateMachine(read);
+            while ( state.stepForwardOnGenome() != null ) {
+                final int position = state.getGenomePosition();
+                if ( position < span.getStart() ) {
+                    continue;
+                }
+                if ( position > span.getEnd() ) {
+                    break;
+                }
+                if ( !isInPileup(state, position) ) {
+                    continue;
+                }
+
+                final int offset = position - span.getStart();
+                final int refOffset = spanOffsetIntoRef + offset;
+                if ( !isReferenceMatch(state, ref[refOffset]) ) {
+                    evidenceDepths[offset]++;
+                    hasEvidence = true;
+                    continue;
+                }
+
+                final int readOffset = state.getReadOffset();
+                final byte qual = read.getBaseQuality(readOffset);
+                if ( qual > minBaseQual ) {
+                    refDepths[offset]++;
+                    final double[] likelihoods = refMatchLikelihoods[qual & 0xff];
+                    for ( int i = 0, j = offset * likelihoodCount; i < likelihoodCount; i++, j++ ) {
+                        refLikelihoods[j] += likelihoods[i];
+                    }
+                }
+                if ( indelInformativeReads[offset] <= maxIndelInformativeReads
+                        && mismatchSums.isInformativeAboutIndelsOfSize(readOffset, refOffset, maxIndelSize) ) {
+                    indelInformativeReads[offset]++;
+                }
+            }
+        }
+
+        for ( int offset = 0; offset < size; offset++ ) {
+            indelInformativeReads[offset] = Math.min(indelInformativeReads[offset], maxIndelInformativeReads);
+        }
+
+        if ( hasEvidence ) {
+            collectEvidencePileups(reads);
+        }
+    }
+
+    private boolean overlapsSpan(final GaeaSamRecord read) {
+        return read.getStart() <= span.getEnd() && read.getEnd() >= span.getStart();
+    }
+
+    /**
+     * Is the read at this state part of the pileup at position?
+     */
+    private static boolean isInPileup(final AlignmentStateMachine state, final int position) {
+        return state.getCigarOperator() != CigarOperator.N && !ReadUtils.isBaseInsideAdaptor(state.getRead(), position);
+    }
+
+    /**
+     * Does the base at this state count as a reference base in the RefVsAny model?
+     *
+     * The flags of a pileup element are only set at the first and last base of a cigar element, so the element
+     * is only made there.
+     */
+    private static boolean isReferenceMatch(final AlignmentStateMachine state, final byte refBase) {
+        if ( state.getCigarOperator() == CigarOperator.D || state.getRead().getReadBases()[state.getReadOffset()] != refBase ) {
+            return false;
+        }
+        final int offsetInElement = state.getOffsetIntoCurrentCigarElement();
+        if ( offsetInElement > 0 && offsetInElement < state.getCurrentCigarElement().getLength() - 1 ) {
+            return true;
+        }
+
+        final PileupElement element = state.makePileupElement();
+        return !(element.isBeforeDeletionStart() || element.isAfterDeletionEnd() || element.isBeforeInsertion()
+                || element.isAfterInsertion() || element.isNextToSoftClip());
+    }
+
+    /**
+     * Build the pileups of the positions with evidence for a variant, streaming the reads again
+     */
+    private void collectEvidencePileups(final List<GaeaSamRecord> reads) {
+        final List<List<PileupElement>> elements = new ArrayList<>(pileups.length);
+        for ( int offset = 0; offset < pileups.length; offset++ ) {
+            elements.add(evidenceDepths[offset] > 0 ? new ArrayList<>() : null);
+        }
+
+        for ( final GaeaSamRecord read : reads ) {
+            if ( !overlapsSpan(read) ) {
+                continue;
+            }
+
+            final AlignmentStateMachine state = new AlignmentStateMachine(read);
+            while ( state.stepForwardOnGenome() != null ) {
+                final int position = state.getGenomePosition();
+                if ( position < span.getStart() ) {
+                    continue;
+                }
+                if ( position > span.getEnd() ) {
+                    break;
+                }
+                final List<PileupElement> pile = elements.get(position - span.getStart());
+                if ( pile != null && isInPileup(state, position) ) {
+                    pile.add(state.makePileupElement());
+                }
+            }
+        }
+
+        for ( int offset = 0; offset < pileups.length; offset++ ) {
+            if ( elements.get(offset) != null ) {
+                final int position = span.getStart() + offset;
+                pileups[offset] = new ReadPileup(new GenomeLocation(span.getContig(), position, position), elements.get(offset));
+            }
+        }
+    }
+
+    /**
+     * Was any base at this position a mismatch, a deletion, or next to an indel or a soft clip?
+     */
+    boolean hasVariantEvidence(final int offset) {
+        return evidenceDepths[offset] > 0;
+    }
+
+    /**
+     * @return the pileup at a position with variant evidence
+     */
+    ReadPileup getPileup(final int offset) {
+        return pileups[offset];
+    }
+
+    int getRefDepth(final int offset) {
+        return refDepths[offset];
+    }
+
+    double getRefLikelihood(final int offset, final int genotypeIndex) {
+        return refLikelihoods[offset * likelihoodCount + genotypeIndex];
+    }
+
+    int getIndelInformativeReads(final int offset) {
+        return indelInformativeReads[offset];
+    }
+
+    /**
+     * Sums of the qualities of the read bases mismatching the reference, along the diagonals where read offset i
+     * is aligned to reference offset i + diagonal.
+     *
+     * Gives the same answers as {@link ReferenceConfidenceModel#isReadInformativeAboutIndelsOfSize} without
+     * comparing the rest of the read again at every position.
+     */
+    private static final class ReadMismatchSums {
+        private final GaeaSamRecord read;
+        private final byte[] ref;
+        private final Map<Integer, int[]> suffixSums = new HashMap<>();
+
+        private ReadMismatchSums(final GaeaSamRecord read, final byte[] ref) {
+            this.read = read;
+            this.ref = ref;
+        }
+
+        private boolean isInformativeAboutIndelsOfSize(final int readStart, final int refStart, final int maxIndelSize) {
+            if ( read.getReadLength() - readStart < maxIndelSize || ref.length - refStart < maxIndelSize ) {
+                return false;
+            }
+
+            final int diagonal = refStart - readStart;
+            final int baselineMMSum = sum(readStart, diagonal);
+            for ( int indelSize = 1; indelSize <= maxIndelSize; indelSize++ ) {
+                // insertions
+                if ( sum(readStart + indelSize, diagonal - indelSize) <= baselineMMSum ) {
+                    return false;
+                }
+                // deletions
+                if ( sum(readStart, diagonal + indelSize) <= baselineMMSum ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the sum of mismatching qualities from read offset readStart to the end of the read or the reference
+         */
+        private int sum(final int readStart, final int diagonal) {
+            return suffixSums.computeIfAbsent(diagonal, this::suffixSums)[readStart];
+        }
+
+        private int[] suffixSums(final int diagonal) {
+            final byte[] bases = read.getReadBases();
+            final byte[] quals = read.getBaseQualities();
+            final int[] sums = new int[bases.length + 1];
+            final int end = Math.min(bases.length, ref.length - diagonal);
+            for ( int i = end - 1; i >= Math.max(0, -diagonal); i-- ) {
+                sums[i] = sums[i + 1] + (bases[i] != ref[i + diagonal] ? quals[i] : 0);
+            }
+            return sums;
+        }
+    }
+}
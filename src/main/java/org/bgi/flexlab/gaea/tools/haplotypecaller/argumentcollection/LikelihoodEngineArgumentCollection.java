@@ -21,7 +21,7 @@ public final class LikelihoodEngineArgumentCollection implements Serializable {
     /**
      * The PairHMM implementation to use for genotype likelihood calculations. The various implementations balance a tradeoff of accuracy and runtime.
      */
-    public PairHMM.Implementation pairHMM = PairHMM.Implementation.AVX_LOGLESS_CACHING_OMP;
+    public PairHMM.Implementation pairHMM = PairHMM.Implementation.FASTEST_AVAILABLE;
 
     /**
      * When calculating the likelihood of variants, we can try to correct for PCR errors that cause indel artifacts.
@@ -49,5 +49,11 @@ public final class LikelihoodEngineArgumentCollection implements Serializable {
      */
     public int phredScaledGlobalReadMismappingRate = 45;
 
+    /**
+     * Megabytes of PairHMM likelihoods cached by each likelihood engine, so that a read evaluated again against
+     * the same haplotype is not recomputed. 0 disables the cache.
+     */
+    public int likelihoodCacheMegabytes = 0;
+
     public PairHMMNativeArgumentCollection pairHMMNativeArgs = new PairHMMNativeArgumentCollection();
 }
@@ -84,6 +84,12 @@ public final class ReadThreadingAssemblerArgumentCollection implements Serializa
      */
     public int minPruneFactor = 2;
 
+    /**
+     * Build the graphs of all kmer sizes of a region at the same time instead of one after another. The results are
+     * the same, haplotypes are still merged in kmer size order.
+     */
+    public boolean concurrentKmerAssembly = false;
+
     public boolean debugGraphTransformations = false;
 
     /**
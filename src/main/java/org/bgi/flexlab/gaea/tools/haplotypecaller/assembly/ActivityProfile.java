@@ -1,8 +1,7 @@
 package org.bgi.flexlab.gaea.tools.haplotypecaller.assembly;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -12,7 +11,14 @@ import org.bgi.flexlab.gaea.util.Utils;
 import htsjdk.samtools.SAMFileHeader;
 
 public class ActivityProfile {
-    protected final List<ActivityProfileState> stateList;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * probabilities of the states, from regionStartLoc on; states are only made when a region is popped
+     */
+    private double[] probs = new double[INITIAL_CAPACITY];
+    private int size = 0;
+
     protected final Set<GenomeLocation> restrictToIntervals;
 
     protected final int maxProbPropagationDistance;
@@ -45,7 +51,6 @@ public class ActivityProfile {
      * @param intervals only include states that are within these intervals, if not null
      */
     public ActivityProfile(final int maxProbPropagationDistance, final double activeProbThreshold, final Set<GenomeLocation> intervals, final SAMFileHeader header) {
-        this.stateList = new ArrayList<>();
         this.restrictToIntervals = intervals;
         this.maxProbPropagationDistance = maxProbPropagationDistance;
         this.activeProbThreshold = activeProbThreshold;
@@ -79,7 +84,7 @@ public class ActivityProfile {
      * @return the number of profile results
      */
     public int size() {
-        return stateList.size();
+        return size;
     }
 
     /**
@@ -87,7 +92,7 @@ public class ActivityProfile {
      * @return true if the profile is empty (ie., contains no ActivityProfileStates)
      */
     public boolean isEmpty() {
-        return stateList.isEmpty();
+        return size == 0;
     }
 
     /**
@@ -106,44 +111,22 @@ public class ActivityProfile {
         return regionStopLoc.getEnd();
     }
 
-    /**
-     * Get the list of activity profile results in this object
-     * @return a non-null, ordered list of activity profile results
-     */
-    protected List<ActivityProfileState> getStateList() {
-        return stateList;
-    }
-
     /**
      * Get the probabilities of the states as a single linear array of doubles
      * @return a non-null array
      */
     protected double[] getProbabilitiesAsArray() {
-        final double[] probs = new double[getStateList().size()];
-        int i = 0;
-        for ( final ActivityProfileState state : getStateList() ) {
-            probs[i++] = state.isActiveProb();
-        }
-        return probs;
+        return Arrays.copyOf(probs, size);
     }
 
     /**
-     * Helper function that gets the interval for a site offset from relativeLoc, protecting ourselves from
-     * falling off the edge of the contig.
+     * Is the site start on the current contig?
      *
-     * @param relativeLoc the location offset is relative to
-     * @param offset the offset from relativeLoc where we'd like to create a GenomeLoc
-     * @return a GenomeLocation with relativeLoc.start + offset, if this is on the contig, null otherwise
+     * @param start the position of the site
+     * @return true if start is between 1 and the contig length
      */
-    protected GenomeLocation getLocForOffset(final GenomeLocation relativeLoc, final int offset) {
-        Utils.nonNull(relativeLoc);
-
-        final int start = relativeLoc.getStart() + offset;
-        if ( start < 1 || start > getCurrentContigLength() ) {
-            return null;
-        } else {
-            return new GenomeLocation(regionStartLoc.getContig(), start, start);
-        }
+    protected boolean isOnContig(final int start) {
+        return start >= 1 && start <= getCurrentContigLength();
     }
 
     /**
@@ -181,76 +164,79 @@ public class ActivityProfile {
             regionStopLoc = loc;
         }
 
-        final Collection<ActivityProfileState> processedStates = processState(state);
-        for ( final ActivityProfileState processedState : processedStates ) {
-            incorporateSingleState(processedState);
-        }
+        processState(state);
     }
 
     /**
-     * Incorporate a single activity profile state into the current list of states
+     * Incorporate the probability of a single site into the current states
      *
-     * If state's position occurs immediately after the last position in this profile, then
-     * the state is appended to the state list.  If it's within the existing states list,
-     * the prob of stateToAdd is added to its corresponding state in the list.  If the
-     * position would be before the start of this profile, stateToAdd is simply ignored.
+     * If the site occurs immediately after the last position in this profile, then
+     * a state is appended with prob.  If it's within the existing states, prob is
+     * added to the probability of its corresponding state.  If the position would be
+     * before the start of this profile, prob is simply ignored.
      *
-     * @param stateToAdd the state we want to add to the states list
+     * @param start the position of the site
+     * @param prob the probability to add to the site
      */
-    private void incorporateSingleState(final ActivityProfileState stateToAdd) {
-        Utils.nonNull(stateToAdd);
-        final int position = stateToAdd.getOffset(regionStartLoc);
+    protected void incorporateSingleState(final int start, final double prob) {
+        final int position = start - regionStartLoc.getStart();
         // should we allow this?  probably not
-        
-        Utils.validateArg(position <= size(), () -> "Must add state contiguous to existing states: adding " + stateToAdd);
+
+        Utils.validateArg(position <= size, () -> "Must add state contiguous to existing states: adding " + start);
 
         if ( position >= 0 ) {
             // ignore states starting before this region's start
-            if ( position < size() ) {
-                stateList.get(position).setIsActiveProb(stateList.get(position).isActiveProb() + stateToAdd.isActiveProb());
+            if ( position < size ) {
+                probs[position] += prob;
             } else {
-                Utils.validateArg(position == size(), "position == size but it wasn't");
-                stateList.add(stateToAdd);
+                if ( size == probs.length ) {
+                    probs = Arrays.copyOf(probs, size << 1);
+                }
+                probs[size++] = prob;
             }
         }
     }
 
     /**
-     * Process justAddedState, returning a collection of derived states that actually be added to the stateList
+     * Process justAddedState, incorporating the derived states that should actually be tracked
      *
      * The purpose of this function is to transform justAddedStates, if needed, into a series of atomic states
      * that we actually want to track.  For example, if state is for soft clips, we transform that single
-     * state into a list of states that surround the state up to the distance of the soft clip.
-     *
-     * Can be overridden by subclasses to transform states in any way
+     * state into the states that surround the state up to the distance of the soft clip.  Each derived state
+     * goes through {@link #processDerivedState}.
      *
-     * There's no particular contract for the output states, except that they can never refer to states
-     * beyond the current end of the stateList unless the explicitly include preceding states before
-     * the reference.  So for example if the current state list is [1, 2, 3] this function could return
-     * [1,2,3,4,5] but not [1,2,3,5].
-     *
-     * @param justAddedState the state our client provided to use to add to the list
-     * @return a list of derived states that should actually be added to this profile's state list
+     * @param justAddedState the state our client provided to use to add to the profile
      */
-    protected Collection<ActivityProfileState> processState(final ActivityProfileState justAddedState) {
+    protected void processState(final ActivityProfileState justAddedState) {
         if ( justAddedState.getResultState().equals(ActivityProfileState.Type.HIGH_QUALITY_SOFT_CLIPS) ) {
             // special code to deal with the problem that high quality soft clipped bases aren't added to pileups
-            final List<ActivityProfileState> states = new ArrayList<>();
             // add no more than the max prob propagation distance num HQ clips
             final int numHQClips = Math.min(justAddedState.getResultValue().intValue(), getMaxProbPropagationDistance());
             for( int i = - numHQClips; i <= numHQClips; i++ ) {
-                final GenomeLocation loc = getLocForOffset(justAddedState.getLoc(), i);
-                if ( loc != null ) {
-                    states.add(new ActivityProfileState(loc, justAddedState.isActiveProb()));
+                final int start = justAddedState.getLoc().getStart() + i;
+                if ( isOnContig(start) ) {
+                    processDerivedState(justAddedState, start, justAddedState.isActiveProb());
                 }
             }
-
-            return states;
         } else {
-            return Collections.singletonList(justAddedState);
+            processDerivedState(justAddedState, justAddedState.getLoc().getStart(), justAddedState.isActiveProb());
         }
     }
 
+    /**
+     * Incorporate a state derived from justAddedState
+     *
+     * Can be overridden by subclasses to transform states in any way.  A derived state can never refer to
+     * a site beyond the current end of the states unless the sites before it are incorporated first.
+     *
+     * @param justAddedState the state our client provided to use to add to the profile
+     * @param start the position of the derived state
+     * @param prob the probability of the derived state
+     */
+    protected void processDerivedState(final ActivityProfileState justAddedState, final int start, final double prob) {
+        incorporateSingleState(start, prob);
+    }
+
     // --------------------------------------------------------------------------------
     //
     // routines to get active regions from the profile
@@ -318,18 +304,16 @@ public class ActivityProfile {
      * @return a fully formed assembly region, or null if none can be made
      */
     private AssemblyRegion popNextReadyAssemblyRegion( final int assemblyRegionExtension, final int minRegionSize, final int maxRegionSize, final boolean forceConversion ) {
-        if ( stateList.isEmpty() ) {
+        if ( isEmpty() ) {
             return null;
         }
 
         // If we are flushing the activity profile we need to trim off the excess states so that we don't create regions outside of our current processing interval
         if( forceConversion ) {
-            final List<ActivityProfileState> statesToTrimAway = new ArrayList<>(stateList.subList(getSpan().size(), stateList.size()));
-            stateList.removeAll(statesToTrimAway);
+            size = Math.min(size, getSpan().size());
         }
 
-        final ActivityProfileState first = stateList.get(0);
-        final boolean isActiveRegion = first.isActiveProb() > activeProbThreshold;
+        final boolean isActiveRegion = probs[0] > activeProbThreshold;
         final int offsetOfNextRegionEnd = findEndOfRegion(isActiveRegion, minRegionSize, maxRegionSize, forceConversion);
         if ( offsetOfNextRegionEnd == -1 ) {
             // couldn't find a valid ending offset, so we return null
@@ -337,17 +321,23 @@ public class ActivityProfile {
         }
 
         // we need to create the active region, and clip out the states we're extracting from this profile
-        final List<ActivityProfileState> sub = stateList.subList(0, offsetOfNextRegionEnd + 1);
-        final List<ActivityProfileState> supportingStates = new ArrayList<>(sub);
-        sub.clear();
+        final String contig = regionStartLoc.getContig();
+        final int regionStart = regionStartLoc.getStart();
+        final int regionSize = offsetOfNextRegionEnd + 1;
+        final List<ActivityProfileState> supportingStates = new ArrayList<>(regionSize);
+        for ( int i = 0; i < regionSize; i++ ) {
+            supportingStates.add(new ActivityProfileState(new GenomeLocation(contig, regionStart + i, regionStart + i), probs[i]));
+        }
+        System.arraycopy(probs, regionSize, probs, 0, size - regionSize);
+        size -= regionSize;
 
         // update the start and stop locations as necessary
-        if ( stateList.isEmpty() ) {
+        if ( isEmpty() ) {
             regionStartLoc = regionStopLoc = null;
         } else {
-            regionStartLoc = stateList.get(0).getLoc();
+            regionStartLoc = new GenomeLocation(contig, regionStart + regionSize, regionStart + regionSize);
         }
-        final GenomeLocation regionLoc = new GenomeLocation(first.getLoc().getContig(), first.getLoc().getStart(), first.getLoc().getStart() + offsetOfNextRegionEnd);
+        final GenomeLocation regionLoc = new GenomeLocation(contig, regionStart, regionStart + offsetOfNextRegionEnd);
         return new AssemblyRegion(regionLoc, supportingStates, isActiveRegion, assemblyRegionExtension, samHeader);
     }
 
@@ -372,7 +362,7 @@ public class ActivityProfile {
      * @return the index into stateList of the last element of this region, or -1 if it cannot be found
      */
     private int findEndOfRegion(final boolean isActiveRegion, final int minRegionSize, final int maxRegionSize, final boolean forceConversion) {
-        if ( ! forceConversion && stateList.size() < maxRegionSize + getMaxProbPropagationDistance() ) {
+        if ( ! forceConversion && size < maxRegionSize + getMaxProbPropagationDistance() ) {
             // we really haven't finalized at the probability mass that might affect our decision, so keep
             // waiting until we do before we try to make any decisions
             return -1;
@@ -435,7 +425,7 @@ public class ActivityProfile {
     private int findFirstActivityBoundary(final boolean isActiveRegion, final int maxRegionSize) {
         Utils.validateArg(maxRegionSize > 0, "maxRegionSize must be > 0");
 
-        final int nStates = stateList.size();
+        final int nStates = size;
         int endOfActiveRegion = 0;
 
         while ( endOfActiveRegion < nStates && endOfActiveRegion < maxRegionSize ) {
@@ -454,9 +444,9 @@ public class ActivityProfile {
      * @return the isActiveProb of the state at index
      */
     private double getProb(final int index) {
-        Utils.validIndex(index, stateList.size());
+        Utils.validIndex(index, size);
 
-        return stateList.get(index).isActiveProb();
+        return probs[index];
     }
 
     /**
@@ -469,9 +459,9 @@ public class ActivityProfile {
      * @return true if prob at state is a minimum, false otherwise
      */
     private boolean isMinimum(final int index) {
-        Utils.validIndex(index, stateList.size());
+        Utils.validIndex(index, size);
 
-        if ( index == stateList.size() - 1 ) {
+        if ( index == size - 1 ) {
             // we cannot be at a minimum if the current position is the last in the state list
             return false;
         }
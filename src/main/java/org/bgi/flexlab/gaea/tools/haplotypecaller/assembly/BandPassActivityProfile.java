@@ -1,7 +1,5 @@
 package org.bgi.flexlab.gaea.tools.haplotypecaller.assembly;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Set;
 
 import org.bgi.flexlab.gaea.data.structure.location.GenomeLocation;
@@ -128,28 +126,20 @@ public class BandPassActivityProfile extends ActivityProfile {
     }
 
     /**
-     * Band pass the probabilities in the ActivityProfile, producing a new profile that's band pass filtered
-     * @return a new double[] that's the band-pass filtered version of this profile
+     * Band pass the probabilities in the ActivityProfile, spreading the probability of each derived state over
+     * the sites around justAddedState with the Gaussian kernel
      */
     @Override
-    protected Collection<ActivityProfileState> processState(final ActivityProfileState justAddedState) {
-        final Collection<ActivityProfileState> states = new ArrayList<>();
-
-        for ( final ActivityProfileState superState : super.processState(justAddedState) ) {
-            if ( superState.isActiveProb() > 0.0 ) {
-                for( int i = -filterSize; i <= filterSize; i++ ) {
-                    final GenomeLocation loc = getLocForOffset(justAddedState.getLoc(), i);
-                    if ( loc != null ) {
-                        final double newProb = superState.isActiveProb() * gaussianKernel[i + filterSize];
-                        states.add(new ActivityProfileState(loc, newProb));
-                    }
+    protected void processDerivedState(final ActivityProfileState justAddedState, final int start, final double prob) {
+        if ( prob > 0.0 ) {
+            final int center = justAddedState.getLoc().getStart();
+            for( int i = -filterSize; i <= filterSize; i++ ) {
+                if ( isOnContig(center + i) ) {
+                    incorporateSingleState(center + i, prob * gaussianKernel[i + filterSize]);
                 }
-            } else {
-                states.add(justAddedState);
             }
+        } else {
+            incorporateSingleState(justAddedState.getLoc().getStart(), justAddedState.isActiveProb());
         }
-
-        return states;
     }
 }
-
@@ -0,0 +1,83 @@
+package org.bgi.flexlab.gaea.tools.haplotypecaller.assembly;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bgi.flexlab.gaea.tools.haplotypecaller.assembly.vertex.Kmer;
+import org.bgi.flexlab.gaea.util.Utils;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * A map from kmers of one size to values.  Kmers that can be packed (see {@link PackedKmers}) are kept in a
+ * primitive open addressing table, the others fall back to a map of {@link Kmer} objects.
+ */
+final class PackedKmerMap<V> {
+    private final int kmerSize;
+    private final Long2ObjectOpenHashMap<V> packed = new Long2ObjectOpenHashMap<>();
+    private final Map<Kmer, V> unpacked = new HashMap<>();
+
+    PackedKmerMap(final int kmerSize) {
+        Utils.validateArg(kmerSize > 0, () -> "kmerSize must be > 0 but got " + kmerSize);
+        this.kmerSize = kmerSize;
+    }
+
+    /**
+     * Get the value of the kmer starting at start in sequence
+     *
+     * @param key the packed key of that kmer, as returned by {@link PackedKmers#pack}
+     */
+    V get(final byte[] sequence, final int start, final long key) {
+        return key != PackedKmers.UNPACKED ? packed.get(key) : unpacked.get(new Kmer(sequence, start, kmerSize));
+    }
+
+    V get(final Kmer kmer) {
+        if ( kmer.length() != kmerSize ) {
+            return null;
+        }
+        final long key = PackedKmers.pack(kmer);
+        return key != PackedKmers.UNPACKED ? packed.get(key) : unpacked.get(kmer);
+    }
+
+    boolean containsKey(final byte[] sequence, final int start, final long key) {
+        return key != PackedKmers.UNPACKED ? packed.containsKey(key) : unpacked.containsKey(new Kmer(sequence, start, kmerSize));
+    }
+
+    void put(final byte[] sequence, final int start, final long key, final V value) {
+        if ( key != PackedKmers.UNPACKED ) {
+            packed.put(key, value);
+        } else {
+            unpacked.put(new Kmer(sequence, start, kmerSize), value);
+        }
+    }
+
+    V remove(final Kmer kmer) {
+        if ( kmer.length() != kmerSize ) {
+            return null;
+        }
+        final long key = PackedKmers.pack(kmer);
+        return key != PackedKmers.UNPACKED ? packed.remove(key) : unpacked.remove(kmer);
+    }
+
+    int size() {
+        return packed.size() + unpacked.size();
+    }
+
+    void clear() {
+        packed.clear();
+        unpacked.clear();
+    }
+
+    /**
+     * All values, in no particular order
+     */
+    Collection<V> values() {
+        final List<V> values = new ArrayList<>(size());
+        values.addAll(packed.values());
+        values.addAll(unpacked.values());
+        return values;
+    }
+}
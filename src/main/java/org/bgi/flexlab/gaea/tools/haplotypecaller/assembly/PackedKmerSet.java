@@ -0,0 +1,69 @@
+package org.bgi.flexlab.gaea.tools.haplotypecaller.assembly;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.bgi.flexlab.gaea.tools.haplotypecaller.assembly.vertex.Kmer;
+import org.bgi.flexlab.gaea.util.Utils;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+/**
+ * A set of kmers of one size.  Kmers that can be packed (see {@link PackedKmers}) are kept in a primitive
+ * open addressing table, the others fall back to a set of {@link Kmer} objects.
+ */
+final class PackedKmerSet {
+    private final int kmerSize;
+    private final LongOpenHashSet packed = new LongOpenHashSet();
+    private final Set<Kmer> unpacked = new HashSet<>();
+
+    PackedKmerSet(final int kmerSize) {
+        Utils.validateArg(kmerSize > 0, () -> "kmerSize must be > 0 but got " + kmerSize);
+        this.kmerSize = kmerSize;
+    }
+
+    int getKmerSize() {
+        return kmerSize;
+    }
+
+    /**
+     * Add the kmer starting at start in sequence
+     *
+     * @param key the packed key of that kmer, as returned by {@link PackedKmers#pack}
+     * @return true if the kmer was not in the set yet
+     */
+    boolean add(final byte[] sequence, final int start, final long key) {
+        return key != PackedKmers.UNPACKED ? packed.add(key) : unpacked.add(new Kmer(sequence, start, kmerSize));
+    }
+
+    boolean contains(final byte[] sequence, final int start, final long key) {
+        return key != PackedKmers.UNPACKED ? packed.contains(key) : unpacked.contains(new Kmer(sequence, start, kmerSize));
+    }
+
+    boolean isEmpty() {
+        return packed.isEmpty() && unpacked.isEmpty();
+    }
+
+    int size() {
+        return packed.size() + unpacked.size();
+    }
+
+    void clear() {
+        packed.clear();
+        unpacked.clear();
+    }
+
+    /**
+     * The kmers of this set as objects.  For debugging purposes
+     */
+    Set<Kmer> toKmerSet() {
+        final Set<Kmer> kmers = new LinkedHashSet<>(size());
+        for ( final LongIterator it = packed.iterator(); it.hasNext(); ) {
+            kmers.add(PackedKmers.unpack(it.nextLong(), kmerSize));
+        }
+        kmers.addAll(unpacked);
+        return kmers;
+    }
+}
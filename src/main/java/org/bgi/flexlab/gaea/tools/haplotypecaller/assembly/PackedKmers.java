@@ -0,0 +1,115 @@
+package org.bgi.flexlab.gaea.tools.haplotypecaller.assembly;
+
+import java.util.Arrays;
+
+import org.bgi.flexlab.gaea.tools.haplotypecaller.assembly.vertex.Kmer;
+
+/**
+ * 2-bit packing of kmers into a long.
+ *
+ * Only the upper case bases A, C, G and T are packed, so two kmers of the same size have the same key
+ * exactly when their bases are equal. Kmers with any other base (N, lower case, IUPAC codes) and kmers
+ * longer than {@link #MAX_PACKED_LENGTH} have no key and must be handled as {@link Kmer} objects.
+ */
+final class PackedKmers {
+
+    /**
+     * longest kmer that fits in the 62 low bits of a long
+     */
+    static final int MAX_PACKED_LENGTH = 31;
+
+    /**
+     * key of a kmer that cannot be packed; packed keys are never negative
+     */
+    static final long UNPACKED = -1L;
+
+    private static final int[] BASE_CODES = new int[256];
+
+    static {
+        Arrays.fill(BASE_CODES, -1);
+        BASE_CODES['A'] = 0;
+        BASE_CODES['C'] = 1;
+        BASE_CODES['G'] = 2;
+        BASE_CODES['T'] = 3;
+    }
+
+    private static final byte[] CODE_BASES = { 'A', 'C', 'G', 'T' };
+
+    private PackedKmers() {}
+
+    /**
+     * Can kmers of this size be packed at all?
+     */
+    static boolean isPackable(final int kmerSize) {
+        return kmerSize <= MAX_PACKED_LENGTH;
+    }
+
+    /**
+     * Key of the kmer of length kmerSize starting at start in bases, or {@link #UNPACKED}
+     */
+    static long pack(final byte[] bases, final int start, final int kmerSize) {
+        if ( ! isPackable(kmerSize) ) {
+            return UNPACKED;
+        }
+        long key = 0;
+        for ( int i = start, stop = start + kmerSize; i < stop; i++ ) {
+            final int code = BASE_CODES[bases[i] & 0xff];
+            if ( code < 0 ) {
+                return UNPACKED;
+            }
+            key = (key << 2) | code;
+        }
+        return key;
+    }
+
+    static long pack(final Kmer kmer) {
+        return isPackable(kmer.length()) ? pack(kmer.bases(), 0, kmer.length()) : UNPACKED;
+    }
+
+    /**
+     * Keys of all kmers of length kmerSize starting at positions from..to (inclusive) of bases, computed with
+     * a rolling window so each base is looked at once.
+     *
+     * @return an array whose element i is the key of the kmer starting at from + i, or {@link #UNPACKED}
+     */
+    static long[] packAll(final byte[] bases, final int from, final int to, final int kmerSize) {
+        final long[] keys = new long[Math.max(to - from + 1, 0)];
+        if ( ! isPackable(kmerSize) ) {
+            Arrays.fill(keys, UNPACKED);
+            return keys;
+        }
+
+        final long mask = (1L << (2 * kmerSize)) - 1;
+        long key = 0;
+        int validBases = 0;
+        for ( int i = from, stop = to + kmerSize; i < stop; i++ ) {
+            final int code = BASE_CODES[bases[i] & 0xff];
+            if ( code < 0 ) {
+                validBases = 0;
+                key = 0;
+            } else {
+                validBases++;
+                key = ((key << 2) | code) & mask;
+            }
+
+            final int kmerStart = i - kmerSize + 1;
+            if ( kmerStart >= from ) {
+                keys[kmerStart - from] = validBases >= kmerSize ? key : UNPACKED;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The kmer of length kmerSize for a packed key
+     */
+    static Kmer unpack(final long key, final int kmerSize) {
+        final byte[] bases = new byte[kmerSize];
+        long rest = key;
+        for ( int i = kmerSize - 1; i >= 0; i-- ) {
+            bases[i] = CODE_BASES[(int) (rest & 3)];
+            rest >>>= 2;
+        }
+        return new Kmer(bases);
+    }
+}
@@ -13,6 +13,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.bgi.flexlab.gaea.data.exception.UserException;
 import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
@@ -72,6 +77,16 @@ public final class ReadThreadingAssembler {
 
 	protected boolean errorCorrectKmers = false;
 
+	/**
+	 * If true, the graphs of all kmer sizes of a region are built at the same time
+	 */
+	private boolean concurrentKmerAssembly = false;
+
+	/**
+	 * Nanoseconds spent building and simplifying graphs, by kmer size
+	 */
+	private final Map<Integer, AtomicLong> kmerAssemblyNanos = new ConcurrentHashMap<>();
+
 	private File debugGraphOutputPath = null; // Where to write debug graphs, if
 												// unset it defaults to the
 												// current working dir
@@ -457,29 +472,91 @@ public final class ReadThreadingAssembler {
 		final List<AssemblyResult> results = new LinkedList<>();
 
 		// first, try using the requested kmer sizes
+		final List<Supplier<AssemblyResult>> graphs = new ArrayList<>(kmerSizes.size());
 		for (final int kmerSize : kmerSizes) {
-			addResult(results, createGraph(reads, refHaplotype, kmerSize, givenHaplotypes,
-					dontIncreaseKmerSizesForCycles, allowNonUniqueKmersInRef, header, aligner));
+			graphs.add(timedGraph(kmerSize, () -> createGraph(reads, refHaplotype, kmerSize, givenHaplotypes,
+					dontIncreaseKmerSizesForCycles, allowNonUniqueKmersInRef, header, aligner)));
+		}
+		for (final AssemblyResult result : createGraphs(graphs)) {
+			addResult(results, result);
 		}
 
 		// if none of those worked, iterate over larger sizes if allowed to do
 		// so
 		if (results.isEmpty() && !dontIncreaseKmerSizesForCycles) {
+			final List<Supplier<AssemblyResult>> retries = new ArrayList<>(MAX_KMER_ITERATIONS_TO_ATTEMPT);
 			int kmerSize = arrayMaxInt(kmerSizes) + KMER_SIZE_ITERATION_INCREASE;
-			int numIterations = 1;
-			while (results.isEmpty() && numIterations <= MAX_KMER_ITERATIONS_TO_ATTEMPT) {
+			for (int numIterations = 1; numIterations <= MAX_KMER_ITERATIONS_TO_ATTEMPT; numIterations++) {
 				// on the last attempt we will allow low complexity graphs
 				final boolean lastAttempt = numIterations == MAX_KMER_ITERATIONS_TO_ATTEMPT;
-				addResult(results, createGraph(reads, refHaplotype, kmerSize, givenHaplotypes, lastAttempt, lastAttempt,
-						header, aligner));
+				final int retryKmerSize = kmerSize;
+				retries.add(timedGraph(retryKmerSize, () -> createGraph(reads, refHaplotype, retryKmerSize,
+						givenHaplotypes, lastAttempt, lastAttempt, header, aligner)));
 				kmerSize += KMER_SIZE_ITERATION_INCREASE;
-				numIterations++;
 			}
+
+			if (concurrentKmerAssembly) {
+				// all retries are built at once, the smallest kmer size that
+				// worked is used like in the serial loop
+				for (final AssemblyResult result : createGraphs(retries)) {
+					addResult(results, result);
+					if (!results.isEmpty()) {
+						break;
+					}
+				}
+			} else {
+				for (final Iterator<Supplier<AssemblyResult>> it = retries.iterator(); results.isEmpty()
+						&& it.hasNext();) {
+					addResult(results, it.next().get());
+				}
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Build graphs one after another, or all at once in concurrent mode. When
+	 * called from a fork join pool the graphs are built in that pool, otherwise
+	 * in the common pool.
+	 *
+	 * @return the results, possibly null, in the order of graphs
+	 */
+	private List<AssemblyResult> createGraphs(final List<Supplier<AssemblyResult>> graphs) {
+		final List<AssemblyResult> results = new ArrayList<>(graphs.size());
+		if (!concurrentKmerAssembly || graphs.size() < 2) {
+			for (final Supplier<AssemblyResult> graph : graphs) {
+				results.add(graph.get());
+			}
+			return results;
 		}
 
+		final List<ForkJoinTask<AssemblyResult>> tasks = new ArrayList<>(graphs.size());
+		for (final Supplier<AssemblyResult> graph : graphs) {
+			tasks.add(ForkJoinTask.adapt(graph::get));
+		}
+		ForkJoinTask.invokeAll(tasks);
+		for (final ForkJoinTask<AssemblyResult> task : tasks) {
+			results.add(task.join());
+		}
 		return results;
 	}
 
+	/**
+	 * Wrap the creation of a graph so that its time is added to the kmer size
+	 */
+	private Supplier<AssemblyResult> timedGraph(final int kmerSize, final Supplier<AssemblyResult> graph) {
+		return () -> {
+			final long start = System.nanoTime();
+			try {
+				return graph.get();
+			} finally {
+				kmerAssemblyNanos.computeIfAbsent(kmerSize, k -> new AtomicLong())
+						.addAndGet(System.nanoTime() - start);
+			}
+		};
+	}
+
 	private static int arrayMaxInt(final List<Integer> array) {
 		return array.stream().mapToInt(Integer::intValue).max()
 				.orElseThrow(() -> new IllegalArgumentException("Array size cannot be 0!"));
@@ -514,8 +591,8 @@ public final class ReadThreadingAssembler {
 		}
 
 		if (!allowNonUniqueKmersInRef
-				&& !ReadThreadingGraph.determineNonUniqueKmers(new ReadThreadingGraph.SequenceForKmers("ref",
-						refHaplotype.getBases(), 0, refHaplotype.getBases().length, 1, true), kmerSize).isEmpty()) {
+				&& ReadThreadingGraph.hasNonUniqueKmers(new ReadThreadingGraph.SequenceForKmers("ref",
+						refHaplotype.getBases(), 0, refHaplotype.getBases().length, 1, true), kmerSize)) {
 			return null;
 		}
 
@@ -660,6 +737,25 @@ public final class ReadThreadingAssembler {
 		this.errorCorrectKmers = errorCorrectKmers;
 	}
 
+	public boolean isConcurrentKmerAssembly() {
+		return concurrentKmerAssembly;
+	}
+
+	public void setConcurrentKmerAssembly(final boolean concurrentKmerAssembly) {
+		this.concurrentKmerAssembly = concurrentKmerAssembly;
+	}
+
+	/**
+	 * Milliseconds spent building and simplifying graphs so far, by kmer size
+	 */
+	public Map<Integer, Long> getKmerAssemblyMillis() {
+		final Map<Integer, Long> millis = new TreeMap<>();
+		for (final Map.Entry<Integer, AtomicLong> entry : kmerAssemblyNanos.entrySet()) {
+			millis.put(entry.getKey(), entry.getValue().get() / 1000000);
+		}
+		return millis;
+	}
+
 	public void setGraphWriter(File graphOutputPath) {
 		this.graphOutputPath = graphOutputPath;
 	}
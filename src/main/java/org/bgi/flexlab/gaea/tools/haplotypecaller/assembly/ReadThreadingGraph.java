@@ -8,7 +8,6 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -63,12 +62,12 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
     /**
      * A set of non-unique kmers that cannot be used as merge points in the graph
      */
-    private Set<Kmer> nonUniqueKmers;
+    private PackedKmerSet nonUniqueKmers;
 
     /**
      * A map from kmers -> their corresponding vertex in the graph
      */
-    private final Map<Kmer, MultiDeBruijnVertex> uniqueKmers = new LinkedHashMap<>();
+    private final PackedKmerMap<MultiDeBruijnVertex> uniqueKmers = new PackedKmerMap<>(kmerSize);
 
     private final boolean debugGraphTransformations;
     private final byte minBaseQualityToUseInAssembly;
@@ -80,6 +79,7 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
     // state variables, initialized in resetToInitialState()
     // --------------------------------------------------------------------------------
     private Kmer refSource;
+    private long refSourceKey = PackedKmers.UNPACKED;
 
     /**
      * Constructs an empty read-threading-grpah provided the kmerSize.
@@ -160,6 +160,7 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
         nonUniqueKmers = null;
         uniqueKmers.clear();
         refSource = null;
+        refSourceKey = PackedKmers.UNPACKED;
         alreadyBuilt = false;
     }
 
@@ -227,7 +228,8 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
             return;
         }
 
-        final MultiDeBruijnVertex startingVertex = getOrCreateKmerVertex(seqForKmers.sequence, uniqueStartPos);
+        final long[] keys = seqForKmers.packedKmers(kmerSize);
+        final MultiDeBruijnVertex startingVertex = getOrCreateKmerVertex(seqForKmers.sequence, uniqueStartPos, keys[uniqueStartPos]);
 
         // increase the counts of all edges incoming into the starting vertex supported by going back in sequence
         if (INCREASE_COUNTS_BACKWARDS) {
@@ -244,12 +246,13 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
                 throw new IllegalStateException("Found two refSources! prev: " + refSource + ", new: " + startingVertex);
             }
             refSource = new Kmer(seqForKmers.sequence, seqForKmers.start, kmerSize);
+            refSourceKey = PackedKmers.pack(seqForKmers.sequence, seqForKmers.start, kmerSize);
         }
 
         // loop over all of the bases in sequence, extending the graph by one base at each point, as appropriate
         MultiDeBruijnVertex vertex = startingVertex;
         for ( int i = uniqueStartPos + 1; i <= seqForKmers.stop - kmerSize; i++ ) {
-            vertex = extendChainByOne(vertex, seqForKmers.sequence, i, seqForKmers.count, seqForKmers.isRef);
+            vertex = extendChainByOne(vertex, seqForKmers.sequence, i, keys[i], seqForKmers.count, seqForKmers.isRef);
             if ( debugGraphTransformations ) {
                 vertex.addRead(seqForKmers.name);
             }
@@ -267,9 +270,9 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
             return 0;
         }
 
+        final long[] keys = seqForKmers.packedKmers(kmerSize);
         for ( int i = seqForKmers.start; i < seqForKmers.stop - kmerSize; i++ ) {
-            final Kmer kmer1 = new Kmer(seqForKmers.sequence, i, kmerSize);
-            if ( isThreadingStart(kmer1) ) {
+            if ( isThreadingStart(seqForKmers.sequence, i, keys[i]) ) {
                 return i;
             }
         }
@@ -283,12 +286,14 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
      * @see #setThreadingStartOnlyAtExistingVertex(boolean)
      * @see #getThreadingStartOnlyAtExistingVertex()
      *
-     * @param kmer the query kmer.
+     * @param sequence the sequence holding the query kmer.
+     * @param start the start of the query kmer in sequence.
+     * @param key the packed query kmer, or {@link PackedKmers#UNPACKED}.
      * @return {@code true} if we can start thread the sequence at this kmer, {@code false} otherwise.
      */
-    private boolean isThreadingStart(final Kmer kmer) {
-        Utils.nonNull(kmer);
-        return startThreadingOnlyAtExistingVertex ? uniqueKmers.containsKey(kmer) : !nonUniqueKmers.contains(kmer);
+    private boolean isThreadingStart(final byte[] sequence, final int start, final long key) {
+        Utils.nonNull(sequence);
+        return startThreadingOnlyAtExistingVertex ? uniqueKmers.containsKey(sequence, start, key) : !nonUniqueKmers.contains(sequence, start, key);
     }
 
     /**
@@ -426,9 +431,9 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
 
     /** structure that keeps track of the non-unique kmers for a given kmer size */
     private static final class NonUniqueResult {
-        final Set<Kmer> nonUniques;
+        final PackedKmerSet nonUniques;
 
-        private NonUniqueResult(final Set<Kmer> nonUniques) {
+        private NonUniqueResult(final PackedKmerSet nonUniques) {
             this.nonUniques = nonUniques;
         }
     }
@@ -444,6 +449,9 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
         final int count;
         final boolean isRef;
 
+        private long[] packedKmers;
+        private int packedKmerSize;
+
         /**
          * Create a new sequence for creating kmers
          */
@@ -460,6 +468,19 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
             this.count = count;
             isRef = ref;
         }
+
+        /**
+         * Get the packed keys of the kmers of size kmerSize in this sequence, computed once per kmer size
+         *
+         * @return an array whose element i is the key of the kmer starting at i, for i in 0..stop - kmerSize
+         */
+        long[] packedKmers(final int kmerSize) {
+            if ( packedKmers == null || packedKmerSize != kmerSize ) {
+                packedKmers = PackedKmers.packAll(sequence, 0, stop - kmerSize, kmerSize);
+                packedKmerSize = kmerSize;
+            }
+            return packedKmers;
+        }
     }
 
     /**
@@ -952,26 +973,23 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
      */
     private NonUniqueResult determineKmerSizeAndNonUniques(final int minKmerSize, final int maxKmerSize) {
         final Collection<SequenceForKmers> withNonUniques = getAllPendingSequences();
-        final Set<Kmer> nonUniqueKmers = new HashSet<>();
+        PackedKmerSet nonUniqueKmers = new PackedKmerSet(minKmerSize);
 
         // go through the sequences and determine which kmers aren't unique within each read
         for (int kmerSize = minKmerSize ; kmerSize <= maxKmerSize; kmerSize++) {
-            // clear out set of non-unique kmers
-            nonUniqueKmers.clear();
+            // start a new set of non-unique kmers
+            nonUniqueKmers = new PackedKmerSet(kmerSize);
+            final PackedKmerSet allKmers = new PackedKmerSet(kmerSize);
 
             // loop over all sequences that have non-unique kmers in them from the previous iterator
             final Iterator<SequenceForKmers> it = withNonUniques.iterator();
             while ( it.hasNext() ) {
                 final SequenceForKmers sequenceForKmers = it.next();
 
-                // determine the non-unique kmers for this sequence
-                final Collection<Kmer> nonUniquesFromSeq = determineNonUniqueKmers(sequenceForKmers, kmerSize);
-                if ( nonUniquesFromSeq.isEmpty() ) {
+                // determine the non-unique kmers for this sequence, keeping track of them for this kmerSize
+                if ( ! addNonUniqueKmers(sequenceForKmers, allKmers, nonUniqueKmers) ) {
                     // remove this sequence from future consideration
                     it.remove();
-                } else {
-                    // keep track of the non-uniques for this kmerSize, and keep it in the list of sequences that have non-uniques
-                    nonUniqueKmers.addAll(nonUniquesFromSeq);
                 }
             }
 
@@ -995,23 +1013,35 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
     }
 
     /**
-     * Get the collection of non-unique kmers from sequence for kmer size kmerSize
+     * Does sequence have any kmer of size kmerSize more than once?
      * @param seqForKmers a sequence to get kmers from
      * @param kmerSize the size of the kmers
-     * @return a non-null collection of non-unique kmers in sequence
+     * @return true if the sequence has any non-unique kmer
+     */
+    static boolean hasNonUniqueKmers(final SequenceForKmers seqForKmers, final int kmerSize) {
+        return addNonUniqueKmers(seqForKmers, new PackedKmerSet(kmerSize), new PackedKmerSet(kmerSize));
+    }
+
+    /**
+     * Add the non-unique kmers of sequence to nonUniqueKmers, for the kmer size of allKmers
+     * @param seqForKmers a sequence to get kmers from
+     * @param allKmers a scratch set used to count up occurrences of kmers, cleared before use
+     * @param nonUniqueKmers the set the non-unique kmers in sequence are added to
+     * @return true if the sequence has any non-unique kmer
      */
-    static Collection<Kmer> determineNonUniqueKmers(final SequenceForKmers seqForKmers, final int kmerSize) {
+    static boolean addNonUniqueKmers(final SequenceForKmers seqForKmers, final PackedKmerSet allKmers, final PackedKmerSet nonUniqueKmers) {
         // count up occurrences of kmers within each read
-        final Set<Kmer> allKmers = new LinkedHashSet<>();
-        final List<Kmer> nonUniqueKmers = new ArrayList<>();
-        final int stopPosition = seqForKmers.stop - kmerSize;
-        for (int i = 0; i <= stopPosition; i++) {
-            final Kmer kmer = new Kmer(seqForKmers.sequence, i, kmerSize);
-            if (!allKmers.add(kmer)) {
-                nonUniqueKmers.add(kmer);
+        allKmers.clear();
+        boolean hasNonUniques = false;
+        final int kmerSize = allKmers.getKmerSize();
+        final long[] keys = seqForKmers.packedKmers(kmerSize);
+        for (int i = 0; i < keys.length; i++) {
+            if (!allKmers.add(seqForKmers.sequence, i, keys[i])) {
+                nonUniqueKmers.add(seqForKmers.sequence, i, keys[i]);
+                hasNonUniques = true;
             }
         }
-        return nonUniqueKmers;
+        return hasNonUniques;
     }
 
     @Override
@@ -1045,10 +1075,9 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
      * @param start the position of the kmer start
      * @return a non-null vertex
      */
-    private MultiDeBruijnVertex getOrCreateKmerVertex(final byte[] sequence, final int start) {
-        final Kmer kmer = new Kmer(sequence, start, kmerSize);
-        final MultiDeBruijnVertex vertex = getUniqueKmerVertex(kmer, true);
-        return ( vertex != null ) ? vertex : createVertex(kmer);
+    private MultiDeBruijnVertex getOrCreateKmerVertex(final byte[] sequence, final int start, final long key) {
+        final MultiDeBruijnVertex vertex = getUniqueKmerVertex(sequence, start, key, true);
+        return ( vertex != null ) ? vertex : createVertex(sequence, start, key);
     }
 
     /**
@@ -1057,12 +1086,26 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
      * @param allowRefSource if true, we will allow kmer to match the reference source vertex
      * @return a vertex for kmer, or null if it's not unique
      */
-    private MultiDeBruijnVertex getUniqueKmerVertex(final Kmer kmer, final boolean allowRefSource) {
-        if ( ! allowRefSource && kmer.equals(refSource) ) {
+    private MultiDeBruijnVertex getUniqueKmerVertex(final byte[] sequence, final int start, final long key, final boolean allowRefSource) {
+        if ( ! allowRefSource && isRefSourceKmer(sequence, start, key) ) {
             return null;
         }
 
-        return uniqueKmers.get(kmer);
+        return uniqueKmers.get(sequence, start, key);
+    }
+
+    /**
+     * Is the kmer starting at start in sequence the kmer of the reference source?
+     */
+    private boolean isRefSourceKmer(final byte[] sequence, final int start, final long key) {
+        if ( refSource == null ) {
+            return false;
+        }
+        // a packed kmer can only be equal to another packed kmer
+        if ( key != PackedKmers.UNPACKED || refSourceKey != PackedKmers.UNPACKED ) {
+            return key == refSourceKey;
+        }
+        return refSource.equals(new Kmer(sequence, start, kmerSize));
     }
 
 
@@ -1071,11 +1114,14 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
      *
      * kmer must not have a entry in unique kmers, or an error will be thrown
      *
-     * @param kmer the kmer we want to create a vertex for
+     * @param sequence the sequence holding the kmer we want to create a vertex for
+     * @param start the start of the kmer in sequence
+     * @param key the packed kmer, or {@link PackedKmers#UNPACKED}
      * @return the non-null created vertex
      */
-    private MultiDeBruijnVertex createVertex(final Kmer kmer) {
-        final MultiDeBruijnVertex newVertex = new MultiDeBruijnVertex(kmer.bases());
+    private MultiDeBruijnVertex createVertex(final byte[] sequence, final int start, final long key) {
+        final byte[] bases = Arrays.copyOfRange(sequence, start, start + kmerSize);
+        final MultiDeBruijnVertex newVertex = new MultiDeBruijnVertex(bases);
         final int prevSize = vertexSet().size();
         addVertex(newVertex);
 
@@ -1085,9 +1131,9 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
         }
 
         // add the vertex to the unique kmer map, if it is in fact unique
-        if ( ! nonUniqueKmers.contains(kmer) && ! uniqueKmers.containsKey(kmer) ) // TODO -- not sure this last test is necessary
+        if ( ! nonUniqueKmers.contains(bases, 0, key) && ! uniqueKmers.containsKey(bases, 0, key) ) // TODO -- not sure this last test is necessary
         {
-            uniqueKmers.put(kmer, newVertex);
+            uniqueKmers.put(bases, 0, key, newVertex);
         }
 
         return newVertex;
@@ -1100,11 +1146,12 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
      * @param prevVertex a non-null vertex where sequence was last anchored in the graph
      * @param sequence the sequence we're threading through the graph
      * @param kmerStart the start of the current kmer in graph we'd like to add
+     * @param key the packed current kmer, or {@link PackedKmers#UNPACKED}
      * @param count the number of observations of this kmer in graph (can be > 1 for GGA)
      * @param isRef is this the reference sequence?
      * @return a non-null vertex connecting prevVertex to in the graph based on sequence
      */
-    private MultiDeBruijnVertex extendChainByOne(final MultiDeBruijnVertex prevVertex, final byte[] sequence, final int kmerStart, final int count, final boolean isRef) {
+    private MultiDeBruijnVertex extendChainByOne(final MultiDeBruijnVertex prevVertex, final byte[] sequence, final int kmerStart, final long key, final int count, final boolean isRef) {
         final Set<MultiSampleEdge> outgoingEdges = outgoingEdgesOf(prevVertex);
 
         final int nextPos = kmerStart + kmerSize - 1;
@@ -1118,15 +1165,14 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
         }
 
         // none of our outgoing edges had our unique suffix base, so we check for an opportunity to merge back in
-        final Kmer kmer = new Kmer(sequence, kmerStart, kmerSize);
-        final MultiDeBruijnVertex uniqueMergeVertex = getUniqueKmerVertex(kmer, false);
+        final MultiDeBruijnVertex uniqueMergeVertex = getUniqueKmerVertex(sequence, kmerStart, key, false);
 
         if ( isRef && uniqueMergeVertex != null ) {
             throw new IllegalStateException("Found a unique vertex to merge into the reference graph " + prevVertex + " -> " + uniqueMergeVertex);
         }
 
         // either use our unique merge vertex, or create a new one in the chain
-        final MultiDeBruijnVertex nextVertex = uniqueMergeVertex == null ? createVertex(kmer) : uniqueMergeVertex;
+        final MultiDeBruijnVertex nextVertex = uniqueMergeVertex == null ? createVertex(sequence, kmerStart, key) : uniqueMergeVertex;
         addEdge(prevVertex, nextVertex, ((MyEdgeFactory)getEdgeFactory()).createEdge(isRef, count));
         return nextVertex;
     }
@@ -1179,7 +1225,7 @@ public class ReadThreadingGraph extends BaseGraph<MultiDeBruijnVertex, MultiSamp
      * @return a non-null set of kmers
      */
     Set<Kmer> getNonUniqueKmers() {
-        return nonUniqueKmers;
+        return nonUniqueKmers == null ? null : nonUniqueKmers.toKmerSet();
     }
 
     @Override
@@ -71,6 +71,7 @@ import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.GenotypeLikelihoods;
 import htsjdk.variant.variantcontext.GenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
@@ -242,6 +243,14 @@ public final class HaplotypeCallerEngine {
 		return this.genotypingEngine;
 	}
 
+	public ReadThreadingAssembler getAssemblyEngine() {
+		return this.assemblyEngine;
+	}
+
+	public ReadLikelihoodCalculationEngine getLikelihoodCalculationEngine() {
+		return this.likelihoodCalculationEngine;
+	}
+
 	private boolean isVCFMode() {
 		return hcArgs.emitReferenceConfidence == ReferenceConfidenceMode.NONE;
 	}
@@ -495,16 +504,12 @@ public final class HaplotypeCallerEngine {
 		}
 
 		final int ploidy = activeRegionEvaluationGenotyperEngine.getConfiguration().samplePloidy;
-		final List<Allele> noCall = GaeaGvcfVariantContextUtils.noCallAlleles(ploidy);
-
-		final Map<String, AlignmentContext> splitContexts;
 		if (samplesList.numberOfSamples() == 1) {
-			// If we know a priori that there's just one sample, take a shortcut
-			// and dont examine each read in the pileup
-			splitContexts = context.splitContextBySampleName(samplesList.getSample(0), readsHeader);
-		} else {
-			splitContexts = context.splitContextBySampleName(readsHeader);
+			return isActiveSingleSample(context, ref, interval, ploidy);
 		}
+		final List<Allele> noCall = GaeaGvcfVariantContextUtils.noCallAlleles(ploidy);
+
+		final Map<String, AlignmentContext> splitContexts = context.splitContextBySampleName(readsHeader);
 
 		final GenotypesContext genotypes = GenotypesContext.create(splitContexts.keySet().size());
 		final GvcfMathUtils.RunningAverage averageHQSoftClips = new GvcfMathUtils.RunningAverage();
@@ -545,6 +550,29 @@ public final class HaplotypeCallerEngine {
 				averageHQSoftClips.mean());
 	}
 
+	/**
+	 * {@link #isActive} of a single sample, scoring the pileup directly instead
+	 * of through a genotypes context. The likelihoods are rounded to PLs as
+	 * they would be in a genotype.
+	 */
+	private ActivityProfileState isActiveSingleSample(final AlignmentContext context,
+			final ChromosomeInformationShare ref, final GenomeLocation interval, final int ploidy) {
+		final GvcfMathUtils.RunningAverage averageHQSoftClips = new GvcfMathUtils.RunningAverage();
+		final double[] genotypeLikelihoods = referenceConfidenceModel
+				.calcGenotypeLikelihoodsOfRefVsAny(ploidy, context.getBasePileup(),
+						ref.getGA4GHBaseBytes(interval.getStart() - 1)[0], hcArgs.minBaseQualityScore,
+						averageHQSoftClips)
+				.getGenotypeLikelihoods();
+		final int[] PLs = GenotypeLikelihoods.fromLog10Likelihoods(genotypeLikelihoods).getAsPLs();
+		final double isActiveProb = activeRegionEvaluationGenotyperEngine
+				.calculateSingleSampleRefVsAnyActiveStateProfileValue(GenotypeLikelihoods.fromPLs(PLs).getAsVector());
+		return new ActivityProfileState(interval, isActiveProb,
+				averageHQSoftClips.mean() > AVERAGE_HQ_SOFTCLIPS_HQ_BASES_THRESHOLD
+						? ActivityProfileState.Type.HIGH_QUALITY_SOFT_CLIPS
+						: ActivityProfileState.Type.NONE,
+				averageHQSoftClips.mean());
+	}
+
 	/**
 	 * Generate variant calls for an assembly region
 	 *
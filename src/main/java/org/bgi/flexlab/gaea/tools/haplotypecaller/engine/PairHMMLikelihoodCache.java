@@ -0,0 +1,153 @@
+package org.bgi.flexlab.gaea.tools.haplotypecaller.engine;
+
+import java.util.Arrays;
+
+import org.bgi.flexlab.gaea.util.Utils;
+
+/**
+ * Bounded cache of PairHMM log10 likelihoods, keyed by a 64 bit hash of the
+ * processed read (bases, qualities, GOP and GCP) and a 64 bit hash of the
+ * haplotype bases.
+ *
+ * The cache is direct mapped: every key pair has one slot and a new entry
+ * replaces whatever was there, so the memory used is fixed when the cache is
+ * created. The cached doubles are the ones the PairHMM returned, so a hit is
+ * bit-identical to computing the likelihood again.
+ *
+ * When too few lookups hit, the cache is bypassed for a while and then probed
+ * again.
+ */
+final class PairHMMLikelihoodCache {
+	/** bytes of one slot: two keys and a value */
+	static final int BYTES_PER_ENTRY = 3 * Long.BYTES;
+
+	/** lookups a hit rate is measured over */
+	private static final long PROBE_LOOKUPS = 1 << 16;
+
+	/** below this hit rate the cache is bypassed */
+	private static final double MIN_HIT_RATE = 0.05;
+
+	/** read/haplotype pairs computed without the cache before probing again */
+	private static final long BYPASS_PAIRS = 1 << 22;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final long[] readKeys;
+	private final long[] haplotypeKeys;
+	private final double[] values;
+	private final int mask;
+
+	private long probeLookups = 0;
+	private long probeHits = 0;
+	private long bypassRemaining = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long bypassed = 0;
+
+	/**
+	 * @param megabytes
+	 *            memory of the cache, rounded down to a power of two slots
+	 */
+	PairHMMLikelihoodCache(final int megabytes) {
+		Utils.validateArg(megabytes > 0, () -> "cache size must be > 0 but got " + megabytes);
+		final long entries = ((long) megabytes << 20) / BYTES_PER_ENTRY;
+		final int capacity = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+		readKeys = new long[capacity];
+		haplotypeKeys = new long[capacity];
+		values = new double[capacity];
+		Arrays.fill(values, Double.NaN);
+		mask = capacity - 1;
+	}
+
+	/**
+	 * key of a processed read, covering everything the PairHMM reads from it
+	 */
+	static long readKey(final byte[] bases, final byte[] quals, final byte[] insertionGOP, final byte[] deletionGOP,
+			final byte[] overallGCP) {
+		long h = FNV_OFFSET;
+		h = hash(h, bases);
+		h = hash(h, quals);
+		h = hash(h, insertionGOP);
+		h = hash(h, deletionGOP);
+		h = hash(h, overallGCP);
+		return mix(h);
+	}
+
+	static long haplotypeKey(final byte[] bases) {
+		return mix(hash(FNV_OFFSET, bases));
+	}
+
+	private static long hash(long h, final byte[] bytes) {
+		h = (h ^ bytes.length) * FNV_PRIME;
+		for (final byte b : bytes) {
+			h = (h ^ (b & 0xff)) * FNV_PRIME;
+		}
+		return h;
+	}
+
+	private static long mix(long h) {
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	private int slot(final long readKey, final long haplotypeKey) {
+		return (int) mix(readKey ^ Long.rotateLeft(haplotypeKey, 29)) & mask;
+	}
+
+	/**
+	 * @return the cached likelihood, or NaN if the pair is not cached
+	 */
+	double get(final long readKey, final long haplotypeKey) {
+		final int slot = slot(readKey, haplotypeKey);
+		final boolean hit = readKeys[slot] == readKey && haplotypeKeys[slot] == haplotypeKey
+				&& !Double.isNaN(values[slot]);
+		if (hit) {
+			hits++;
+			probeHits++;
+		} else {
+			misses++;
+		}
+		if (++probeLookups == PROBE_LOOKUPS) {
+			if (probeHits < MIN_HIT_RATE * probeLookups) {
+				bypassRemaining = BYPASS_PAIRS;
+			}
+			probeLookups = 0;
+			probeHits = 0;
+		}
+		return hit ? values[slot] : Double.NaN;
+	}
+
+	void put(final long readKey, final long haplotypeKey, final double value) {
+		final int slot = slot(readKey, haplotypeKey);
+		readKeys[slot] = readKey;
+		haplotypeKeys[slot] = haplotypeKey;
+		values[slot] = value;
+	}
+
+	boolean isBypassed() {
+		return bypassRemaining > 0;
+	}
+
+	/**
+	 * account for pairs computed while bypassed
+	 */
+	void bypass(final long pairs) {
+		bypassed += pairs;
+		bypassRemaining -= pairs;
+	}
+
+	long getHits() {
+		return hits;
+	}
+
+	long getMisses() {
+		return misses;
+	}
+
+	long getBypassed() {
+		return bypassed;
+	}
+}
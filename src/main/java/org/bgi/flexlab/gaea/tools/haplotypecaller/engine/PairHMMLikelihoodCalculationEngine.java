@@ -53,6 +53,12 @@ public final class PairHMMLikelihoodCalculationEngine implements ReadLikelihoodC
 	public static final String LIKELIHOODS_FILENAME = "likelihoods.txt";
 	private final PrintStream likelihoodsStream;
 
+	/**
+	 * likelihoods of reads scored again in overlapping regions, null if not
+	 * enabled
+	 */
+	private PairHMMLikelihoodCache likelihoodCache = null;
+
 	public enum PCRErrorModel {
 		/**
 		 * no specialized PCR error model will be applied; if base
@@ -185,6 +191,38 @@ public final class PairHMMLikelihoodCalculationEngine implements ReadLikelihoodC
 		this.baseQualityScoreThreshold = baseQualityScoreThreshold;
 	}
 
+	/**
+	 * Cache the likelihoods computed by the PairHMM
+	 *
+	 * @param megabytes
+	 *            memory of the cache
+	 */
+	public void enableLikelihoodCache(final int megabytes) {
+		likelihoodCache = new PairHMMLikelihoodCache(megabytes);
+	}
+
+	/**
+	 * read/haplotype pairs found in the likelihood cache
+	 */
+	public long getLikelihoodCacheHits() {
+		return likelihoodCache == null ? 0 : likelihoodCache.getHits();
+	}
+
+	/**
+	 * read/haplotype pairs looked up in the likelihood cache but not found
+	 */
+	public long getLikelihoodCacheMisses() {
+		return likelihoodCache == null ? 0 : likelihoodCache.getMisses();
+	}
+
+	/**
+	 * read/haplotype pairs computed without the cache because of a low hit
+	 * rate
+	 */
+	public long getLikelihoodCacheBypassed() {
+		return likelihoodCache == null ? 0 : likelihoodCache.getBypassed();
+	}
+
 	private PrintStream makeLikelihoodStream() {
 		try {
 			return writeLikelihoodsToFile ? new PrintStream(new FileOutputStream(new File(LIKELIHOODS_FILENAME)))
@@ -302,11 +340,137 @@ public final class PairHMMLikelihoodCalculationEngine implements ReadLikelihoodC
 
 		// Run the PairHMM to calculate the log10 likelihood of each (processed)
 		// reads' arising from each haplotype
-		pairHMM.computeLog10Likelihoods(likelihoods, processedReads, gapContinuationPenalties);
+		if (likelihoodCache == null) {
+			pairHMM.computeLog10Likelihoods(likelihoods, processedReads, gapContinuationPenalties);
+		} else if (likelihoodCache.isBypassed()) {
+			pairHMM.computeLog10Likelihoods(likelihoods, processedReads, gapContinuationPenalties);
+			likelihoodCache.bypass((long) processedReads.size() * likelihoods.numberOfAlleles());
+		} else {
+			computeCachedReadLikelihoods(likelihoods, processedReads, gapContinuationPenalties);
+		}
 
 		writeDebugLikelihoods(likelihoods);
 	}
 
+	/**
+	 * Take the likelihoods of reads whose haplotypes are all cached from the
+	 * cache, and run the PairHMM on the other reads only
+	 */
+	private void computeCachedReadLikelihoods(final LikelihoodMatrix<Haplotype> likelihoods,
+			final List<GaeaSamRecord> processedReads, final Map<GaeaSamRecord, byte[]> gapContinuationPenalties) {
+		final List<Haplotype> haplotypes = likelihoods.alleles();
+		final int haplotypeCount = haplotypes.size();
+		final long[] haplotypeKeys = new long[haplotypeCount];
+		for (int a = 0; a < haplotypeCount; a++) {
+			haplotypeKeys[a] = PairHMMLikelihoodCache.haplotypeKey(haplotypes.get(a).getBases());
+		}
+
+		final int readCount = processedReads.size();
+		final long[] readKeys = new long[readCount];
+		final List<GaeaSamRecord> missingReads = new ArrayList<>();
+		final int[] missingReadIndices = new int[readCount];
+		for (int r = 0; r < readCount; r++) {
+			final GaeaSamRecord read = processedReads.get(r);
+			readKeys[r] = PairHMMLikelihoodCache.readKey(read.getReadBases(), read.getBaseQualities(),
+					read.getBaseInsertionQualities(), read.getBaseDeletionQualities(),
+					gapContinuationPenalties.get(read));
+			for (int a = 0; a < haplotypeCount; a++) {
+				final double lk = likelihoodCache.get(readKeys[r], haplotypeKeys[a]);
+				if (Double.isNaN(lk)) {
+					missingReadIndices[missingReads.size()] = r;
+					missingReads.add(read);
+					break;
+				}
+				likelihoods.set(a, r, lk);
+			}
+		}
+
+		if (missingReads.isEmpty()) {
+			return;
+		}
+		pairHMM.computeLog10Likelihoods(new ReadSubsetLikelihoodMatrix(likelihoods, missingReads, missingReadIndices),
+				missingReads, gapContinuationPenalties);
+		for (int i = 0; i < missingReads.size(); i++) {
+			final int r = missingReadIndices[i];
+			for (int a = 0; a < haplotypeCount; a++) {
+				likelihoodCache.put(readKeys[r], haplotypeKeys[a], likelihoods.get(a, r));
+			}
+		}
+	}
+
+	/**
+	 * View of some reads of a likelihood matrix, writes go to the matrix
+	 */
+	private static final class ReadSubsetLikelihoodMatrix implements LikelihoodMatrix<Haplotype> {
+		private final LikelihoodMatrix<Haplotype> matrix;
+		private final List<GaeaSamRecord> reads;
+		private final int[] readIndices;
+
+		private ReadSubsetLikelihoodMatrix(final LikelihoodMatrix<Haplotype> matrix, final List<GaeaSamRecord> reads,
+				final int[] readIndices) {
+			this.matrix = matrix;
+			this.reads = reads;
+			this.readIndices = readIndices;
+		}
+
+		@Override
+		public List<GaeaSamRecord> reads() {
+			return reads;
+		}
+
+		@Override
+		public List<Haplotype> alleles() {
+			return matrix.alleles();
+		}
+
+		@Override
+		public void set(final int alleleIndex, final int readIndex, final double value) {
+			matrix.set(alleleIndex, readIndices[readIndex], value);
+		}
+
+		@Override
+		public double get(final int alleleIndex, final int readIndex) {
+			return matrix.get(alleleIndex, readIndices[readIndex]);
+		}
+
+		@Override
+		public int indexOfAllele(final Haplotype allele) {
+			return matrix.indexOfAllele(allele);
+		}
+
+		@Override
+		public int indexOfRead(final GaeaSamRecord read) {
+			return reads.indexOf(read);
+		}
+
+		@Override
+		public int numberOfAlleles() {
+			return matrix.numberOfAlleles();
+		}
+
+		@Override
+		public int numberOfReads() {
+			return reads.size();
+		}
+
+		@Override
+		public Haplotype getAllele(final int alleleIndex) {
+			return matrix.getAllele(alleleIndex);
+		}
+
+		@Override
+		public GaeaSamRecord getRead(final int readIndex) {
+			return reads.get(readIndex);
+		}
+
+		@Override
+		public void copyAlleleLikelihoods(final int alleleIndex, final double[] dest, final int offset) {
+			for (int r = 0; r < reads.size(); r++) {
+				dest[offset + r] = get(alleleIndex, r);
+			}
+		}
+	}
+
 	/**
 	 * Pre-processing of the reads to be evaluated at the current location from
 	 * the current sample. We apply the PCR Error Model, and cap the minimum
@@ -41,6 +41,11 @@ public abstract class PairHMM implements Closeable{
             final LoglessPairHMM hmm = new LoglessPairHMM();
             return hmm;
         }),
+        /* Pure java LOGLESS_CACHING evaluated by anti-diagonals in float, redone in double only on underflow */
+        WAVEFRONT_LOGLESS(args -> {
+            final WavefrontPairHMM hmm = new WavefrontPairHMM();
+            return hmm;
+        }),
         /* Optimized AVX implementation of LOGLESS_CACHING called through JNI. Throws if AVX is not available */
         AVX_LOGLESS_CACHING(args -> {
             // Constructor will throw a UserException if AVX is not available
@@ -63,7 +68,7 @@ public abstract class PairHMM implements Closeable{
            Order of precedence:
             1. AVX_LOGLESS_CACHING_OMP
             2. AVX_LOGLESS_CACHING
-            3. LOGLESS_CACHING
+            3. WAVEFRONT_LOGLESS
          */
         FASTEST_AVAILABLE(args -> {
             // This try block is temporarily commented out becuase FPGA support is experimental for the time being. Once
@@ -89,7 +94,7 @@ public abstract class PairHMM implements Closeable{
                 return hmm;
             }
             catch ( UserException e ) {
-                return new LoglessPairHMM();
+                return new WavefrontPairHMM();
             }
         });
 
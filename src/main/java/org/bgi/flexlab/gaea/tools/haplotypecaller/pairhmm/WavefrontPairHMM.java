@@ -0,0 +1,305 @@
+package org.bgi.flexlab.gaea.tools.haplotypecaller.pairhmm;
+
+import java.util.List;
+import java.util.Map;
+
+import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.Haplotype;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.LikelihoodMatrix;
+import org.bgi.flexlab.gaea.util.QualityUtils;
+
+/**
+ * Pure java version of the logless PairHMM laid out like the GKL kernels.
+ *
+ * The matrices are evaluated one anti-diagonal at a time: every cell of a diagonal only depends on the two
+ * previous diagonals, so the inner loop has no loop carried dependency and walks flat arrays with unit stride.
+ * The haplotype is stored reversed so that its bases are read in the same direction as the read bases.
+ *
+ * Like GKL every pair is computed in single precision first and only recomputed in double precision when the
+ * float result underflows. Per read constants are computed once and shared by all haplotypes of the read.
+ *
+ * Java cannot turn on flush-to-zero, and arithmetic on subnormal numbers is very slow, so cells that fall below
+ * the smallest normal value are set to zero as GKL does with FTZ.
+ */
+public final class WavefrontPairHMM extends PairHMM {
+    static final float INITIAL_CONDITION_FLOAT = (float) Math.pow(2, 120);
+    static final double INITIAL_CONDITION_FLOAT_LOG10 = Math.log10(INITIAL_CONDITION_FLOAT);
+    static final double INITIAL_CONDITION_DOUBLE = Math.pow(2, 1020);
+    static final double INITIAL_CONDITION_DOUBLE_LOG10 = Math.log10(INITIAL_CONDITION_DOUBLE);
+
+    // float results below this have lost too much precision, same threshold as GKL
+    static final float MIN_ACCEPTED = 1e-28f;
+
+    private static final byte N = (byte) 'N';
+
+    // per read constants indexed by the 1-based read row
+    private byte[] readBases;
+    private float[] fMatchToMatch, fIndelToMatch, fMatchToInsertion, fInsertionToInsertion, fMatchToDeletion,
+            fDeletionToDeletion, fPriorMatch, fPriorMismatch;
+    private double[] dMatchToMatch, dIndelToMatch, dMatchToInsertion, dInsertionToInsertion, dMatchToDeletion,
+            dDeletionToDeletion, dPriorMatch, dPriorMismatch;
+    private final double[] transition = new double[PairHMMModel.TRANS_PROB_ARRAY_LENGTH];
+    private int readLength;
+
+    // reversed haplotype bases
+    private byte[] haplotype;
+
+    // three rotating anti-diagonals per state, indexed by read row
+    private float[][] fMatch, fInsertion, fDeletion;
+    private double[][] dMatch, dInsertion, dDeletion;
+
+    private long doublePrecisionCount = 0;
+
+    @Override
+    public void initialize(final int readMaxLength, final int haplotypeMaxLength) {
+        super.initialize(readMaxLength, haplotypeMaxLength);
+
+        readBases = new byte[paddedMaxReadLength];
+        fMatchToMatch = new float[paddedMaxReadLength];
+        fIndelToMatch = new float[paddedMaxReadLength];
+        fMatchToInsertion = new float[paddedMaxReadLength];
+        fInsertionToInsertion = new float[paddedMaxReadLength];
+        fMatchToDeletion = new float[paddedMaxReadLength];
+        fDeletionToDeletion = new float[paddedMaxReadLength];
+        fPriorMatch = new float[paddedMaxReadLength];
+        fPriorMismatch = new float[paddedMaxReadLength];
+        dMatchToMatch = new double[paddedMaxReadLength];
+        dIndelToMatch = new double[paddedMaxReadLength];
+        dMatchToInsertion = new double[paddedMaxReadLength];
+        dInsertionToInsertion = new double[paddedMaxReadLength];
+        dMatchToDeletion = new double[paddedMaxReadLength];
+        dDeletionToDeletion = new double[paddedMaxReadLength];
+        dPriorMatch = new double[paddedMaxReadLength];
+        dPriorMismatch = new double[paddedMaxReadLength];
+
+        haplotype = new byte[haplotypeMaxLength];
+
+        fMatch = new float[3][paddedMaxReadLength];
+        fInsertion = new float[3][paddedMaxReadLength];
+        fDeletion = new float[3][paddedMaxReadLength];
+        dMatch = new double[3][paddedMaxReadLength];
+        dInsertion = new double[3][paddedMaxReadLength];
+        dDeletion = new double[3][paddedMaxReadLength];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void computeLog10Likelihoods(final LikelihoodMatrix<Haplotype> logLikelihoods,
+                                        final List<GaeaSamRecord> processedReads,
+                                        final Map<GaeaSamRecord, byte[]> gcp) {
+        if (processedReads.isEmpty()) {
+            return;
+        }
+        if (doProfiling) {
+            startTime = System.nanoTime();
+        }
+        final List<Haplotype> alleles = logLikelihoods.alleles();
+        final int alleleCount = alleles.size();
+        int haplotypeMaxLength = 0;
+        for (final Haplotype allele : alleles) {
+            haplotypeMaxLength = Math.max(haplotypeMaxLength, allele.length());
+        }
+        final int readMaxLength = findMaxReadLength(processedReads);
+        if (!initialized || readMaxLength > maxReadLength || haplotypeMaxLength > maxHaplotypeLength) {
+            initialize(readMaxLength, haplotypeMaxLength);
+        }
+
+        mLogLikelihoodArray = new double[processedReads.size() * alleleCount];
+        int idx = 0;
+        int readIndex = 0;
+        for (final GaeaSamRecord read : processedReads) {
+            setRead(read.getReadBases(), read.getBaseQualities(), read.getBaseInsertionQualities(),
+                    read.getBaseDeletionQualities(), gcp.get(read));
+            for (int a = 0; a < alleleCount; a++) {
+                final double lk = computeHaplotype(alleles.get(a).getBases());
+                logLikelihoods.set(a, readIndex, lk);
+                mLogLikelihoodArray[idx++] = lk;
+            }
+            readIndex++;
+        }
+        if (doProfiling) {
+            threadLocalPairHMMComputeTimeDiff = (System.nanoTime() - startTime);
+            pairHMMComputeTime += threadLocalPairHMMComputeTimeDiff;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected double subComputeReadLikelihoodGivenHaplotypeLog10(final byte[] haplotypeBases,
+                                                                 final byte[] readBases,
+                                                                 final byte[] readQuals,
+                                                                 final byte[] insertionGOP,
+                                                                 final byte[] deletionGOP,
+                                                                 final byte[] overallGCP,
+                                                                 final int hapStartIndex,
+                                                                 final boolean recacheReadValues,
+                                                                 final int nextHapStartIndex) {
+        if (!constantsAreInitialized || recacheReadValues) {
+            setRead(readBases, readQuals, insertionGOP, deletionGOP, overallGCP);
+            constantsAreInitialized = true;
+        }
+        return computeHaplotype(haplotypeBases);
+    }
+
+    /**
+     * number of pairs that needed the double precision pass
+     */
+    public long getDoublePrecisionCount() {
+        return doublePrecisionCount;
+    }
+
+    /**
+     * fill the per read constants of rows 1..readLength
+     */
+    private void setRead(final byte[] bases, final byte[] quals, final byte[] insertionGOP, final byte[] deletionGOP,
+                         final byte[] overallGCP) {
+        readLength = bases.length;
+        final double tristate = doNotUseTristateCorrection ? 1.0 : LoglessPairHMM.TRISTATE_CORRECTION;
+        for (int r = 0; r < readLength; r++) {
+            final int i = r + 1;
+            readBases[i] = bases[r];
+            PairHMMModel.qualToTransProbs(transition, insertionGOP[r], deletionGOP[r], overallGCP[r]);
+            dMatchToMatch[i] = transition[PairHMMModel.matchToMatch];
+            dIndelToMatch[i] = transition[PairHMMModel.indelToMatch];
+            dMatchToInsertion[i] = transition[PairHMMModel.matchToInsertion];
+            dInsertionToInsertion[i] = transition[PairHMMModel.insertionToInsertion];
+            dMatchToDeletion[i] = transition[PairHMMModel.matchToDeletion];
+            dDeletionToDeletion[i] = transition[PairHMMModel.deletionToDeletion];
+            dPriorMatch[i] = QualityUtils.qualToProb(quals[r]);
+            dPriorMismatch[i] = QualityUtils.qualToErrorProb(quals[r]) / tristate;
+
+            fMatchToMatch[i] = (float) dMatchToMatch[i];
+            fIndelToMatch[i] = (float) dIndelToMatch[i];
+            fMatchToInsertion[i] = (float) dMatchToInsertion[i];
+            fInsertionToInsertion[i] = (float) dInsertionToInsertion[i];
+            fMatchToDeletion[i] = (float) dMatchToDeletion[i];
+            fDeletionToDeletion[i] = (float) dDeletionToDeletion[i];
+            fPriorMatch[i] = (float) dPriorMatch[i];
+            fPriorMismatch[i] = (float) dPriorMismatch[i];
+        }
+    }
+
+    private double computeHaplotype(final byte[] haplotypeBases) {
+        final int haplotypeLength = haplotypeBases.length;
+        for (int j = 0; j < haplotypeLength; j++) {
+            haplotype[j] = haplotypeBases[haplotypeLength - 1 - j];
+        }
+
+        final float result = computeFloat(haplotypeLength);
+        if (result >= MIN_ACCEPTED) {
+            return Math.log10(result) - INITIAL_CONDITION_FLOAT_LOG10;
+        }
+        doublePrecisionCount++;
+        return Math.log10(computeDouble(haplotypeLength)) - INITIAL_CONDITION_DOUBLE_LOG10;
+    }
+
+    /**
+     * Cell (i, j) lies on diagonal d = i + j and is stored at index i of that diagonal. Row 0 holds the free
+     * deletions at the start of the haplotype and column 0 is zero.
+     */
+    private float computeFloat(final int haplotypeLength) {
+        final float initialValue = INITIAL_CONDITION_FLOAT / haplotypeLength;
+        float[] m2 = fMatch[0], m1 = fMatch[1], m = fMatch[2];
+        float[] x2 = fInsertion[0], x1 = fInsertion[1], x = fInsertion[2];
+        float[] y2 = fDeletion[0], y1 = fDeletion[1], y = fDeletion[2];
+        final byte[] read = readBases;
+        final byte[] hap = haplotype;
+        final float[] mm = fMatchToMatch, gm = fIndelToMatch, mx = fMatchToInsertion, xx = fInsertionToInsertion,
+                my = fMatchToDeletion, yy = fDeletionToDeletion, pm = fPriorMatch, pe = fPriorMismatch;
+
+        float sum = 0;
+        final int lastDiagonal = readLength + haplotypeLength;
+        for (int d = 0; d <= lastDiagonal; d++) {
+            if (d <= haplotypeLength) {
+                m[0] = 0;
+                x[0] = 0;
+                y[0] = initialValue;
+            }
+            if (d > 0 && d <= readLength) {
+                m[d] = 0;
+                x[d] = 0;
+                y[d] = 0;
+            }
+
+            // haplotype base j - 1 = d - i - 1 is hap[haplotypeLength - d + i]
+            final int lo = Math.max(1, d - haplotypeLength);
+            final int hi = Math.min(readLength, d - 1);
+            final int hapOffset = haplotypeLength - d;
+            for (int i = lo; i <= hi; i++) {
+                final byte rb = read[i];
+                final byte hb = hap[hapOffset + i];
+                final float prior = (rb == hb || rb == N || hb == N) ? pm[i] : pe[i];
+                final float mv = prior * (m2[i - 1] * mm[i] + (x2[i - 1] + y2[i - 1]) * gm[i]);
+                final float xv = m1[i - 1] * mx[i] + x1[i - 1] * xx[i];
+                final float yv = m1[i] * my[i] + y1[i] * yy[i];
+                m[i] = mv < Float.MIN_NORMAL ? 0 : mv;
+                x[i] = xv < Float.MIN_NORMAL ? 0 : xv;
+                y[i] = yv < Float.MIN_NORMAL ? 0 : yv;
+            }
+            if (hi == readLength && d > readLength) {
+                sum += m[readLength] + x[readLength];
+            }
+
+            float[] t = m2; m2 = m1; m1 = m; m = t;
+            t = x2; x2 = x1; x1 = x; x = t;
+            t = y2; y2 = y1; y1 = y; y = t;
+        }
+        return sum;
+    }
+
+    /**
+     * same as {@link #computeFloat} in double precision
+     */
+    private double computeDouble(final int haplotypeLength) {
+        final double initialValue = INITIAL_CONDITION_DOUBLE / haplotypeLength;
+        double[] m2 = dMatch[0], m1 = dMatch[1], m = dMatch[2];
+        double[] x2 = dInsertion[0], x1 = dInsertion[1], x = dInsertion[2];
+        double[] y2 = dDeletion[0], y1 = dDeletion[1], y = dDeletion[2];
+        final byte[] read = readBases;
+        final byte[] hap = haplotype;
+        final double[] mm = dMatchToMatch, gm = dIndelToMatch, mx = dMatchToInsertion, xx = dInsertionToInsertion,
+                my = dMatchToDeletion, yy = dDeletionToDeletion, pm = dPriorMatch, pe = dPriorMismatch;
+
+        double sum = 0;
+        final int lastDiagonal = readLength + haplotypeLength;
+        for (int d = 0; d <= lastDiagonal; d++) {
+            if (d <= haplotypeLength) {
+                m[0] = 0;
+                x[0] = 0;
+                y[0] = initialValue;
+            }
+            if (d > 0 && d <= readLength) {
+                m[d] = 0;
+                x[d] = 0;
+                y[d] = 0;
+            }
+
+            final int lo = Math.max(1, d - haplotypeLength);
+            final int hi = Math.min(readLength, d - 1);
+            final int hapOffset = haplotypeLength - d;
+            for (int i = lo; i <= hi; i++) {
+                final byte rb = read[i];
+                final byte hb = hap[hapOffset + i];
+                final double prior = (rb == hb || rb == N || hb == N) ? pm[i] : pe[i];
+                final double mv = prior * (m2[i - 1] * mm[i] + (x2[i - 1] + y2[i - 1]) * gm[i]);
+                final double xv = m1[i - 1] * mx[i] + x1[i - 1] * xx[i];
+                final double yv = m1[i] * my[i] + y1[i] * yy[i];
+                m[i] = mv < Double.MIN_NORMAL ? 0 : mv;
+                x[i] = xv < Double.MIN_NORMAL ? 0 : xv;
+                y[i] = yv < Double.MIN_NORMAL ? 0 : yv;
+            }
+            if (hi == readLength && d > readLength) {
+                sum += m[readLength] + x[readLength];
+            }
+
+            double[] t = m2; m2 = m1; m1 = m; m = t;
+            t = x2; x2 = x1; x1 = x; x = t;
+            t = y2; y2 = y1; y1 = y; y = t;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,29 @@
+package org.bgi.flexlab.gaea.tools.haplotypecaller.readfilter;
+
+import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
+import org.bgi.flexlab.gaea.data.structure.bam.filter.util.SamRecordFilter;
+import org.bgi.flexlab.gaea.data.structure.region.Region;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.HaplotypeCallerTraversal;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+
+/**
+ * Map side view of the read filters the HaplotypeCaller reducer applies
+ * before its positional downsampler: filters the reads those filters would
+ * drop, so they don't count toward the map side cap per start.
+ */
+public final class DownsamplingReadFilter implements SamRecordFilter {
+    private SAMFileHeader header = null;
+    private ReadFilter readFilter = null;
+
+    @Override
+    public boolean filter(SAMRecord sam, Region region) {
+        if (readFilter == null || sam.getHeader() != header) {
+            header = sam.getHeader();
+            readFilter = ReadFilter.fromList(HaplotypeCallerTraversal.makeStandardHCReadFilters(), header);
+        }
+        GaeaSamRecord read = sam instanceof GaeaSamRecord ? (GaeaSamRecord) sam : new GaeaSamRecord(header, sam);
+        return !readFilter.test(read);
+    }
+}
@@ -197,10 +197,13 @@ public final class AssemblyBasedCallerUtils {
 
 		switch (likelihoodArgs.likelihoodEngineImplementation) {
 		case PairHMM:
-			return new PairHMMLikelihoodCalculationEngine((byte) likelihoodArgs.gcpHMM,
-					likelihoodArgs.pairHMMNativeArgs.getPairHMMArgs(), likelihoodArgs.pairHMM,
-					log10GlobalReadMismappingRate, likelihoodArgs.pcrErrorModel,
+			final PairHMMLikelihoodCalculationEngine engine = new PairHMMLikelihoodCalculationEngine(
+					(byte) likelihoodArgs.gcpHMM, likelihoodArgs.pairHMMNativeArgs.getPairHMMArgs(),
+					likelihoodArgs.pairHMM, log10GlobalReadMismappingRate, likelihoodArgs.pcrErrorModel,
 					likelihoodArgs.BASE_QUALITY_SCORE_THRESHOLD);
+			if (likelihoodArgs.likelihoodCacheMegabytes > 0)
+				engine.enableLikelihoodCache(likelihoodArgs.likelihoodCacheMegabytes);
+			return engine;
 		case Random:
 			return new RandomLikelihoodCalculationEngine();
 		default:
@@ -216,6 +219,7 @@ public final class AssemblyBasedCallerUtils {
 				rtaac.numPruningSamples);
 		assemblyEngine.setErrorCorrectKmers(rtaac.errorCorrectKmers);
 		assemblyEngine.setPruneFactor(rtaac.minPruneFactor);
+		assemblyEngine.setConcurrentKmerAssembly(rtaac.concurrentKmerAssembly);
 		assemblyEngine.setDebug(args.debug);
 		assemblyEngine.setDebugGraphTransformations(rtaac.debugGraphTransformations);
 		assemblyEngine.setRecoverDanglingBranches(!rtaac.doNotRecoverDanglingBranches);
@@ -10,7 +10,6 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.bgi.flexlab.gaea.data.exception.UserException;
@@ -56,7 +55,7 @@ public class JointCallingEngine {
 	private boolean uniquifySamples = false;
 
 	// private ArrayList<VariantContext> variants = null;
-	private TreeMap<Integer, ArrayList<VariantContext>> variantsForSample = null;
+	private SampleRecordStore variantsForSample = null;
 	//private String[] samples = null;
 
 	private VariantContext currentContext = null;
@@ -84,7 +83,6 @@ public class JointCallingEngine {
 
 	public JointCallingEngine(JointCallingOptions options, GenomeLocationParser parser,
 			MultipleVCFHeaderForJointCalling multiHeaders) {
-		variantsForSample = new TreeMap<Integer, ArrayList<VariantContext>>();
 		this.INCLUDE_NON_VARIANTS = options.INCLUDE_NON_VARIANT;
 		this.uniquifySamples = options.isUniquifySamples();
 		this.parser = parser;
@@ -144,6 +142,7 @@ public class JointCallingEngine {
 		}*/
 		
 		this.sampleSize = multiHeaders.getHeaderSize();
+		variantsForSample = new SampleRecordStore(sampleSize);
 		this.vcfHeaderDateCaches = multiHeaders.getHeaderDataCache();
 
 		// now that we have all the VCF headers, initialize the annotations
@@ -170,10 +169,7 @@ public class JointCallingEngine {
 	}
 
 	public void purgeOutOfScopeRecords(GenomeLocation location) {
-
-		for (Integer sample : variantsForSample.keySet()) {
-			variantsForSample.get(sample).removeIf(context -> context.getEnd() < location.getStart());
-		}
+		variantsForSample.purge(location.getStart());
 	}
 
 	public void lazyLoad(Iterator<VariantContextWritable> iterator, GenomeLocation location) {
@@ -182,9 +178,7 @@ public class JointCallingEngine {
 		if (curr <= max_position)
 			purgeOutOfScopeRecords(location);
 		else {
-			for (Integer sample : variantsForSample.keySet()) {
-				variantsForSample.get(sample).clear();
-			}
+			variantsForSample.clear();
 			max_position = -1;
 		}
 
@@ -198,26 +192,7 @@ public class JointCallingEngine {
 			if (currentContext.getStart() > curr)
 				break;
 			if (currentContext.getStart() <= curr && currentContext.getEnd() >= curr) {
-				GenotypesContext gc = currentContext.getGenotypes();
-				String sampleName = currentContext.getAttributeAsString("SM", null);
-				if (sampleName == null)
-					throw new UserException("Not contains SM attribute");
-				
-				int sampleID = Integer.parseInt(sampleName);
-				
-				if (gc instanceof LazyParsingGenotypesContext)
-					((LazyParsingGenotypesContext) gc).getParser().setHeaderDataCache(vcfHeaderDateCaches.get(sampleID));
-				
-				if (variantsForSample.containsKey(sampleID)) {
-					variantsForSample.get(sampleID).add(currentContext);
-				} else {
-					ArrayList<VariantContext> list = new ArrayList<VariantContext>();
-					list.add(currentContext);
-					variantsForSample.put(sampleID, list);
-				}
-
-				if (max_position < currentContext.getEnd())
-					max_position = currentContext.getEnd();
+				load(currentContext);
 			}
 
 			if (iterator.hasNext()) {
@@ -229,37 +204,74 @@ public class JointCallingEngine {
 		}
 	}
 	
-	private VariantContext getValues(int sample,GenomeLocation loc,boolean requireStartHere){
-		if(variantsForSample.containsKey(sample) && variantsForSample.get(sample).size() > 0){
-			for(VariantContext vc : variantsForSample.get(sample)){
-				if ( ! requireStartHere || vc.getStart() == loc.getStart()){
-					return vc;
-				}
-			}
-		}
+	private void load(VariantContext context) {
+		GenotypesContext gc = context.getGenotypes();
+		String sampleName = context.getAttributeAsString("SM", null);
+		if (sampleName == null)
+			throw new UserException("Not contains SM attribute");
 		
-		return null;
-	}
-	
-	private VariantContext getValues(int sample,GenomeLocation loc){
-		VariantContext vc = getValues(sample,loc,true);
+		int sampleID = Integer.parseInt(sampleName);
 		
-		if(vc == null)
-			vc = getValues(sample,loc,false);
+		if (gc instanceof LazyParsingGenotypesContext)
+			((LazyParsingGenotypesContext) gc).getParser().setHeaderDataCache(vcfHeaderDateCaches.get(sampleID));
 		
-		return vc;
+		// records of samples beyond the headers are never called
+		if (sampleID < variantsForSample.getSampleSize())
+			variantsForSample.add(sampleID, context);
+
+		if (max_position < context.getEnd())
+			max_position = context.getEnd();
 	}
 
-	private List<VariantContext> getValues(GenomeLocation loc) {
-		List<VariantContext> list = new ArrayList<VariantContext>();
-		
-		int i;
-		for(i = 0 ; i < sampleSize ; i++) {
-			VariantContext vc = getValues(i,loc);
-			if(vc != null)
-				list.add(vc);
+	/**
+	 * is the record a reference block, whose only alternate allele is NON_REF?
+	 */
+	private static boolean isReferenceBlock(VariantContext context) {
+		List<Allele> alternates = context.getAlternateAlleles();
+		return alternates.isEmpty()
+				|| (alternates.size() == 1 && alternates.get(0).equals(GaeaVCFConstants.NON_REF_SYMBOLIC_ALLELE));
+	}
+
+	/**
+	 * Find the next position from which on a call can be made when non variant
+	 * sites aren't emitted: the start of the next record that isn't a reference
+	 * block, as only such a record adds an alternate allele at its start.
+	 * 
+	 * The records before it are loaded on the way. A sample's records that end
+	 * before the start of its next record can't overlap any later position, so
+	 * they are dropped and every sample keeps only the blocks around the
+	 * current position.
+	 * 
+	 * @return the start of the next variant record, or -1 if there is none
+	 */
+	public int nextVariantStart(Iterator<VariantContextWritable> iterator, int from) {
+		while (true) {
+			if (currentContext == null) {
+				if (!iterator.hasNext())
+					return -1;
+				currentContext = iterator.next().get();
+			}
+			if (currentContext.getStart() >= from && !isReferenceBlock(currentContext))
+				return currentContext.getStart();
+
+			load(currentContext);
+			variantsForSample.purge(currentContext.getStart());
+			currentContext = null;
 		}
+	}
+
+	/**
+	 * forget the records of a window whose records weren't all read
+	 */
+	public void resetWindow() {
+		currentContext = null;
+		max_position = -1;
+		variantsForSample.clear();
+	}
 
+	private List<VariantContext> getValues(GenomeLocation loc) {
+		List<VariantContext> list = new ArrayList<VariantContext>();
+		variantsForSample.getAll(loc.getStart(), list);
 		return list;
 	}
 
@@ -0,0 +1,115 @@
+package org.bgi.flexlab.gaea.tools.jointcalling;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+
+/**
+ * The gvcf records overlapping the current position, by sample index.
+ *
+ * Every sample has a small array of its records in load order, the samples
+ * with records are kept in a bitset, and the ends of all records in a heap,
+ * so dropping the records that ended only touches those records. The
+ * records have to be added sorted by start.
+ */
+class SampleRecordStore {
+	private final VariantContext[][] records;
+	private final int[] sizes;
+	private final BitSet active;
+
+	/** end << 32 | sample of every record */
+	private final LongHeapPriorityQueue ends = new LongHeapPriorityQueue();
+
+	/** samples with a record starting at startsHerePosition */
+	private final BitSet startsHere;
+	private int startsHerePosition = -1;
+
+	SampleRecordStore(int sampleSize) {
+		records = new VariantContext[sampleSize][];
+		sizes = new int[sampleSize];
+		active = new BitSet(sampleSize);
+		startsHere = new BitSet(sampleSize);
+	}
+
+	int getSampleSize() {
+		return sizes.length;
+	}
+
+	void add(int sample, VariantContext context) {
+		VariantContext[] list = records[sample];
+		if (list == null)
+			list = records[sample] = new VariantContext[2];
+		else if (sizes[sample] == list.length)
+			list = records[sample] = Arrays.copyOf(list, list.length * 2);
+		list[sizes[sample]++] = context;
+		active.set(sample);
+		ends.enqueue((long) context.getEnd() << 32 | sample);
+
+		int start = context.getStart();
+		if (start > startsHerePosition) {
+			startsHere.clear();
+			startsHerePosition = start;
+		}
+		if (start == startsHerePosition)
+			startsHere.set(sample);
+	}
+
+	/**
+	 * drop the records ending before position
+	 */
+	void purge(int position) {
+		while (!ends.isEmpty() && (int) (ends.firstLong() >>> 32) < position) {
+			int sample = (int) ends.dequeueLong();
+			VariantContext[] list = records[sample];
+			int kept = 0;
+			for (int i = 0; i < sizes[sample]; i++) {
+				if (list[i].getEnd() >= position)
+					list[kept++] = list[i];
+			}
+			Arrays.fill(list, kept, sizes[sample], null);
+			sizes[sample] = kept;
+			if (kept == 0)
+				active.clear(sample);
+		}
+	}
+
+	/**
+	 * the record of a sample at position: the first one starting there, or
+	 * else the first one loaded
+	 */
+	VariantContext get(int sample, int position) {
+		int size = sizes[sample];
+		if (size == 0)
+			return null;
+		VariantContext[] list = records[sample];
+		if (size > 1 && position == startsHerePosition && startsHere.get(sample)) {
+			for (int i = 0; i < size; i++) {
+				if (list[i].getStart() == position)
+					return list[i];
+			}
+		}
+		return list[0];
+	}
+
+	/**
+	 * add the records at position of all samples with records, by sample index
+	 */
+	void getAll(int position, List<VariantContext> values) {
+		for (int sample = active.nextSetBit(0); sample >= 0; sample = active.nextSetBit(sample + 1))
+			values.add(get(sample, position));
+	}
+
+	void clear() {
+		for (int sample = active.nextSetBit(0); sample >= 0; sample = active.nextSetBit(sample + 1)) {
+			Arrays.fill(records[sample], 0, sizes[sample], null);
+			sizes[sample] = 0;
+		}
+		active.clear();
+		startsHere.clear();
+		startsHerePosition = -1;
+		ends.clear();
+	}
+}
@@ -439,15 +439,17 @@ public class GenotypeLikelihoodCalculator {
         private static synchronized void initialize() {
             if (cache == null) {
                 final int tableSize = (int) (MAX_TOLERANCE / TABLE_STEP) + 1;
-                cache = new double[tableSize];
-                for (int k = 0; k < cache.length; k++)
-                    cache[k] = Math.log10(1.0 + Math.pow(10.0, -((double) k) * TABLE_STEP));
+                final double[] table = new double[tableSize];
+                for (int k = 0; k < table.length; k++)
+                    table[k] = Math.log10(1.0 + Math.pow(10.0, -((double) k) * TABLE_STEP));
+                // publish only the filled table, get() reads it without locking
+                cache = table;
             }
         }
 
         private static final double TABLE_STEP = 0.0001;
         private static final double INV_STEP = 1.0 / TABLE_STEP;
-        private static double[] cache = null;
+        private static volatile double[] cache = null;
     }
 
     /**
@@ -2,6 +2,7 @@ package org.bgi.flexlab.gaea.tools.jointcalling.util;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -119,9 +120,62 @@ public class MultipleVCFHeaderForJointCalling extends GaeaVCFHeader implements S
 		}
 	}
 
+	/**
+	 * merge the headers of paths into the merged header and header info kept
+	 * in previous, numbering the new files after the ones already there, and
+	 * write the result to outdir; previous is left as it is
+	 */
+	public void appendHeadersConfig(List<Path> paths, String previous, String outdir, Configuration conf) {
+		if (previous == null) {
+			headersConfig(paths, outdir, conf);
+			return;
+		}
+
+		Path outpath = new Path(outdir+"/"+MERGER_HEADER_INFO);
+		List<String> lines = new ArrayList<String>();
+		Set<String> names = new HashSet<String>();
+		try {
+			FileIterator iterator = new FileIterator(new Path(previous + "/" + MERGER_HEADER_INFO));
+			while (iterator.hasNext()) {
+				String line = iterator.next().toString();
+				lines.add(line);
+				names.add(line.split("\t")[0]);
+			}
+			iterator.close();
+		} catch (IOException e) {
+			throw new UserException(e.toString());
+		}
+
+		for (Path p : paths) {
+			if (names.contains(p.getName()))
+				throw new UserException.BadInput(p.getName() + " is already in " + previous);
+		}
+
+		readHeader(new Path(previous + "/" + HEADER_DEFAULT_PATH), conf);
+		try {
+			outputStream = outpath.getFileSystem(conf).create(outpath, true);
+			for (String line : lines)
+				outputStream.write((line + "\n").getBytes());
+		} catch (IOException e) {
+			throw new UserException(e.toString());
+		}
+
+		conf.set(GaeaVCFOutputFormat.OUT_PATH_PROP, outdir + "/"+HEADER_DEFAULT_PATH);
+		conf.set(MERGER_HEADER_INFO, outpath.toString());
+
+		currentIndex = lines.size();
+		headers.add(mergeHeader);
+		addHeaders(paths, outpath, conf);
+		writeMergeHeaders(conf);
+	}
+
 	public void getHeaders(List<Path> paths, String outdir, Configuration conf) {
 		currentIndex = 0;
 		Path outpath = new Path(outdir+"/"+MERGER_HEADER_INFO);
+		addHeaders(paths, outpath, conf);
+	}
+
+	private void addHeaders(List<Path> paths, Path outpath, Configuration conf) {
 		for (Path p : paths) {
 			VCFHdfsLoader loader = null;
 			try {
@@ -202,6 +256,28 @@ public class MultipleVCFHeaderForJointCalling extends GaeaVCFHeader implements S
 		return index;
 	}
 
+	/**
+	 * indexes of all input files by file name, read at once
+	 */
+	public HashMap<String, Integer> getIndexes(Configuration conf) {
+		String outputpath = conf.get(MERGER_HEADER_INFO);
+		HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+		try {
+			FileIterator iterator = new FileIterator(outputpath);
+
+			while (iterator.hasNext()) {
+				String[] str = iterator.next().toString().split("\t");
+				indexes.put(str[0], Integer.parseInt(str[1]));
+			}
+
+			iterator.close();
+		} catch (IOException e) {
+			throw new RuntimeException(" read header info error.");
+		}
+
+		return indexes;
+	}
+
 	public void readHeaders(Configuration conf) {
 		String headerString = conf.get(GaeaVCFOutputFormat.OUT_PATH_PROP);
 		readHeader(new Path(headerString), conf);
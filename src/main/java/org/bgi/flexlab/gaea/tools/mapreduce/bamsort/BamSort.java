@@ -36,6 +36,7 @@ import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
 import org.apache.hadoop.mapreduce.lib.partition.InputSampler;
 import org.apache.hadoop.mapreduce.lib.partition.TotalOrderPartitioner;
 import org.bgi.flexlab.gaea.data.mapreduce.input.bam.GaeaAnySAMSortInputFormat;
+import org.bgi.flexlab.gaea.data.mapreduce.output.bam.BamIndexFragment;
 import org.bgi.flexlab.gaea.data.mapreduce.output.bam.GaeaNoheaderBamOutputFormat;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.input.bam.GaeaSamSortRecordReader;
@@ -103,6 +104,7 @@ public class BamSort extends ToolsRunner {
         conf.setBoolean(SortOutputFormat.WRITE_HEADER_PROP, false);
         conf.set(SortOutputFormat.OUTPUT_NAME_PROP, intermediateOutName);
         conf.set(SortOutputFormat.OUTPUT_SAM_FORMAT_PROPERTY, options.getOutputFormat());
+        conf.setBoolean(BamIndexFragment.WRITE_FRAGMENT_PROP, format == SAMFormat.BAM && options.isWriteIndex());
 
 
         job.setJarByClass(BamSort.class);
@@ -144,26 +146,19 @@ public class BamSort extends ToolsRunner {
         if(job.waitForCompletion(true)) {
             header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
 
-            FileSystem fs = tmpPath.getFileSystem(conf);
+            List<String> partPatterns = new ArrayList<>();
+            List<SAMFileHeader> sampleHeaders = new ArrayList<>();
+            List<Path> outputs = new ArrayList<>();
             for (String sample : sampleNames){
-                SAMFileHeader sampleHeader = BamSortUtils.deleteSampleFromHeader(header, sample);
-                Path outputPath = new Path(options.getOutdir() + "/" + sample + fileSuffix);
-                final FileSystem dstFS = outputPath.getFileSystem(conf);
-
-                OutputStream os = dstFS.create(outputPath);
-                new SAMOutputPreparer().prepareForRecords(
-                        os, format,
-                        sampleHeader);
-
-                FileStatus[] fileStatuses = fs.globStatus(new Path(tmpPath.toString() + "/" + sample + "*-r-[0-9]*"));
-                for(FileStatus fstat: fileStatuses){
-                    FSDataInputStream ins = fs.open(fstat.getPath());
-                    IOUtils.copyBytes(ins, os, conf, false);
-                    ins.close();
-                }
-                os.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
-                os.close();
+                partPatterns.add(sample + "*-r-[0-9]*");
+                sampleHeaders.add(BamSortUtils.deleteSampleFromHeader(header, sample));
+                outputs.add(new Path(options.getOutdir() + "/" + sample + fileSuffix));
             }
+            Timer t = new Timer();
+            t.start();
+            new BamSortMerger(conf, tmpPath, format, options.isWriteIndex())
+                    .mergeAll(partPatterns, sampleHeaders, outputs, options.getMergeThreads());
+            System.out.printf("sort :: Merging complete in %d.%03d s.\n", t.stopS(), t.fms());
 //            fs.delete(tmpPath, true);
             return 0;
         }
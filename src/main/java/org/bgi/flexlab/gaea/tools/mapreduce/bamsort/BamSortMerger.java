@@ -0,0 +1,179 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.bamsort;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.bgi.flexlab.gaea.data.mapreduce.output.bam.BamIndexFragment;
+import org.seqdoop.hadoop_bam.SAMFormat;
+import org.seqdoop.hadoop_bam.util.SAMOutputPreparer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * merge the sorted reducer parts of every sample into one file. samples are
+ * merged in parallel; on HDFS the parts are concatenated in the namenode
+ * instead of being copied. index fragments written by the reducers are
+ * shifted by the offset of their part and stitched into a .bai/.csi.
+ */
+public class BamSortMerger {
+    private final Configuration conf;
+    private final Path partDir;
+    private final SAMFormat format;
+    private final boolean writeIndex;
+
+    public BamSortMerger(Configuration conf, Path partDir, SAMFormat format, boolean writeIndex) {
+        this.conf = conf;
+        this.partDir = partDir;
+        this.format = format;
+        this.writeIndex = writeIndex && format == SAMFormat.BAM;
+    }
+
+    /**
+     * @param partPattern
+     *            glob of the parts of one sample, relative to the part dir
+     */
+    public void merge(String partPattern, SAMFileHeader header, Path output) throws IOException {
+        FileSystem srcFS = partDir.getFileSystem(conf);
+        FileSystem dstFS = output.getFileSystem(conf);
+
+        List<Path> parts = new ArrayList<>();
+        List<Long> partStarts = new ArrayList<>();
+        FileStatus[] stats = srcFS.globStatus(new Path(partDir, partPattern));
+        Arrays.sort(stats);
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        new SAMOutputPreparer().prepareForRecords(headerBytes, format, header);
+        long offset = headerBytes.size();
+        for (FileStatus stat : stats) {
+            if (stat.getPath().getName().endsWith(BamIndexFragment.FRAGMENT_SUFFIX) || stat.getLen() == 0)
+                continue;
+            parts.add(stat.getPath());
+            partStarts.add(offset);
+            offset += stat.getLen();
+        }
+
+        // fragments are read before concat moves the parts away
+        BamIndexFragment index = writeIndex ? mergeIndex(srcFS, parts, partStarts) : null;
+
+        if (!concat(srcFS, dstFS, headerBytes.toByteArray(), parts, output))
+            copy(srcFS, dstFS, headerBytes.toByteArray(), parts, output);
+
+        if (index != null) {
+            Path indexPath = new Path(output.toString() + index.getIndexSuffix());
+            OutputStream out = dstFS.create(indexPath);
+            index.writeIndex(out);
+        }
+    }
+
+    private BamIndexFragment mergeIndex(FileSystem fs, List<Path> parts, List<Long> partStarts) throws IOException {
+        BamIndexFragment index = null;
+        for (int i = 0; i < parts.size(); i++) {
+            Path fragmentPath = new Path(parts.get(i).toString() + BamIndexFragment.FRAGMENT_SUFFIX);
+            if (!fs.exists(fragmentPath)) {
+                System.err.println("sort :: no index fragment for " + parts.get(i) + ", skip index.");
+                return null;
+            }
+            DataInputStream in = fs.open(fragmentPath);
+            BamIndexFragment fragment = BamIndexFragment.read(in);
+            in.close();
+
+            fragment.shift(partStarts.get(i));
+            if (index == null)
+                index = fragment;
+            else
+                index.merge(fragment);
+        }
+        return index;
+    }
+
+    private void writeEnd(OutputStream os) throws IOException {
+        if (format == SAMFormat.BAM)
+            os.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+    }
+
+    /**
+     * concat header, parts and end block in place; false if the file system
+     * can not do it, the parts are untouched then
+     */
+    private boolean concat(FileSystem srcFS, FileSystem dstFS, byte[] header, List<Path> parts, Path output) throws IOException {
+        if (parts.isEmpty() || !srcFS.getUri().equals(dstFS.getUri()))
+            return false;
+
+        Path target = new Path(partDir, "_" + output.getName() + ".merging");
+        Path end = new Path(partDir, "_" + output.getName() + ".end");
+        OutputStream os = srcFS.create(target, true);
+        os.write(header);
+        os.close();
+        List<Path> sources = new ArrayList<>(parts);
+        if (format == SAMFormat.BAM) {
+            os = srcFS.create(end, true);
+            writeEnd(os);
+            os.close();
+            sources.add(end);
+        }
+
+        try {
+            srcFS.concat(target, sources.toArray(new Path[sources.size()]));
+        } catch (UnsupportedOperationException | IOException e) {
+            srcFS.delete(target, false);
+            srcFS.delete(end, false);
+            return false;
+        }
+
+        if (dstFS.exists(output))
+            dstFS.delete(output, false);
+        if (!srcFS.rename(target, output))
+            throw new IOException("cann't rename " + target + " to " + output);
+        return true;
+    }
+
+    private void copy(FileSystem srcFS, FileSystem dstFS, byte[] header, List<Path> parts, Path output) throws IOException {
+        OutputStream os = dstFS.create(output);
+        os.write(header);
+        for (Path part : parts) {
+            FSDataInputStream ins = srcFS.open(part);
+            IOUtils.copyBytes(ins, os, conf, false);
+            ins.close();
+        }
+        writeEnd(os);
+        os.close();
+    }
+
+    /**
+     * merge the samples on a thread pool
+     */
+    public void mergeAll(List<String> partPatterns, List<SAMFileHeader> headers, List<Path> outputs, int threads)
+            throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, outputs.size())));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < outputs.size(); i++) {
+            final int index = i;
+            futures.add(pool.submit(() -> {
+                merge(partPatterns.get(index), headers.get(index), outputs.get(index));
+                return null;
+            }));
+        }
+        pool.shutdown();
+        try {
+            for (Future<?> future : futures)
+                future.get();
+        } catch (Exception e) {
+            pool.shutdownNow();
+            throw new IOException(e.toString());
+        }
+    }
+}
@@ -57,6 +57,8 @@ public class BamSortOptions extends GaeaOptions implements HadoopOptions {
     private String partitionFile;
 
     private int reducerNum;
+    private int mergeThreads;
+    private boolean writeIndex = true;
 
     public BamSortOptions() {
         addOption("i", "input",      true,  "input file list. [request]", true);
@@ -70,6 +72,8 @@ public class BamSortOptions extends GaeaOptions implements HadoopOptions {
         addOption("R", "reducer", true, "reducer numbers [30]");
         addOption("T","type",    true, "filter mode. unmap/all [all]");
         addOption("p", "partitonFile", true, "the partiton file (_partitons.lst) [null]");
+        addOption("t", "mergeThreads", true, "threads for merging sample outputs [4]");
+        addOption(null,"noIndex",    false, "do not write .bai/.csi index for BAM output.");
 //        addOption(null,"tmpdir",    true, "hdfs tmpdir [default]");
         addOption(null,"verbose",    false, "display verbose information.");
 
@@ -116,6 +120,8 @@ public class BamSortOptions extends GaeaOptions implements HadoopOptions {
         setReference(getOptionValue("reference",null));
         setPartitionFile(getOptionValue("partitonFile",null));
         setReducerNum(getOptionIntValue("reducer",30));
+        setMergeThreads(getOptionIntValue("mergeThreads",4));
+        setWriteIndex(!getOptionBooleanValue("noIndex", false));
     }
 
     @Override
@@ -137,6 +143,22 @@ public class BamSortOptions extends GaeaOptions implements HadoopOptions {
         this.partitionFile = partitionFile;
     }
 
+    public int getMergeThreads() {
+        return mergeThreads;
+    }
+
+    public void setMergeThreads(int mergeThreads) {
+        this.mergeThreads = mergeThreads;
+    }
+
+    public boolean isWriteIndex() {
+        return writeIndex;
+    }
+
+    public void setWriteIndex(boolean writeIndex) {
+        this.writeIndex = writeIndex;
+    }
+
     public int getReducerNum() {
         return reducerNum;
     }
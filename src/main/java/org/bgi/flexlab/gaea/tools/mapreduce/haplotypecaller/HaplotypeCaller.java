@@ -18,6 +18,7 @@ import org.bgi.flexlab.gaea.framework.tools.mapreduce.WindowsBasedPlaceholderSam
 import org.bgi.flexlab.gaea.framework.tools.mapreduce.WindowsBasedSamRecordMapper;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.HaplotypeCallerTraversal;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.argumentcollection.HaplotypeCallerArgumentCollection;
+import org.bgi.flexlab.gaea.tools.haplotypecaller.readfilter.DownsamplingReadFilter;
 import org.bgi.flexlab.gaea.tools.haplotypecaller.writer.GVCFHadoopWriter;
 import org.bgi.flexlab.gaea.util.ReadUtils;
 import org.seqdoop.hadoop_bam.VCFOutputFormat;
@@ -73,12 +74,19 @@ public class HaplotypeCaller extends ToolsRunner {
         
         job.setNumReduceTasks(options.getReducerNumber());
         job.setOutputKeyValue(WindowsBasedWritable.class,SamRecordWritable.class, NullWritable.class, VariantContextWritable.class);
+        if(options.isShuffleProjection())
+            job.setShuffleProjection();
+        if(options.isMapSideDownsampling() && options.getMaxReadsPerPosition() > 0)
+            job.setMaxReadsPerStart(options.getMaxReadsPerPosition(), DownsamplingReadFilter.class);
         
         job.setAnySamInputFormat(options.getInputFormat());
 		job.setOutputFormatClass(GaeaVCFOutputFormat.class);
         
         FileInputFormat.setInputPaths(job, options.getInput().toArray(new Path[options.getInput().size()]));
 		FileOutputFormat.setOutputPath(job, new Path(options.getVCFOutput()));
+
+        if(options.getBalanceSampleFraction() > 0)
+            job.setBalancedWindowsPartitioner(options.getBalanceSampleFraction(), new Path(options.getHeaderOutput() + "/windowsPartition.table"));
 		
 		return job.waitForCompletion(true) ? 0 : 1;
 	}
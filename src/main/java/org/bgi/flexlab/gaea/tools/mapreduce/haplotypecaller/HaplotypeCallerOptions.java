@@ -64,9 +64,17 @@ public class HaplotypeCallerOptions  extends GaeaOptions implements HadoopOption
 	private HashMap<String,String> comps  = new HashMap<String,String>();
 	
 	private int maxReadsPerPosition = 0;
+	
+	private int regionThreads = 1;
 
 	private boolean outputAllWindows;
 
+	private boolean shuffleProjection;
+
+	private double balanceSampleFraction;
+
+	private boolean mapSideDownsampling;
+
 	public List<Integer> GVCFGQBands = new ArrayList<>(70);
 	
 	public HaplotypeCallerOptions() {
@@ -87,21 +95,27 @@ public class HaplotypeCallerOptions  extends GaeaOptions implements HadoopOption
 		addOption("j","heterozygosity_stdev",true,"Standard deviation of eterozygosity for SNP and indel calling");
 		addOption("k", "knowSite", true, "known snp/indel file,the format is VCF4");
 		addOption("K","dontIncreaseKmerSizes",false,"dont increase kmer sizes for cycles.");
+		addOption("L","likelihoodCacheSize",true,"megabytes of PairHMM likelihoods cached by each calling engine, 0 to disable[0]");
 		addOption("n", "reducer", true, "reducer numbers[100]");
 		addOption("m","max_num_PL_values",true,"Maximum number of PL values to output");
 		addOption("M","max_alternate_alleles",true,"Maximum number of alternate alleles to genotype");
 		addOption("o", "output", true, "output directory", true);
 		addOption("O","output_mode",true,"output mode(EMIT_VARIANTS_ONLY,EMIT_ALL_CONFIDENT_SITES,EMIT_ALL_SITES)");
 		addOption("p","input_prior",true,"Input prior for calls(separation by Comma(,))");
-		addOption("P","pairHMM",true,"pairHMM implementation:EXACT,ORIGINAL,LOGLESS_CACHING,AVX_LOGLESS_CACHING,AVX_LOGLESS_CACHING_OMP,FASTEST_AVAILABLE.");
+		addOption("P","pairHMM",true,"pairHMM implementation:EXACT,ORIGINAL,LOGLESS_CACHING,WAVEFRONT_LOGLESS,AVX_LOGLESS_CACHING,AVX_LOGLESS_CACHING_OMP,FASTEST_AVAILABLE[FASTEST_AVAILABLE].");
 		addOption("r", "reference", true, "reference index(generation by GaeaIndex) file path", true);
 		addOption("R", "region", true, "One or more genomic intervals over which to operate");
 		addOption("s","stand_emit_conf",true,"The minimum phred-scaled confidence threshold at which variants should be emitted (and filtered with LowQual if less than the calling threshold");
 		addOption("S","stand_call_conf",true,"The minimum phred-scaled confidence threshold at which variants should be called");
+		addOption("t","threads",true,"threads to call assembly regions in one reducer[1]");
+		addOption("T","concurrentKmerAssembly",false,"build the graphs of all kmer sizes of a region concurrently, in the region threads or the common pool");
 		addOption("u","uniquifySamples",false,"Assume duplicate samples are present and uniquify all names with '.variant' and file number index");
 		addOption("U","useNewAFCalculator",false,"Use new AF model instead of the so-called exact model");
 		addOption("w", "keyWindow", true, "window size for key[10000]");
 		addOption("W", "outputAllWindow", false, "output N or uncover region windows [false]");
+		addOption("Z", "mapSideDownsampling", false, "also apply max_reads in the mappers, before the shuffle [false]");
+		addOption("Y", "balanceSampleFraction", true, "fraction of the input splits sampled to balance the windows over the reducers by depth, 0 to disable [0]");
+		addOption("X", "shuffleProjection", false, "shuffle reads without the unused tags and with short pair ids as read names [false]");
 		FormatHelpInfo(SOFTWARE_NAME,SOFTWARE_VERSION);
 	}
 	
@@ -149,7 +163,10 @@ public class HaplotypeCallerOptions  extends GaeaOptions implements HadoopOption
 		}
 		if(getOptionBooleanValue("K",false))
 			this.hcArgs.assemblerArgs.dontIncreaseKmerSizesForCycles = true;
+		if(getOptionBooleanValue("T",false))
+			this.hcArgs.assemblerArgs.concurrentKmerAssembly = true;
 		this.hcArgs.maxDepthForAssembly = getOptionIntValue("e",0);
+		this.hcArgs.likelihoodArgs.likelihoodCacheMegabytes = getOptionIntValue("L",0);
 		
 		this.windowsSize = getOptionIntValue("w",10000);
 		this.windowsExtends = getOptionIntValue("E",300);
@@ -157,17 +174,21 @@ public class HaplotypeCallerOptions  extends GaeaOptions implements HadoopOption
 		this.readShardSize = getOptionIntValue("c",-1);
 		this.readPaddingSize = getOptionIntValue("d",100);
 		this.maxReadsPerPosition = getOptionIntValue("x",0);		
+		this.regionThreads = getOptionIntValue("t",1);
 		this.output = getOptionValue("o",null);
 		this.region = getOptionValue("R",null);
 		this.reference = getOptionValue("r",null);
 		this.dbsnp = getOptionValue("k",null);
 		setOutputAllWindows(getOptionBooleanValue("W", false));
+		this.shuffleProjection = getOptionBooleanValue("X", false);
+		this.balanceSampleFraction = getOptionDoubleValue("Y", 0);
+		this.mapSideDownsampling = getOptionBooleanValue("Z", false);
 		
 		if(dbsnp != null) {
 			comps.put("DB", dbsnp);
 		}
 		
-		setPairHMM(getOptionValue("P","AVX_LOGLESS_CACHING_OMP"));
+		setPairHMM(getOptionValue("P","FASTEST_AVAILABLE"));
 
 	}
 	
@@ -281,6 +302,18 @@ public class HaplotypeCallerOptions  extends GaeaOptions implements HadoopOption
 		this.outputAllWindows = outputAllWindows;
 	}
 
+	public boolean isShuffleProjection() {
+		return shuffleProjection;
+	}
+
+	public double getBalanceSampleFraction() {
+		return balanceSampleFraction;
+	}
+
+	public boolean isMapSideDownsampling() {
+		return mapSideDownsampling;
+	}
+
 	public HaplotypeCallerArgumentCollection getHaplotypeCallerArguments() {
 		return this.hcArgs;
 	}
@@ -298,6 +331,14 @@ public class HaplotypeCallerOptions  extends GaeaOptions implements HadoopOption
 		return this.maxReadsPerPosition;
 	}
 	
+	public int getRegionThreads(){
+		return this.regionThreads;
+	}
+
+	public int getLikelihoodCacheSize(){
+		return this.hcArgs.likelihoodArgs.likelihoodCacheMegabytes;
+	}
+	
 	private void setPairHMM(String args) {
 		if(args == null)
 			return;
@@ -309,6 +350,8 @@ public class HaplotypeCallerOptions  extends GaeaOptions implements HadoopOption
 			hcArgs.likelihoodArgs.pairHMM = PairHMM.Implementation.ORIGINAL;
 		else if(args.equals("LOGLESS_CACHING"))
 			hcArgs.likelihoodArgs.pairHMM = PairHMM.Implementation.LOGLESS_CACHING;
+		else if(args.equals("WAVEFRONT_LOGLESS"))
+			hcArgs.likelihoodArgs.pairHMM = PairHMM.Implementation.WAVEFRONT_LOGLESS;
 		else if(args.equals("AVX_LOGLESS_CACHING"))
 			hcArgs.likelihoodArgs.pairHMM = PairHMM.Implementation.AVX_LOGLESS_CACHING;
 		else if(args.equals("AVX_LOGLESS_CACHING_OMP"))
@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 import htsjdk.samtools.SAMReadGroupRecord;
 import org.apache.hadoop.conf.Configuration;
@@ -18,6 +20,7 @@ import org.bgi.flexlab.gaea.data.mapreduce.util.VariantContextHadoopWriter;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
 import org.bgi.flexlab.gaea.data.structure.dbsnp.DbsnpShare;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSitesIndex;
 import org.bgi.flexlab.gaea.data.structure.reference.ChromosomeInformationShare;
 import org.bgi.flexlab.gaea.data.structure.reference.ReferenceShare;
 import org.bgi.flexlab.gaea.data.structure.reference.index.VcfIndex;
@@ -62,6 +65,14 @@ public class HaplotypeCallerReducer extends Reducer<WindowsBasedWritable, SamRec
      */
 	private VCFLocalLoader DBloader = null;
 	
+	/**
+	 * binary known-sites indexes, used instead of the window index and vcf
+	 * text when they have been built
+	 */
+	private KnownSitesIndex dbsnpSites = null;
+	
+	private KnownSitesIndex alleleSites = null;
+	
 	private DbsnpShare alleleShare = null;
 	
 	private VCFLocalLoader alleleLoader = null;
@@ -74,6 +85,11 @@ public class HaplotypeCallerReducer extends Reducer<WindowsBasedWritable, SamRec
 	private HaplotypeCallerTraversal haplotypecaller = null;
 	private Map<String,HaplotypeCallerTraversal> sampleHaplotypecallers = null;
 	private Map<String,GVCFHadoopWriter> gvcfWriters = null;
+	
+	/**
+	 * pool calling assembly regions of all samples, null with one thread
+	 */
+	private ForkJoinPool regionPool = null;
 
 	/**
 	 * variant context writer
@@ -104,24 +120,30 @@ public class HaplotypeCallerReducer extends Reducer<WindowsBasedWritable, SamRec
         genomeShare.loadChromosomeList(options.getReference());
 
         filter = new VariantRegionFilter();
-        if(options.getDBSnp() != null) {
+        if(KnownSitesIndex.exists(options.getDBSnp())) {
+        	dbsnpSites = KnownSitesIndex.open(options.getDBSnp());
+        } else if(options.getDBSnp() != null) {
         	dbsnpShare = new DbsnpShare(options.getDBSnp(), options.getReference());
         	dbsnpShare.loadChromosomeList(options.getDBSnp() + VcfIndex.INDEX_SUFFIX);
         	DBloader = new VCFLocalLoader(options.getDBSnp());
         }
         
-        if(options.getAlleleFile() != null) {
+        if(KnownSitesIndex.exists(options.getAlleleFile())) {
+        	alleleSites = KnownSitesIndex.open(options.getAlleleFile());
+        } else if(options.getAlleleFile() != null) {
         	alleleShare = new DbsnpShare(options.getAlleleFile(), options.getReference());
         	alleleShare.loadChromosomeList(options.getAlleleFile() + VcfIndex.INDEX_SUFFIX);
         	alleleLoader = new VCFLocalLoader(options.getAlleleFile());
         }
 
 		HaplotypeCallerArgumentCollection hcArgs = options.getHaplotypeCallerArguments();
+		if(options.getRegionThreads() > 1)
+			regionPool = new ForkJoinPool(options.getRegionThreads());
 		for(String sample: sampleIDs.values()) {
         	if(!sampleHaplotypecallers.containsKey(sample)) {
 //				hcArgs.sampleNameToUse = sample;
 				SAMFileHeader sampleHeader = SamHdfsFileHeader.createHeaderFromSampleName(header, sample);
-				haplotypecaller = new HaplotypeCallerTraversal(region, options, sampleHeader);
+				haplotypecaller = new HaplotypeCallerTraversal(region, options, sampleHeader, regionPool);
 				sampleHaplotypecallers.put(sample, haplotypecaller);
 			}
 		}
@@ -143,7 +165,10 @@ public class HaplotypeCallerReducer extends Reducer<WindowsBasedWritable, SamRec
 
 	}
 	
-	private ArrayList<VariantContext> getRegionVatiantContext(String chr,int number,int winSize,int end,DbsnpShare dbsnpShare,VCFLocalLoader loader){
+	private ArrayList<VariantContext> getRegionVatiantContext(String chr,int number,int winSize,int end,KnownSitesIndex sites,DbsnpShare dbsnpShare,VCFLocalLoader loader){
+		if(sites != null)
+			return sites.query(chr, number * winSize, end).getVariantContexts();
+		
 		ArrayList<VariantContext> dbsnps = null;
 		if(dbsnpShare != null) {
 			long startPosition = dbsnpShare.getStartPosition(chr, number, winSize);
@@ -157,18 +182,18 @@ public class HaplotypeCallerReducer extends Reducer<WindowsBasedWritable, SamRec
 	private RefMetaDataTracker createTracker(String chr,int number,int winSize,int end) {
 		RefMetaDataTracker tracker = null;
 		
-		if(dbsnpShare != null) {
+		if(dbsnpShare != null || dbsnpSites != null) {
 			if(tracker == null)
 				tracker = new RefMetaDataTracker();
-			ArrayList<VariantContext> dbsnps = getRegionVatiantContext(chr,number,winSize,end,dbsnpShare,DBloader);
+			ArrayList<VariantContext> dbsnps = getRegionVatiantContext(chr,number,winSize,end,dbsnpSites,dbsnpShare,DBloader);
 			if(dbsnps == null)
 				dbsnps = new ArrayList<VariantContext>();
 			tracker.add(RefMetaDataTracker.DB_VALUE, dbsnps);
 		}
-		if(alleleShare != null) {
+		if(alleleShare != null || alleleSites != null) {
 			if(tracker == null)
 				tracker = new RefMetaDataTracker();
-			ArrayList<VariantContext> dbsnps = getRegionVatiantContext(chr,number,winSize,end,alleleShare,alleleLoader);
+			ArrayList<VariantContext> dbsnps = getRegionVatiantContext(chr,number,winSize,end,alleleSites,alleleShare,alleleLoader);
 			if(dbsnps == null)
 				dbsnps = new ArrayList<VariantContext>();
 			tracker.add(RefMetaDataTracker.ALLELE_VALUE, dbsnps);
@@ -214,5 +239,23 @@ public class HaplotypeCallerReducer extends Reducer<WindowsBasedWritable, SamRec
 		}else
 			writer.close();
 		haplotypecaller.clear();
+		Map<Integer, Long> kmerMillis = new TreeMap<>();
+		for(HaplotypeCallerTraversal traversal : sampleHaplotypecallers.values())
+			traversal.getKmerAssemblyMillis().forEach((k, v) -> kmerMillis.merge(k, v, Long::sum));
+		for(Map.Entry<Integer, Long> entry : kmerMillis.entrySet())
+			context.getCounter("ASSEMBLY", "kmer " + entry.getKey() + " ms").increment(entry.getValue());
+		long[] cacheCounts = new long[3];
+		for(HaplotypeCallerTraversal traversal : sampleHaplotypecallers.values()) {
+			long[] counts = traversal.getLikelihoodCacheCounts();
+			for(int i = 0; i < counts.length; i++)
+				cacheCounts[i] += counts[i];
+		}
+		if(options.getLikelihoodCacheSize() > 0) {
+			context.getCounter("PAIRHMM CACHE", "hits").increment(cacheCounts[0]);
+			context.getCounter("PAIRHMM CACHE", "misses").increment(cacheCounts[1]);
+			context.getCounter("PAIRHMM CACHE", "bypassed").increment(cacheCounts[2]);
+		}
+		if(regionPool != null)
+			regionPool.shutdown();
     }
 }
@@ -0,0 +1,19 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
+import org.seqdoop.hadoop_bam.VariantContextWritable;
+
+/**
+ * Reads a batch of the cohort store, one split per map file, so a split has
+ * whole windows and its part number names the same part of the other batches.
+ */
+public class CohortBatchInputFormat extends SequenceFileInputFormat<WindowsBasedWritable, VariantContextWritable> {
+
+	@Override
+	protected boolean isSplitable(JobContext context, Path filename) {
+		return false;
+	}
+}
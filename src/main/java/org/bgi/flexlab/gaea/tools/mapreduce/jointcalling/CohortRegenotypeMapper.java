@@ -0,0 +1,101 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.GvcfRecordWritable;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
+import org.seqdoop.hadoop_bam.VariantContextWritable;
+
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Calls the whole cohort again after a batch was added. The split is a part
+ * of the new batch, the parts of the same number of the older batches hold
+ * the same windows, so all of them are read side by side in window order and
+ * every window any batch has records in is called with the records of all
+ * batches. The stored records are decoded already, only the new gvcfs were
+ * parsed and shuffled.
+ */
+public class CohortRegenotypeMapper
+		extends Mapper<WindowsBasedWritable, VariantContextWritable, NullWritable, VariantContextWritable> {
+
+	private JointCallingWindowCaller caller = null;
+	private MapFile.Reader[] batches = null;
+	private WindowsBasedWritable[] batchKeys = null;
+	private GvcfRecordWritable[] batchValues = null;
+	private boolean[] batchMore = null;
+
+	@Override
+	protected void setup(Context context) throws IOException {
+		Configuration conf = context.getConfiguration();
+		caller = new JointCallingWindowCaller(conf);
+
+		// the split is <batch>/records/<part>/data
+		String part = ((FileSplit) context.getInputSplit()).getPath().getParent().getName();
+		CohortStore store = new CohortStore(new Path(conf.get(CohortStore.STORE_PATH)), conf);
+		int batch = conf.getInt(CohortStore.BATCH, 0);
+		batches = new MapFile.Reader[batch];
+		batchKeys = new WindowsBasedWritable[batch];
+		batchValues = new GvcfRecordWritable[batch];
+		batchMore = new boolean[batch];
+		for (int i = 0; i < batch; i++) {
+			batches[i] = new MapFile.Reader(new Path(CohortStore.getRecords(store.getBatch(i)), part), conf);
+			batchKeys[i] = new WindowsBasedWritable();
+			batchValues[i] = new GvcfRecordWritable();
+			batchMore[i] = batches[i].next(batchKeys[i], batchValues[i]);
+		}
+	}
+
+	@Override
+	public void run(Context context) throws IOException, InterruptedException {
+		setup(context);
+		try {
+			ArrayList<VariantContext> records = new ArrayList<VariantContext>();
+			boolean more = context.nextKeyValue();
+			while (true) {
+				// the lowest window of all batches
+				WindowsBasedWritable first = more ? context.getCurrentKey() : null;
+				for (int i = 0; i < batches.length; i++) {
+					if (batchMore[i] && (first == null || batchKeys[i].getWindows() < first.getWindows()))
+						first = batchKeys[i];
+				}
+				if (first == null)
+					break;
+				long window = first.getWindows();
+				int chrIndex = first.getChromosomeIndex();
+				int winNum = first.getWindowsNumber();
+
+				records.clear();
+				while (more && context.getCurrentKey().getWindows() == window) {
+					records.add(context.getCurrentValue().get());
+					more = context.nextKeyValue();
+				}
+				for (int i = 0; i < batches.length; i++) {
+					while (batchMore[i] && batchKeys[i].getWindows() == window) {
+						records.add(batchValues[i].get());
+						batchMore[i] = batches[i].next(batchKeys[i], batchValues[i]);
+					}
+				}
+				records.sort(Comparator.comparingInt(VariantContext::getStart));
+
+				caller.call(caller.getContig(chrIndex), winNum, JointCallingWindowCaller.iterator(records), context);
+			}
+		} finally {
+			cleanup(context);
+		}
+	}
+
+	@Override
+	protected void cleanup(Context context) throws IOException {
+		for (MapFile.Reader reader : batches)
+			reader.close();
+	}
+}
@@ -0,0 +1,119 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.bgi.flexlab.gaea.data.exception.UserException;
+
+/**
+ * Layout of a cohort store for incremental joint calling. Every appended
+ * batch of gvcfs is a directory batch-NNNNN with
+ *
+ * records/ map files of the shuffled records of the batch, sorted by contig,
+ * window and start and partitioned by window the same way for all batches,
+ * so a window of every batch is in the part of the same number;
+ * calls/ the calls of the whole cohort up to the batch, by part;
+ * jointcalling.vcf the calls merged into one sorted vcf (vcf output only),
+ * the current callset of the cohort is the one of the last batch;
+ * vcfheader, vcfheaderinfo the merged header and header info of the cohort up
+ * to the batch.
+ *
+ * A batch is built in _batch-NNNNN and renamed to batch-NNNNN once all of it
+ * is written, so a failed append leaves the store as it was. An append holds
+ * the _lock file of the store while it runs.
+ *
+ * The records are kept as decoded gvcf records, not as per site likelihood
+ * summaries, and every append calls all windows of the cohort again; what
+ * an append saves is parsing and shuffling the gvcfs of the older batches.
+ */
+public class CohortStore {
+	public final static String STORE_PATH = "jointcalling.cohort.store";
+	public final static String BATCH = "jointcalling.cohort.batch";
+
+	private final static String LOCK = "_lock";
+
+	private final Path root;
+	private final FileSystem fs;
+
+	public CohortStore(Path root, Configuration conf) throws IOException {
+		this.root = root;
+		this.fs = root.getFileSystem(conf);
+	}
+
+	/**
+	 * the number of committed batches; a batch directory only appears by the
+	 * rename of a complete batch, so they must be batch-00000 on without gaps
+	 */
+	public int getBatchCount() throws IOException {
+		FileStatus[] batches = fs.globStatus(new Path(root, "batch-[0-9]*"));
+		int count = batches == null ? 0 : batches.length;
+		for (int batch = 0; batch < count; batch++) {
+			if (!fs.exists(getRecords(getBatch(batch))))
+				throw new UserException("cohort store " + root + " is broken, " + getBatch(batch)
+						+ " is missing or has no records");
+		}
+		return count;
+	}
+
+	/**
+	 * take the store for one append, fails if another append holds it
+	 */
+	public void lock() throws IOException {
+		fs.mkdirs(root);
+		if (!fs.createNewFile(new Path(root, LOCK)))
+			throw new UserException("cohort store " + root + " is used by another append, remove "
+					+ new Path(root, LOCK) + " if no append is running");
+	}
+
+	public void unlock() throws IOException {
+		fs.delete(new Path(root, LOCK), false);
+	}
+
+	public Path getBatch(int batch) {
+		return new Path(root, String.format("batch-%05d", batch));
+	}
+
+	public Path getStaging(int batch) {
+		return new Path(root, String.format("_batch-%05d", batch));
+	}
+
+	public static Path getRecords(Path batch) {
+		return new Path(batch, "records");
+	}
+
+	public static Path getCalls(Path batch) {
+		return new Path(batch, "calls");
+	}
+
+	public static Path getCallset(Path batch) {
+		return new Path(batch, "jointcalling.vcf");
+	}
+
+	/**
+	 * the number of parts of every batch, set by the first batch
+	 */
+	public int getPartitions(int partitions) throws IOException {
+		if (getBatchCount() == 0)
+			return partitions;
+		FileStatus[] parts = fs.globStatus(new Path(getRecords(getBatch(0)), "part-r-[0-9]*"));
+		return parts.length;
+	}
+
+	/**
+	 * remove what a failed append of batch left
+	 */
+	public void clearStaging(int batch) throws IOException {
+		fs.delete(getStaging(batch), true);
+	}
+
+	public void commit(int batch) throws IOException {
+		// a rename onto an existing directory would move the batch into it
+		if (fs.exists(getBatch(batch)))
+			throw new UserException("cohort store " + root + " already has " + getBatch(batch));
+		if (!fs.rename(getStaging(batch), getBatch(batch)))
+			throw new IOException("cann't rename " + getStaging(batch) + " to " + getBatch(batch));
+	}
+}
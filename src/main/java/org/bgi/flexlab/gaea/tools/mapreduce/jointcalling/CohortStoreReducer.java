@@ -0,0 +1,21 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapreduce.Reducer;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
+import org.seqdoop.hadoop_bam.VariantContextWritable;
+
+/**
+ * Writes the shuffled records of a batch to the map files of the cohort store.
+ */
+public class CohortStoreReducer
+		extends Reducer<WindowsBasedWritable, VariantContextWritable, WindowsBasedWritable, VariantContextWritable> {
+
+	@Override
+	public void reduce(WindowsBasedWritable key, Iterable<VariantContextWritable> values, Context context)
+			throws IOException, InterruptedException {
+		for (VariantContextWritable value : values)
+			context.write(key, value);
+	}
+}
@@ -7,18 +7,24 @@ import java.util.TreeSet;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MapFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.bgi.flexlab.gaea.data.mapreduce.output.vcf.GaeaVCFOutputFormat;
 import org.bgi.flexlab.gaea.data.mapreduce.output.vcf.VCFHdfsWriter;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.GvcfRecordWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
 import org.bgi.flexlab.gaea.framework.tools.mapreduce.BioJob;
 import org.bgi.flexlab.gaea.framework.tools.mapreduce.ToolsRunner;
+import org.bgi.flexlab.gaea.framework.tools.mapreduce.WindowsBasedMapper;
 import org.bgi.flexlab.gaea.tools.jointcalling.util.GaeaGvcfVariantContextUtils;
 import org.bgi.flexlab.gaea.tools.jointcalling.util.MultipleVCFHeaderForJointCalling;
 import org.bgi.flexlab.gaea.tools.jointcalling.util.MultipleVCFHeaderForJointCalling;
 import org.bgi.flexlab.gaea.util.Utils;
 import org.seqdoop.hadoop_bam.KeyIgnoringVCFOutputFormat;
+import org.seqdoop.hadoop_bam.VCFFormat;
 import org.seqdoop.hadoop_bam.VariantContextWritable;
 
 import htsjdk.variant.vcf.VCFHeader;
@@ -50,7 +56,9 @@ public class JointCalling extends ToolsRunner{
             //multiVcfHeader.headersConfig(new Path(options.getVcfHeaderFile()), options.getVCFHeaderOutput()+"/vcfHeaders", conf);
         }else {
             //conf.set(GaeaVCFOutputFormat.OUT_PATH_PROP, options.getVCFHeaderOutput() + "/vcfFileHeader.vcf");
-            multiVcfHeader.headersConfig(options.getInput(), options.getVCFHeaderOutput(), conf);
+            // the header of an incremental append goes with its batch
+            if (options.getCohortStore() == null)
+                multiVcfHeader.headersConfig(options.getInput(), options.getVCFHeaderOutput(), conf);
             /*VCFHeader vcfHeader = getVCFHeaderFromInput(multiVcfHeader.getHeaders());
             VCFHdfsWriter vcfHdfsWriter = new VCFHdfsWriter(conf.get(GaeaVCFOutputFormat.OUT_PATH_PROP), false, false, conf);
             vcfHdfsWriter.writeHeader(vcfHeader);
@@ -61,11 +69,20 @@ public class JointCalling extends ToolsRunner{
         job.setJobName("Gaea joint calling");
         
         job.setJarByClass(JointCalling.class);
+        if (options.getRegionWindows() > 0)
+        	return runRegions(job, options, multiVcfHeader);
+        if (options.getCohortStore() != null)
+        	return runIncremental(job, options, multiVcfHeader);
+
         job.setWindowsBasicMapperClass(JointCallingMapper.class, options.getWindowsSize(),0);
         job.setReducerClass(JointCallingReducer.class);
         
         job.setNumReduceTasks(options.getReducerNumber());
         job.setOutputKeyValue(WindowsBasedWritable.class,VariantContextWritable.class, NullWritable.class, VariantContextWritable.class);
+        if (options.isBinaryShuffle()) {
+        	conf.setBoolean(JointCallingMapper.BINARY_SHUFFLE, true);
+        	job.setMapOutputValueClass(GvcfRecordWritable.class);
+        }
         
         job.setInputFormatClass(JointCallingVCFInputFormat.class);
 		job.setOutputFormatClass(GaeaVCFOutputFormat.class);
@@ -75,4 +92,110 @@ public class JointCalling extends ToolsRunner{
 		
 		return job.waitForCompletion(true) ? 0 : 1;
 	}
+	
+	/*
+	 * map only joint calling over regions of bgzipped and tabix indexed gvcfs,
+	 * without shuffling the records
+	 */
+	private int runRegions(BioJob job, JointCallingOptions options, MultipleVCFHeaderForJointCalling multiVcfHeader)
+			throws Exception {
+		Configuration conf = job.getConfiguration();
+		conf.setInt(WindowsBasedMapper.WINDOWS_SIZE, options.getWindowsSize());
+		conf.setInt(JointCallingRegionInputFormat.REGION_WINDOWS, options.getRegionWindows());
+		
+		job.setMapperClass(JointCallingRegionMapper.class);
+		job.setNumReduceTasks(0);
+		job.setOutputKeyValue(NullWritable.class, VariantContextWritable.class);
+		
+		job.setInputFormatClass(JointCallingRegionInputFormat.class);
+		job.setOutputFormatClass(GaeaVCFOutputFormat.class);
+		
+		FileInputFormat.setInputPaths(job, options.getInput().toArray(new Path[options.getInput().size()]));
+		FileOutputFormat.setOutputPath(job, new Path(options.getOutput()));
+		
+		if (!job.waitForCompletion(true))
+			return 1;
+		
+		// bcf parts can't be joined line by line, they are left as they are
+		if (options.getOuptputFormat() == VCFFormat.VCF)
+			JointCallingRegionMerger.merge(new Path(options.getOutput()), new Path(options.getRegionMergeOutput()),
+					multiVcfHeader.getMergeHeader().getSequenceDictionary(), conf);
+		return 0;
+	}
+	
+	/*
+	 * append the input as a new batch of the cohort store, then call the whole
+	 * cohort again from the stored records; the batch is added to the store
+	 * only when both jobs succeeded
+	 */
+	private int runIncremental(BioJob job, JointCallingOptions options,
+			MultipleVCFHeaderForJointCalling multiVcfHeader) throws Exception {
+		CohortStore store = new CohortStore(new Path(options.getCohortStore()), job.getConfiguration());
+		store.lock();
+		try {
+			int batch = store.getBatchCount();
+			store.clearStaging(batch);
+			String previous = batch == 0 ? null : store.getBatch(batch - 1).toString();
+			multiVcfHeader.appendHeadersConfig(options.getInput(), previous, store.getStaging(batch).toString(),
+					job.getConfiguration());
+			return appendBatch(job, options, store, batch, multiVcfHeader);
+		} finally {
+			store.unlock();
+		}
+	}
+	
+	private int appendBatch(BioJob job, JointCallingOptions options, CohortStore store, int batch,
+			MultipleVCFHeaderForJointCalling multiVcfHeader) throws Exception {
+		Configuration conf = job.getConfiguration();
+		Path staging = store.getStaging(batch);
+		
+		job.setJobName("Gaea joint calling append batch " + batch);
+		job.setWindowsBasicMapperClass(JointCallingMapper.class, options.getWindowsSize(),0);
+		job.setReducerClass(CohortStoreReducer.class);
+		
+		// windows must go to the part of the same number in all batches
+		job.setNumReduceTasks(store.getPartitions(options.getReducerNumber()));
+		conf.setBoolean(JointCallingMapper.BINARY_SHUFFLE, true);
+		job.setOutputKeyValue(WindowsBasedWritable.class, GvcfRecordWritable.class, WindowsBasedWritable.class,
+				GvcfRecordWritable.class);
+		
+		job.setInputFormatClass(JointCallingVCFInputFormat.class);
+		job.setOutputFormatClass(MapFileOutputFormat.class);
+		FileOutputFormat.setCompressOutput(job, true);
+		SequenceFileOutputFormat.setOutputCompressionType(job, CompressionType.BLOCK);
+		
+		FileInputFormat.setInputPaths(job, options.getInput().toArray(new Path[options.getInput().size()]));
+		FileOutputFormat.setOutputPath(job, CohortStore.getRecords(staging));
+		
+		if (!job.waitForCompletion(true))
+			return 1;
+		
+		BioJob regenotype = BioJob.getInstance(conf);
+		Configuration regenotypeConf = regenotype.getConfiguration();
+		regenotypeConf.set(CohortStore.STORE_PATH, options.getCohortStore());
+		regenotypeConf.setInt(CohortStore.BATCH, batch);
+		
+		regenotype.setJobName("Gaea joint calling regenotype batch " + batch);
+		regenotype.setJarByClass(JointCalling.class);
+		regenotype.setMapperClass(CohortRegenotypeMapper.class);
+		regenotype.setNumReduceTasks(0);
+		regenotype.setOutputKeyValue(NullWritable.class, VariantContextWritable.class);
+		
+		regenotype.setInputFormatClass(CohortBatchInputFormat.class);
+		regenotype.setOutputFormatClass(GaeaVCFOutputFormat.class);
+		FileOutputFormat.setCompressOutput(regenotype, false);
+		
+		FileInputFormat.setInputPaths(regenotype, CohortStore.getRecords(staging));
+		FileOutputFormat.setOutputPath(regenotype, CohortStore.getCalls(staging));
+		
+		if (!regenotype.waitForCompletion(true))
+			return 1;
+		
+		// bcf parts can't be joined line by line, they are left as they are
+		if (options.getOuptputFormat() == VCFFormat.VCF)
+			JointCallingRegionMerger.mergeSorted(CohortStore.getCalls(staging), CohortStore.getCallset(staging),
+					multiVcfHeader.getMergeHeader().getSequenceDictionary(), conf);
+		store.commit(batch);
+		return 0;
+	}
 }
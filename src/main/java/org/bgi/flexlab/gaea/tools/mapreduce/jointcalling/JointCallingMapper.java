@@ -8,6 +8,7 @@ import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.bgi.flexlab.gaea.data.mapreduce.output.vcf.GaeaVCFOutputFormat;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.GvcfRecordWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
 import org.bgi.flexlab.gaea.framework.tools.mapreduce.WindowsBasedMapper;
 import org.seqdoop.hadoop_bam.VariantContextWritable;
@@ -22,12 +23,16 @@ import htsjdk.variant.vcf.VCFHeader;
 public class JointCallingMapper extends
 	Mapper<LongWritable, VariantContextWritable, WindowsBasedWritable, VariantContextWritable>{
 	
+	public final static String BINARY_SHUFFLE = "jointcalling.binary.shuffle";
+	
 	private int windowSize = 10000;
 	private HashMap<String,Integer> chrIndexs = null;
 	
 	private WindowsBasedWritable outKey = new WindowsBasedWritable();
 	
 	private VCFHeader header = null;
+	
+	private VariantContextWritable outValue = null;
 
 	@Override
 	protected void setup(Context context) throws IOException, InterruptedException {
@@ -44,6 +49,8 @@ public class JointCallingMapper extends
 		}
 		
 		this.windowSize = conf.getInt(WindowsBasedMapper.WINDOWS_SIZE, 10000);
+		if(conf.getBoolean(BINARY_SHUFFLE, false))
+			outValue = new GvcfRecordWritable();
 	}
 	
 	@Override
@@ -55,6 +62,11 @@ public class JointCallingMapper extends
 		int eWin = variantContext.getEnd() / windowSize;
 		
 		int chrIndex = chrIndexs.get(variantContext.getContig());
+		
+		if(outValue != null) {
+			outValue.set(variantContext);
+			value = outValue;
+		}
 
 		for (int i = sWin; i <= eWin; i++) {
 			outKey.set(chrIndex, i, variantContext.getStart());
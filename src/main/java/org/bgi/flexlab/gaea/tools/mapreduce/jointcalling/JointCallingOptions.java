@@ -29,10 +29,12 @@ public class JointCallingOptions extends GaeaOptions implements HadoopOptions{
 	private int MAX_NUM_PL_VALUES = 100;//m
 	private int windows_size = 10000;//w
 	private int num_reducer = 100;//n
+	private int regionWindows = 0;//R
 	
 	private String output = null;//o
 	private String reference = null;//r
 	private String dbsnp = null;//k	
+	private String cohortStore = null;//T
 	private String MAGIC_HEADER_LINE = VCFCodec.VCF4_MAGIC_HEADER;//F
 	
 	private double snpHeterozygosity = 1e-3;//b	
@@ -45,6 +47,7 @@ public class JointCallingOptions extends GaeaOptions implements HadoopOptions{
 	
 	private boolean unquifySamples = false;//u
 	private boolean bcfFormat = false;//f
+	private boolean binaryShuffle = false;//c
 	
 	public boolean ANNOTATE_NUMBER_OF_ALLELES_DISCOVERED = false;//A
 	public boolean ANNOTATE_ALL_SITES_WITH_PL = false;//a
@@ -60,6 +63,7 @@ public class JointCallingOptions extends GaeaOptions implements HadoopOptions{
 		addOption("A","annotateNDA",false,"If provided, we will annotate records with the number of alternate alleles that were discovered (but not necessarily genotyped) at a given site");
 		addOption("b","hets",true,"Heterozygosity value used to compute prior likelihoods for any locus");
 		addOption("B","indel_hets",true,"Heterozygosity for indel calling");
+		addOption("c","binaryShuffle",false,"shuffle the gvcf records in a binary form with decoded genotypes");
 		addOption("C","sample_ploidy",true,"Ploidy (number of chromosomes) per sample. For pooled data, set to (Number of samples in each pool * Sample Ploidy).");
 		addOption("f", "format", false, "output format is bcf");
 		//addOption("F", "vcfformat", true, "input vcf format version");
@@ -75,8 +79,10 @@ public class JointCallingOptions extends GaeaOptions implements HadoopOptions{
 		addOption("O","output_mode",true,"output mode(EMIT_VARIANTS_ONLY,EMIT_ALL_CONFIDENT_SITES,EMIT_ALL_SITES)");
 		addOption("p","input_prior",true,"Input prior for calls(separation by Comma(,))");
 		addOption("r", "reference", true, "reference index(generation by GaeaIndex) file path", true);
+		addOption("R", "regionWindows", true, "call map only in regions of this many windows, the gvcfs must be bgzipped and tabix indexed[0, disabled]");
 		addOption("s","stand_emit_conf",true,"The minimum phred-scaled confidence threshold at which variants should be emitted (and filtered with LowQual if less than the calling threshold");
 		addOption("S","stand_call_conf",true,"The minimum phred-scaled confidence threshold at which variants should be called");
+		addOption("T", "cohortStore", true, "append the input gvcfs as a batch to this cohort store and call the whole cohort again from the store");
 		addOption("u","uniquifySamples",false,"Assume duplicate samples are present and uniquify all names with '.variant' and file number index");
 		addOption("U","useNewAFCalculator",false,"Use new AF model instead of the so-called exact model");
 		addOption("w", "keyWindow", true, "window size for key[10000]");
@@ -122,10 +128,12 @@ public class JointCallingOptions extends GaeaOptions implements HadoopOptions{
 		this.MAX_NUM_PL_VALUES = getOptionIntValue("m",100);
 		this.windows_size = getOptionIntValue("w",10000);
 		this.num_reducer = getOptionIntValue("n",100);
+		this.regionWindows = getOptionIntValue("R",0);
 		
 		this.output = getOptionValue("o",null);
 		this.reference = getOptionValue("r",null);
 		this.dbsnp = getOptionValue("k",null);
+		this.cohortStore = getOptionValue("T",null);
 		parseInputPrior(getOptionValue("p",null));
 		parseOutputMode(getOptionValue("O",OutputMode.EMIT_VARIANTS_ONLY.toString()));
 		parseGenotypeMode(getOptionValue("G",GenotypingOutputMode.DISCOVERY.toString()));
@@ -136,12 +144,16 @@ public class JointCallingOptions extends GaeaOptions implements HadoopOptions{
 		this.unquifySamples = getOptionBooleanValue("u",false);
 		this.USE_NEW_AF_CALCULATOR=getOptionBooleanValue("U",false);
 		this.bcfFormat = getOptionBooleanValue("f",false);
+		this.binaryShuffle = getOptionBooleanValue("c",false);
 		
 		this.snpHeterozygosity = getOptionDoubleValue("b",1e-3);
 		this.indelHeterozygosity = getOptionDoubleValue("B",1.0/8000);
 		this.STANDARD_CONFIDENCE_FOR_EMITTING = getOptionDoubleValue("s",30.0);
 		this.STANDARD_CONFIDENCE_FOR_CALLING = getOptionDoubleValue("S",30.0);
 		this.heterozygosityStandardDeviation = getOptionDoubleValue("j",0.01);
+		
+		if(cohortStore != null && (INCLUDE_NON_VARIANT || regionWindows > 0))
+			throw new UserException.BadArgumentValueException("T", "cohort store can't be used with -I or -R");
 	}
 	
 	private void parseOutputMode(String mode){
@@ -180,7 +192,7 @@ public class JointCallingOptions extends GaeaOptions implements HadoopOptions{
 		Path path = new Path(inputpath);
 		Configuration conf = new Configuration();
 		FileSystem inFS = path.getFileSystem(conf);
-		PathFilter filter = file -> !file.getName().startsWith("_");
+		PathFilter filter = file -> !file.getName().startsWith("_") && !file.getName().endsWith(".tbi");
 		if(inFS.isDirectory(path)){
 			FileStatus[] fileStatuses = inFS.listStatus(path, filter);
 			for (FileStatus f: fileStatuses) {
@@ -282,6 +294,25 @@ public class JointCallingOptions extends GaeaOptions implements HadoopOptions{
 		return this.num_reducer;
 	}
 
+	public boolean isBinaryShuffle(){
+		return this.binaryShuffle;
+	}
+	
+	public int getRegionWindows(){
+		return this.regionWindows;
+	}
+	
+	public String getCohortStore(){
+		return this.cohortStore;
+	}
+	
+	public String getRegionMergeOutput(){
+		if(output.endsWith("/"))
+			return this.output+"jointcalling.vcf";
+		else
+			return this.output+"/jointcalling.vcf";
+	}
+
 	public String getVcfHeaderFile() {
 		return vcfHeaderFile;
 	}
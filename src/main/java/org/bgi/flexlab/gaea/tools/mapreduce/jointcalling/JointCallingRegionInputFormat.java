@@ -0,0 +1,65 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.bgi.flexlab.gaea.data.exception.UserException;
+import org.bgi.flexlab.gaea.data.mapreduce.output.vcf.GaeaVCFOutputFormat;
+import org.bgi.flexlab.gaea.framework.tools.mapreduce.WindowsBasedMapper;
+import org.bgi.flexlab.gaea.tools.jointcalling.util.MultipleVCFHeaderForJointCalling;
+import org.seqdoop.hadoop_bam.VariantContextWritable;
+
+import htsjdk.samtools.SAMSequenceRecord;
+
+/**
+ * Input format of the map only joint calling. The splits are regions of
+ * REGION_WINDOWS windows of the merged header contigs instead of byte ranges,
+ * and every split reads its region from all the input gvcfs, which have to
+ * be bgzipped and tabix indexed.
+ */
+public class JointCallingRegionInputFormat extends InputFormat<LongWritable, VariantContextWritable> {
+	public final static String REGION_WINDOWS = "jointcalling.region.windows";
+
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		Configuration conf = job.getConfiguration();
+		int windowSize = conf.getInt(WindowsBasedMapper.WINDOWS_SIZE, 10000);
+		int regionWindows = conf.getInt(REGION_WINDOWS, 100);
+
+		for (Path file : FileInputFormat.getInputPaths(job)) {
+			FileSystem fs = file.getFileSystem(conf);
+			if (!fs.exists(new Path(file.toString() + JointCallingRegionRecordReader.TABIX_INDEX_SUFFIX)))
+				throw new UserException(file + " isn't tabix indexed.");
+		}
+
+		MultipleVCFHeaderForJointCalling headers = new MultipleVCFHeaderForJointCalling();
+		headers.readHeader(new Path(conf.get(GaeaVCFOutputFormat.OUT_PATH_PROP)), conf);
+
+		List<InputSplit> splits = new ArrayList<InputSplit>();
+		for (SAMSequenceRecord sequence : headers.getMergeHeader().getSequenceDictionary().getSequences()) {
+			int lastWindow = sequence.getSequenceLength() / windowSize;
+			for (int first = 0; first <= lastWindow; first += regionWindows) {
+				splits.add(new JointCallingRegionSplit(sequence.getSequenceName(), first,
+						Math.min(lastWindow, first + regionWindows - 1), windowSize));
+			}
+		}
+		return splits;
+	}
+
+	@Override
+	public RecordReader<LongWritable, VariantContextWritable> createRecordReader(InputSplit split,
+			TaskAttemptContext context) throws IOException, InterruptedException {
+		return new JointCallingRegionRecordReader();
+	}
+}
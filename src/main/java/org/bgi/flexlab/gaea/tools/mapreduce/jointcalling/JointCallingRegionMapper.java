@@ -0,0 +1,69 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.bgi.flexlab.gaea.framework.tools.mapreduce.WindowsBasedMapper;
+import org.seqdoop.hadoop_bam.VariantContextWritable;
+
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Map only joint calling of a region. The merged records of the region are
+ * cut into the windows the shuffled joint calling would send them to, and
+ * every window is called as its reducer would.
+ */
+public class JointCallingRegionMapper
+		extends Mapper<LongWritable, VariantContextWritable, NullWritable, VariantContextWritable> {
+
+	private int windowSize;
+	private JointCallingWindowCaller caller = null;
+
+	@Override
+	protected void setup(Context context) throws IOException {
+		windowSize = context.getConfiguration().getInt(WindowsBasedMapper.WINDOWS_SIZE, 10000);
+		caller = new JointCallingWindowCaller(context.getConfiguration());
+	}
+
+	@Override
+	public void run(Context context) throws IOException, InterruptedException {
+		setup(context);
+		try {
+			JointCallingRegionSplit split = (JointCallingRegionSplit) context.getInputSplit();
+
+			// records of the current window, a record stays until its last window
+			ArrayList<VariantContext> records = new ArrayList<VariantContext>();
+			VariantContext next = nextRecord(context);
+			int window = split.getFirstWindow() - 1;
+			while (true) {
+				final int from = window + 1;
+				records.removeIf(record -> record.getEnd() / windowSize < from);
+				if (records.isEmpty()) {
+					if (next == null)
+						break;
+					window = Math.max(from, next.getStart() / windowSize);
+				} else
+					window = from;
+				if (window > split.getLastWindow())
+					break;
+
+				while (next != null && next.getStart() / windowSize <= window) {
+					records.add(next);
+					next = nextRecord(context);
+				}
+				caller.call(split.getContig(), window, JointCallingWindowCaller.iterator(records), context);
+			}
+		} finally {
+			cleanup(context);
+		}
+	}
+
+	private VariantContext nextRecord(Context context) throws IOException, InterruptedException {
+		if (!context.nextKeyValue())
+			return null;
+		return context.getCurrentValue().get();
+	}
+}
@@ -0,0 +1,196 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
+import org.bgi.flexlab.gaea.data.mapreduce.output.vcf.GaeaVCFOutputFormat;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+
+/**
+ * Concatenates the vcf outputs of the region map tasks into one vcf. The
+ * task numbers don't follow the regions, so the parts are put in the order
+ * of their first records; the records of a part are sorted and the parts
+ * don't overlap. Parts that interleave are merged by position instead.
+ */
+public class JointCallingRegionMerger {
+
+	private static class Part {
+		private final Path path;
+		private final int contig;
+		private final int position;
+
+		Part(Path path, int contig, int position) {
+			this.path = path;
+			this.contig = contig;
+			this.position = position;
+		}
+	}
+
+	public static void merge(Path partsDir, Path output, SAMSequenceDictionary dict, Configuration conf)
+			throws IOException {
+		FileSystem srcFS = partsDir.getFileSystem(conf);
+		FileSystem dstFS = output.getFileSystem(conf);
+
+		HashMap<String, Integer> contigs = new HashMap<String, Integer>();
+		for (int i = 0; i < dict.size(); i++)
+			contigs.put(dict.getSequence(i).getSequenceName(), i);
+
+		// the header of any non empty part, and the first record of every part
+		List<Part> parts = new ArrayList<Part>();
+		Path headerPart = null;
+		Text line = new Text();
+		for (FileStatus status : srcFS.globStatus(new Path(partsDir, "part-m-[0-9]*"))) {
+			FSDataInputStream in = srcFS.open(status.getPath());
+			LineReader reader = new LineReader(in, conf);
+			while (reader.readLine(line) > 0) {
+				String record = line.toString();
+				if (record.startsWith("#"))
+					continue;
+				String[] fields = record.split("\t", 3);
+				Integer contig = contigs.get(fields[0]);
+				if (contig == null)
+					throw new RuntimeException("unknown contig " + fields[0] + " in " + status.getPath());
+				parts.add(new Part(status.getPath(), contig, Integer.parseInt(fields[1])));
+				if (headerPart == null)
+					headerPart = status.getPath();
+				break;
+			}
+			reader.close();
+		}
+		parts.sort((a, b) -> a.contig != b.contig ? Integer.compare(a.contig, b.contig)
+				: Integer.compare(a.position, b.position));
+
+		System.out.printf("joint calling :: merging %d region outputs...\n", parts.size());
+		OutputStream out = dstFS.create(output, true);
+		if (headerPart != null)
+			copy(srcFS, headerPart, out, conf, true);
+		else {
+			// no calls at all, the merged input header still makes a valid vcf
+			Path header = new Path(conf.get(GaeaVCFOutputFormat.OUT_PATH_PROP));
+			copy(header.getFileSystem(conf), header, out, conf, true);
+		}
+		for (Part part : parts)
+			copy(srcFS, part.path, out, conf, false);
+		out.close();
+	}
+
+	/**
+	 * merge the vcf parts of map tasks whose records are sorted but may
+	 * interleave, as the parts of a cohort store batch do, by position
+	 */
+	public static void mergeSorted(Path partsDir, Path output, SAMSequenceDictionary dict, Configuration conf)
+			throws IOException {
+		FileSystem srcFS = partsDir.getFileSystem(conf);
+		FileSystem dstFS = output.getFileSystem(conf);
+
+		HashMap<String, Integer> contigs = new HashMap<String, Integer>();
+		for (int i = 0; i < dict.size(); i++)
+			contigs.put(dict.getSequence(i).getSequenceName(), i);
+
+		FileStatus[] statuses = srcFS.globStatus(new Path(partsDir, "part-m-[0-9]*"));
+		System.out.printf("joint calling :: merging %d sorted outputs...\n", statuses.length);
+		OutputStream out = dstFS.create(output, true);
+
+		// the first record of every part, the header from the first one with records
+		PriorityQueue<SortedPart> queue = new PriorityQueue<SortedPart>(Math.max(1, statuses.length),
+				(a, b) -> a.contig != b.contig ? Integer.compare(a.contig, b.contig)
+						: Integer.compare(a.position, b.position));
+		List<String> header = new ArrayList<String>();
+		for (FileStatus status : statuses) {
+			SortedPart part = new SortedPart(new LineReader(srcFS.open(status.getPath()), conf), contigs);
+			header.clear();
+			while (part.next() && part.isHeader())
+				header.add(part.line.toString());
+			if (!part.hasLine) {
+				part.reader.close();
+				continue;
+			}
+			if (queue.isEmpty()) {
+				for (String line : header)
+					out.write((line + "\n").getBytes());
+			}
+			queue.add(part);
+		}
+		if (queue.isEmpty()) {
+			// no calls at all, the merged input header still makes a valid vcf
+			Path header = new Path(conf.get(GaeaVCFOutputFormat.OUT_PATH_PROP));
+			copy(header.getFileSystem(conf), header, out, conf, true);
+		}
+
+		while (!queue.isEmpty()) {
+			SortedPart part = queue.poll();
+			part.write(out);
+			if (part.next())
+				queue.add(part);
+			else
+				part.reader.close();
+		}
+		out.close();
+	}
+
+	private static class SortedPart {
+		private final LineReader reader;
+		private final HashMap<String, Integer> contigs;
+		private final Text line = new Text();
+		private boolean hasLine = false;
+		private int contig;
+		private int position;
+
+		SortedPart(LineReader reader, HashMap<String, Integer> contigs) {
+			this.reader = reader;
+			this.contigs = contigs;
+		}
+
+		boolean next() throws IOException {
+			hasLine = reader.readLine(line) > 0;
+			if (!hasLine || isHeader())
+				return hasLine;
+			String[] fields = line.toString().split("\t", 3);
+			Integer index = contigs.get(fields[0]);
+			if (index == null)
+				throw new RuntimeException("unknown contig " + fields[0]);
+			contig = index;
+			position = Integer.parseInt(fields[1]);
+			return true;
+		}
+
+		boolean isHeader() {
+			return line.getLength() > 0 && line.charAt(0) == '#';
+		}
+
+		void write(OutputStream out) throws IOException {
+			out.write(line.getBytes(), 0, line.getLength());
+			out.write('\n');
+		}
+	}
+
+	private static void copy(FileSystem fs, Path path, OutputStream out, Configuration conf, boolean header)
+			throws IOException {
+		FSDataInputStream in = fs.open(path);
+		LineReader reader = new LineReader(in, conf);
+		Text line = new Text();
+		while (reader.readLine(line) > 0) {
+			boolean isHeader = line.getLength() > 0 && line.charAt(0) == '#';
+			if (isHeader != header) {
+				if (header)
+					break;
+				continue;
+			}
+			out.write(line.getBytes(), 0, line.getLength());
+			out.write('\n');
+		}
+		reader.close();
+	}
+}
@@ -0,0 +1,185 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.bgi.flexlab.gaea.data.exception.UserException;
+import org.bgi.flexlab.gaea.tools.jointcalling.util.MultipleVCFHeaderForJointCalling;
+import org.seqdoop.hadoop_bam.VariantContextWritable;
+import org.seqdoop.hadoop_bam.util.WrapSeekable;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.tribble.FeatureCodecHeader;
+import htsjdk.tribble.index.Block;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import htsjdk.tribble.readers.AsciiLineReader;
+import htsjdk.tribble.readers.AsciiLineReaderIterator;
+import htsjdk.variant.variantcontext.CommonInfo;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * Reads the records overlapping a region from all input gvcfs through their
+ * tabix indexes, and merges the sorted streams of the files into one stream
+ * sorted by start. Ties are broken by the input index, so the order doesn't
+ * depend on the task.
+ *
+ * The key is the 0-based start of the record in the contig of the split.
+ */
+public class JointCallingRegionRecordReader extends RecordReader<LongWritable, VariantContextWritable> {
+	public final static String TABIX_INDEX_SUFFIX = ".tbi";
+
+	private final LongWritable key = new LongWritable();
+	private final VariantContextWritable vc = new VariantContextWritable();
+
+	private final ArrayList<GvcfCursor> cursors = new ArrayList<GvcfCursor>();
+	private final PriorityQueue<GvcfCursor> heap = new PriorityQueue<GvcfCursor>(11, (a, b) -> a.current
+			.getStart() != b.current.getStart() ? Integer.compare(a.current.getStart(), b.current.getStart())
+					: Integer.compare(a.index, b.index));
+
+	@Override
+	public void initialize(InputSplit spl, TaskAttemptContext ctx) throws IOException {
+		final JointCallingRegionSplit split = (JointCallingRegionSplit) spl;
+		final Configuration conf = ctx.getConfiguration();
+
+		HashMap<String, Integer> indexes = new MultipleVCFHeaderForJointCalling().getIndexes(conf);
+		for (Path file : FileInputFormat.getInputPaths(ctx)) {
+			Integer index = indexes.get(file.getName());
+			if (index == null)
+				throw new UserException(file.getName() + " is not indexed.");
+
+			GvcfCursor cursor = new GvcfCursor(file, index, conf, split);
+			cursors.add(cursor);
+			if (cursor.advance())
+				heap.add(cursor);
+		}
+	}
+
+	@Override
+	public boolean nextKeyValue() throws IOException {
+		GvcfCursor cursor = heap.poll();
+		if (cursor == null)
+			return false;
+
+		VariantContext v = cursor.current;
+		key.set(v.getStart() - 1);
+		vc.set(v);
+
+		if (cursor.advance())
+			heap.add(cursor);
+		return true;
+	}
+
+	@Override
+	public LongWritable getCurrentKey() {
+		return key;
+	}
+
+	@Override
+	public VariantContextWritable getCurrentValue() {
+		return vc;
+	}
+
+	@Override
+	public float getProgress() {
+		return cursors.isEmpty() ? 1 : 1 - (float) heap.size() / cursors.size();
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (GvcfCursor cursor : cursors)
+			cursor.close();
+	}
+
+	/**
+	 * the records of one gvcf overlapping the region
+	 */
+	private static class GvcfCursor {
+		private final int index;
+		private final String contig;
+		private final int start;
+		private final int end;
+
+		private final VCFCodec codec = new VCFCodec();
+		private final BlockCompressedInputStream in;
+		private final List<Block> chunks;
+		private int chunk = 0;
+		private boolean seeked = false;
+
+		private VariantContext current = null;
+
+		GvcfCursor(Path file, int index, Configuration conf, JointCallingRegionSplit split) throws IOException {
+			this.index = index;
+			this.contig = split.getContig();
+			this.start = split.getStart();
+			this.end = split.getEnd();
+
+			FileSystem fs = file.getFileSystem(conf);
+			Path indexFile = new Path(file.toString() + TABIX_INDEX_SUFFIX);
+			InputStream indexIn = fs.open(indexFile);
+			chunks = new TabixIndex(indexIn).getBlocks(contig, start, end);
+			indexIn.close();
+
+			in = new BlockCompressedInputStream(WrapSeekable.openPath(fs, file));
+			final Object h = codec.readHeader(new AsciiLineReaderIterator(new AsciiLineReader(in)));
+			if (!(h instanceof FeatureCodecHeader) || !(((FeatureCodecHeader) h).getHeaderValue() instanceof VCFHeader))
+				throw new IOException("No VCF header found in " + file);
+		}
+
+		/**
+		 * move to the next record overlapping the region
+		 *
+		 * @return false if there is none
+		 */
+		boolean advance() throws IOException {
+			current = null;
+			while (chunk < chunks.size()) {
+				Block block = chunks.get(chunk);
+				if (!seeked) {
+					in.seek(block.getStartPosition());
+					seeked = true;
+				}
+				if (in.getFilePointer() >= block.getEndPosition()) {
+					chunk++;
+					seeked = false;
+					continue;
+				}
+
+				String line = in.readLine();
+				if (line == null)
+					break;
+				VariantContext v = codec.decode(line);
+				if (v == null || !v.getContig().equals(contig) || v.getEnd() < start)
+					continue;
+				// the chunks are sorted, nothing later can overlap the region
+				if (v.getStart() > end)
+					break;
+
+				CommonInfo info = v.getCommonInfo();
+				if (!info.hasAttribute("SM"))
+					info.putAttribute("SM", index);
+				current = v;
+				return true;
+			}
+			chunk = chunks.size();
+			return false;
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputSplit;
+
+/**
+ * A genomic region of all input gvcfs: the windows firstWindow to lastWindow
+ * of a contig.
+ */
+public class JointCallingRegionSplit extends InputSplit implements Writable {
+	private String contig;
+	private int firstWindow;
+	private int lastWindow;
+	private int windowSize;
+
+	public JointCallingRegionSplit() {
+	}
+
+	public JointCallingRegionSplit(String contig, int firstWindow, int lastWindow, int windowSize) {
+		this.contig = contig;
+		this.firstWindow = firstWindow;
+		this.lastWindow = lastWindow;
+		this.windowSize = windowSize;
+	}
+
+	public String getContig() {
+		return contig;
+	}
+
+	public int getFirstWindow() {
+		return firstWindow;
+	}
+
+	public int getLastWindow() {
+		return lastWindow;
+	}
+
+	/**
+	 * first base of the region, as the windows are numbered by mapper
+	 */
+	public int getStart() {
+		return Math.max(1, firstWindow * windowSize);
+	}
+
+	/**
+	 * last base of the region, may be beyond the contig end
+	 */
+	public int getEnd() {
+		return (lastWindow + 1) * windowSize - 1;
+	}
+
+	@Override
+	public long getLength() {
+		return (long) (lastWindow - firstWindow + 1) * windowSize;
+	}
+
+	@Override
+	public String[] getLocations() {
+		return new String[0];
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		Text.writeString(out, contig);
+		out.writeInt(firstWindow);
+		out.writeInt(lastWindow);
+		out.writeInt(windowSize);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		contig = Text.readString(in);
+		firstWindow = in.readInt();
+		lastWindow = in.readInt();
+		windowSize = in.readInt();
+	}
+
+	@Override
+	public String toString() {
+		return contig + ":" + getStart() + "-" + getEnd();
+	}
+}
@@ -0,0 +1,164 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.jointcalling;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.DbsnpShare;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSitesIndex;
+import org.bgi.flexlab.gaea.data.structure.location.GenomeLocationParser;
+import org.bgi.flexlab.gaea.data.structure.reference.ReferenceShare;
+import org.bgi.flexlab.gaea.data.structure.reference.index.VcfIndex;
+import org.bgi.flexlab.gaea.data.structure.vcf.VCFLocalLoader;
+import org.bgi.flexlab.gaea.data.variant.filter.VariantRegionFilter;
+import org.bgi.flexlab.gaea.tools.jointcalling.JointCallingEngine;
+import org.bgi.flexlab.gaea.tools.jointcalling.util.MultipleVCFHeaderForJointCalling;
+import org.seqdoop.hadoop_bam.VariantContextWritable;
+
+import htsjdk.variant.variantcontext.CommonInfo;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFContigHeaderLine;
+import htsjdk.variant.vcf.VCFHeader;
+
+/**
+ * Calls the genotypes of one window from the gvcf records overlapping it,
+ * sorted by start. Used by the reducer of the shuffled joint calling and by
+ * the mappers of the region sharded one and of the cohort regenotyping.
+ */
+public class JointCallingWindowCaller {
+
+	private int windowSize;
+	private HashMap<Integer, String> contigs = null;
+	private JointCallingEngine engine = null;
+	private VariantContextWritable outValue = new VariantContextWritable();
+
+	private JointCallingOptions options = null;
+	private GenomeLocationParser parser = null;
+	private ReferenceShare genomeShare = null;
+	private DbsnpShare dbsnpShare = null;
+	private VCFLocalLoader loader = null;
+	private KnownSitesIndex dbsnpSites = null;
+	private VariantRegionFilter filter = null;
+	private VCFHeader header = null;
+	private MultipleVCFHeaderForJointCalling headers = new MultipleVCFHeaderForJointCalling();
+
+	public JointCallingWindowCaller(Configuration conf) throws IOException {
+		contigs = new HashMap<>();
+
+		headers.readHeaders(conf);
+
+		for (VCFContigHeaderLine line : headers.getMergeHeader().getContigLines()) {
+			contigs.put(line.getContigIndex(), line.getID());
+		}
+
+		options = new JointCallingOptions();
+		options.getOptionsFromHadoopConf(conf);
+
+		windowSize = options.getWindowsSize();
+		parser = new GenomeLocationParser(headers.getMergeHeader().getSequenceDictionary());
+		engine = new JointCallingEngine(options, parser, headers);
+
+		genomeShare = new ReferenceShare();
+		genomeShare.loadChromosomeList(options.getReference());
+		if (KnownSitesIndex.exists(options.getDBSnp())) {
+			dbsnpSites = KnownSitesIndex.open(options.getDBSnp());
+		} else {
+			dbsnpShare = new DbsnpShare(options.getDBSnp(), options.getReference());
+			dbsnpShare.loadChromosomeList(options.getDBSnp() + VcfIndex.INDEX_SUFFIX);
+			loader = new VCFLocalLoader(options.getDBSnp());
+		}
+		filter = new VariantRegionFilter();
+		header = engine.getVCFHeader();
+
+		if (header == null)
+			throw new RuntimeException("header is null!!!");
+	}
+
+	public String getContig(int chrIndex) {
+		return contigs.get(chrIndex);
+	}
+
+	/**
+	 * call the window winNum of chr and write the calls to context
+	 */
+	public void call(String chr, int winNum, Iterator<VariantContextWritable> iterator,
+			TaskInputOutputContext<?, ?, NullWritable, VariantContextWritable> context)
+			throws IOException, InterruptedException {
+		int start = winNum * windowSize;
+		if (start == 0)
+			start = 1;
+
+		int contigLength = header.getSequenceDictionary().getSequence(chr).getSequenceLength();
+		int end = Math.min(contigLength, start + windowSize - 1);
+
+		ArrayList<VariantContext> dbsnps = null;
+		if (dbsnpSites != null) {
+			dbsnps = dbsnpSites.query(chr, start, end).getVariantContexts();
+		} else {
+			long startPosition = dbsnpShare.getStartPosition(chr, winNum, options.getWindowsSize());
+			if (startPosition >= 0)
+				dbsnps = filter.loadFilter(loader, chr, startPosition, end);
+		}
+		engine.init(dbsnps);
+
+		if (options.INCLUDE_NON_VARIANT) {
+			for (int iter = start; iter <= end; iter++) {
+				VariantContext variantContext = engine.variantCalling(iterator,
+						parser.createGenomeLocation(chr, iter), genomeShare.getChromosomeInfo(chr));
+				write(variantContext, context);
+			}
+			return;
+		}
+
+		// without non variant sites, only the starts of variant records can be called
+		int iter = engine.nextVariantStart(iterator, start);
+		while (iter != -1 && iter <= end) {
+			VariantContext variantContext = engine.variantCalling(iterator, parser.createGenomeLocation(chr, iter),
+					genomeShare.getChromosomeInfo(chr));
+			write(variantContext, context);
+			iter = engine.nextVariantStart(iterator, iter + 1);
+		}
+		engine.resetWindow();
+	}
+
+	/**
+	 * the records as the values of a window
+	 */
+	public static Iterator<VariantContextWritable> iterator(final List<VariantContext> records) {
+		final Iterator<VariantContext> it = records.iterator();
+		return new Iterator<VariantContextWritable>() {
+			private final VariantContextWritable value = new VariantContextWritable();
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public VariantContextWritable next() {
+				value.set(it.next());
+				return value;
+			}
+		};
+	}
+
+	private void write(VariantContext variantContext,
+			TaskInputOutputContext<?, ?, NullWritable, VariantContextWritable> context)
+			throws IOException, InterruptedException {
+		if (variantContext == null)
+			return;
+		CommonInfo info = variantContext.getCommonInfo();
+		HashMap<String, Object> maps = new HashMap<>();
+		maps.putAll(info.getAttributes());
+		maps.remove("SM");
+		info.setAttributes(maps);
+
+		outValue.set(variantContext, header);
+		context.write(NullWritable.get(), outValue);
+	}
+}
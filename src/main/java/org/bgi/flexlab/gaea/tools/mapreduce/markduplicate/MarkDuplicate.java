@@ -44,13 +44,16 @@ package org.bgi.flexlab.gaea.tools.mapreduce.markduplicate;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.bgi.flexlab.gaea.data.mapreduce.input.bam.GaeaBamInputFormat;
 import org.bgi.flexlab.gaea.data.mapreduce.output.bam.GaeaBamOutputFormat;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.DuplicationKeyWritable;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.DuplicationSignatureWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
 import org.bgi.flexlab.gaea.framework.tools.mapreduce.BioJob;
 import org.bgi.flexlab.gaea.framework.tools.mapreduce.ToolsRunner;
@@ -74,6 +77,9 @@ public class MarkDuplicate extends ToolsRunner{
 
         job.setHeader(new Path(options.getInput()), new Path(options.getOutput()));
 
+        if(options.isTwoPhase())
+            return runTwoPhase(job, options);
+
         job.setJobName("GaeaMarkDuplicate");
         job.setJarByClass(MarkDuplicate.class);
         job.setMapperClass(MarkDuplicateMappper.class);
@@ -98,6 +104,50 @@ public class MarkDuplicate extends ToolsRunner{
         return success ? 0 : 1;
     }
 
+    /**
+     * phase one shuffles read end signatures and writes duplicate ids,
+     * phase two is a map only pass over the input that sets the flag
+     */
+    private int runTwoPhase(BioJob job, MarkDuplicateOptions options) throws IOException, ClassNotFoundException, InterruptedException {
+        Path[] inputs = options.getInputFileList().toArray(new Path[options.getInputFileList().size()]);
+        Path idPath = new Path(options.getOutput()+"/DuplicateIds");
+
+        job.setJobName("GaeaMarkDuplicate signature");
+        job.setJarByClass(MarkDuplicate.class);
+        job.setMapperClass(MarkDuplicateSignatureMapper.class);
+        job.setReducerClass(MarkDuplicateSignatureReducer.class);
+        job.setNumReduceTasks(options.getReducerNum());
+
+        job.setOutputKeyValue(DuplicationKeyWritable.class, DuplicationSignatureWritable.class,
+                LongWritable.class, NullWritable.class);
+
+        job.setAnySamInputFormat(options.getInputFormat());
+        job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+        FileInputFormat.setInputPaths(job, inputs);
+        FileOutputFormat.setOutputPath(job, idPath);
+        if(!job.waitForCompletion(true))
+            return 1;
+
+        BioJob flagJob = BioJob.getInstance(new Configuration(job.getConfiguration()));
+        flagJob.getConfiguration().set(MarkDuplicateFlagMapper.DUPLICATE_IDS, idPath.toString());
+        flagJob.setJobName("GaeaMarkDuplicate flag");
+        flagJob.setJarByClass(MarkDuplicate.class);
+        flagJob.setMapperClass(MarkDuplicateFlagMapper.class);
+        flagJob.setNumReduceTasks(0);
+
+        flagJob.setOutputKeyValue(NullWritable.class, SamRecordWritable.class);
+
+        flagJob.setAnySamInputFormat(options.getInputFormat());
+        if(options.getOutputFormat() == 0){
+            flagJob.setOutputFormatClass(GaeaBamOutputFormat.class);
+        }
+
+        FileInputFormat.setInputPaths(flagJob, inputs);
+        FileOutputFormat.setOutputPath(flagJob, new Path(options.getOutput()+"/Mark"));
+        return flagJob.waitForCompletion(true) ? 0 : 1;
+    }
+
     @Override
     public int run(String[] args) throws Exception {
         MarkDuplicate md = new MarkDuplicate();
@@ -0,0 +1,81 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.markduplicate;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.bgi.flexlab.gaea.data.mapreduce.input.header.SamHdfsFileHeader;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.CreateDuplicationKey;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.DuplicationKeyWritable;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.DuplicationSignatureWritable;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
+import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * phase two of two-phase mark duplicate: map only pass over the input that
+ * sets the duplicate flag of reads found in the duplicate id set
+ */
+public class MarkDuplicateFlagMapper extends Mapper<LongWritable, SamRecordWritable, NullWritable, SamRecordWritable> {
+    public final static String DUPLICATE_IDS = "markduplicate.duplicate.ids";
+
+    private CreateDuplicationKey bamKey;
+    private DuplicationKeyWritable dupKey;
+    private SAMFileHeader samHeader;
+    private MarkDuplicateOptions options;
+    private long[] duplicateIds;
+    private SamRecordWritable w = new SamRecordWritable();
+
+    @Override
+    public void setup(Context context) throws IOException {
+        Configuration conf = context.getConfiguration();
+        samHeader = SamHdfsFileHeader.getHeader(conf);
+        bamKey = new CreateDuplicationKey(samHeader);
+        dupKey = new DuplicationKeyWritable();
+        options = new MarkDuplicateOptions();
+        options.getOptionsFromHadoopConf(conf);
+        duplicateIds = loadDuplicateIds(new Path(conf.get(DUPLICATE_IDS)), conf);
+    }
+
+    private static long[] loadDuplicateIds(Path dir, Configuration conf) throws IOException {
+        FileSystem fs = dir.getFileSystem(conf);
+        LongArrayList ids = new LongArrayList();
+        LongWritable id = new LongWritable();
+        for (FileStatus file : fs.listStatus(dir, p -> !p.getName().startsWith("_") && !p.getName().startsWith("."))) {
+            try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file.getPath()))) {
+                while (reader.next(id))
+                    ids.add(id.get());
+            }
+        }
+        long[] sorted = ids.toLongArray();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    @Override
+    public void map(LongWritable key, SamRecordWritable value, Context context) throws IOException, InterruptedException {
+        SAMRecord sam = value.get();
+        if (options.isRemoveSecond() && sam.isSecondaryOrSupplementary())
+            return;
+
+        GaeaSamRecord record = new GaeaSamRecord(samHeader, sam);
+        if (!record.getReadUnmappedFlag()) {
+            bamKey.getKey(record, dupKey);
+            long id = DuplicationSignatureWritable.duplicateId(
+                    DuplicationSignatureWritable.hashReadName(record.getReadName()), dupKey);
+            if (Arrays.binarySearch(duplicateIds, id) >= 0)
+                record.setDuplicateReadFlag(true);
+        }
+        w.set(record);
+        context.write(NullWritable.get(), w);
+    }
+}
@@ -47,6 +47,8 @@ public class MarkDuplicateOptions extends GaeaOptions implements HadoopOptions {
     private int reducerNum;
     private int windowSize;
     private int extendSize;
+    private boolean twoPhase;
+    private int spillSize;
     FileSystem fs;
 
     public MarkDuplicateOptions() {
@@ -60,6 +62,8 @@ public class MarkDuplicateOptions extends GaeaOptions implements HadoopOptions {
         addOption("R", "reducer", true, "reducer numbers [30]");
         addOption("W", "windowSize", true, "window size that sharding the data [100000]");
         addOption("E", "extendSize", true, "The extend size (must greater than read length) [100]");
+        addOption("T", "twoPhase", false, "shuffle read end signatures only and set the flag in a second map only pass [false]");
+        addOption("X", "spillSize", true, "reads of one duplication key kept in memory before spilling to local disk [100000]");
         addOption("h", "help", false, "print help information.");
         FormatHelpInfo(SOFTWARE_NAME,SOFTWARE_VERSION);
 
@@ -94,6 +98,8 @@ public class MarkDuplicateOptions extends GaeaOptions implements HadoopOptions {
         reducerNum = getOptionIntValue("R", 30);
         windowSize = getOptionIntValue("W", 100000);
         extendSize = getOptionIntValue("E", 100);
+        twoPhase = getOptionBooleanValue("T", false);
+        spillSize = getOptionIntValue("X", 100000);
     }
 
     @Override
@@ -195,4 +201,12 @@ public class MarkDuplicateOptions extends GaeaOptions implements HadoopOptions {
     public int getExtendSize() {
         return extendSize;
     }
+
+    public boolean isTwoPhase() {
+        return twoPhase;
+    }
+
+    public int getSpillSize() {
+        return spillSize;
+    }
 }
@@ -2,6 +2,7 @@ package org.bgi.flexlab.gaea.tools.mapreduce.markduplicate;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMRecord;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Reducer;
@@ -10,6 +11,7 @@ import org.bgi.flexlab.gaea.data.mapreduce.writable.DuplicationKeyWritable;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
 import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
 import org.bgi.flexlab.gaea.tools.markduplicate.MarkDuplicatesFunc;
+import org.bgi.flexlab.gaea.tools.markduplicate.SamRecordSpill;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -17,11 +19,16 @@ import java.util.ArrayList;
 public class MarkDuplicateReducer extends Reducer<DuplicationKeyWritable, SamRecordWritable, NullWritable, SamRecordWritable>{
     private MarkDuplicatesFunc mark = new MarkDuplicatesFunc();
     private SAMFileHeader samHeader;
+    private int spillSize;
+    private final static String SPILL_COUNTER = "MarkDuplicate";
 
     @Override
     public void setup(Context context){
         Configuration conf = context.getConfiguration();
         samHeader = SamHdfsFileHeader.getHeader(conf);
+        MarkDuplicateOptions options = new MarkDuplicateOptions();
+        options.getOptionsFromHadoopConf(conf);
+        spillSize = options.getSpillSize();
     }
 
     public void reduce(DuplicationKeyWritable key, Iterable<SamRecordWritable> values, Context context) throws IOException, InterruptedException {
@@ -36,28 +43,46 @@ public class MarkDuplicateReducer extends Reducer<DuplicationKeyWritable, SamRec
             return;
         }
 
-        //collect reads cluster and mark duplicate
+        //collect reads cluster, spill to local disk when it is too deep
         ArrayList<SAMRecord> sams = new ArrayList<>();
-        int n = 0;
-        for(SamRecordWritable s : values) {
-        	GaeaSamRecord sam = new GaeaSamRecord(samHeader,s.get());
-            if (n>100000) {
-                sam.setDuplicateReadFlag(true);
-                SamRecordWritable w = new SamRecordWritable();
-                w.set(sam);
-                context.write(NullWritable.get(), w);
-            }else {
-                sams.add(sam);
+        IntArrayList ids = new IntArrayList();
+        SamRecordSpill spill = null;
+        mark.clear();
+        try {
+            for(SamRecordWritable s : values) {
+                GaeaSamRecord sam = new GaeaSamRecord(samHeader,s.get());
+                int id = mark.add(sam);
+                if (sams.size() < spillSize) {
+                    sams.add(sam);
+                    ids.add(id);
+                } else {
+                    if (spill == null)
+                        spill = new SamRecordSpill(samHeader);
+                    spill.write(id, sam);
+                }
             }
-            n++;
-        }
 
-        if(sams.size() > 1)
-            mark.markDup(sams);
-        for(SAMRecord sam : sams) {
-            SamRecordWritable w = new SamRecordWritable();
-            w.set(sam);
-            context.write(NullWritable.get(), w);
+            //mark duplicate
+            boolean[] duplicates = mark.findDuplicates();
+            for(int i = 0; i < sams.size(); i++) {
+                write(sams.get(i), duplicates[ids.getInt(i)], context);
+            }
+            if (spill != null) {
+                context.getCounter(SPILL_COUNTER, "spilled reads").increment(spill.size());
+                while (spill.next())
+                    write(spill.getRecord(), duplicates[spill.getId()], context);
+            }
+        } finally {
+            if (spill != null)
+                spill.close();
         }
     }
+
+    private void write(SAMRecord sam, boolean duplicate, Context context) throws IOException, InterruptedException {
+        if (duplicate)
+            sam.setDuplicateReadFlag(true);
+        SamRecordWritable w = new SamRecordWritable();
+        w.set(sam);
+        context.write(NullWritable.get(), w);
+    }
 }
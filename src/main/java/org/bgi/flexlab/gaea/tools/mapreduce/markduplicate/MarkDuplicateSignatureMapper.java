@@ -0,0 +1,53 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.markduplicate;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.bgi.flexlab.gaea.data.mapreduce.input.header.SamHdfsFileHeader;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.CreateDuplicationKey;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.DuplicationKeyWritable;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.DuplicationSignatureWritable;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
+import org.bgi.flexlab.gaea.tools.markduplicate.MarkDuplicatesFunc;
+
+import java.io.IOException;
+
+/**
+ * phase one of two-phase mark duplicate: shuffle read end signatures only
+ */
+public class MarkDuplicateSignatureMapper extends Mapper<LongWritable, SamRecordWritable, DuplicationKeyWritable, DuplicationSignatureWritable> {
+    private CreateDuplicationKey bamKey;
+    private DuplicationKeyWritable dupKey;
+    private DuplicationSignatureWritable signature;
+    private MarkDuplicateOptions options;
+
+    @Override
+    public void setup(Context context) {
+        Configuration conf = context.getConfiguration();
+        SAMFileHeader header = SamHdfsFileHeader.getHeader(conf);
+        bamKey = new CreateDuplicationKey(header);
+        dupKey = new DuplicationKeyWritable();
+        signature = new DuplicationSignatureWritable();
+        options = new MarkDuplicateOptions();
+        options.getOptionsFromHadoopConf(conf);
+    }
+
+    @Override
+    public void map(LongWritable key, SamRecordWritable value, Context context) throws IOException, InterruptedException {
+        SAMRecord sam = value.get();
+        if (options.isRemoveSecond() && sam.isSecondaryOrSupplementary())
+            return;
+        //unmapped reads are never duplicate
+        if (sam.getReadUnmappedFlag())
+            return;
+
+        bamKey.getKey(sam, dupKey);
+        signature.set(DuplicationSignatureWritable.hashReadName(sam.getReadName()), sam.getReferenceIndex(),
+                sam.getReadNegativeStrandFlag() ? sam.getUnclippedEnd() : sam.getUnclippedStart(),
+                sam.getReadNegativeStrandFlag(), sam.getReadPairedFlag() && !sam.getMateUnmappedFlag(),
+                sam.getMateReferenceIndex(), MarkDuplicatesFunc.getScore(sam), sam.getMappingQuality());
+        context.write(dupKey, signature);
+    }
+}
@@ -0,0 +1,35 @@
+package org.bgi.flexlab.gaea.tools.mapreduce.markduplicate;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.DuplicationKeyWritable;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.DuplicationSignatureWritable;
+import org.bgi.flexlab.gaea.tools.markduplicate.MarkDuplicatesFunc;
+
+import java.io.IOException;
+
+/**
+ * phase one of two-phase mark duplicate: write ids of duplicate reads
+ */
+public class MarkDuplicateSignatureReducer extends Reducer<DuplicationKeyWritable, DuplicationSignatureWritable, LongWritable, NullWritable> {
+    private MarkDuplicatesFunc mark = new MarkDuplicatesFunc();
+    private LongWritable duplicateId = new LongWritable();
+
+    @Override
+    public void reduce(DuplicationKeyWritable key, Iterable<DuplicationSignatureWritable> values, Context context) throws IOException, InterruptedException {
+        //signatures are kept in primitive arrays, any depth fits in memory
+        mark.clear();
+        for(DuplicationSignatureWritable s : values) {
+            mark.add(s);
+        }
+
+        for (long nameHash : mark.getDuplicateNameHashes())
+            writeId(nameHash, key, context);
+    }
+
+    private void writeId(long nameHash, DuplicationKeyWritable key, Context context) throws IOException, InterruptedException {
+        duplicateId.set(DuplicationSignatureWritable.duplicateId(nameHash, key));
+        context.write(duplicateId, NullWritable.get());
+    }
+}
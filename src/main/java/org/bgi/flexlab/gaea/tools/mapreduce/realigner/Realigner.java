@@ -25,8 +25,6 @@ import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.bgi.flexlab.gaea.data.exception.FileNotExistException;
 import org.bgi.flexlab.gaea.data.mapreduce.input.header.SamHdfsFileHeader;
 import org.bgi.flexlab.gaea.data.mapreduce.output.bam.GaeaBamOutputFormat;
@@ -88,6 +86,8 @@ public class Realigner extends ToolsRunner {
 		job.setOutputFormatClass(GaeaBamOutputFormat.class);
 		job.setOutputKeyValue(WindowsBasedWritable.class, SamRecordWritable.class, NullWritable.class,
 				SamRecordWritable.class);
+		if (options.isShuffleProjection())
+			job.setShuffleProjection();
 
 		job.setJarByClass(Realigner.class);
 		job.setWindowsBasicMapperClass(WindowsBasedSamRecordMapper.class, option.getWindowsSize(),option.getExtendSize());
@@ -97,9 +97,9 @@ public class Realigner extends ToolsRunner {
 		FileInputFormat.setInputPaths(job, new Path(option.getRealignerInput()));
 		FileOutputFormat.setOutputPath(job, new Path(option.getRealignerOutput()));
 
-		if (options.isRecalibration())
-			MultipleOutputs.addNamedOutput(job, RecalibratorContextWriter.RECALIBRATOR_TABLE_TAG,
-					TextOutputFormat.class, NullWritable.class, Text.class);
+		if (options.getBalanceSampleFraction() > 0)
+			job.setBalancedWindowsPartitioner(options.getBalanceSampleFraction(),
+					new Path(options.getCommonOutput() + "windowsPartition.table"));
 
 		if (job.waitForCompletion(true)) {
 			if (options.isRecalibration())
@@ -42,6 +42,8 @@ public class RealignerExtendOptions extends GaeaOptions implements HadoopOptions
 
 	private boolean realignment;
 	private boolean recalibration;
+	private boolean shuffleProjection;
+	private double balanceSampleFraction = 0;
 	
 	private String commonOutput = null;
 
@@ -49,6 +51,8 @@ public class RealignerExtendOptions extends GaeaOptions implements HadoopOptions
 		addOption("q", "recalibrator", false, "only run base recalibrator");
 		addOption("R", "realigment", false, "only run realiger");
 		addOption("u", "algoBoth", false, "run realiger and recalibrator");
+		addOption("Y", "balanceSampleFraction", true, "fraction of the input splits sampled to balance the windows over the reducers by depth, 0 to disable [0]");
+		addOption("X", "shuffleProjection", false, "shuffle reads without the unused tags and with short pair ids as read names, only with the recalibrator alone");
 
 		initialize();
 		FormatHelpInfo(SOFTWARE_NAME, SOFTWARE_VERSION);
@@ -105,6 +109,10 @@ public class RealignerExtendOptions extends GaeaOptions implements HadoopOptions
 				realignment = true;
 		}
 		
+		shuffleProjection = cmdLine.hasOption("X");
+		if(cmdLine.hasOption("Y"))
+			balanceSampleFraction = Double.parseDouble(cmdLine.getOptionValue("Y"));
+		
 		if(cmdLine.hasOption("o"))
 			this.commonOutput = cmdLine.getOptionValue("o");
 		
@@ -150,6 +158,17 @@ public class RealignerExtendOptions extends GaeaOptions implements HadoopOptions
 		return this.recalibration;
 	}
 
+	/**
+	 * the realigner writes the reads back, so they can only be projected for the recalibrator alone
+	 */
+	public boolean isShuffleProjection() {
+		return this.shuffleProjection && !this.realignment;
+	}
+
+	public double getBalanceSampleFraction() {
+		return this.balanceSampleFraction;
+	}
+
 	public RealignerOptions getRealignerOptions() {
 		return this.realignerOptions;
 	}
@@ -32,12 +32,13 @@ import org.bgi.flexlab.gaea.data.mapreduce.writable.WindowsBasedWritable;
 import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
 import org.bgi.flexlab.gaea.data.structure.bam.filter.QualityControlFilter;
 import org.bgi.flexlab.gaea.data.structure.dbsnp.DbsnpShare;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSitesIndex;
 import org.bgi.flexlab.gaea.data.structure.reference.ReferenceShare;
 import org.bgi.flexlab.gaea.data.structure.reference.index.VcfIndex;
 import org.bgi.flexlab.gaea.data.structure.vcf.VCFLocalLoader;
 import org.bgi.flexlab.gaea.tools.realigner.RealignerEngine;
 import org.bgi.flexlab.gaea.tools.recalibrator.RecalibratorEngine;
-import org.bgi.flexlab.gaea.tools.recalibrator.table.RecalibratorTable;
+import org.bgi.flexlab.gaea.tools.recalibrator.table.FlatRecalibratorTable;
 import org.bgi.flexlab.gaea.util.SamRecordUtils;
 import org.bgi.flexlab.gaea.util.Window;
 
@@ -53,6 +54,7 @@ public class RealignerReducer
 	private ReferenceShare genomeShare = null;
 	private DbsnpShare dbsnpShare = null;
 	private VCFLocalLoader loader = null;
+	private KnownSitesIndex knownSites = null;
 	private RealignerEngine engine = null;
 	private RecalibratorContextWriter writer = null;
 
@@ -74,14 +76,18 @@ public class RealignerReducer
 		genomeShare = new ReferenceShare();
 		genomeShare.loadChromosomeList(option.getReference());
 
-		dbsnpShare = new DbsnpShare(option.getKnowVariant(), option.getReference());
-		dbsnpShare.loadChromosomeList(option.getKnowVariant() + VcfIndex.INDEX_SUFFIX);
+		if (KnownSitesIndex.exists(option.getKnowVariant())) {
+			knownSites = KnownSitesIndex.open(option.getKnowVariant());
+		} else {
+			dbsnpShare = new DbsnpShare(option.getKnowVariant(), option.getReference());
+			dbsnpShare.loadChromosomeList(option.getKnowVariant() + VcfIndex.INDEX_SUFFIX);
 
-		loader = new VCFLocalLoader(option.getKnowVariant());
+			loader = new VCFLocalLoader(option.getKnowVariant());
+		}
 
-		writer = new RecalibratorContextWriter(context, true);
+		writer = new RecalibratorContextWriter(context);
 
-		engine = new RealignerEngine(option, genomeShare, dbsnpShare, loader, mHeader, writer);
+		engine = new RealignerEngine(option, genomeShare, dbsnpShare, loader, knownSites, mHeader, writer);
 
 		if (extendOption.isRecalibration()) {
 			recalEngine = new RecalibratorEngine(extendOption.getBqsrOptions(), genomeShare, mHeader,
@@ -200,7 +206,7 @@ public class RealignerReducer
 	@Override
 	protected void cleanup(Context context) throws IOException, InterruptedException {
 		if (extendOption.isRecalibration()) {
-			RecalibratorTable table = recalEngine.getTables();
+			FlatRecalibratorTable table = recalEngine.getTables();
 			writer.write(table);
 		}
 		writer.close();
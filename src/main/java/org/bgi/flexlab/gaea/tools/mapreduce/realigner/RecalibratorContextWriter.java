@@ -16,16 +16,18 @@
  *******************************************************************************/
 package org.bgi.flexlab.gaea.tools.mapreduce.realigner;
 
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer.Context;
-import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
 import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
 import org.bgi.flexlab.gaea.tools.realigner.RealignerWriter;
 import org.bgi.flexlab.gaea.tools.recalibrator.RecalibratorWriter;
-import org.bgi.flexlab.gaea.tools.recalibrator.table.RecalibratorTable;
+import org.bgi.flexlab.gaea.tools.recalibrator.table.FlatRecalibratorTable;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 
 public class RecalibratorContextWriter extends RealignerWriter implements RecalibratorWriter {
@@ -33,50 +35,34 @@ public class RecalibratorContextWriter extends RealignerWriter implements Recali
 	
 	@SuppressWarnings("rawtypes")
 	private Context context = null;
-	private MultipleOutputs<NullWritable, Text> mos = null;
 	private SamRecordWritable value = null;
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	public RecalibratorContextWriter(Context ctx,boolean multiple) {
-		if(multiple)
-			mos = new MultipleOutputs<NullWritable, Text>(ctx);
-		this.context = ctx;
-		value = new SamRecordWritable();
-	}
-	
 	public RecalibratorContextWriter(@SuppressWarnings("rawtypes") Context context){
-		this(context,false);
+		this.context = context;
+		value = new SamRecordWritable();
 	}
 
+	/**
+	 * write the table as binary into the task output directory, committed
+	 * together with the reads
+	 */
 	@SuppressWarnings("unchecked")
 	@Override
-	public void write(RecalibratorTable table) {
-		for (String str : table.valueStrings()) {
-			try {
-				if(mos == null){
-					context.write(NullWritable.get(), new Text(str));
-				}else{
-					mos.write(RECALIBRATOR_TABLE_TAG, NullWritable.get(), new Text(str));
-				}
-			} catch (IOException e) {
-				throw new RuntimeException(e.toString());
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e.toString());
-			}
+	public void write(FlatRecalibratorTable table) {
+		try {
+			Path path = new Path(FileOutputFormat.getWorkOutputPath(context), String.format("%s-r-%05d",
+					RECALIBRATOR_TABLE_TAG, context.getTaskAttemptID().getTaskID().getId()));
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(path.getFileSystem(context.getConfiguration()).create(path)));
+			table.write(out);
+			out.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString());
 		}
 	}
 
 	@Override
 	public void close() {
-		if(mos != null){
-			try {
-				mos.close();
-			} catch (IOException e) {
-				throw new RuntimeException(e.toString());
-			} catch (InterruptedException e) {
-				throw new RuntimeException(e.toString());
-			}
-		}
 	}
 
 	@SuppressWarnings("unchecked")
@@ -0,0 +1,176 @@
+package org.bgi.flexlab.gaea.tools.markduplicate;
+
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * duplicate clustering on primitive arrays. read names are interned to ids by
+ * their 64 bit hash, the ends of a read or pair are kept in parallel arrays
+ * and clusters are found by sorting packed long keys, so no object is created
+ * per read and there is no limit on the depth of a duplication key.
+ */
+public class DuplicateClusterEngine {
+    private final static int INITIAL_CAPACITY = 1024;
+
+    private final Long2IntOpenHashMap nameIds = new Long2IntOpenHashMap();
+    private int size = 0;
+
+    private long[] nameHashes = new long[INITIAL_CAPACITY];
+    private int[] read1SequenceIndex = new int[INITIAL_CAPACITY];
+    private int[] read1Coordinate = new int[INITIAL_CAPACITY];
+    private int[] read2SequenceIndex = new int[INITIAL_CAPACITY];
+    private int[] read2Coordinate = new int[INITIAL_CAPACITY];
+    private byte[] orientation = new byte[INITIAL_CAPACITY];
+    private short[] score = new short[INITIAL_CAPACITY];
+
+    public DuplicateClusterEngine() {
+        nameIds.defaultReturnValue(-1);
+    }
+
+    public void clear() {
+        nameIds.clear();
+        size = 0;
+    }
+
+    /**
+     * number of distinct reads or pairs
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getNameHash(int id) {
+        return nameHashes[id];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= nameHashes.length)
+            return;
+        int length = Math.max(capacity, nameHashes.length * 2);
+        nameHashes = Arrays.copyOf(nameHashes, length);
+        read1SequenceIndex = Arrays.copyOf(read1SequenceIndex, length);
+        read1Coordinate = Arrays.copyOf(read1Coordinate, length);
+        read2SequenceIndex = Arrays.copyOf(read2SequenceIndex, length);
+        read2Coordinate = Arrays.copyOf(read2Coordinate, length);
+        orientation = Arrays.copyOf(orientation, length);
+        score = Arrays.copyOf(score, length);
+    }
+
+    /**
+     * add one end of a read or pair
+     * @return id of the read name
+     */
+    public int add(long nameHash, int sequence, int coordinate, boolean negativeStrand, boolean pairMapped,
+            int mateSequence, short readScore) {
+        int id = nameIds.get(nameHash);
+        if (id < 0) {
+            id = size++;
+            ensureCapacity(size);
+            nameIds.put(nameHash, id);
+            nameHashes[id] = nameHash;
+            read1SequenceIndex[id] = sequence;
+            read1Coordinate[id] = coordinate;
+            read2SequenceIndex[id] = pairMapped ? mateSequence : -1;
+            read2Coordinate[id] = -1;
+            orientation[id] = negativeStrand ? ReadEnds.R : ReadEnds.F;
+            score[id] = readScore;
+            return id;
+        }
+
+        //PE
+        if (pairMapped) {
+            boolean read1Negative = orientation[id] == ReadEnds.R;
+            if (sequence > read1SequenceIndex[id]
+                    || (sequence == read1SequenceIndex[id] && coordinate >= read1Coordinate[id])) {
+                read2SequenceIndex[id] = sequence;
+                read2Coordinate[id] = coordinate;
+                orientation[id] = getOrientationByte(read1Negative, negativeStrand);
+            } else {
+                read2SequenceIndex[id] = read1SequenceIndex[id];
+                read2Coordinate[id] = read1Coordinate[id];
+                read1SequenceIndex[id] = sequence;
+                read1Coordinate[id] = coordinate;
+                orientation[id] = getOrientationByte(negativeStrand, read1Negative);
+            }
+            score[id] += readScore;
+        }
+        return id;
+    }
+
+    private static byte getOrientationByte(final boolean read1NegativeStrand, final boolean read2NegativeStrand) {
+        if (read1NegativeStrand)
+            return read2NegativeStrand ? ReadEnds.RR : ReadEnds.RF;
+        return read2NegativeStrand ? ReadEnds.FR : ReadEnds.FF;
+    }
+
+    /**
+     * contig in the high half, coordinate in the low half with the sign bit
+     * flipped so the long orders like (contig, coordinate)
+     */
+    private static long packKey(int sequence, int coordinate) {
+        return ((long) sequence << 32) | ((coordinate ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    /**
+     * cluster reads or pairs with the same ends and orientation and keep the
+     * max score one of each cluster (the last added one on ties)
+     * @return duplicate flag of each name id
+     */
+    public boolean[] findDuplicates() {
+        final int n = size;
+        final long[] key1 = new long[n];
+        final long[] key2 = new long[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            key1[i] = packKey(read1SequenceIndex[i], read1Coordinate[i]);
+            key2[i] = packKey(read2SequenceIndex[i], read2Coordinate[i]);
+            order[i] = i;
+        }
+
+        IntArrays.quickSort(order, 0, n, new AbstractIntComparator() {
+            @Override
+            public int compare(int a, int b) {
+                int cmp = Long.compare(key1[a], key1[b]);
+                if (cmp == 0)
+                    cmp = Integer.compare(orientation[a], orientation[b]);
+                if (cmp == 0)
+                    cmp = Long.compare(key2[a], key2[b]);
+                if (cmp == 0)
+                    cmp = Integer.compare(a, b);
+                return cmp;
+            }
+        });
+
+        boolean[] duplicates = new boolean[n];
+        int start = 0;
+        while (start < n) {
+            int first = order[start];
+            int end = start + 1;
+            while (end < n && key1[order[end]] == key1[first] && orientation[order[end]] == orientation[first]
+                    && key2[order[end]] == key2[first])
+                end++;
+
+            if (end - start > 1) {
+                //get max score pair
+                int best = -1;
+                int maxScore = 0;
+                for (int i = start; i < end; i++) {
+                    if (score[order[i]] >= maxScore) {
+                        maxScore = score[order[i]];
+                        best = order[i];
+                    }
+                }
+                //mark rest pairs
+                for (int i = start; i < end; i++) {
+                    if (order[i] != best)
+                        duplicates[order[i]] = true;
+                }
+            }
+            start = end;
+        }
+        return duplicates;
+    }
+}
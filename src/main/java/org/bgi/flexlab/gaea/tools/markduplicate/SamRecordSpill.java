@@ -0,0 +1,87 @@
+package org.bgi.flexlab.gaea.tools.markduplicate;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import org.bgi.flexlab.gaea.data.mapreduce.writable.SamRecordWritable;
+import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
+
+import java.io.*;
+
+/**
+ * local temporary file of (name id, record) used when a duplication key has
+ * too many reads to keep in memory. write everything first, then read it
+ * back once. the file is deleted on close, callers close it in a finally.
+ */
+public class SamRecordSpill implements Closeable {
+    private final static int BUFFER_SIZE = 1 << 16;
+
+    private final SAMFileHeader header;
+    private final File file;
+    private DataOutputStream out;
+    private DataInputStream in = null;
+    private final SamRecordWritable writable = new SamRecordWritable();
+    private long count = 0;
+
+    private int id;
+    private SAMRecord record;
+
+    public SamRecordSpill(SAMFileHeader header) throws IOException {
+        this.header = header;
+        file = File.createTempFile("gaea-markdup-", ".spill");
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+    }
+
+    public void write(int id, SAMRecord sam) throws IOException {
+        out.writeInt(id);
+        writable.set(sam);
+        writable.write(out);
+        count++;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * read the next spilled record, the first call finishes writing
+     */
+    public boolean next() throws IOException {
+        if (in == null) {
+            out.close();
+            out = null;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        }
+        if (count == 0)
+            return false;
+        id = in.readInt();
+        writable.readFields(in);
+        record = new GaeaSamRecord(header, writable.get());
+        count--;
+        return true;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public SAMRecord getRecord() {
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (out != null)
+                out.close();
+            if (in != null)
+                in.close();
+        } finally {
+            file.delete();
+        }
+    }
+}
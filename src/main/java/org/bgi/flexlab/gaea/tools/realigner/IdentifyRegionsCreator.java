@@ -43,8 +43,8 @@
 package org.bgi.flexlab.gaea.tools.realigner;
 
 import htsjdk.samtools.SAMFileHeader;
-import htsjdk.variant.variantcontext.VariantContext;
 import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSites;
 import org.bgi.flexlab.gaea.data.structure.location.GenomeLocation;
 import org.bgi.flexlab.gaea.data.structure.location.GenomeLocationParser;
 import org.bgi.flexlab.gaea.data.structure.pileup.Mpileup;
@@ -62,7 +62,7 @@ import java.util.Map;
 
 public class IdentifyRegionsCreator {
 	private RealignerOptions option = null;
-	private ArrayList<VariantContext> knowIndels = null;
+	private KnownSites knowIndels = null;
 	private ChromosomeInformationShare chr = null;
 	private ArrayList<GaeaSamRecord> records = null;
 	private GenomeLocationParser parser = null;
@@ -70,7 +70,7 @@ public class IdentifyRegionsCreator {
 	private int maxIntervalSize = 500;
 
 	public IdentifyRegionsCreator(RealignerOptions option, ArrayList<GaeaSamRecord> records, SAMFileHeader mHeader,
-			ChromosomeInformationShare chr, ArrayList<VariantContext> knowIndels) {
+			ChromosomeInformationShare chr, KnownSites knowIndels) {
 		this.records = records;
 		this.knowIndels = knowIndels;
 		this.parser = new GenomeLocationParser(mHeader.getSequenceDictionary());
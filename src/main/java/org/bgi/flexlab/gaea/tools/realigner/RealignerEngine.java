@@ -46,6 +46,8 @@ import htsjdk.samtools.SAMFileHeader;
 import htsjdk.variant.variantcontext.VariantContext;
 import org.bgi.flexlab.gaea.data.structure.bam.GaeaSamRecord;
 import org.bgi.flexlab.gaea.data.structure.dbsnp.DbsnpShare;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSites;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSitesIndex;
 import org.bgi.flexlab.gaea.data.structure.location.GenomeLocation;
 import org.bgi.flexlab.gaea.data.structure.reference.ChromosomeInformationShare;
 import org.bgi.flexlab.gaea.data.structure.reference.ReferenceShare;
@@ -62,7 +64,8 @@ public class RealignerEngine {
 	private ReferenceShare genomeShare = null;
 	private VCFLocalLoader loader = null;
 	private ChromosomeInformationShare chrInfo = null;
-	private ArrayList<VariantContext> knowIndels = null;
+	private KnownSitesIndex knownSites = null;
+	private KnownSites knowIndels = null;
 	private ArrayList<GaeaSamRecord> records = null;
 	private ArrayList<GaeaSamRecord> filterRecords = null;
 	private Window win = null;
@@ -76,10 +79,11 @@ public class RealignerEngine {
 	private int end;
 
 	public RealignerEngine(RealignerOptions option, ReferenceShare genomeShare, DbsnpShare dbsnpShare,
-			VCFLocalLoader loader, SAMFileHeader mHeader, RealignerWriter writer) {
+			VCFLocalLoader loader, KnownSitesIndex knownSites, SAMFileHeader mHeader, RealignerWriter writer) {
 		this.option = option;
 		this.genomeShare = genomeShare;
 		this.loader = loader;
+		this.knownSites = knownSites;
 		this.mHeader = mHeader;
 		this.writer = writer;
 		this.dbsnpShare = dbsnpShare;
@@ -93,16 +97,16 @@ public class RealignerEngine {
 		this.filterRecords = filterRecords;
 		indelFilter = new VariantRegionFilter();
 		setChromosome(genomeShare);
-		setKnowIndels(loader);
-		indelRealigner = new IndelRealigner(mHeader, knowIndels, win, chrInfo, option);
+		setKnowIndels();
+		indelRealigner = new IndelRealigner(mHeader, knowIndels.getVariantContexts(), win, chrInfo, option);
 	}
 
 	private void setChromosome(ReferenceShare genomeShare) {
 		chrInfo = genomeShare.getChromosomeInfo(win.getContigName());
 	}
 
-	private void setKnowIndels(VCFLocalLoader loader) {
-		if (loader == null) {
+	private void setKnowIndels() {
+		if (loader == null && knownSites == null) {
 			throw new RuntimeException("loader is null!!");
 		}
 		String referenceName = win.getContigName();
@@ -112,11 +116,18 @@ public class RealignerEngine {
 		end = (win.getStop() + WINDOWS_EXTEND) < mHeader.getSequence(referenceName).getSequenceLength()
 				? (win.getStop() + WINDOWS_EXTEND) : mHeader.getSequence(referenceName).getSequenceLength();
 
+		if (knownSites != null) {
+			knowIndels = knownSites.query(referenceName, start, end);
+			return;
+		}
+
 		long startPosition = dbsnpShare.getStartPosition(referenceName, start / VcfIndex.WINDOW_SIZE, end / VcfIndex.WINDOW_SIZE,
 				VcfIndex.WINDOW_SIZE);
 
+		ArrayList<VariantContext> indels = null;
 		if (startPosition >= 0)
-			knowIndels = indelFilter.loadFilter(loader, referenceName, startPosition, end);
+			indels = indelFilter.loadFilter(loader, referenceName, startPosition, end);
+		knowIndels = KnownSites.fromVariantContexts(indels);
 	}
 
 	public void reduce() {
@@ -42,9 +42,7 @@
  *******************************************************************************/
 package org.bgi.flexlab.gaea.tools.realigner;
 
-import htsjdk.variant.variantcontext.VariantContext;
-
-import java.util.ArrayList;
+import org.bgi.flexlab.gaea.data.structure.dbsnp.KnownSites;
 
 public class VariantState {
 	private boolean hasIndel;
@@ -57,22 +55,25 @@ public class VariantState {
 		furthestPos = -1;
 	}
 	
-	public boolean filterVariant(ArrayList<VariantContext> knowIndels,long position){
+	public boolean filterVariant(KnownSites knowIndels,long position){
 		if(knowIndels == null)
 			return false;
 		
-		for(VariantContext indel : knowIndels){
-			if(indel.getStart() <= position && indel.getEnd() >= position){
-				switch(indel.getType()){
+		for(int i = 0; i < knowIndels.size(); i++){
+			// sites are sorted by start
+			if(knowIndels.getStart(i) > position)
+				break;
+			if(knowIndels.getEnd(i) >= position){
+				switch(knowIndels.getType(i)){
 				case MIXED:
 					hasSNP = true;
 					hasIndel = true;
-					if(indel.isSimpleInsertion())
+					if(knowIndels.isSimpleInsertion(i))
 						hasInsertion = true;
 					break;
 				case INDEL:
 					hasIndel = true;
-					if(indel.isSimpleInsertion())
+					if(knowIndels.isSimpleInsertion(i))
 						hasInsertion = true;
 					break;
 				case SNP:
@@ -83,7 +84,7 @@ public class VariantState {
 				}
 				
 				if(hasIndel)
-					furthestPos = indel.getEnd();
+					furthestPos = knowIndels.getEnd(i);
 			}
 		}
 		
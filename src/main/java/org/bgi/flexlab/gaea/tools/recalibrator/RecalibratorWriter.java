@@ -16,10 +16,10 @@
  *******************************************************************************/
 package org.bgi.flexlab.gaea.tools.recalibrator;
 
-import org.bgi.flexlab.gaea.tools.recalibrator.table.RecalibratorTable;
+import org.bgi.flexlab.gaea.tools.recalibrator.table.FlatRecalibratorTable;
 
 public interface RecalibratorWriter {
-	public void write(RecalibratorTable table);
+	public void write(FlatRecalibratorTable table);
 	
 	public void close();
 }
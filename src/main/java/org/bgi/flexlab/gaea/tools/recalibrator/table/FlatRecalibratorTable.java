@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2017, BGI-Shenzhen
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *******************************************************************************/
+package org.bgi.flexlab.gaea.tools.recalibrator.table;
+
+import org.apache.hadoop.io.WritableUtils;
+import org.bgi.flexlab.gaea.data.exception.UserException;
+import org.bgi.flexlab.gaea.tools.recalibrator.RecalibratorDatum;
+import org.bgi.flexlab.gaea.tools.recalibrator.covariate.Covariate;
+import org.bgi.flexlab.gaea.util.EventType;
+import org.bgi.flexlab.gaea.util.NestedObjectArray;
+import org.bgi.flexlab.gaea.util.QualityUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * observation/error counts of every covariate table in strided long arrays,
+ * two longs (observations, errors) per cell.
+ *
+ * read group table : [readGroup][event]
+ * quality table : [readGroup][quality][event]
+ * optional tables : [readGroup][quality] rows of [key][event], a row is only
+ * allocated when the quality is seen in the read group.
+ */
+public class FlatRecalibratorTable {
+	private final int readGroupNumber;
+	private final int qualityNumber;
+	private final int eventNumber;
+	private final int[] keyNumbers;
+
+	private final long[] readGroupCounts;
+	private final double[] readGroupExpectedErrors;
+	private final long[] qualityCounts;
+	private final long[][][] optionalCounts;
+
+	public FlatRecalibratorTable(final Covariate[] covariates, int readGroupNumber) {
+		this.readGroupNumber = readGroupNumber;
+		this.qualityNumber = covariates[RecalibratorTable.Type.QUALITY_SCORE_TABLE.index].maximumKeyValue() + 1;
+		this.eventNumber = EventType.values().length;
+		this.keyNumbers = new int[covariates.length];
+		for (int i = RecalibratorTable.Type.OPTIONAL_COVARIATE_TABLES_START.index; i < covariates.length; i++)
+			keyNumbers[i] = covariates[i].maximumKeyValue() + 1;
+
+		readGroupCounts = new long[readGroupNumber * eventNumber * 2];
+		readGroupExpectedErrors = new double[readGroupNumber * eventNumber];
+		qualityCounts = new long[readGroupNumber * qualityNumber * eventNumber * 2];
+		optionalCounts = new long[covariates.length][][];
+		for (int i = RecalibratorTable.Type.OPTIONAL_COVARIATE_TABLES_START.index; i < covariates.length; i++)
+			optionalCounts[i] = new long[readGroupNumber * qualityNumber][];
+	}
+
+	public int length() {
+		return keyNumbers.length;
+	}
+
+	private long[] row(int table, int rowIndex) {
+		long[] row = optionalCounts[table][rowIndex];
+		if (row == null) {
+			row = new long[keyNumbers[table] * eventNumber * 2];
+			optionalCounts[table][rowIndex] = row;
+		}
+		return row;
+	}
+
+	/**
+	 * count one base; keys are the covariate keys of the base, negative
+	 * optional keys are skipped
+	 */
+	public void increment(final int[] keys, final int eventIndex, final byte quality, final boolean isError) {
+		final int error = isError ? 1 : 0;
+		final int readGroup = keys[0];
+
+		int cell = readGroup * eventNumber + eventIndex;
+		readGroupCounts[cell << 1]++;
+		readGroupCounts[(cell << 1) + 1] += error;
+		readGroupExpectedErrors[cell] += QualityUtils.qualToErrorProb(quality);
+
+		final int rowIndex = readGroup * qualityNumber + keys[1];
+		cell = (rowIndex * eventNumber + eventIndex) << 1;
+		qualityCounts[cell]++;
+		qualityCounts[cell + 1] += error;
+
+		for (int i = RecalibratorTable.Type.OPTIONAL_COVARIATE_TABLES_START.index; i < keys.length; i++) {
+			if (keys[i] < 0)
+				continue;
+			final long[] row = row(i, rowIndex);
+			cell = (keys[i] * eventNumber + eventIndex) << 1;
+			row[cell]++;
+			row[cell + 1] += error;
+		}
+	}
+
+	private static int nonZeroCells(long[] counts) {
+		int n = 0;
+		for (int i = 0; i < counts.length; i += 2) {
+			if (counts[i] != 0)
+				n++;
+		}
+		return n;
+	}
+
+	private static void writeCells(DataOutput out, long[] counts) throws IOException {
+		WritableUtils.writeVInt(out, nonZeroCells(counts));
+		for (int i = 0; i < counts.length; i += 2) {
+			if (counts[i] == 0)
+				continue;
+			WritableUtils.writeVInt(out, i >> 1);
+			WritableUtils.writeVLong(out, counts[i]);
+			WritableUtils.writeVLong(out, counts[i + 1]);
+		}
+	}
+
+	private static void addCells(DataInput in, long[] counts) throws IOException {
+		int n = WritableUtils.readVInt(in);
+		for (int i = 0; i < n; i++) {
+			int cell = WritableUtils.readVInt(in) << 1;
+			counts[cell] += WritableUtils.readVLong(in);
+			counts[cell + 1] += WritableUtils.readVLong(in);
+		}
+	}
+
+	/**
+	 * sparse binary form: only cells with observations are written
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(readGroupNumber);
+		out.writeInt(qualityNumber);
+		out.writeInt(eventNumber);
+		out.writeInt(keyNumbers.length);
+		for (int keyNumber : keyNumbers)
+			out.writeInt(keyNumber);
+
+		writeCells(out, readGroupCounts);
+		for (double expectedErrors : readGroupExpectedErrors)
+			out.writeDouble(expectedErrors);
+		writeCells(out, qualityCounts);
+
+		for (int table = RecalibratorTable.Type.OPTIONAL_COVARIATE_TABLES_START.index; table < keyNumbers.length; table++) {
+			long[][] rows = optionalCounts[table];
+			int n = 0;
+			for (long[] row : rows) {
+				if (row != null)
+					n++;
+			}
+			WritableUtils.writeVInt(out, n);
+			for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+				if (rows[rowIndex] == null)
+					continue;
+				WritableUtils.writeVInt(out, rowIndex);
+				writeCells(out, rows[rowIndex]);
+			}
+		}
+	}
+
+	/**
+	 * add a table written by write() element-wise
+	 */
+	public void merge(DataInput in) throws IOException {
+		boolean match = in.readInt() == readGroupNumber;
+		match &= in.readInt() == qualityNumber;
+		match &= in.readInt() == eventNumber;
+		match &= in.readInt() == keyNumbers.length;
+		for (int keyNumber : keyNumbers)
+			match &= in.readInt() == keyNumber;
+		if (!match)
+			throw new UserException("recalibrator table dimensions are not match, check covariate options.");
+
+		addCells(in, readGroupCounts);
+		for (int i = 0; i < readGroupExpectedErrors.length; i++)
+			readGroupExpectedErrors[i] += in.readDouble();
+		addCells(in, qualityCounts);
+
+		for (int table = RecalibratorTable.Type.OPTIONAL_COVARIATE_TABLES_START.index; table < keyNumbers.length; table++) {
+			int n = WritableUtils.readVInt(in);
+			for (int i = 0; i < n; i++)
+				addCells(in, row(table, WritableUtils.readVInt(in)));
+		}
+	}
+
+	/**
+	 * nested datum tables used to build and apply the report
+	 */
+	public RecalibratorTable toRecalibratorTable(final Covariate[] covariates) {
+		RecalibratorTable tables = new RecalibratorTable(covariates, readGroupNumber);
+
+		NestedObjectArray<RecalibratorDatum> rgTable = tables.getTable(RecalibratorTable.Type.READ_GROUP_TABLE);
+		for (int readGroup = 0; readGroup < readGroupNumber; readGroup++) {
+			for (int event = 0; event < eventNumber; event++) {
+				int cell = readGroup * eventNumber + event;
+				long bases = readGroupCounts[cell << 1];
+				if (bases == 0)
+					continue;
+				double estimatedQuality = -10 * Math.log10(readGroupExpectedErrors[cell] / bases);
+				rgTable.put(new RecalibratorDatum(bases, readGroupCounts[(cell << 1) + 1], estimatedQuality),
+						readGroup, event);
+			}
+		}
+
+		NestedObjectArray<RecalibratorDatum> qualTable = tables.getTable(RecalibratorTable.Type.QUALITY_SCORE_TABLE);
+		for (int readGroup = 0; readGroup < readGroupNumber; readGroup++) {
+			for (int quality = 0; quality < qualityNumber; quality++) {
+				int rowIndex = readGroup * qualityNumber + quality;
+				for (int event = 0; event < eventNumber; event++) {
+					int cell = (rowIndex * eventNumber + event) << 1;
+					if (qualityCounts[cell] == 0)
+						continue;
+					qualTable.put(new RecalibratorDatum(qualityCounts[cell], qualityCounts[cell + 1], quality),
+							readGroup, quality, event);
+				}
+
+				for (int table = RecalibratorTable.Type.OPTIONAL_COVARIATE_TABLES_START.index; table < keyNumbers.length; table++) {
+					long[] row = optionalCounts[table][rowIndex];
+					if (row == null)
+						continue;
+					NestedObjectArray<RecalibratorDatum> covTable = tables.getTable(table);
+					for (int key = 0; key < keyNumbers[table]; key++) {
+						for (int event = 0; event < eventNumber; event++) {
+							int cell = (key * eventNumber + event) << 1;
+							if (row[cell] == 0)
+								continue;
+							covTable.put(new RecalibratorDatum(row[cell], row[cell + 1], quality), readGroup,
+									quality, key, event);
+						}
+					}
+				}
+			}
+		}
+		return tables;
+	}
+}
@@ -164,4 +164,17 @@ public class SamRecordUtils {
 			return true;
 		return false;
 	}
+
+	/**
+	 * 64 bit hash of a read name (FNV-1a with a murmur finalizer), the same
+	 * for both mates of a pair and in every task
+	 */
+	public static long readNameHash(String readName) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < readName.length(); i++)
+			h = (h ^ readName.charAt(i)) * 0x100000001b3L;
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
 }